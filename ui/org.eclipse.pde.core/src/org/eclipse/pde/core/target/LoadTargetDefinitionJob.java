@@ -183,6 +183,8 @@ public class LoadTargetDefinitionJob extends WorkspaceJob {
 		PDECore.getDefault().getExtensionsRegistry().targetReloaded();
 		PDECore.getDefault().getModelManager().targetReloaded(monitor); // PluginModelManager should be reloaded first to reset isCancelled() flag
 		PDECore.getDefault().getFeatureModelManager().targetReloaded();
+		// pre-parse the schemas needed to validate the workspace plug-ins against the new target
+		PDECore.getDefault().getSchemaRegistry().warmUp();
 	}
 
 }
\ No newline at end of file
@@ -32,8 +32,9 @@ import org.eclipse.osgi.util.ManifestElement;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.pde.internal.core.ICoreConstants;
 import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.target.BundleScanCache;
 import org.eclipse.pde.internal.core.target.Messages;
-import org.eclipse.pde.internal.core.util.ManifestUtils;
+import org.eclipse.pde.internal.core.target.TargetBundleRegistry;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.Constants;
 
@@ -164,7 +165,7 @@ public class TargetBundle {
 		if (file == null || !file.exists()) {
 			throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, NLS.bind(Messages.TargetFeature_FileDoesNotExist, file)));
 		}
-		Map<String, String> manifest = ManifestUtils.loadManifest(file);
+		Map<String, String> manifest = BundleScanCache.getManifestHeaders(file);
 		try {
 			fInfo = new BundleInfo(file.toURI());
 			// Attempt to retrieve additional bundle information from the manifest
@@ -172,14 +173,14 @@ public class TargetBundle {
 			if (header != null) {
 				ManifestElement[] elements = ManifestElement.parseHeader(Constants.BUNDLE_SYMBOLICNAME, header);
 				if (elements != null) {
-					String name = elements[0].getValue();
+					String name = TargetBundleRegistry.intern(elements[0].getValue());
 					if (name != null) {
 						fInfo.setSymbolicName(name);
 						header = manifest.get(Constants.BUNDLE_VERSION);
 						if (header != null) {
 							elements = ManifestElement.parseHeader(Constants.BUNDLE_VERSION, header);
 							if (elements != null) {
-								fInfo.setVersion(elements[0].getValue());
+								fInfo.setVersion(TargetBundleRegistry.intern(elements[0].getValue()));
 							}
 						}
 					}
@@ -214,7 +215,7 @@ public class TargetBundle {
 							String versionEntry = element.getAttribute(Constants.VERSION_ATTRIBUTE);
 							// Currently the version attribute is required
 							if (binaryPluginName != null && binaryPluginName.length() > 0 && versionEntry != null && versionEntry.length() > 0) {
-								return new BundleInfo(binaryPluginName, versionEntry, null, BundleInfo.NO_LEVEL, false);
+								return new BundleInfo(TargetBundleRegistry.intern(binaryPluginName), TargetBundleRegistry.intern(versionEntry), null, BundleInfo.NO_LEVEL, false);
 							}
 						}
 					}
@@ -0,0 +1,391 @@
+/*******************************************************************************
+ *  Copyright (c) 2021 IBM Corporation and others.
+ *
+ *  This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License 2.0
+ *  which accompanies this distribution, and is available at
+ *  https://www.eclipse.org/legal/epl-2.0/
+ *
+ *  SPDX-License-Identifier: EPL-2.0
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.eclipse.osgi.service.resolver.BaseDescription;
+import org.eclipse.osgi.service.resolver.BundleDelta;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.BundleSpecification;
+import org.eclipse.osgi.service.resolver.ExportPackageDescription;
+import org.eclipse.osgi.service.resolver.HostSpecification;
+import org.eclipse.osgi.service.resolver.ImportPackageSpecification;
+import org.eclipse.osgi.service.resolver.State;
+import org.eclipse.osgi.service.resolver.StateDelta;
+import org.eclipse.osgi.service.resolver.VersionConstraint;
+
+/**
+ * Reverse dependency index of the bundles in the PDE resolver state. The index
+ * maps bundle symbolic names to the bundles requiring them (through
+ * <code>Require-Bundle</code> or <code>Fragment-Host</code>) and package names
+ * to the bundles importing and exporting them.
+ * <p>
+ * The index is based on the declared constraints rather than on the resolved
+ * wiring, so unresolved bundles are reported as well. It is built from the
+ * state on first access and then kept up to date incrementally from the state
+ * deltas of the {@link PluginModelManager}. If the state itself is replaced,
+ * the index is rebuilt on the next query.
+ * </p>
+ *
+ * @see PluginModelManager#getDependencyIndex()
+ */
+public class BundleDependencyIndex implements IStateDeltaListener {
+
+	/**
+	 * The keys a single bundle has contributed to the index, used to remove
+	 * them again when the bundle is updated or removed
+	 */
+	private static class Contribution {
+		final Set<String> required = new HashSet<>();
+		final Set<String> imported = new HashSet<>();
+		final Set<String> exported = new HashSet<>();
+	}
+
+	private final Supplier<State> fStateProvider;
+
+	/**
+	 * The state the index has been built from, <code>null</code> if the index
+	 * must be rebuilt on the next query
+	 */
+	private State fState;
+
+	private final Map<Long, Contribution> fContributions = new HashMap<>();
+	private final Map<String, Set<Long>> fRequirers = new HashMap<>();
+	private final Map<String, Set<Long>> fImporters = new HashMap<>();
+	private final Map<String, Set<Long>> fExporters = new HashMap<>();
+
+	/**
+	 * Creates an index for the state returned by the given provider.
+	 *
+	 * @param stateProvider
+	 *            provides the state to index, called whenever the index needs
+	 *            to be (re)built
+	 */
+	public BundleDependencyIndex(Supplier<State> stateProvider) {
+		fStateProvider = stateProvider;
+	}
+
+	/**
+	 * Returns the bundles that require a bundle with the given symbolic name
+	 * through <code>Require-Bundle</code>, and the fragments that declare it
+	 * as their host.
+	 *
+	 * @param symbolicName
+	 *            the symbolic name of the required bundle
+	 * @return the requiring bundles, possibly empty
+	 */
+	public BundleDescription[] getRequiringBundles(String symbolicName) {
+		State state = fStateProvider.get();
+		synchronized (this) {
+			ensureIndexed(state);
+			return toDescriptions(fRequirers.get(symbolicName));
+		}
+	}
+
+	/**
+	 * Returns the bundles that import the given package.
+	 *
+	 * @param packageName
+	 *            the package name
+	 * @return the importing bundles, possibly empty
+	 */
+	public BundleDescription[] getImportingBundles(String packageName) {
+		State state = fStateProvider.get();
+		synchronized (this) {
+			ensureIndexed(state);
+			return toDescriptions(fImporters.get(packageName));
+		}
+	}
+
+	/**
+	 * Returns the bundles that export the given package.
+	 *
+	 * @param packageName
+	 *            the package name
+	 * @return the exporting bundles, possibly empty
+	 */
+	public BundleDescription[] getExportingBundles(String packageName) {
+		State state = fStateProvider.get();
+		synchronized (this) {
+			ensureIndexed(state);
+			return toDescriptions(fExporters.get(packageName));
+		}
+	}
+
+	/**
+	 * Returns all bundles depending on a bundle with the given symbolic name,
+	 * either by requiring it, by being one of its fragments, or by importing a
+	 * package it exports.
+	 *
+	 * @param symbolicName
+	 *            the symbolic name of the bundle
+	 * @return the dependent bundles, possibly empty
+	 */
+	public BundleDescription[] getDependents(String symbolicName) {
+		State state = fStateProvider.get();
+		synchronized (this) {
+			ensureIndexed(state);
+			if (fState == null) {
+				return new BundleDescription[0];
+			}
+			Set<Long> ids = new LinkedHashSet<>();
+			Set<Long> requirers = fRequirers.get(symbolicName);
+			if (requirers != null) {
+				ids.addAll(requirers);
+			}
+			for (BundleDescription bundle : fState.getBundles(symbolicName)) {
+				Contribution contribution = fContributions.get(bundle.getBundleId());
+				if (contribution == null) {
+					continue;
+				}
+				for (String packageName : contribution.exported) {
+					Set<Long> importers = fImporters.get(packageName);
+					if (importers != null) {
+						ids.addAll(importers);
+					}
+				}
+				ids.remove(bundle.getBundleId());
+			}
+			return toDescriptions(ids);
+		}
+	}
+
+	/**
+	 * Returns the bundles depending on the given bundle. Unlike
+	 * {@link BundleDescription#getDependents()} this includes the bundles
+	 * whose constraints on the given bundle are not resolved, but not the
+	 * bundles wired to another version of it.
+	 *
+	 * @param bundle
+	 *            a bundle of the state
+	 * @return the bundles requiring the given bundle, attached to it as
+	 *         fragment or importing one of its packages, possibly empty. If
+	 *         the bundle is not part of the indexed state, its resolved
+	 *         dependents are returned.
+	 * @see #getDependents(BundleDescription, boolean)
+	 */
+	public BundleDescription[] getDependents(BundleDescription bundle) {
+		return getDependents(bundle, true);
+	}
+
+	/**
+	 * Returns the bundles depending on the given bundle, optionally including
+	 * the bundles whose constraints on the given bundle are not resolved.
+	 * Without them, the result is the same as
+	 * {@link BundleDescription#getDependents()}.
+	 *
+	 * @param bundle
+	 *            a bundle of the state
+	 * @param includeUnresolved
+	 *            whether to include the bundles whose constraints would be
+	 *            satisfied by the given bundle but are not resolved
+	 * @return the bundles requiring the given bundle, attached to it as
+	 *         fragment or importing one of its packages, possibly empty. If
+	 *         the bundle is not part of the indexed state, its resolved
+	 *         dependents are returned.
+	 */
+	public BundleDescription[] getDependents(BundleDescription bundle, boolean includeUnresolved) {
+		State state = fStateProvider.get();
+		synchronized (this) {
+			ensureIndexed(state);
+			if (fState == null || bundle.getContainingState() != fState) {
+				return bundle.getDependents();
+			}
+			Set<BundleDescription> dependents = new LinkedHashSet<>();
+			for (BundleDescription requirer : toDescriptions(fRequirers.get(bundle.getSymbolicName()))) {
+				if (requires(requirer, bundle, includeUnresolved)) {
+					dependents.add(requirer);
+				}
+			}
+			for (ExportPackageDescription export : bundle.getExportPackages()) {
+				for (BundleDescription importer : toDescriptions(fImporters.get(export.getName()))) {
+					if (imports(importer, export, includeUnresolved)) {
+						dependents.add(importer);
+					}
+				}
+			}
+			dependents.remove(bundle);
+			return dependents.toArray(new BundleDescription[dependents.size()]);
+		}
+	}
+
+	private static boolean requires(BundleDescription requirer, BundleDescription bundle, boolean includeUnresolved) {
+		for (BundleSpecification required : requirer.getRequiredBundles()) {
+			if (isConstraintOn(required, bundle, includeUnresolved)) {
+				return true;
+			}
+		}
+		HostSpecification host = requirer.getHost();
+		return host != null && isConstraintOn(host, bundle, includeUnresolved);
+	}
+
+	/**
+	 * Returns whether the given constraint is wired to the bundle or, if it
+	 * is not resolved and unresolved constraints are included, would be
+	 * satisfied by it.
+	 */
+	private static boolean isConstraintOn(VersionConstraint constraint, BundleDescription bundle, boolean includeUnresolved) {
+		if (!bundle.getSymbolicName().equals(constraint.getName())) {
+			return false;
+		}
+		BaseDescription supplier = constraint.getSupplier();
+		if (supplier != null) {
+			return supplier == bundle;
+		}
+		return includeUnresolved && (constraint.getVersionRange() == null || constraint.getVersionRange().isIncluded(bundle.getVersion()));
+	}
+
+	private static boolean imports(BundleDescription importer, ExportPackageDescription export, boolean includeUnresolved) {
+		for (ImportPackageSpecification imported : importer.getImportPackages()) {
+			if (!export.getName().equals(imported.getName())) {
+				continue;
+			}
+			BaseDescription supplier = imported.getSupplier();
+			if (supplier != null) {
+				if (supplier == export) {
+					return true;
+				}
+			} else if (includeUnresolved && (imported.getVersionRange() == null || imported.getVersionRange().isIncluded(export.getVersion()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized void stateResolved(StateDelta delta) {
+		if (fState == null) {
+			// nothing indexed yet, the next query builds the index
+			return;
+		}
+		if (delta == null || delta.getState() != fState) {
+			fState = null;
+			return;
+		}
+		for (BundleDelta bundleDelta : delta.getChanges()) {
+			int type = bundleDelta.getType();
+			BundleDescription bundle = bundleDelta.getBundle();
+			if ((type & BundleDelta.REMOVED) != 0) {
+				remove(bundle.getBundleId());
+			} else if ((type & (BundleDelta.ADDED | BundleDelta.UPDATED)) != 0) {
+				remove(bundle.getBundleId());
+				add(bundle);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void stateChanged(State newState) {
+		fState = null;
+	}
+
+	/**
+	 * Rebuilds the index if it has been invalidated or the state it has been
+	 * built from is no longer current. The state is fetched by the callers
+	 * before they lock the index, as providing it may notify the index.
+	 */
+	private void ensureIndexed(State state) {
+		if (fState != null && fState == state) {
+			return;
+		}
+		fContributions.clear();
+		fRequirers.clear();
+		fImporters.clear();
+		fExporters.clear();
+		fState = state;
+		if (state == null) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		BundleDescription[] bundles = state.getBundles();
+		for (BundleDescription bundle : bundles) {
+			add(bundle);
+		}
+		if (PDECore.DEBUG_MODEL) {
+			System.out.println("Dependency index of " + bundles.length + " bundles built in " //$NON-NLS-1$ //$NON-NLS-2$
+					+ (System.currentTimeMillis() - start) + " ms"); //$NON-NLS-1$
+		}
+	}
+
+	private void add(BundleDescription bundle) {
+		Contribution contribution = new Contribution();
+		for (BundleSpecification required : bundle.getRequiredBundles()) {
+			contribution.required.add(required.getName());
+		}
+		HostSpecification host = bundle.getHost();
+		if (host != null) {
+			contribution.required.add(host.getName());
+		}
+		for (ImportPackageSpecification imported : bundle.getImportPackages()) {
+			contribution.imported.add(imported.getName());
+		}
+		for (ExportPackageDescription exported : bundle.getExportPackages()) {
+			contribution.exported.add(exported.getName());
+		}
+		contribution.required.remove(null);
+
+		Long id = bundle.getBundleId();
+		fContributions.put(id, contribution);
+		addAll(fRequirers, contribution.required, id);
+		addAll(fImporters, contribution.imported, id);
+		addAll(fExporters, contribution.exported, id);
+	}
+
+	private void remove(long bundleId) {
+		Long id = bundleId;
+		Contribution contribution = fContributions.remove(id);
+		if (contribution != null) {
+			removeAll(fRequirers, contribution.required, id);
+			removeAll(fImporters, contribution.imported, id);
+			removeAll(fExporters, contribution.exported, id);
+		}
+	}
+
+	private static void addAll(Map<String, Set<Long>> index, Collection<String> keys, Long id) {
+		for (String key : keys) {
+			index.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+		}
+	}
+
+	private static void removeAll(Map<String, Set<Long>> index, Collection<String> keys, Long id) {
+		for (String key : keys) {
+			Set<Long> ids = index.get(key);
+			if (ids != null && ids.remove(id) && ids.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+
+	private BundleDescription[] toDescriptions(Collection<Long> ids) {
+		if (ids == null || ids.isEmpty() || fState == null) {
+			return new BundleDescription[0];
+		}
+		List<BundleDescription> bundles = new ArrayList<>(ids.size());
+		for (Long id : ids) {
+			BundleDescription bundle = fState.getBundle(id);
+			if (bundle != null) {
+				bundles.add(bundle);
+			}
+		}
+		return bundles.toArray(new BundleDescription[bundles.size()]);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -13,9 +13,15 @@
  *******************************************************************************/
 package org.eclipse.pde.internal.core;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.eclipse.core.resources.IWorkspaceRunnable;
@@ -31,6 +37,7 @@ import org.eclipse.osgi.service.resolver.State;
 import org.eclipse.osgi.service.resolver.StateObjectFactory;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.internal.build.IPDEBuildConstants;
 
 public class BundleValidationOperation implements IWorkspaceRunnable {
 
@@ -39,6 +46,8 @@ public class BundleValidationOperation implements IWorkspaceRunnable {
 	private final IPluginModelBase[] fModels;
 	private final Dictionary<?, ?>[] fProperties;
 	private State fState;
+	private Map<Object, Object[]> fResolverErrors;
+	private boolean fHasErrors;
 
 	public BundleValidationOperation(IPluginModelBase[] models) {
 		this(models, new Dictionary[] {TargetPlatformHelper.getTargetEnvironment()});
@@ -54,6 +63,14 @@ public class BundleValidationOperation implements IWorkspaceRunnable {
 		if (FACTORY == null) {
 			FACTORY = Platform.getPlatformAdmin().getFactory();
 		}
+		State mainState = TargetPlatformHelper.getState();
+		if (canReuse(mainState)) {
+			// the bundles have already been resolved in the same environment,
+			// record the result before the state changes with the target
+			fState = mainState;
+			recordResult();
+			return;
+		}
 		SubMonitor subMonitor = SubMonitor.convert(monitor, fModels.length + 1);
 		fState = FACTORY.createState(true);
 		for (IPluginModelBase fModel : fModels) {
@@ -65,10 +82,72 @@ public class BundleValidationOperation implements IWorkspaceRunnable {
 		}
 		fState.setPlatformProperties(fProperties);
 		fState.resolve(false);
+		recordResult();
 		subMonitor.split(1);
 	}
 
+	private void recordResult() {
+		fResolverErrors = computeResolverErrors();
+		fHasErrors = computeHasErrors();
+	}
+
+	/**
+	 * Returns whether the given resolved state contains exactly the bundles to
+	 * validate and has been resolved with the same platform properties, so
+	 * that resolving a copy of the bundles would give the same result.
+	 */
+	private boolean canReuse(State state) {
+		if (state == null || !state.isResolved()) {
+			return false;
+		}
+		Set<BundleDescription> bundles = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (IPluginModelBase model : fModels) {
+			BundleDescription bundle = model.getBundleDescription();
+			if (bundle != null) {
+				if (bundle.getContainingState() != state) {
+					return false;
+				}
+				bundles.add(bundle);
+			}
+		}
+		return bundles.size() == state.getBundles().length
+				&& getComparableProperties(state.getPlatformProperties()).equals(getComparableProperties(fProperties));
+	}
+
+	/**
+	 * Returns the given platform properties as maps, without the name of the
+	 * system bundle if it is the default one a new state assumes.
+	 *
+	 * @param properties the platform properties of a state
+	 * @return the properties, comparable with {@link List#equals(Object)}
+	 */
+	public static List<Map<Object, Object>> getComparableProperties(Dictionary<?, ?>[] properties) {
+		List<Map<Object, Object>> result = new ArrayList<>(properties.length);
+		for (Dictionary<?, ?> dictionary : properties) {
+			Map<Object, Object> map = new HashMap<>();
+			for (Enumeration<?> keys = dictionary.keys(); keys.hasMoreElements();) {
+				Object key = keys.nextElement();
+				map.put(key, dictionary.get(key));
+			}
+			if (IPDEBuildConstants.BUNDLE_OSGI.equals(map.get(ICoreConstants.OSGI_SYSTEM_BUNDLE))) {
+				map.remove(ICoreConstants.OSGI_SYSTEM_BUNDLE);
+			}
+			result.add(map);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the resolver errors of the validated bundles, as they were when
+	 * the validation was run.
+	 *
+	 * @return a new map of the bundles or problems to their errors
+	 */
 	public Map<Object, Object[]> getResolverErrors() {
+		return new LinkedHashMap<>(fResolverErrors);
+	}
+
+	private Map<Object, Object[]> computeResolverErrors() {
 		Set<String> alreadyDuplicated = new HashSet<>();
 		Map<Object, Object[]> map = new LinkedHashMap<>();
 		BundleDescription[] bundles = fState.getBundles();
@@ -91,11 +170,30 @@ public class BundleValidationOperation implements IWorkspaceRunnable {
 		return map;
 	}
 
+	/**
+	 * Returns the state the bundles were validated in. If the bundles were
+	 * already resolved in the target platform state, this is the target
+	 * platform state, which continues to change with the target platform, so
+	 * the results of the validation should be taken from
+	 * {@link #getResolverErrors()} and {@link #hasErrors()}.
+	 *
+	 * @return the state the bundles were validated in
+	 */
 	public State getState() {
 		return fState;
 	}
 
+	/**
+	 * Returns whether the validated bundles had errors when the validation was
+	 * run.
+	 *
+	 * @return whether the validated bundles had errors
+	 */
 	public boolean hasErrors() {
+		return fHasErrors;
+	}
+
+	private boolean computeHasErrors() {
 		if (fState.getHighestBundleId() > -1) {
 			BundleDescription[] bundles = fState.getBundles();
 			for (BundleDescription bundle : bundles) {
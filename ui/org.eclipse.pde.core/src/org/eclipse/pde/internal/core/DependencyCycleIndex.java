@@ -0,0 +1,390 @@
+/*******************************************************************************
+ *  Copyright (c) 2021 IBM Corporation and others.
+ *
+ *  This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License 2.0
+ *  which accompanies this distribution, and is available at
+ *  https://www.eclipse.org/legal/epl-2.0/
+ *
+ *  SPDX-License-Identifier: EPL-2.0
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.eclipse.osgi.service.resolver.BaseDescription;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.BundleSpecification;
+import org.eclipse.osgi.service.resolver.ExportPackageDescription;
+import org.eclipse.osgi.service.resolver.State;
+import org.eclipse.osgi.service.resolver.StateDelta;
+
+/**
+ * Dependency cycles between the bundles in the PDE resolver state.
+ * <p>
+ * The dependency graph has an edge from each bundle to the bundles it requires
+ * through <code>Require-Bundle</code> and to the bundles exporting the
+ * packages it imports. Required bundles that are not resolved are matched by
+ * symbolic name, so that cycles are also reported when they prevent the
+ * resolution. The strongly connected components of this graph are computed in
+ * linear time when the cycles are first queried after a change of the state
+ * and are cached until the next change, so whether a bundle is part of a cycle
+ * is a lookup.
+ * </p>
+ *
+ * @see PluginModelManager#getCycleIndex()
+ */
+public class DependencyCycleIndex implements IStateDeltaListener {
+
+	private final Supplier<State> fStateProvider;
+
+	/**
+	 * The state the components have been computed for, <code>null</code> if
+	 * they must be computed again on the next query
+	 */
+	private State fState;
+
+	private BundleDescription[] fBundles = new BundleDescription[0];
+	private final Map<Long, Integer> fNodes = new HashMap<>();
+
+	/**
+	 * The dependencies of each node of the graph
+	 */
+	private int[][] fEdges = new int[0][];
+
+	/**
+	 * The component of each node, <code>-1</code> for nodes that are not part
+	 * of any cycle
+	 */
+	private int[] fComponents = new int[0];
+
+	/**
+	 * Creates an index for the state returned by the given provider.
+	 *
+	 * @param stateProvider
+	 *            provides the state to compute the cycles of, called whenever
+	 *            they need to be computed
+	 */
+	public DependencyCycleIndex(Supplier<State> stateProvider) {
+		fStateProvider = stateProvider;
+	}
+
+	/**
+	 * Returns whether the given bundle is part of a dependency cycle.
+	 *
+	 * @param bundle
+	 *            a bundle of the state
+	 * @return whether the bundle depends on itself through other bundles
+	 */
+	public boolean isInCycle(BundleDescription bundle) {
+		State state = fStateProvider.get();
+		synchronized (this) {
+			ensureComputed(state);
+			int node = getNode(bundle);
+			return node != -1 && fComponents[node] != -1;
+		}
+	}
+
+	/**
+	 * Returns all bundles that are part of the same dependency cycles as the
+	 * given bundle, including the bundle itself.
+	 *
+	 * @param bundle
+	 *            a bundle of the state
+	 * @return the bundles of the strongly connected component of the bundle,
+	 *         empty if the bundle is not part of a cycle
+	 */
+	public BundleDescription[] getCycleMembers(BundleDescription bundle) {
+		State state = fStateProvider.get();
+		synchronized (this) {
+			ensureComputed(state);
+			int node = getNode(bundle);
+			if (node == -1 || fComponents[node] == -1) {
+				return new BundleDescription[0];
+			}
+			List<BundleDescription> members = new ArrayList<>();
+			for (int i = 0; i < fComponents.length; i++) {
+				if (fComponents[i] == fComponents[node]) {
+					members.add(fBundles[i]);
+				}
+			}
+			return members.toArray(new BundleDescription[members.size()]);
+		}
+	}
+
+	/**
+	 * Returns concrete dependency cycles through the given bundle: for each
+	 * direct dependency that is part of the same cycles, the shortest path
+	 * leading from it back to the bundle.
+	 *
+	 * @param bundle
+	 *            a bundle of the state
+	 * @return the cycles, each starting with the given bundle and listing
+	 *         every member once, empty if the bundle is not part of a cycle
+	 */
+	public List<BundleDescription[]> getCycles(BundleDescription bundle) {
+		State state = fStateProvider.get();
+		synchronized (this) {
+			ensureComputed(state);
+			int node = getNode(bundle);
+			if (node == -1 || fComponents[node] == -1) {
+				return Collections.emptyList();
+			}
+			int component = fComponents[node];
+			Set<List<BundleDescription>> cycles = new LinkedHashSet<>();
+			for (int dependency : fEdges[node]) {
+				if (fComponents[dependency] != component) {
+					continue;
+				}
+				int[] path = findPath(dependency, node, component);
+				if (path != null) {
+					List<BundleDescription> cycle = new ArrayList<>(path.length);
+					cycle.add(fBundles[node]);
+					for (int i = 0; i < path.length - 1; i++) {
+						cycle.add(fBundles[path[i]]);
+					}
+					cycles.add(cycle);
+				}
+			}
+			List<BundleDescription[]> result = new ArrayList<>(cycles.size());
+			for (List<BundleDescription> cycle : cycles) {
+				result.add(cycle.toArray(new BundleDescription[cycle.size()]));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Returns the shortest dependency path from one bundle to another.
+	 *
+	 * @param from
+	 *            the depending bundle
+	 * @param to
+	 *            the bundle depended on
+	 * @return the bundles on the path, starting with <code>from</code> and
+	 *         ending with <code>to</code>, or <code>null</code> if
+	 *         <code>from</code> does not depend on <code>to</code>
+	 */
+	public BundleDescription[] getDependencyPath(BundleDescription from, BundleDescription to) {
+		State state = fStateProvider.get();
+		synchronized (this) {
+			ensureComputed(state);
+			int source = getNode(from);
+			int target = getNode(to);
+			if (source == -1 || target == -1) {
+				return null;
+			}
+			int[] path = findPath(source, target, -1);
+			if (path == null) {
+				return null;
+			}
+			BundleDescription[] bundles = new BundleDescription[path.length];
+			for (int i = 0; i < path.length; i++) {
+				bundles[i] = fBundles[path[i]];
+			}
+			return bundles;
+		}
+	}
+
+	@Override
+	public synchronized void stateResolved(StateDelta delta) {
+		if (delta == null || delta.getState() != fState || delta.getChanges().length > 0) {
+			fState = null;
+		}
+	}
+
+	@Override
+	public synchronized void stateChanged(State newState) {
+		fState = null;
+	}
+
+	private int getNode(BundleDescription bundle) {
+		if (bundle == null) {
+			return -1;
+		}
+		Integer node = fNodes.get(bundle.getBundleId());
+		return node != null && fBundles[node] == bundle ? node : -1;
+	}
+
+	/**
+	 * Builds the dependency graph and computes its strongly connected
+	 * components if they have been invalidated or the state they have been
+	 * computed for is no longer current. The state is obtained from the
+	 * provider before taking the lock of this index, as providing it may
+	 * create the state and notify this index while holding other locks.
+	 */
+	private void ensureComputed(State state) {
+		if (fState != null && fState == state) {
+			return;
+		}
+		fState = state;
+		fNodes.clear();
+		if (state == null) {
+			fBundles = new BundleDescription[0];
+			fEdges = new int[0][];
+			fComponents = new int[0];
+			return;
+		}
+		long start = System.currentTimeMillis();
+		fBundles = state.getBundles();
+		for (int i = 0; i < fBundles.length; i++) {
+			fNodes.put(fBundles[i].getBundleId(), i);
+		}
+		fEdges = new int[fBundles.length][];
+		for (int i = 0; i < fBundles.length; i++) {
+			fEdges[i] = computeEdges(state, fBundles[i], i);
+		}
+		computeComponents();
+		if (PDECore.DEBUG_MODEL) {
+			System.out.println("Dependency cycles of " + fBundles.length + " bundles computed in " //$NON-NLS-1$ //$NON-NLS-2$
+					+ (System.currentTimeMillis() - start) + " ms"); //$NON-NLS-1$
+		}
+	}
+
+	private int[] computeEdges(State state, BundleDescription bundle, int node) {
+		Set<Integer> dependencies = new LinkedHashSet<>();
+		for (BundleSpecification required : bundle.getRequiredBundles()) {
+			BaseDescription supplier = required.getSupplier();
+			BundleDescription dependency = supplier instanceof BundleDescription ? (BundleDescription) supplier : null;
+			if (dependency == null && required.getName() != null) {
+				dependency = state.getBundle(required.getName(), null);
+			}
+			addEdge(dependencies, dependency);
+		}
+		for (ExportPackageDescription imported : bundle.getResolvedImports()) {
+			addEdge(dependencies, imported.getExporter());
+		}
+		// a bundle importing its own packages is no cycle
+		dependencies.remove(node);
+		int[] edges = new int[dependencies.size()];
+		int i = 0;
+		for (Integer dependency : dependencies) {
+			edges[i++] = dependency;
+		}
+		return edges;
+	}
+
+	private void addEdge(Set<Integer> dependencies, BundleDescription dependency) {
+		int node = getNode(dependency);
+		if (node != -1) {
+			dependencies.add(node);
+		}
+	}
+
+	/**
+	 * Computes the strongly connected components of the graph with an
+	 * iterative version of Tarjan's algorithm, so that long dependency chains
+	 * cannot overflow the stack. Only components of more than one node are
+	 * numbered, as the graph has no edges from a node to itself.
+	 */
+	private void computeComponents() {
+		int count = fBundles.length;
+		int[] index = new int[count];
+		int[] lowLink = new int[count];
+		int[] nextEdge = new int[count];
+		boolean[] onStack = new boolean[count];
+		int[] stack = new int[count];
+		int[] path = new int[count];
+		int stackSize = 0;
+		int counter = 0;
+		int components = 0;
+		Arrays.fill(index, -1);
+		fComponents = new int[count];
+		Arrays.fill(fComponents, -1);
+
+		for (int root = 0; root < count; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+			int pathSize = 0;
+			index[root] = lowLink[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			path[pathSize++] = root;
+			while (pathSize > 0) {
+				int node = path[pathSize - 1];
+				int[] edges = fEdges[node];
+				if (nextEdge[node] < edges.length) {
+					int dependency = edges[nextEdge[node]++];
+					if (index[dependency] == -1) {
+						index[dependency] = lowLink[dependency] = counter++;
+						stack[stackSize++] = dependency;
+						onStack[dependency] = true;
+						path[pathSize++] = dependency;
+					} else if (onStack[dependency]) {
+						lowLink[node] = Math.min(lowLink[node], index[dependency]);
+					}
+					continue;
+				}
+				pathSize--;
+				if (pathSize > 0) {
+					int parent = path[pathSize - 1];
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+				}
+				if (lowLink[node] == index[node]) {
+					int top = stackSize;
+					int member;
+					do {
+						member = stack[--stackSize];
+						onStack[member] = false;
+					} while (member != node);
+					if (top - stackSize > 1) {
+						for (int i = stackSize; i < top; i++) {
+							fComponents[stack[i]] = components;
+						}
+						components++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Breadth first search for the shortest path between two nodes.
+	 *
+	 * @param component
+	 *            the component to stay in, or <code>-1</code> to search the
+	 *            whole graph
+	 * @return the nodes of the path or <code>null</code> if there is none
+	 */
+	private int[] findPath(int source, int target, int component) {
+		int[] previous = new int[fBundles.length];
+		Arrays.fill(previous, -2);
+		int[] queue = new int[fBundles.length];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = source;
+		previous[source] = -1;
+		while (head < tail) {
+			int node = queue[head++];
+			if (node == target) {
+				int length = 0;
+				for (int n = node; n != -1; n = previous[n]) {
+					length++;
+				}
+				int[] path = new int[length];
+				for (int n = node; n != -1; n = previous[n]) {
+					path[--length] = n;
+				}
+				return path;
+			}
+			for (int dependency : fEdges[node]) {
+				if (previous[dependency] == -2 && (component == -1 || fComponents[dependency] == component)) {
+					previous[dependency] = node;
+					queue[tail++] = dependency;
+				}
+			}
+		}
+		return null;
+	}
+}
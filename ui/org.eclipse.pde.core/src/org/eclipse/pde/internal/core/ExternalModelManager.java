@@ -103,6 +103,12 @@ class ExternalLibraryCache {
 	 */
 	private static final String LIB_CACHE_DIR = ".external_libraries"; //$NON-NLS-1$
 
+	/**
+	 * Per-user store the libraries are extracted to before being linked into
+	 * the workspace cache, or <code>null</code> if sharing is disabled
+	 */
+	private final SharedLibraryStore fSharedStore = SharedLibraryStore.create();
+
 	/**
 	 * Returns all libraries extracted from an external jarred plug-in.  Will return an empty
 	 * array if the plug-in is not jarred or if no jarred libraries exist inside it.
@@ -183,6 +189,10 @@ class ExternalLibraryCache {
 
 		// Delete the cache folder if it is empty
 		fCacheDir.delete();
+
+		if (fSharedStore != null) {
+			fSharedStore.evict();
+		}
 	}
 
 	/**
@@ -265,6 +275,8 @@ class ExternalLibraryCache {
 
 	/**
 	 * Extracts a library from a jarred plug-in to the specified directory.
+	 * The library is taken from the shared library store if possible and only
+	 * extracted directly if the store cannot be used.
 	 *
 	 * @param fJarFile jar file to extract from
 	 * @param libName name of the library to extract
@@ -279,6 +291,9 @@ class ExternalLibraryCache {
 				return null;
 			}
 			fTargetFile.getParentFile().mkdirs();
+			if (fSharedStore != null && fSharedStore.provide(f, libEntry, fTargetFile)) {
+				return fTargetFile;
+			}
 			try (InputStream in = f.getInputStream(libEntry)) {
 			if (in == null) {
 				throw new IOException();
@@ -0,0 +1,340 @@
+/*******************************************************************************
+ *  Copyright (c) 2021 IBM Corporation and others.
+ *
+ *  This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License 2.0
+ *  which accompanies this distribution, and is available at
+ *  https://www.eclipse.org/legal/epl-2.0/
+ *
+ *  SPDX-License-Identifier: EPL-2.0
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.ExportPackageDescription;
+import org.eclipse.osgi.service.resolver.State;
+import org.eclipse.osgi.service.resolver.StateDelta;
+import org.eclipse.osgi.service.resolver.StateHelper;
+import org.eclipse.pde.internal.core.util.PDEJavaHelper;
+
+/**
+ * Answers the type and package queries of the PDE validation, such as whether
+ * a class named in a manifest exists on the classpath of a project, from a
+ * cache shared by all error reporters.
+ * <p>
+ * The answers of the Java model are cached per Java project. Java element
+ * deltas invalidate the cached answers for the packages that changed, and
+ * changes of a classpath invalidate all answers. The packages discouraged for
+ * a bundle are computed once per bundle from the PDE state and invalidated
+ * when the state changes. The cache may be used from several threads.
+ * </p>
+ *
+ * @see PDECore#getJavaTypeIndex()
+ */
+public class JavaTypeIndex implements IElementChangedListener, IStateDeltaListener {
+
+	/**
+	 * Cached answers for one Java project
+	 */
+	private static class ProjectEntry {
+		/**
+		 * Whether a type is on the classpath of the project, by fully
+		 * qualified name
+		 */
+		final Map<String, Boolean> types = new ConcurrentHashMap<>();
+		/**
+		 * Whether a type belongs to a package of the project itself, by fully
+		 * qualified name
+		 */
+		final Map<String, Boolean> ownTypes = new ConcurrentHashMap<>();
+		/**
+		 * The non-empty packages in the source folders and libraries of the
+		 * project, <code>null</code> if not computed yet
+		 */
+		volatile Set<String> packages;
+	}
+
+	private final Map<IJavaProject, ProjectEntry> fEntries = new ConcurrentHashMap<>();
+
+	private final Map<BundleDescription, Set<String>> fDiscouragedPackages = new ConcurrentHashMap<>();
+
+	/**
+	 * Incremented on every invalidation before dropping any answer, so that
+	 * answers computed concurrently with an invalidation are not cached
+	 */
+	private final AtomicLong fGeneration = new AtomicLong();
+
+	public void start() {
+		JavaCore.addElementChangedListener(this, ElementChangedEvent.POST_CHANGE);
+		PDECore.getDefault().getModelManager().addStateDeltaListener(this);
+	}
+
+	public void shutdown() {
+		JavaCore.removeElementChangedListener(this);
+		PDECore.getDefault().getModelManager().removeStateDeltaListener(this);
+		clear();
+	}
+
+	/**
+	 * Returns whether a type is on the classpath of the given project.
+	 *
+	 * @param fullyQualifiedName the type name, nested types may be separated
+	 *            with <code>$</code>
+	 * @param project the Java project
+	 * @return whether the type exists
+	 * @see PDEJavaHelper#isOnClasspath(String, IJavaProject)
+	 */
+	public boolean isOnClasspath(String fullyQualifiedName, IJavaProject project) {
+		ProjectEntry entry = getEntry(project);
+		Boolean onClasspath = entry.types.get(fullyQualifiedName);
+		if (onClasspath == null) {
+			long generation = fGeneration.get();
+			onClasspath = PDEJavaHelper.isOnClasspath(fullyQualifiedName, project);
+			cache(entry.types, fullyQualifiedName, onClasspath, generation);
+		}
+		return onClasspath;
+	}
+
+	/**
+	 * Returns whether a type is only accessible to the given bundle through a
+	 * discouraged package.
+	 *
+	 * @param fullyQualifiedName the type name, nested types may be separated
+	 *            with <code>$</code>
+	 * @param project the Java project of the bundle
+	 * @param desc the bundle
+	 * @return whether access to the type is discouraged
+	 * @see PDEJavaHelper#isDiscouraged(String, IJavaProject, BundleDescription)
+	 */
+	public boolean isDiscouraged(String fullyQualifiedName, IJavaProject project, BundleDescription desc) {
+		// allow classes within the project itself
+		if (isOwnType(fullyQualifiedName, project)) {
+			return false;
+		}
+		int dot = fullyQualifiedName.lastIndexOf('.');
+		String packageName = dot != -1 ? fullyQualifiedName.substring(0, dot) : "."; //$NON-NLS-1$
+		Set<String> discouraged = fDiscouragedPackages.get(desc);
+		if (discouraged == null) {
+			long generation = fGeneration.get();
+			discouraged = computeDiscouragedPackages(desc);
+			cache(fDiscouragedPackages, desc, discouraged, generation);
+		}
+		return discouraged.contains(packageName);
+	}
+
+	/**
+	 * Returns the names of the packages containing classes or resources in the
+	 * source folders and the libraries inside the given project. The default
+	 * package is named <code>"."</code>.
+	 *
+	 * @param project the project
+	 * @return the package names, empty if the project is not a Java project
+	 */
+	public Set<String> getProjectPackages(IProject project) {
+		try {
+			if (!project.hasNature(JavaCore.NATURE_ID)) {
+				return Collections.emptySet();
+			}
+		} catch (CoreException e) {
+			return Collections.emptySet();
+		}
+		ProjectEntry entry = getEntry(JavaCore.create(project));
+		Set<String> packages = entry.packages;
+		if (packages == null) {
+			long generation = fGeneration.get();
+			packages = Collections.unmodifiableSet(computeProjectPackages(JavaCore.create(project)));
+			if (generation == fGeneration.get()) {
+				entry.packages = packages;
+				// the packages may have been invalidated since the check
+				if (generation != fGeneration.get()) {
+					entry.packages = null;
+				}
+			}
+		}
+		return packages;
+	}
+
+	private boolean isOwnType(String fullyQualifiedName, IJavaProject project) {
+		ProjectEntry entry = getEntry(project);
+		Boolean ownType = entry.ownTypes.get(fullyQualifiedName);
+		if (ownType == null) {
+			long generation = fGeneration.get();
+			ownType = Boolean.FALSE;
+			try {
+				IType type = project.findType(fullyQualifiedName.replace('$', '.'));
+				if (type != null && type.exists()) {
+					ownType = PDEJavaHelper.getPackageFragmentsHash(project, Collections.emptyList(), false).containsValue(type.getPackageFragment());
+				}
+			} catch (JavaModelException e) {
+			}
+			cache(entry.ownTypes, fullyQualifiedName, ownType, generation);
+		}
+		return ownType;
+	}
+
+	/**
+	 * Caches an answer computed since the given generation unless the cache
+	 * has been invalidated in the meantime. As an invalidation may happen
+	 * between checking the generation and caching the answer, the generation
+	 * is checked again afterwards and the answer removed if it changed.
+	 */
+	private <K, V> void cache(Map<K, V> cache, K key, V value, long generation) {
+		if (generation == fGeneration.get()) {
+			cache.put(key, value);
+			if (generation != fGeneration.get()) {
+				cache.remove(key, value);
+			}
+		}
+	}
+
+	private static Set<String> computeDiscouragedPackages(BundleDescription desc) {
+		Set<String> discouraged = new HashSet<>();
+		State state = desc.getContainingState();
+		if (state == null) {
+			return discouraged;
+		}
+		StateHelper helper = state.getStateHelper();
+		for (ExportPackageDescription export : helper.getVisiblePackages(desc)) {
+			if (export.getExporter() != null && helper.getAccessCode(desc, export) == StateHelper.ACCESS_DISCOURAGED) {
+				discouraged.add(export.getName());
+			}
+		}
+		return discouraged;
+	}
+
+	private static Set<String> computeProjectPackages(IJavaProject project) {
+		Set<String> packages = new HashSet<>();
+		try {
+			for (IPackageFragmentRoot root : project.getPackageFragmentRoots()) {
+				if (root.getKind() == IPackageFragmentRoot.K_SOURCE || (root.getKind() == IPackageFragmentRoot.K_BINARY && !root.isExternal())) {
+					for (IJavaElement element : root.getChildren()) {
+						IPackageFragment fragment = (IPackageFragment) element;
+						String name = fragment.getElementName();
+						if (name.equals("")) { //$NON-NLS-1$
+							name = "."; //$NON-NLS-1$
+						}
+						if (fragment.hasChildren() || fragment.getNonJavaResources().length > 0) {
+							packages.add(name);
+						}
+					}
+				}
+			}
+		} catch (CoreException e) {
+		}
+		return packages;
+	}
+
+	private ProjectEntry getEntry(IJavaProject project) {
+		return fEntries.computeIfAbsent(project, p -> new ProjectEntry());
+	}
+
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		handleDelta(event.getDelta());
+	}
+
+	private void handleDelta(IJavaElementDelta delta) {
+		IJavaElement element = delta.getElement();
+		int kind = delta.getKind();
+		int flags = delta.getFlags();
+		switch (element.getElementType()) {
+		case IJavaElement.JAVA_MODEL:
+			break;
+		case IJavaElement.JAVA_PROJECT:
+			if (kind != IJavaElementDelta.CHANGED || (flags & (IJavaElementDelta.F_CLASSPATH_CHANGED
+					| IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED | IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED)) != 0) {
+				// the types visible to any project requiring this one may change
+				clear();
+				return;
+			}
+			break;
+		case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			if (kind != IJavaElementDelta.CHANGED || (flags & (IJavaElementDelta.F_ADDED_TO_CLASSPATH
+					| IJavaElementDelta.F_REMOVED_FROM_CLASSPATH | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED)) != 0) {
+				clear();
+				return;
+			}
+			break;
+		case IJavaElement.PACKAGE_FRAGMENT:
+			if (kind != IJavaElementDelta.CHANGED || (flags & IJavaElementDelta.F_CONTENT) != 0) {
+				// packages added, removed or with changed resources
+				invalidatePackage((IPackageFragment) element);
+			}
+			break;
+		case IJavaElement.COMPILATION_UNIT:
+		case IJavaElement.CLASS_FILE:
+			// a changed compilation unit may declare other types now
+			invalidatePackage((IPackageFragment) element.getParent());
+			return;
+		default:
+			return;
+		}
+		for (IJavaElementDelta child : delta.getAffectedChildren()) {
+			handleDelta(child);
+		}
+	}
+
+	/**
+	 * Drops the cached answers about the types of the given package in all
+	 * projects, and the packages of the project containing it.
+	 */
+	private void invalidatePackage(IPackageFragment fragment) {
+		fGeneration.incrementAndGet();
+		String name = fragment.getElementName();
+		if (name.isEmpty()) {
+			// types in the default package have no common prefix
+			for (ProjectEntry entry : fEntries.values()) {
+				entry.types.clear();
+				entry.ownTypes.clear();
+			}
+		} else {
+			String prefix = name + '.';
+			for (ProjectEntry entry : fEntries.values()) {
+				entry.types.keySet().removeIf(type -> type.startsWith(prefix));
+				entry.ownTypes.keySet().removeIf(type -> type.startsWith(prefix));
+			}
+		}
+		ProjectEntry entry = fEntries.get(fragment.getJavaProject());
+		if (entry != null) {
+			entry.packages = null;
+		}
+	}
+
+	private void clear() {
+		fGeneration.incrementAndGet();
+		fEntries.clear();
+	}
+
+	@Override
+	public void stateResolved(StateDelta delta) {
+		fGeneration.incrementAndGet();
+		fDiscouragedPackages.clear();
+	}
+
+	@Override
+	public void stateChanged(State newState) {
+		fGeneration.incrementAndGet();
+		fDiscouragedPackages.clear();
+	}
+}
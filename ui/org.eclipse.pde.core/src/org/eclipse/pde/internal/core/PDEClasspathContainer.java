@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2005, 2012 IBM Corporation and others.
+ *  Copyright (c) 2005, 2021 IBM Corporation and others.
  *
  *  This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License 2.0
@@ -75,6 +75,31 @@ public class PDEClasspathContainer {
 		return entries.toArray(new IClasspathEntry[entries.size()]);
 	}
 
+	/**
+	 * Returns the library entries of the given external plug-in without any
+	 * access rules. The result can be combined with rules later through
+	 * {@link #addExternalPlugin(IClasspathEntry[], Rule[], ArrayList)}.
+	 *
+	 * @param model the external plug-in model
+	 * @return the library entries of the plug-in, possibly empty
+	 */
+	static IClasspathEntry[] getUnrestrictedExternalEntries(IPluginModelBase model) {
+		ArrayList<IClasspathEntry> entries = new ArrayList<>();
+		addExternalPlugin(model, null, entries);
+		return entries.toArray(new IClasspathEntry[entries.size()]);
+	}
+
+	/**
+	 * Adds the given library entries of an external plug-in, as returned by
+	 * {@link #getUnrestrictedExternalEntries(IPluginModelBase)}, with the given
+	 * access rules applied.
+	 */
+	protected static void addExternalPlugin(IClasspathEntry[] libraries, Rule[] rules, ArrayList<IClasspathEntry> entries) {
+		for (IClasspathEntry library : libraries) {
+			addLibraryEntry(library.getPath(), library.getSourceAttachmentPath(), rules, library.getExtraAttributes(), entries);
+		}
+	}
+
 	protected static void addExternalPlugin(IPluginModelBase model, Rule[] rules, ArrayList<IClasspathEntry> entries) {
 		if (new File(model.getInstallLocation()).isFile()) {
 			IPath srcPath = ClasspathUtilCore.getSourceAnnotation(model, "."); //$NON-NLS-1$
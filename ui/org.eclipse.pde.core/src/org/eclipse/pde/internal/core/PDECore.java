@@ -21,6 +21,7 @@ import java.util.Hashtable;
 import java.util.Map;
 import org.eclipse.core.resources.ISaveContext;
 import org.eclipse.core.resources.ISaveParticipant;
+import org.eclipse.core.resources.ISavedState;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
@@ -45,6 +46,7 @@ import org.eclipse.pde.internal.core.project.BundleProjectService;
 import org.eclipse.pde.internal.core.schema.SchemaRegistry;
 import org.eclipse.pde.internal.core.target.P2TargetUtils;
 import org.eclipse.pde.internal.core.target.TargetPlatformService;
+import org.eclipse.pde.internal.core.target.WorkspaceTargetIndex;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
@@ -174,6 +176,8 @@ public class PDECore extends Plugin implements DebugOptionsListener {
 
 	private PluginRebuilder fPluginRebuilder;
 
+	private JavaTypeIndex fJavaTypeIndex;
+
 	/**
 	 * Target platform service.
 	 */
@@ -235,6 +239,10 @@ public class PDECore extends Plugin implements DebugOptionsListener {
 		return fJavaElementChangeListener;
 	}
 
+	public JavaTypeIndex getJavaTypeIndex() {
+		return fJavaTypeIndex;
+	}
+
 	public synchronized SchemaRegistry getSchemaRegistry() {
 		if (fSchemaRegistry == null) {
 			fSchemaRegistry = new SchemaRegistry();
@@ -306,6 +314,8 @@ public class PDECore extends Plugin implements DebugOptionsListener {
 		fPluginRebuilder.start();
 		fFeatureRebuilder = new FeatureRebuilder();
 		fFeatureRebuilder.start();
+		fJavaTypeIndex = new JavaTypeIndex();
+		fJavaTypeIndex.start();
 
 		fTargetPlatformService = context.registerService(ITargetPlatformService.class,
 				TargetPlatformService.getDefault(), new Hashtable<String, Object>());
@@ -317,11 +327,12 @@ public class PDECore extends Plugin implements DebugOptionsListener {
 		props.put(org.eclipse.osgi.service.debug.DebugOptions.LISTENER_SYMBOLICNAME, PDECore.PLUGIN_ID);
 		context.registerService(DebugOptionsListener.class.getName(), this, props);
 
-		// use save participant to clean orphaned profiles.
-		ResourcesPlugin.getWorkspace().addSaveParticipant(PLUGIN_ID, new ISaveParticipant() {
+		// use save participant to clean orphaned profiles and to persist the index of workspace target files.
+		ISavedState savedState = ResourcesPlugin.getWorkspace().addSaveParticipant(PLUGIN_ID, new ISaveParticipant() {
 			@Override
 			public void saving(ISaveContext saveContext) throws CoreException {
 				P2TargetUtils.cleanOrphanedTargetDefinitionProfiles();
+				WorkspaceTargetIndex.getDefault().save(saveContext);
 			}
 
 			@Override
@@ -336,6 +347,7 @@ public class PDECore extends Plugin implements DebugOptionsListener {
 			public void doneSaving(ISaveContext saveContext) {
 			}
 		});
+		WorkspaceTargetIndex.getDefault().start(savedState);
 
 	}
 
@@ -353,6 +365,7 @@ public class PDECore extends Plugin implements DebugOptionsListener {
 		fJavaElementChangeListener.shutdown();
 		fPluginRebuilder.stop();
 		fFeatureRebuilder.stop();
+		fJavaTypeIndex.shutdown();
 
 		if (fSchemaRegistry != null) {
 			fSchemaRegistry.shutdown();
@@ -387,6 +400,7 @@ public class PDECore extends Plugin implements DebugOptionsListener {
 			fBundleProjectService = null;
 		}
 
+		WorkspaceTargetIndex.getDefault().stop();
 		ResourcesPlugin.getWorkspace().removeSaveParticipant(PLUGIN_ID);
 	}
 
@@ -114,6 +114,7 @@ public class PDECoreMessages extends NLS {
 	public static String SchemaCompositor_choice;
 	public static String SchemaCompositor_group;
 	public static String SchemaCompositor_sequence;
+	public static String SchemaRegistry_loadingSchemas;
 
 	static {
 		// load message values from bundle file
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2012 IBM Corporation and others.
+ * Copyright (c) 2006, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -14,7 +14,12 @@
 package org.eclipse.pde.internal.core;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.ListIterator;
 import org.eclipse.core.runtime.IContributor;
@@ -48,22 +53,19 @@ public class PDEExtensionRegistry {
 
 	private static final String EXTENSION_DIR = ".extensions"; //$NON-NLS-1$
 
+	/**
+	 * Maximum number of target specific registry caches kept in the extensions
+	 * directory, the least recently used ones are deleted first
+	 */
+	private static final int MAX_CACHED_TARGETS = 4;
+
 	public PDEExtensionRegistry() {
-		if (fStrategy == null) {
-			File extensionsDir = new File(PDECore.getDefault().getStateLocation().toFile(), EXTENSION_DIR);
-			// create the strategy without creating registry.  That way we create the registry at the last possible moment.
-			// This way we can listen to events in PDE without creating the registry until we need it.
-			fStrategy = new PDERegistryStrategy(new File[] {extensionsDir}, new boolean[] {false}, fMasterKey, this);
-		}
+		// the strategy is created together with the registry, at the last possible moment,
+		// as its cache location depends on the content of the target
 	}
 
 	public PDEExtensionRegistry(IPluginModelBase[] models) {
 		fModels = models;
-		if (fStrategy == null) {
-			File extensionsDir = new File(PDECore.getDefault().getStateLocation().toFile(), EXTENSION_DIR);
-			// Use TargetPDERegistryStrategy so we don't connect listeners to PluginModelManager.  This is used only in target so we don't need change events.
-			fStrategy = new TargetPDERegistryStrategy(new File[] {extensionsDir}, new boolean[] {false}, fMasterKey, this);
-		}
 	}
 
 	// Methods used to control information/status of Extension Registry
@@ -90,6 +92,7 @@ public class PDEExtensionRegistry {
 
 	protected synchronized IExtensionRegistry getRegistry() {
 		if (fRegistry == null) {
+			getStrategy();
 			fRegistry = createRegistry();
 			for (ListIterator<IRegistryChangeListener> li = fListeners.listIterator(); li.hasNext();) {
 				fRegistry.addRegistryChangeListener(li.next());
@@ -102,19 +105,109 @@ public class PDEExtensionRegistry {
 		return RegistryFactory.createRegistry(fStrategy, fMasterKey, fUserKey);
 	}
 
-	public void targetReloaded() {
-		// stop old registry (which will write contents to FS) and delete the cache it creates
-		// might see if we can dispose of a registry without writing to file system.  NOTE: Don't call stop() because we want to still reuse fStrategy
+	/**
+	 * Returns the registry strategy, creating it if necessary. The strategy
+	 * stores the registry cache in a directory specific to the content of the
+	 * current target, so the extensions of a target only need to be parsed
+	 * again when its bundles change. Registries of a given set of models only
+	 * read the cache of the same content, they never write or prune the caches
+	 * of the workspace.
+	 */
+	private synchronized PDERegistryStrategy getStrategy() {
+		if (fStrategy == null) {
+			File extensionsDir = new File(PDECore.getDefault().getStateLocation().toFile(), EXTENSION_DIR);
+			File cacheDir = new File(extensionsDir, computeContentKey(getModels()));
+			if (fModels == null) {
+				pruneCacheDirectories(extensionsDir, cacheDir);
+				cacheDir.mkdirs();
+				// mark the cache as most recently used
+				cacheDir.setLastModified(System.currentTimeMillis());
+				fStrategy = new PDERegistryStrategy(new File[] {cacheDir}, new boolean[] {false}, fMasterKey, this);
+			} else {
+				// Use TargetPDERegistryStrategy so we don't connect listeners to PluginModelManager.  This is used only in target so we don't need change events.
+				fStrategy = new TargetPDERegistryStrategy(new File[] {cacheDir}, new boolean[] {true}, fMasterKey, this);
+			}
+		}
+		return fStrategy;
+	}
+
+	/**
+	 * Returns the name of the registry cache directory for the given models,
+	 * a digest of the symbolic name, version, location and timestamp of the
+	 * external bundles. Bundle ids are left out as they differ between
+	 * sessions. The registry itself checks the timestamps of all contributions
+	 * before using the cache.
+	 *
+	 * @param models the models contributing to the registry
+	 * @return the cache directory name
+	 */
+	private static String computeContentKey(IPluginModelBase[] models) {
+		StringBuilder content = new StringBuilder();
+		for (IPluginModelBase model : models) {
+			BundleDescription desc = model.getBundleDescription();
+			if (desc == null || model.getUnderlyingResource() != null) {
+				continue;
+			}
+			String location = model.getInstallLocation();
+			content.append(desc.getSymbolicName()).append(':').append(desc.getVersion()).append(':').append(location)
+					.append(':').append(location != null ? PDERegistryStrategy.getTimestamp(new File(location)) : 0)
+					.append('\n');
+		}
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(content.toString().getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$
+			StringBuilder key = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				key.append(String.format("%02x", b)); //$NON-NLS-1$
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(content.toString().hashCode());
+		}
+	}
+
+	/**
+	 * Deletes the least recently used target caches so that at most
+	 * {@link #MAX_CACHED_TARGETS} remain, including the given one, as well as
+	 * any cache files of the previous single cache layout.
+	 */
+	private static void pruneCacheDirectories(File extensionsDir, File current) {
+		File[] children = extensionsDir.listFiles();
+		if (children == null) {
+			return;
+		}
+		Arrays.sort(children, Comparator.comparingLong(File::lastModified).reversed());
+		int kept = 1;
+		for (File child : children) {
+			if (child.equals(current)) {
+				continue;
+			}
+			if (!child.isDirectory() || kept >= MAX_CACHED_TARGETS) {
+				CoreUtility.deleteContent(child);
+			} else {
+				kept++;
+			}
+		}
+	}
+
+	public synchronized void targetReloaded() {
+		// stop old registry, which writes its contents to the cache of the old target.
+		// The cache is kept, so that switching back to that target can reuse it.
 		if (fRegistry != null) {
 			fRegistry.stop(fMasterKey);
 		}
-		CoreUtility.deleteContent(new File(PDECore.getDefault().getStateLocation().toFile(), EXTENSION_DIR));
 		fRegistry = null;
+		// the new target has its own cache location
+		if (fStrategy != null) {
+			fStrategy.dispose();
+			fStrategy = null;
+		}
 	}
 
 	// dispose of registry without writing contents.
-	public void dispose() {
-		fStrategy.dispose();
+	public synchronized void dispose() {
+		if (fStrategy != null) {
+			fStrategy.dispose();
+		}
 		fRegistry = null;
 	}
 
@@ -183,11 +276,11 @@ public class PDEExtensionRegistry {
 	}
 
 	public IPluginExtension[] findExtensionsForPlugin(IPluginModelBase base) {
-		IContributor contributor = fStrategy.createContributor(base);
+		IContributor contributor = getStrategy().createContributor(base);
 		if (contributor == null) {
 			return new IPluginExtension[0];
 		}
-		IExtension[] extensions = getRegistry().getExtensions(fStrategy.createContributor(base));
+		IExtension[] extensions = getRegistry().getExtensions(contributor);
 		ArrayList<PluginExtension> list = new ArrayList<>();
 		for (IExtension ext : extensions) {
 			PluginExtension extension = new PluginExtension(ext);
@@ -199,11 +292,11 @@ public class PDEExtensionRegistry {
 	}
 
 	public IPluginExtensionPoint[] findExtensionPointsForPlugin(IPluginModelBase base) {
-		IContributor contributor = fStrategy.createContributor(base);
+		IContributor contributor = getStrategy().createContributor(base);
 		if (contributor == null) {
 			return new IPluginExtensionPoint[0];
 		}
-		IExtensionPoint[] extensions = getRegistry().getExtensionPoints(fStrategy.createContributor(base));
+		IExtensionPoint[] extensions = getRegistry().getExtensionPoints(contributor);
 		ArrayList<PluginExtensionPoint> list = new ArrayList<>();
 		for (IExtensionPoint extension : extensions) {
 			PluginExtensionPoint point = new PluginExtensionPoint(extension);
@@ -238,7 +331,7 @@ public class PDEExtensionRegistry {
 		} else {
 			IPluginModelBase[] bases = activeOnly ? PluginRegistry.getActiveModels() : PluginRegistry.getAllModels();
 			for (IPluginModelBase base : bases) {
-				IContributor contributor = fStrategy.createContributor(base);
+				IContributor contributor = getStrategy().createContributor(base);
 				if (contributor == null) {
 					continue;
 				}
@@ -18,6 +18,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import javax.xml.parsers.SAXParserFactory;
@@ -172,6 +174,9 @@ public class PDERegistryStrategy extends RegistryStrategy {
 		setListenerRegistry(registry);
 		if (!loadedFromCache) {
 			processBundles(registry);
+		} else {
+			// the cache is shared by sessions, which may assign other bundle ids
+			updateBundles(registry);
 		}
 	}
 
@@ -194,6 +199,38 @@ public class PDERegistryStrategy extends RegistryStrategy {
 		addBundles(registry, fPDERegistry.getModels());
 	}
 
+	/**
+	 * Removes the cached contributors which do not match the bundle id and
+	 * name of a current model, and adds the models which are not contributed
+	 * yet.
+	 */
+	private void updateBundles(IExtensionRegistry registry) {
+		if (!(registry instanceof IDynamicExtensionRegistry)) {
+			return;
+		}
+		IDynamicExtensionRegistry dynamicRegistry = (IDynamicExtensionRegistry) registry;
+		IPluginModelBase[] bases = fPDERegistry.getModels();
+		Set<String> current = new HashSet<>();
+		for (IPluginModelBase base : bases) {
+			IContributor contributor = createContributor(base);
+			if (contributor != null) {
+				current.add(getContributorKey((RegistryContributor) contributor));
+			}
+		}
+		for (IContributor contributor : dynamicRegistry.getAllContributors()) {
+			if (!(contributor instanceof RegistryContributor)
+					|| !current.contains(getContributorKey((RegistryContributor) contributor))) {
+				dynamicRegistry.removeContributor(contributor, fKey);
+			}
+		}
+		addBundles(registry, bases);
+	}
+
+	private static String getContributorKey(RegistryContributor contributor) {
+		return contributor.getActualId() + ':' + contributor.getActualName() + ':' + contributor.getId() + ':'
+				+ contributor.getName();
+	}
+
 	private void addBundles(IExtensionRegistry registry, IPluginModelBase[] bases) {
 		for (IPluginModelBase base : bases) {
 			addBundle(registry, base);
@@ -338,26 +375,36 @@ public class PDERegistryStrategy extends RegistryStrategy {
 
 			File location = new File(loc);
 			if (location.exists()) {
-				if (location.isFile()) {
-					timeStamp ^= location.lastModified();
-				} else {
-					File manifest = new File(location, ICoreConstants.BUNDLE_FILENAME_DESCRIPTOR);
-					if (manifest.exists()) {
-						timeStamp ^= manifest.lastModified();
-					}
-					manifest = new File(location, ICoreConstants.PLUGIN_FILENAME_DESCRIPTOR);
-					if (manifest.exists()) {
-						timeStamp ^= manifest.lastModified();
-					}
-					manifest = new File(location, ICoreConstants.FRAGMENT_FILENAME_DESCRIPTOR);
-					if (manifest.exists()) {
-						timeStamp ^= manifest.lastModified();
-					}
-				}
+				timeStamp ^= getTimestamp(location);
 				timeStamp ^= location.getAbsolutePath().hashCode();
 			}
 		}
 		return timeStamp;
 	}
 
+	/**
+	 * Returns the timestamp of the given bundle location, the modification
+	 * time of a jarred bundle or the combined modification times of the
+	 * manifest files of a directory bundle.
+	 */
+	static long getTimestamp(File location) {
+		if (location.isFile()) {
+			return location.lastModified();
+		}
+		long timeStamp = 0;
+		File manifest = new File(location, ICoreConstants.BUNDLE_FILENAME_DESCRIPTOR);
+		if (manifest.exists()) {
+			timeStamp ^= manifest.lastModified();
+		}
+		manifest = new File(location, ICoreConstants.PLUGIN_FILENAME_DESCRIPTOR);
+		if (manifest.exists()) {
+			timeStamp ^= manifest.lastModified();
+		}
+		manifest = new File(location, ICoreConstants.FRAGMENT_FILENAME_DESCRIPTOR);
+		if (manifest.exists()) {
+			timeStamp ^= manifest.lastModified();
+		}
+		return timeStamp;
+	}
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2018 IBM Corporation and others.
+ * Copyright (c) 2000, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -32,6 +32,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
@@ -49,6 +59,8 @@ import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.osgi.service.resolver.BundleDelta;
 import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.BundleSpecification;
+import org.eclipse.osgi.service.resolver.ExportPackageDescription;
 import org.eclipse.osgi.service.resolver.HostSpecification;
 import org.eclipse.osgi.service.resolver.PlatformAdmin;
 import org.eclipse.osgi.service.resolver.StateDelta;
@@ -68,6 +80,7 @@ import org.eclipse.pde.internal.core.target.P2TargetUtils;
 public class PluginModelManager implements IModelProviderListener {
 	private static final String fExternalPluginListFile = "SavedExternalPluginList.txt"; //$NON-NLS-1$
 	private static PluginModelManager fModelManager;
+	private static ThreadPoolExecutor fgClasspathComputer; // computes classpath containers in parallel
 
 	/**
 	 * Job to update class path containers asynchronously. Avoids blocking the UI thread
@@ -101,6 +114,7 @@ public class PluginModelManager implements IModelProviderListener {
 						fProjects.clear();
 						fContainers.clear();
 					}
+					computeClasspathEntries(containers);
 					JavaCore.setClasspathContainer(PDECore.REQUIRED_PLUGINS_CONTAINER_PATH, projects, containers, monitor);
 					synchronized (fProjects) {
 						more = !fProjects.isEmpty();
@@ -191,10 +205,14 @@ public class PluginModelManager implements IModelProviderListener {
 	private final WorkspacePluginModelManager fWorkspaceManager; // keeps track of changes in the workspace
 	private PDEState fState; // keeps the combined view of the target and workspace
 
-	private Map<String, LocalModelEntry> fEntries; // a master table keyed by plugin ID and the value is a ModelEntry
+	private volatile Map<String, LocalModelEntry> fEntries; // a master table keyed by plugin ID and the value is a ModelEntry
 	private ArrayList<IPluginModelListener> fListeners; // a list of listeners interested in changes to the plug-in models
 	private ArrayList<IStateDeltaListener> fStateListeners; // a list of listeners interested in changes to the PDE/resolver State
+	private final BundleDependencyIndex fDependencyIndex = new BundleDependencyIndex(() -> getState().getState()); // reverse dependencies of the bundles in the State
+	private final DependencyCycleIndex fCycleIndex = new DependencyCycleIndex(() -> getState().getState()); // dependency cycles between the bundles in the State
 	private boolean fCancelled = false;
+	private final ReadWriteLock fSwapLock = new ReentrantReadWriteLock(); // prevents target swaps while held for reading
+	private volatile Map<String, Long> fTargetStamps = Collections.emptyMap(); // file stamps of the target models when they were created, keyed by install location
 
 	/**
 	 * Initialize the workspace and external (target) model manager
@@ -307,6 +325,8 @@ public class PluginModelManager implements IModelProviderListener {
 	 */
 	private void updateAffectedEntries(StateDelta delta, boolean runAsynch) {
 		Map<IJavaProject, RequiredPluginsClasspathContainer> map = new HashMap<>();
+		// all containers of this batch are computed against the same state
+		RequiredPluginsClasspathCache cache = new RequiredPluginsClasspathCache();
 		if (delta == null) {
 			// if the delta is null, then the entire target changed.
 			// Therefore, we should update the classpath for all workspace plug-ins.
@@ -315,7 +335,7 @@ public class PluginModelManager implements IModelProviderListener {
 				IProject project = model.getUnderlyingResource().getProject();
 				try {
 					if (project.hasNature(JavaCore.NATURE_ID)) {
-						map.put(JavaCore.create(project), new RequiredPluginsClasspathContainer(model));
+						map.put(JavaCore.create(project), new RequiredPluginsClasspathContainer(model, null, cache));
 					}
 				} catch (CoreException e) {
 				}
@@ -333,7 +353,7 @@ public class PluginModelManager implements IModelProviderListener {
 						if (project.hasNature(JavaCore.NATURE_ID)) {
 							IJavaProject jProject = JavaCore.create(project);
 							if (!map.containsKey(jProject)) {
-								map.put(jProject, new RequiredPluginsClasspathContainer(model));
+								map.put(jProject, new RequiredPluginsClasspathContainer(model, null, cache));
 							}
 						}
 					}
@@ -354,13 +374,23 @@ public class PluginModelManager implements IModelProviderListener {
 					}
 					IBuild build = ClasspathUtilCore.getBuild(model);
 					if (build != null && build.getEntry(IBuildEntry.SECONDARY_DEPENDENCIES) != null) {
-						map.put(jProject, new RequiredPluginsClasspathContainer(model, build));
+						map.put(jProject, new RequiredPluginsClasspathContainer(model, build, cache));
 					}
 				} catch (CoreException e) {
 				}
 			}
 		}
 
+		setClasspathContainers(map, runAsynch);
+	}
+
+	/**
+	 * Sets the given classpath containers on their projects in one operation
+	 *
+	 * @param map the classpath containers of the workspace plug-ins to update
+	 * @param runAsynch whether classpath updates should be done in an asynchronous job
+	 */
+	private void setClasspathContainers(Map<IJavaProject, RequiredPluginsClasspathContainer> map, boolean runAsynch) {
 		if (!map.isEmpty()) {
 			// update class path for all affected workspace plug-ins in one operation
 			Iterator<Entry<IJavaProject, RequiredPluginsClasspathContainer>> iterator = map.entrySet().iterator();
@@ -381,6 +411,7 @@ public class PluginModelManager implements IModelProviderListener {
 			} else {
 				// else update synchronously
 				try {
+					computeClasspathEntries(containers);
 					JavaCore.setClasspathContainer(PDECore.REQUIRED_PLUGINS_CONTAINER_PATH, projects, containers, null);
 				} catch (JavaModelException e) {
 				}
@@ -388,6 +419,98 @@ public class PluginModelManager implements IModelProviderListener {
 		}
 	}
 
+	/**
+	 * Computes the entries of the given classpath containers in parallel, so
+	 * that setting them on the Java model afterwards in one batch does not
+	 * compute them one after the other. The containers are computed by a
+	 * dedicated pool of threads, as computing them inspects jars and must
+	 * not occupy the threads of the common pool.
+	 *
+	 * @param containers the containers to compute the entries for
+	 */
+	public static void computeClasspathEntries(IClasspathContainer[] containers) {
+		long start = System.currentTimeMillis();
+		int threads = Math.min(containers.length, getClasspathThreads());
+		if (threads > 1) {
+			ExecutorService executor = getClasspathComputer(threads);
+			List<Future<?>> futures = new ArrayList<>(containers.length);
+			for (IClasspathContainer container : containers) {
+				futures.add(executor.submit(container::getClasspathEntries));
+			}
+			// failed containers are computed again when set on the Java model
+			awaitCompletion(futures);
+		} else {
+			for (IClasspathContainer container : containers) {
+				container.getClasspathEntries();
+			}
+		}
+		if (PDECore.DEBUG_CLASSPATH) {
+			System.out.println("Computed " + containers.length + " classpath containers in " //$NON-NLS-1$ //$NON-NLS-2$
+					+ (System.currentTimeMillis() - start) + " ms"); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Waits until the given computations have completed, even if the calling
+	 * thread is interrupted.
+	 */
+	private static void awaitCompletion(List<Future<?>> futures) {
+		boolean interrupted = false;
+		for (Future<?> future : futures) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the pool of threads computing classpath containers, sized to the
+	 * given number of threads. Idle threads are released after a while.
+	 */
+	private static synchronized ExecutorService getClasspathComputer(int threads) {
+		if (fgClasspathComputer == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			fgClasspathComputer = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+				Thread thread = new Thread(r, "Plug-in classpath computation " + threadCount.incrementAndGet()); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			});
+			fgClasspathComputer.allowCoreThreadTimeOut(true);
+		} else if (threads > fgClasspathComputer.getMaximumPoolSize()) {
+			fgClasspathComputer.setMaximumPoolSize(threads);
+			fgClasspathComputer.setCorePoolSize(threads);
+		} else if (threads < fgClasspathComputer.getMaximumPoolSize()) {
+			fgClasspathComputer.setCorePoolSize(threads);
+			fgClasspathComputer.setMaximumPoolSize(threads);
+		}
+		return fgClasspathComputer;
+	}
+
+	/**
+	 * Returns the maximum number of classpath containers computed
+	 * concurrently, which can be set with the
+	 * <code>pde.classpath.computeThreads</code> system property. A value of
+	 * one computes all containers sequentially on the calling thread.
+	 */
+	private static int getClasspathThreads() {
+		int defaultThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+		try {
+			return Integer.parseInt(System.getProperty("pde.classpath.computeThreads", Integer.toString(defaultThreads))); //$NON-NLS-1$
+		} catch (NumberFormatException e) {
+			return defaultThreads;
+		}
+	}
+
 	/**
 	 * Notify all interested listeners in changes made to the master table
 	 *
@@ -407,6 +530,9 @@ public class PluginModelManager implements IModelProviderListener {
 	 * @param delta	the delta from the resolver State.
 	 */
 	private void fireStateDelta(StateDelta delta) {
+		// update the index first so listeners can query it
+		fDependencyIndex.stateResolved(delta);
+		fCycleIndex.stateResolved(delta);
 		if (fStateListeners != null) {
 			ListIterator<IStateDeltaListener> li = fStateListeners.listIterator();
 			while (li.hasNext()) {
@@ -421,6 +547,8 @@ public class PluginModelManager implements IModelProviderListener {
 	 * @param newState	the new PDEState.
 	 */
 	private void fireStateChanged(PDEState newState) {
+		fDependencyIndex.stateChanged(newState.getState());
+		fCycleIndex.stateChanged(newState.getState());
 		if (fStateListeners != null) {
 			ListIterator<IStateDeltaListener> li = fStateListeners.listIterator();
 			while (li.hasNext()) {
@@ -515,13 +643,281 @@ public class PluginModelManager implements IModelProviderListener {
 	}
 
 	/**
-	 * Clears all existing models and recreates them
+	 * Clears all existing models and recreates them.
+	 * <p>
+	 * If the models are already initialized, the models and state of the new
+	 * target are built while the current ones remain available, and are then
+	 * swapped in at once, see {@link #swapTarget(IProgressMonitor)}. This can be
+	 * disabled by setting the <code>pde.target.hotSwap</code> system property
+	 * to <code>false</code>.
+	 * </p>
 	 */
 	public void targetReloaded(IProgressMonitor monitor) {
+		if (isInitialized() && fState != null && !"false".equals(System.getProperty("pde.target.hotSwap")) //$NON-NLS-1$ //$NON-NLS-2$
+				&& swapTarget(monitor)) {
+			return;
+		}
 		fEntries = null;
 		initializeTable(monitor);
 	}
 
+	/**
+	 * Runs the given operation while the models and the state of the current
+	 * target cannot be swapped for those of another target, so that the
+	 * operation reads a consistent view of them even when it reads them from
+	 * several threads. Changes of the workspace models are not prevented.
+	 * Must not be called while holding the lock of this manager.
+	 *
+	 * @param operation the operation to run
+	 * @return the result of the operation
+	 */
+	public <T> T runWithCurrentTarget(Supplier<T> operation) {
+		fSwapLock.readLock().lock();
+		try {
+			return operation.get();
+		} finally {
+			fSwapLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Builds the models and the state of the workspace target next to the
+	 * current ones and swaps them in at once. The target is resolved and its
+	 * models are created without blocking clients of the current models; only
+	 * adding the workspace bundles to the new state and the swap itself are
+	 * done while holding the table lock. Listeners receive a single delta for
+	 * the entries that changed, and only the classpaths of workspace plug-ins
+	 * depending on changed bundles are updated.
+	 *
+	 * @param monitor progress monitor
+	 * @return <code>true</code> if the new target was swapped in,
+	 *         <code>false</code> if the models must be recreated instead
+	 */
+	private boolean swapTarget(IProgressMonitor monitor) {
+		SubMonitor subMon = SubMonitor.convert(monitor, PDECoreMessages.PluginModelManager_InitializingPluginModels, 100);
+		long startTime = System.currentTimeMillis();
+		try {
+			ITargetDefinition unresolvedRepoBasedtarget = TargetPlatformHelper.getUnresolvedRepositoryBasedWorkspaceTarget();
+			if (unresolvedRepoBasedtarget != null && !P2TargetUtils.isProfileValid(unresolvedRepoBasedtarget)) {
+				return false;
+			}
+		} catch (CoreException e) {
+			PDECore.log(e);
+			return false;
+		}
+
+		URI[] externalUris = getExternalBundles(subMon.split(40));
+		boolean cancelled = subMon.isCanceled();
+		if (cancelled) {
+			// As when initializing, the workspace target is already set, so swap in an empty
+			// target rather than keeping the models of the previous one. Log warning so user
+			// knows how to reload the target.
+			if (PDECore.DEBUG_MODEL) {
+				System.out.println("Target platform swap cancelled by user"); //$NON-NLS-1$
+			}
+			PDECore.log(new Status(IStatus.WARNING, PDECore.PLUGIN_ID, PDECoreMessages.PluginModelManager_TargetInitCancelledLog));
+			externalUris = new URI[0];
+			subMon = SubMonitor.convert(null, 60);
+		}
+		PDEState state = new PDEState(externalUris, true, true, subMon.split(30));
+		Map<String, LocalModelEntry> entries = Collections.synchronizedMap(new TreeMap<String, LocalModelEntry>());
+		addToTable(entries, state.getTargetModels());
+		Map<String, Long> stamps = getFileStamps(state.getTargetModels());
+
+		Map<String, LocalModelEntry> oldEntries;
+		Map<IPluginModelBase, BundleDescription> oldDescriptions = new HashMap<>();
+		PluginModelDelta delta = new PluginModelDelta();
+		// acquired before the table lock, see runWithCurrentTarget
+		fSwapLock.writeLock().lock();
+		try {
+			synchronized (this) {
+				oldEntries = fEntries;
+				IPluginModelBase[] models = fWorkspaceManager.getPluginModels();
+				addToTable(entries, models);
+				for (IPluginModelBase model : models) {
+					oldDescriptions.put(model, model.getBundleDescription());
+					addWorkspaceBundleToState(state, entries, model);
+				}
+				state.resolveState(true);
+
+				fState = state;
+				fExternalManager.setModels(state.getTargetModels());
+				fEntries = entries;
+				// Set a flag so the feature model manager can avoid starting the target resolve again
+				fCancelled = cancelled;
+			}
+		} finally {
+			fSwapLock.writeLock().unlock();
+		}
+		subMon.split(10);
+
+		Set<String> changedIds = computeTargetDelta(oldEntries, fTargetStamps, entries, stamps, delta);
+		fTargetStamps = stamps;
+		boolean externalPluginsChanged = isSavedExternalPluginListDifferent(externalUris);
+		saveExternalPluginList(externalUris);
+
+		// flush the extension registry cache since workspace data (BundleDescription id's) have changed.
+		PDECore.getDefault().getExtensionsRegistry().targetReloaded();
+		updateAffectedEntries(state, changedIds, oldDescriptions);
+		if (externalPluginsChanged) {
+			fireStateChanged(state);
+		}
+		fireDelta(delta);
+
+		subMon.split(20);
+		if (PDECore.DEBUG_MODEL) {
+			System.out.println("Target swapped in " + (System.currentTimeMillis() - startTime) + " ms, " //$NON-NLS-1$ //$NON-NLS-2$
+					+ changedIds.size() + " plug-ins changed"); //$NON-NLS-1$
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the entries that differ between the tables of the previous and the
+	 * new target to the given delta and returns the IDs of the plug-ins whose
+	 * target models changed. Target models are compared by location, version
+	 * and file stamp, so that a bundle rebuilt in place is changed as well.
+	 */
+	private Set<String> computeTargetDelta(Map<String, LocalModelEntry> oldEntries, Map<String, Long> oldStamps,
+			Map<String, LocalModelEntry> newEntries, Map<String, Long> newStamps, PluginModelDelta delta) {
+		Set<String> changedIds = new HashSet<>();
+		synchronized (oldEntries) {
+			for (Entry<String, LocalModelEntry> oldEntry : oldEntries.entrySet()) {
+				if (!newEntries.containsKey(oldEntry.getKey())) {
+					delta.addEntry(oldEntry.getValue(), PluginModelDelta.REMOVED);
+					changedIds.add(oldEntry.getKey());
+				}
+			}
+		}
+		synchronized (newEntries) {
+			for (Entry<String, LocalModelEntry> newEntry : newEntries.entrySet()) {
+				LocalModelEntry oldEntry = oldEntries.get(newEntry.getKey());
+				if (oldEntry == null) {
+					delta.addEntry(newEntry.getValue(), PluginModelDelta.ADDED);
+					changedIds.add(newEntry.getKey());
+				} else if (!getExternalLocations(oldEntry, oldStamps).equals(getExternalLocations(newEntry.getValue(), newStamps))) {
+					delta.addEntry(newEntry.getValue(), PluginModelDelta.CHANGED);
+					changedIds.add(newEntry.getKey());
+				}
+			}
+		}
+		return changedIds;
+	}
+
+	private static Set<String> getExternalLocations(ModelEntry entry, Map<String, Long> stamps) {
+		Set<String> locations = new HashSet<>();
+		for (IPluginModelBase model : entry.getExternalModels()) {
+			locations.add(model.getInstallLocation() + '@' + model.getPluginBase().getVersion() + '@' + stamps.get(model.getInstallLocation()));
+		}
+		return locations;
+	}
+
+	/**
+	 * Returns the file stamps of the given target models, keyed by install
+	 * location.
+	 */
+	private static Map<String, Long> getFileStamps(IPluginModelBase[] models) {
+		Map<String, Long> stamps = new HashMap<>();
+		for (IPluginModelBase model : models) {
+			String location = model.getInstallLocation();
+			if (location != null) {
+				stamps.put(location, getFileStamp(new File(location)));
+			}
+		}
+		return stamps;
+	}
+
+	/**
+	 * Returns the stamp of a bundle jar or directory, which changes when the
+	 * bundle is rebuilt.
+	 */
+	private static long getFileStamp(File location) {
+		if (location.isFile()) {
+			return location.lastModified() ^ location.length();
+		}
+		long stamp = 0;
+		for (String descriptor : new String[] { ICoreConstants.BUNDLE_FILENAME_DESCRIPTOR, ICoreConstants.PLUGIN_FILENAME_DESCRIPTOR, ICoreConstants.FRAGMENT_FILENAME_DESCRIPTOR }) {
+			stamp = Math.max(stamp, new File(location, descriptor).lastModified());
+		}
+		return stamp;
+	}
+
+	/**
+	 * Trigger a classpath update for the workspace plug-ins affected by a
+	 * target change, which are the plug-ins depending on a changed plug-in in
+	 * the previous or the new target. Changes to re-exported bundles and to
+	 * fragments are propagated to the bundles re-exporting them or hosting
+	 * them.
+	 *
+	 * @param state the state of the new target
+	 * @param changedIds IDs of the plug-ins whose target models changed
+	 * @param oldDescriptions the bundle descriptions of the workspace models
+	 *            in the state of the previous target
+	 */
+	private void updateAffectedEntries(PDEState state, Set<String> changedIds, Map<IPluginModelBase, BundleDescription> oldDescriptions) {
+		if (changedIds.isEmpty()) {
+			return;
+		}
+		Set<String> affectedIds = new HashSet<>(changedIds);
+		BundleDescription[] bundles = state.getState().getBundles();
+		boolean added = true;
+		while (added) {
+			added = false;
+			for (BundleDescription bundle : bundles) {
+				if (affectedIds.contains(bundle.getSymbolicName())) {
+					HostSpecification host = bundle.getHost();
+					if (host != null && host.getName() != null) {
+						added |= affectedIds.add(host.getName());
+					}
+				} else {
+					for (BundleSpecification required : bundle.getRequiredBundles()) {
+						if (required.isExported() && affectedIds.contains(required.getName())) {
+							added |= affectedIds.add(bundle.getSymbolicName());
+							break;
+						}
+					}
+				}
+			}
+		}
+
+		Map<IJavaProject, RequiredPluginsClasspathContainer> map = new HashMap<>();
+		RequiredPluginsClasspathCache cache = new RequiredPluginsClasspathCache();
+		for (IPluginModelBase model : getWorkspaceModels()) {
+			if (!dependsOn(model.getBundleDescription(), affectedIds) && !dependsOn(oldDescriptions.get(model), affectedIds)) {
+				continue;
+			}
+			IProject project = model.getUnderlyingResource().getProject();
+			try {
+				if (project.hasNature(JavaCore.NATURE_ID)) {
+					map.put(JavaCore.create(project), new RequiredPluginsClasspathContainer(model, null, cache));
+				}
+			} catch (CoreException e) {
+			}
+		}
+		setClasspathContainers(map, true);
+	}
+
+	private static boolean dependsOn(BundleDescription bundle, Set<String> ids) {
+		if (bundle == null) {
+			return false;
+		}
+		HostSpecification host = bundle.getHost();
+		if (host != null && ids.contains(host.getName())) {
+			return true;
+		}
+		for (BundleSpecification required : bundle.getRequiredBundles()) {
+			if (ids.contains(required.getName())) {
+				return true;
+			}
+		}
+		for (ExportPackageDescription imported : bundle.getResolvedImports()) {
+			if (imported.getExporter() != null && ids.contains(imported.getExporter().getSymbolicName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Allow access to the table only through this getter.
 	 * It always calls initialize to make sure the table is initialized.
@@ -534,6 +930,17 @@ public class PluginModelManager implements IModelProviderListener {
 		return fEntries;
 	}
 
+	/**
+	 * Initializes the table unless it is initialized already. Once initialized,
+	 * the table is returned without waiting for a target being swapped in.
+	 */
+	private void initializeTable(IProgressMonitor monitor) {
+		if (fEntries != null) {
+			return;
+		}
+		createTable(monitor);
+	}
+
 	/**
 	 *
 	 * This method must be synchronized so that only one thread
@@ -541,7 +948,7 @@ public class PluginModelManager implements IModelProviderListener {
 	 * the table is initialized.
 	 *
 	 */
-	private synchronized void initializeTable(IProgressMonitor monitor) {
+	private synchronized void createTable(IProgressMonitor monitor) {
 		if (fEntries != null) {
 			return;
 		}
@@ -602,6 +1009,7 @@ public class PluginModelManager implements IModelProviderListener {
 		fState = new PDEState(externalUris, true, true, subMon.split(15));
 		fExternalManager.setModels(fState.getTargetModels());
 		addToTable(entries, fExternalManager.getAllModels());
+		fTargetStamps = getFileStamps(fState.getTargetModels());
 
 		// Check if the saved external bundle list has changed, if so target contents is different and projects should be rebuilt
 		boolean externalPluginsChanged = isSavedExternalPluginListDifferent(externalUris);
@@ -618,7 +1026,7 @@ public class PluginModelManager implements IModelProviderListener {
 		// add workspace plug-ins to the state
 		// and remove their target counterparts from the state.
 		for (IPluginModelBase model : models) {
-			addWorkspaceBundleToState(entries, model);
+			addWorkspaceBundleToState(fState, entries, model);
 		}
 		subMon.split(15);
 
@@ -733,10 +1141,10 @@ public class PluginModelManager implements IModelProviderListener {
 	 * @param model  the workspace model
 	 */
 	private synchronized void addWorkspaceBundleToState(IPluginModelBase model) {
-		addWorkspaceBundleToState(fEntries, model);
+		addWorkspaceBundleToState(fState, fEntries, model);
 	}
 
-	private synchronized void addWorkspaceBundleToState(Map<String, LocalModelEntry> entries, IPluginModelBase model) {
+	private synchronized void addWorkspaceBundleToState(PDEState state, Map<String, LocalModelEntry> entries, IPluginModelBase model) {
 		String id = model.getPluginBase().getId();
 		if (id == null) {
 			return;
@@ -749,15 +1157,15 @@ public class PluginModelManager implements IModelProviderListener {
 		if (entry != null) {
 			for (IPluginModelBase externalModel : entry.getExternalModels()) {
 				if (preferWorkspaceBundle) {
-					fState.removeBundleDescription(externalModel.getBundleDescription());
+					state.removeBundleDescription(externalModel.getBundleDescription());
 				} else {
-					fState.updateBundleDescription(externalModel.getBundleDescription());
+					state.updateBundleDescription(externalModel.getBundleDescription());
 				}
 			}
 		}
 
 		// add new bundle to the state
-		fState.addBundle(model, false);
+		state.addBundle(model, false);
 
 		BundleDescription desc = model.getBundleDescription();
 		if (desc != null) {
@@ -771,7 +1179,7 @@ public class PluginModelManager implements IModelProviderListener {
 				if (host != null) {
 					ModelEntry hostEntry = entries.get(host.getName());
 					if (hostEntry != null) {
-						fState.addBundle(hostEntry.getModel(host), true);
+						state.addBundle(hostEntry.getModel(host), true);
 					}
 				}
 			}
@@ -982,7 +1390,7 @@ public class PluginModelManager implements IModelProviderListener {
 						if (modelWorkspace.getPluginBase().getId() != null) {
 							if (modelWorkspace.getPluginBase().getId().equals(newID)) {
 								addToTable(fEntries, new IPluginModelBase[] { modelWorkspace });
-								addWorkspaceBundleToState(fEntries, modelWorkspace);
+								addWorkspaceBundleToState(fState, fEntries, modelWorkspace);
 							}
 						}
 					}
@@ -1208,6 +1616,26 @@ public class PluginModelManager implements IModelProviderListener {
 		return fState;
 	}
 
+	/**
+	 * Returns the index of reverse dependencies between the bundles of the
+	 * current PDE state. The index is kept up to date as the state changes.
+	 *
+	 * @return the reverse dependency index
+	 */
+	public BundleDependencyIndex getDependencyIndex() {
+		return fDependencyIndex;
+	}
+
+	/**
+	 * Returns the dependency cycles between the bundles of the current PDE
+	 * state. The cycles are computed again after the state changes.
+	 *
+	 * @return the dependency cycle index
+	 */
+	public DependencyCycleIndex getCycleIndex() {
+		return fCycleIndex;
+	}
+
 	/**
 	 * Returns the id of the system bundle currently in the resolver state
 	 *
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ *  Copyright (c) 2021 IBM Corporation and others.
+ *
+ *  This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License 2.0
+ *  which accompanies this distribution, and is available at
+ *  https://www.eclipse.org/legal/epl-2.0/
+ *
+ *  SPDX-License-Identifier: EPL-2.0
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+
+/**
+ * Memoizes the parts of the required plug-ins classpath computation that do
+ * not depend on the plug-in a container is computed for. One instance is shared
+ * by a batch of {@link RequiredPluginsClasspathContainer}s computed against the
+ * same resolved state, so popular target bundles are only inspected once per
+ * batch. Instances are thread safe and must not outlive the batch, as they do
+ * not track changes to the state.
+ */
+class RequiredPluginsClasspathCache {
+
+	/**
+	 * Library entries of external plug-ins without access rules, keyed by the
+	 * bundle description of the plug-in
+	 */
+	private final Map<BundleDescription, IClasspathEntry[]> fExternalEntries = new ConcurrentHashMap<>();
+
+	/**
+	 * Access rule paths keyed by package name
+	 */
+	private final Map<String, IPath> fRulePaths = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the library entries of the given external plug-in without any
+	 * access rules applied.
+	 *
+	 * @param model the external plug-in model
+	 * @return the library entries of the plug-in, possibly empty
+	 */
+	IClasspathEntry[] getExternalEntries(IPluginModelBase model) {
+		BundleDescription desc = model.getBundleDescription();
+		if (desc == null) {
+			return PDEClasspathContainer.getUnrestrictedExternalEntries(model);
+		}
+		IClasspathEntry[] entries = fExternalEntries.get(desc);
+		if (entries == null) {
+			// computed outside of the map so that other plug-ins are not
+			// blocked while the jars are inspected, a plug-in computed by two
+			// containers at once yields equal entries
+			entries = PDEClasspathContainer.getUnrestrictedExternalEntries(model);
+			IClasspathEntry[] existing = fExternalEntries.putIfAbsent(desc, entries);
+			if (existing != null) {
+				entries = existing;
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Returns the access rule path matching all types of the given package.
+	 *
+	 * @param packageName the package name
+	 * @return the access rule path for the package
+	 */
+	IPath getRulePath(String packageName) {
+		return fRulePaths.computeIfAbsent(packageName, RequiredPluginsClasspathCache::createRulePath);
+	}
+
+	static IPath createRulePath(String packageName) {
+		return (packageName.equals(".")) ? new Path("*") : new Path(packageName.replace('.', '/') + "/*"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+}
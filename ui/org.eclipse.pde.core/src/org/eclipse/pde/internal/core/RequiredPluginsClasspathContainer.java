@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2000, 2018 IBM Corporation and others.
+ *  Copyright (c) 2000, 2021 IBM Corporation and others.
  *
  *  This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License 2.0
@@ -67,6 +67,12 @@ public class RequiredPluginsClasspathContainer extends PDEClasspathContainer imp
 	private IClasspathEntry[] fEntries;
 	private boolean addImportedPackages;
 
+	/**
+	 * Memo shared with the other containers of the same update batch, only
+	 * set until the entries of this container have been computed
+	 */
+	private RequiredPluginsClasspathCache fCache;
+
 	/**
 	 * Cached list of {@link IClasspathContributor} from plug-in extensions
 	 * @see #getClasspathContributors()
@@ -81,8 +87,22 @@ public class RequiredPluginsClasspathContainer extends PDEClasspathContainer imp
 	}
 
 	public RequiredPluginsClasspathContainer(IPluginModelBase model, IBuild build) {
+		this(model, build, null);
+	}
+
+	/**
+	 * Creates a container whose computation shares the results that do not
+	 * depend on the given model with the other containers using the same cache.
+	 *
+	 * @param model the plug-in model to compute the container for
+	 * @param build the build model of the plug-in, may be <code>null</code>
+	 * @param cache the cache shared by the batch of containers, may be
+	 *            <code>null</code>
+	 */
+	RequiredPluginsClasspathContainer(IPluginModelBase model, IBuild build, RequiredPluginsClasspathCache cache) {
 		fModel = model;
 		fBuild = build;
+		fCache = cache;
 	}
 
 	@Override
@@ -110,6 +130,8 @@ public class RequiredPluginsClasspathContainer extends PDEClasspathContainer imp
 		}
 		if (fEntries == null) {
 			fEntries = computePluginEntries();
+			// the cache is only valid for the batch this container was created in
+			fCache = null;
 		}
 		if (PDECore.DEBUG_CLASSPATH) {
 			System.out.println("Dependencies for plugin '" + fModel.getPluginBase().getId() + "':"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -255,7 +277,7 @@ public class RequiredPluginsClasspathContainer extends PDEClasspathContainer imp
 		Rule rule = new Rule();
 		rule.discouraged = helper.getAccessCode(desc, export) == StateHelper.ACCESS_DISCOURAGED;
 		String name = export.getName();
-		rule.path = (name.equals(".")) ? new Path("*") : new Path(name.replace('.', '/') + "/*"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		rule.path = fCache != null ? fCache.getRulePath(name) : RequiredPluginsClasspathCache.createRulePath(name);
 		return rule;
 	}
 
@@ -348,6 +370,8 @@ public class RequiredPluginsClasspathContainer extends PDEClasspathContainer imp
 
 		if (resource != null) {
 			addProjectEntry(resource.getProject(), rules, entries);
+		} else if (fCache != null) {
+			addExternalPlugin(fCache.getExternalEntries(model), rules, entries);
 		} else {
 			addExternalPlugin(model, rules, entries);
 		}
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ *  Copyright (c) 2021 IBM Corporation and others.
+ *
+ *  This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License 2.0
+ *  which accompanies this distribution, and is available at
+ *  https://www.eclipse.org/legal/epl-2.0/
+ *
+ *  SPDX-License-Identifier: EPL-2.0
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+/**
+ * A per-user store of libraries extracted from jarred bundles, shared by all
+ * workspaces of the user. Libraries are stored by content, so identical
+ * libraries contained in different bundles or targets are only extracted once.
+ * <p>
+ * A library is first looked up by the CRC and size recorded in the zip
+ * directory of its bundle, which are known without reading it. Libraries with
+ * the same CRC and size are told apart by the SHA-256 digest of their content,
+ * which is computed while a library is extracted, so a library is read at most
+ * once unless a stored library has the same CRC and size.
+ * </p>
+ * <p>
+ * Workspaces do not reference the store directly: the {@link ExternalLibraryCache}
+ * of a workspace hard links the stored library into its own cache, or copies
+ * it if the file system does not support hard links. The link count of a
+ * stored library therefore tells whether it is still used by any workspace,
+ * and deleting a stored library never breaks a workspace. When a library is
+ * used, the modification time of a stamp file next to it is updated rather
+ * than that of the library, which all its hard links share.
+ * </p>
+ * <p>
+ * The store location can be set with the <code>pde.sharedLibraryStore</code>
+ * system property, or disabled by setting it to <code>none</code>. Its size is
+ * bounded by the <code>pde.sharedLibraryStore.maxSize</code> system property in
+ * megabytes.
+ * </p>
+ */
+class SharedLibraryStore {
+
+	private static final String LOCATION_PROPERTY = "pde.sharedLibraryStore"; //$NON-NLS-1$
+	private static final String MAX_SIZE_PROPERTY = "pde.sharedLibraryStore.maxSize"; //$NON-NLS-1$
+	private static final double DEFAULT_MAX_SIZE = 512;
+
+	/**
+	 * Suffix of the stamp file recording when the library with the same name
+	 * was last used
+	 */
+	private static final String USED_SUFFIX = ".used"; //$NON-NLS-1$
+	private static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+	private final File fStoreDir;
+	private final long fMaxSize;
+
+	/**
+	 * Returns the store configured by the system properties, or
+	 * <code>null</code> if the shared store is disabled.
+	 */
+	static SharedLibraryStore create() {
+		String location = System.getProperty(LOCATION_PROPERTY);
+		File storeDir;
+		if (location == null) {
+			storeDir = new File(System.getProperty("user.home"), ".eclipse/org.eclipse.pde.core/shared_libraries"); //$NON-NLS-1$ //$NON-NLS-2$
+		} else if ("none".equals(location)) { //$NON-NLS-1$
+			return null;
+		} else {
+			storeDir = new File(location);
+		}
+		double maxSize = DEFAULT_MAX_SIZE;
+		try {
+			maxSize = Double.parseDouble(System.getProperty(MAX_SIZE_PROPERTY, Double.toString(DEFAULT_MAX_SIZE)));
+		} catch (NumberFormatException e) {
+			// use the default
+		}
+		return new SharedLibraryStore(storeDir, (long) (maxSize * 1024 * 1024));
+	}
+
+	private SharedLibraryStore(File storeDir, long maxSize) {
+		fStoreDir = storeDir;
+		fMaxSize = maxSize;
+	}
+
+	/**
+	 * Makes the given nested library of a jarred bundle available at the given
+	 * location, extracting it into the store only if the store does not
+	 * contain the same content yet.
+	 *
+	 * @param jar the jarred bundle
+	 * @param entry the entry of the library in the jarred bundle
+	 * @param target the file to make the library available as
+	 * @return <code>true</code> if the library is available at the target
+	 *         location, <code>false</code> if the store could not be used
+	 */
+	boolean provide(JarFile jar, ZipEntry entry, File target) {
+		try {
+			File stored = getStoredLibrary(jar, entry);
+			if (stored == null) {
+				return false;
+			}
+			Files.deleteIfExists(target.toPath());
+			try {
+				Files.createLink(target.toPath(), stored.toPath());
+			} catch (IOException | UnsupportedOperationException e) {
+				Files.copy(stored.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private File getStoredLibrary(JarFile jar, ZipEntry entry) throws IOException {
+		if (entry.getCrc() == -1 || entry.getSize() == -1) {
+			return null;
+		}
+		File keyDir = new File(fStoreDir, Long.toHexString(entry.getCrc()) + '-' + entry.getSize());
+		String name = new File(entry.getName()).getName();
+		String[] digests = keyDir.list((dir, file) -> new File(dir, file).isDirectory());
+		if (digests != null && digests.length > 0) {
+			// only read to tell libraries with the same checksum apart
+			String digest = computeDigest(jar, entry);
+			if (digest == null) {
+				return null;
+			}
+			File stored = new File(new File(keyDir, digest), name);
+			if (stored.isFile()) {
+				markUsed(stored);
+				return stored;
+			}
+		}
+		return extract(jar, entry, keyDir, name);
+	}
+
+	/**
+	 * Extracts the given library into the store, computing its digest while
+	 * it is written.
+	 */
+	private File extract(JarFile jar, ZipEntry entry, File keyDir, String name) throws IOException {
+		if (!keyDir.isDirectory() && !keyDir.mkdirs()) {
+			return null;
+		}
+		// extract to a temporary file first, so that concurrent sessions never see partial content
+		File temp = File.createTempFile(name, TEMP_SUFFIX, keyDir);
+		try {
+			String digest;
+			try (InputStream in = jar.getInputStream(entry)) {
+				if (in == null) {
+					return null;
+				}
+				digest = copy(in, temp);
+			}
+			if (digest == null) {
+				return null;
+			}
+			File entryDir = new File(keyDir, digest);
+			if (!entryDir.isDirectory() && !entryDir.mkdirs()) {
+				return null;
+			}
+			File stored = new File(entryDir, name);
+			try {
+				Files.move(temp.toPath(), stored.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), stored.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} catch (FileAlreadyExistsException e) {
+				// extracted concurrently by another session
+			}
+			if (!stored.isFile()) {
+				return null;
+			}
+			markUsed(stored);
+			return stored;
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+
+	/**
+	 * Copies the given stream to the given file and returns the hexadecimal
+	 * SHA-256 digest of the copied content, or <code>null</code> if it cannot
+	 * be computed.
+	 */
+	private static String copy(InputStream in, File file) throws IOException {
+		MessageDigest digest = createDigest();
+		if (digest == null) {
+			return null;
+		}
+		try (OutputStream out = new FileOutputStream(file)) {
+			byte[] buffer = new byte[64 * 1024];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, count);
+				out.write(buffer, 0, count);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Returns the hexadecimal SHA-256 digest of the given entry, or
+	 * <code>null</code> if the entry cannot be read.
+	 */
+	private static String computeDigest(JarFile jar, ZipEntry entry) throws IOException {
+		MessageDigest digest = createDigest();
+		if (digest == null) {
+			return null;
+		}
+		try (InputStream in = jar.getInputStream(entry)) {
+			if (in == null) {
+				return null;
+			}
+			byte[] buffer = new byte[64 * 1024];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, count);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hash = new StringBuilder();
+		for (byte b : bytes) {
+			hash.append(String.format("%02x", b)); //$NON-NLS-1$
+		}
+		return hash.toString();
+	}
+
+	/**
+	 * Records that the given stored library was just used.
+	 */
+	private static void markUsed(File library) {
+		File stamp = new File(library.getPath() + USED_SUFFIX);
+		if (!stamp.setLastModified(System.currentTimeMillis())) {
+			try {
+				Files.write(stamp.toPath(), new byte[0]);
+			} catch (IOException e) {
+				// the library is evicted as if it was used when extracted
+			}
+		}
+	}
+
+	/**
+	 * Returns when the given stored library was last used.
+	 */
+	private static long getLastUsed(File library) {
+		long used = new File(library.getPath() + USED_SUFFIX).lastModified();
+		return used != 0 ? used : library.lastModified();
+	}
+
+	/**
+	 * Deletes stored libraries until the store fits into its size bound.
+	 * Libraries that are not linked from any workspace anymore are deleted
+	 * first, then the least recently used ones.
+	 */
+	void evict() {
+		File[] keyDirs = fStoreDir.listFiles(File::isDirectory);
+		if (keyDirs == null) {
+			return;
+		}
+		List<File> libraries = new ArrayList<>();
+		long size = 0;
+		for (File keyDir : keyDirs) {
+			File[] entryDirs = keyDir.listFiles(File::isDirectory);
+			if (entryDirs == null) {
+				continue;
+			}
+			for (File entryDir : entryDirs) {
+				File[] files = entryDir.listFiles((dir, name) -> !name.endsWith(USED_SUFFIX));
+				if (files == null || files.length == 0) {
+					deleteStamps(entryDir);
+					entryDir.delete();
+					continue;
+				}
+				for (File file : files) {
+					libraries.add(file);
+					size += file.length();
+				}
+			}
+			keyDir.delete();
+		}
+		if (size <= fMaxSize) {
+			return;
+		}
+		Map<File, Long> lastUsed = new HashMap<>();
+		libraries.forEach(library -> lastUsed.put(library, getLastUsed(library)));
+		libraries.sort(Comparator.comparing(SharedLibraryStore::isReferenced).thenComparingLong(lastUsed::get));
+		for (File library : libraries) {
+			if (size <= fMaxSize) {
+				break;
+			}
+			long length = library.length();
+			if (library.delete()) {
+				size -= length;
+				new File(library.getPath() + USED_SUFFIX).delete();
+				File entryDir = library.getParentFile();
+				if (entryDir.delete()) {
+					entryDir.getParentFile().delete();
+				}
+			}
+		}
+	}
+
+	private static void deleteStamps(File entryDir) {
+		File[] stamps = entryDir.listFiles();
+		if (stamps != null) {
+			for (File stamp : stamps) {
+				stamp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the stored library is hard linked from a workspace, or
+	 * <code>true</code> if that cannot be determined.
+	 */
+	private static boolean isReferenced(File library) {
+		try {
+			Object links = Files.getAttribute(library.toPath(), "unix:nlink"); //$NON-NLS-1$
+			return !(links instanceof Integer) || ((Integer) links).intValue() > 1;
+		} catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+			return true;
+		}
+	}
+}
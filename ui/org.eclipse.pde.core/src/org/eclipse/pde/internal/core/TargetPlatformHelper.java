@@ -410,7 +410,18 @@ public class TargetPlatformHelper {
 	}
 
 	public static String querySystemPackages(IExecutionEnvironment environment) {
-		IVMInstall vm = bestVmInstallFor(environment);
+		return querySystemPackages(bestVmInstallFor(environment), environment);
+	}
+
+	/**
+	 * Returns the packages the given VM exports for the release of the given
+	 * execution environment, or <code>null</code> if the VM is not modular.
+	 *
+	 * @param vm the VM to query, may be <code>null</code>
+	 * @param environment the execution environment
+	 * @return the comma separated system packages or <code>null</code>
+	 */
+	public static String querySystemPackages(IVMInstall vm, IExecutionEnvironment environment) {
 		if (vm == null || !JavaRuntime.isModularJava(vm)) {
 			return null;
 		}
@@ -86,7 +86,6 @@ import org.eclipse.pde.internal.core.project.PDEProject;
 import org.eclipse.pde.internal.core.search.PluginJavaSearchUtil;
 import org.eclipse.pde.internal.core.util.IdUtil;
 import org.eclipse.pde.internal.core.util.ManifestUtils;
-import org.eclipse.pde.internal.core.util.PDEJavaHelper;
 import org.eclipse.pde.internal.core.util.UtilMessages;
 import org.eclipse.pde.internal.core.util.VersionUtil;
 import org.osgi.framework.BundleException;
@@ -100,6 +99,11 @@ public class BundleErrorReporter extends JarManifestErrorReporter {
 	private boolean fOsgiR4;
 	private IPluginModelBase fModel;
 	private Set<String> fProjectPackages;
+	/**
+	 * The preferred export of each package of a state other than the target
+	 * platform state, built when first needed
+	 */
+	private Map<String, ExportPackageDescription> fStateExports;
 
 	public BundleErrorReporter(IFile file) {
 		super(file);
@@ -963,7 +967,7 @@ public class BundleErrorReporter extends JarManifestErrorReporter {
 					IJavaProject javaProject = JavaCore.create(fProject);
 
 					// Look for this activator in the project's classpath
-					if (!PDEJavaHelper.isOnClasspath(activator, javaProject)) {
+					if (!PDECore.getDefault().getJavaTypeIndex().isOnClasspath(activator, javaProject)) {
 						VirtualMarker marker = report(NLS.bind(PDECoreMessages.BundleErrorReporter_NoExist, activator), getLine(header, activator), CompilerFlags.P_UNKNOWN_CLASS, PDEMarkerFactory.M_UNKNOWN_ACTIVATOR, PDEMarkerFactory.CAT_FATAL);
 						addMarkerAttribute(marker,PDEMarkerFactory.compilerKey,  CompilerFlags.P_UNKNOWN_CLASS);
 					}
@@ -1153,7 +1157,7 @@ public class BundleErrorReporter extends JarManifestErrorReporter {
 			}
 		}
 
-		HashMap<String, ExportPackageDescription> exported = getAvailableExportedPackages(desc.getContainingState());
+		State state = desc.getContainingState();
 
 		ImportPackageSpecification[] imports = desc.getImportPackages();
 		if (desc.hasDynamicImports()) {
@@ -1200,7 +1204,7 @@ public class BundleErrorReporter extends JarManifestErrorReporter {
 				boolean optional = isOptional(element);
 				int severity = getRequireBundleSeverity(element, optional);
 
-				ExportPackageDescription export = exported.get(name);
+				ExportPackageDescription export = getAvailableExportedPackage(state, name);
 				if (export != null) {
 					if (export.getSupplier().isResolved()) {
 						Version version = export.getVersion();
@@ -1227,20 +1231,31 @@ public class BundleErrorReporter extends JarManifestErrorReporter {
 		}
 	}
 
-	private HashMap<String, ExportPackageDescription> getAvailableExportedPackages(State state) {
-		BundleDescription[] bundles = state.getBundles();
-
-		HashMap<String, ExportPackageDescription> exported = new HashMap<>();
-		for (BundleDescription bundle : bundles) {
-			ExportPackageDescription[] exports = bundle.getExportPackages();
-			for (ExportPackageDescription export : exports) {
-				String name = export.getName();
-				if (exported.containsKey(name)) {
-					if (export.getSupplier().isResolved()) {
-						exported.put(name, export);
+	/**
+	 * Returns an export of the given package, preferring the exports of
+	 * resolved bundles.
+	 */
+	private ExportPackageDescription getAvailableExportedPackage(State state, String name) {
+		if (state != TargetPlatformHelper.getState()) {
+			// not indexed, so index the exports of the state once per validation
+			if (fStateExports == null) {
+				fStateExports = new HashMap<>();
+				for (BundleDescription bundle : state.getBundles()) {
+					for (ExportPackageDescription export : bundle.getExportPackages()) {
+						ExportPackageDescription exported = fStateExports.get(export.getName());
+						if (exported == null || export.getSupplier().isResolved()) {
+							fStateExports.put(export.getName(), export);
+						}
 					}
-				} else {
-					exported.put(name, export);
+				}
+			}
+			return fStateExports.get(name);
+		}
+		ExportPackageDescription exported = null;
+		for (BundleDescription bundle : PDECore.getDefault().getModelManager().getDependencyIndex().getExportingBundles(name)) {
+			for (ExportPackageDescription export : bundle.getExportPackages()) {
+				if (name.equals(export.getName()) && (exported == null || export.getSupplier().isResolved())) {
+					exported = export;
 				}
 			}
 		}
@@ -1356,28 +1371,7 @@ public class BundleErrorReporter extends JarManifestErrorReporter {
 	}
 
 	private void addProjectPackages(IProject proj) {
-		try {
-			if (proj.hasNature(JavaCore.NATURE_ID)) {
-				IJavaProject jp = JavaCore.create(proj);
-				IPackageFragmentRoot[] roots = jp.getPackageFragmentRoots();
-				for (int i = 0; i < roots.length; i++) {
-					if (roots[i].getKind() == IPackageFragmentRoot.K_SOURCE || (roots[i].getKind() == IPackageFragmentRoot.K_BINARY && !roots[i].isExternal())) {
-						IJavaElement[] children = roots[i].getChildren();
-						for (IJavaElement element : children) {
-							IPackageFragment f = (IPackageFragment) element;
-							String name = f.getElementName();
-							if (name.equals("")) { //$NON-NLS-1$
-								name = "."; //$NON-NLS-1$
-							}
-							if (f.hasChildren() || f.getNonJavaResources().length > 0) {
-								fProjectPackages.add(name);
-							}
-						}
-					}
-				}
-			}
-		} catch (CoreException ce) {
-		}
+		fProjectPackages.addAll(PDECore.getDefault().getJavaTypeIndex().getProjectPackages(proj));
 	}
 
 	protected boolean isCheckDeprecated() {
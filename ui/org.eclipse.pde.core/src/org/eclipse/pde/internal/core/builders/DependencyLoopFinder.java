@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2000, 2012 IBM Corporation and others.
+ *  Copyright (c) 2000, 2021 IBM Corporation and others.
  *
  *  This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License 2.0
@@ -13,15 +13,26 @@
  *******************************************************************************/
 package org.eclipse.pde.internal.core.builders;
 
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.osgi.service.resolver.BundleDescription;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.pde.core.plugin.IPlugin;
-import org.eclipse.pde.core.plugin.IPluginImport;
-import org.eclipse.pde.core.plugin.IPluginModel;
+import org.eclipse.pde.core.plugin.IPluginBase;
 import org.eclipse.pde.core.plugin.IPluginModelBase;
 import org.eclipse.pde.core.plugin.PluginRegistry;
+import org.eclipse.pde.internal.core.DependencyCycleIndex;
+import org.eclipse.pde.internal.core.PDECore;
 import org.eclipse.pde.internal.core.PDECoreMessages;
 
+/**
+ * Finds the dependency loops a plug-in is part of. The loops are looked up in
+ * the {@link DependencyCycleIndex} of the current PDE state, which reports
+ * the shortest loop through each dependency of the plug-in that leads back to
+ * it.
+ */
 public class DependencyLoopFinder {
 
 	public static DependencyLoop[] findLoops(IPlugin root) {
@@ -33,105 +44,64 @@ public class DependencyLoopFinder {
 	}
 
 	public static DependencyLoop[] findLoops(IPlugin root, IPlugin[] candidates, boolean onlyCandidates) {
-		Vector<DependencyLoop> loops = new Vector<>();
-
-		Vector<IPlugin> path = new Vector<>();
-		findLoops(loops, path, root, candidates, onlyCandidates, new Vector<String>());
-		return loops.toArray(new DependencyLoop[loops.size()]);
-	}
-
-	private static void findLoops(Vector<DependencyLoop> loops, Vector<IPlugin> path, IPlugin subroot, IPlugin[] candidates, boolean onlyCandidates, Vector<String> exploredPlugins) {
-		if (!path.isEmpty()) {
-			// test the path so far
-			// is the subroot the same as root - if yes, that's it
-
-			IPlugin root = path.elementAt(0);
-			if (isEquivalent(root, subroot)) {
-				// our loop!!
-				DependencyLoop loop = new DependencyLoop();
-				loop.setMembers(path.toArray(new IPlugin[path.size()]));
-				int no = loops.size() + 1;
-				loop.setName(NLS.bind(PDECoreMessages.Builders_DependencyLoopFinder_loopName, ("" + no))); //$NON-NLS-1$
-				loops.add(loop);
-				return;
-			}
-			// is the subroot the same as any other node?
-			// if yes, abort - local loop that is not ours
-			for (int i = 1; i < path.size(); i++) {
-				IPlugin node = path.elementAt(i);
-				if (isEquivalent(subroot, node)) {
-					// local loop
-					return;
-				}
-			}
+		BundleDescription rootBundle = getBundle(root);
+		if (rootBundle == null) {
+			return new DependencyLoop[0];
 		}
-		@SuppressWarnings("unchecked")
-		Vector<IPlugin> newPath = !path.isEmpty() ? ((Vector<IPlugin>) path.clone()) : path;
-		newPath.add(subroot);
-
+		DependencyCycleIndex index = PDECore.getDefault().getModelManager().getCycleIndex();
+		Set<List<IPluginBase>> cycles = new LinkedHashSet<>();
 		if (!onlyCandidates) {
-			IPluginImport[] iimports = subroot.getImports();
-			for (IPluginImport iimport : iimports) {
-				String id = iimport.getId();
-				//Be paranoid
-				if (id == null) {
-					continue;
-				}
-				if (!exploredPlugins.contains(id)) {
-					// is plugin in list of non loop yielding plugins
-					//Commenting linear lookup - was very slow
-					//when called from here. We will use
-					//model manager instead because it
-					//has a hash table lookup that is much faster.
-					//IPlugin child = PDECore.getDefault().findPlugin(id);
-					IPlugin child = findPlugin(id);
-					if (child != null) {
-						// number of loops before traversing plugin
-						int oldLoopSize = loops.size();
-
-						findLoops(loops, newPath, child, null, false, exploredPlugins);
-
-						// number of loops after traversing plugin
-						int newLoopsSize = loops.size();
-
-						if (oldLoopSize == newLoopsSize) {// no change in number of loops
-							// no loops from going to this node, skip next time
-							exploredPlugins.add(id);
-						}
-					}
-				}
-
+			for (BundleDescription[] cycle : index.getCycles(rootBundle)) {
+				addCycle(cycles, root, cycle, 1, cycle.length);
 			}
-
 		}
 		if (candidates != null) {
+			// a candidate added as a dependency closes a loop if it depends on the root
 			for (IPlugin candidate : candidates) {
-				// number of loops before traversing plugin
-				int oldLoopSize = loops.size();
-
-				findLoops(loops, newPath, candidate, null, false, exploredPlugins);
-
-				// number of loops after traversing plugin
-				int newLoopsSize = loops.size();
-
-				if (oldLoopSize == newLoopsSize) { // no change in number of loops
-					// no loops from going to this node, skip next time
-					exploredPlugins.add(candidate.getId());
+				BundleDescription[] path = index.getDependencyPath(getBundle(candidate), rootBundle);
+				if (path != null) {
+					addCycle(cycles, root, path, 0, path.length - 1);
 				}
 			}
 		}
 
+		List<DependencyLoop> loops = new ArrayList<>(cycles.size());
+		for (List<IPluginBase> members : cycles) {
+			DependencyLoop loop = new DependencyLoop();
+			loop.setMembers(members.toArray(new IPluginBase[members.size()]));
+			int no = loops.size() + 1;
+			loop.setName(NLS.bind(PDECoreMessages.Builders_DependencyLoopFinder_loopName, ("" + no))); //$NON-NLS-1$
+			loops.add(loop);
+		}
+		return loops.toArray(new DependencyLoop[loops.size()]);
 	}
 
-	private static IPlugin findPlugin(String id) {
-		IPluginModelBase childModel = PluginRegistry.findModel(id);
-		if (childModel == null || !(childModel instanceof IPluginModel)) {
-			return null;
+	/**
+	 * Adds the loop made of the root followed by the given range of bundles.
+	 */
+	private static void addCycle(Set<List<IPluginBase>> cycles, IPlugin root, BundleDescription[] bundles, int from, int to) {
+		List<IPluginBase> members = new ArrayList<>(to - from + 1);
+		members.add(root);
+		for (int i = from; i < to; i++) {
+			IPluginModelBase model = PluginRegistry.findModel(bundles[i]);
+			if (model == null) {
+				return;
+			}
+			members.add(model.getPluginBase());
 		}
-		return (IPlugin) childModel.getPluginBase();
+		cycles.add(members);
 	}
 
-	private static boolean isEquivalent(IPlugin left, IPlugin right) {
-		return left.getId().equals(right.getId());
+	private static BundleDescription getBundle(IPlugin plugin) {
+		if (plugin == null) {
+			return null;
+		}
+		IPluginModelBase model = plugin.getPluginModel();
+		BundleDescription bundle = model != null ? model.getBundleDescription() : null;
+		if (bundle == null && plugin.getId() != null) {
+			model = PluginRegistry.findModel(plugin.getId());
+			bundle = model != null ? model.getBundleDescription() : null;
+		}
+		return bundle;
 	}
 }
@@ -13,13 +13,18 @@
  *******************************************************************************/
 package org.eclipse.pde.internal.core.builders;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.pde.internal.core.PDECore;
 
@@ -55,12 +60,34 @@ public class IncrementalErrorReporter {
 		return marker;
 	}
 
+	/**
+	 * Updates the PDE problem markers of the resource to the reported ones.
+	 * <p>
+	 * The reported markers are matched against the existing ones by problem
+	 * id, line, message, category and severity. Only unmatched existing markers
+	 * are deleted and only unmatched reported markers are created; matched
+	 * markers whose other attributes differ are updated in place. All changes
+	 * are made in a single workspace operation, so an unchanged set of
+	 * problems causes no marker deltas at all.
+	 * </p>
+	 */
 	public void applyMarkers() {
+		IWorkspaceRunnable runnable = monitor -> reconcileMarkers();
+		try {
+			fResource.getWorkspace().run(runnable, fResource, IWorkspace.AVOID_UPDATE, null);
+		} catch (CoreException e) {
+			PDECore.logException(e);
+		}
+	}
+
+	private void reconcileMarkers() {
 		IMarker[] existingMarkers;
 		try {
 			// This seem to be for compatibility with some legacy code,
 			// PDE builders don't create markers with this type anymore
-			fResource.deleteMarkers(IMarker.PROBLEM, false, IResource.DEPTH_ZERO);
+			if (fResource.findMarkers(IMarker.PROBLEM, false, IResource.DEPTH_ZERO).length > 0) {
+				fResource.deleteMarkers(IMarker.PROBLEM, false, IResource.DEPTH_ZERO);
+			}
 			existingMarkers = fResource.findMarkers(PDEMarkerFactory.MARKER_ID, false, IResource.DEPTH_ZERO);
 		} catch (CoreException e) {
 			PDECore.logException(e);
@@ -73,51 +100,69 @@ public class IncrementalErrorReporter {
 			}
 		}
 
+		Map<List<Object>, Deque<VirtualMarker>> reported = new HashMap<>();
+		for (VirtualMarker reportedMarker : fReportedMarkers) {
+			reported.computeIfAbsent(getKey(reportedMarker.getAttributes()), k -> new ArrayDeque<>()).add(reportedMarker);
+		}
+
+		int removed = 0;
+		int updated = 0;
 		// iterate over existing markers to check which are resolved now
 		for (IMarker marker : existingMarkers) {
-			boolean resolved = true;
+			VirtualMarker reportedMarker = null;
 			Map<String, Object> existingAttributes = null;
+			try {
+				existingAttributes = marker.getAttributes();
+				Deque<VirtualMarker> candidates = reported.get(getKey(existingAttributes));
+				reportedMarker = candidates != null ? candidates.poll() : null;
+			} catch (Exception e) {
+				PDECore.logException(e);
+				// assume the marker is not accessible, can be deleted
+			}
 
-			// Iterate over new markers to filter out all we already know
-			for (Iterator<VirtualMarker> it = fReportedMarkers.iterator(); it.hasNext();) {
-				VirtualMarker reportedMarker = it.next();
-				if (existingAttributes == null) {
-					try {
-						existingAttributes = marker.getAttributes();
-					} catch (Exception e) {
-						PDECore.logException(e);
-						// assume the marker is not accessible, can be deleted
-						break;
-					}
-				}
-				// Same marker is found, no need to create again
-				if (reportedMarker.getAttributes().equals(existingAttributes)) {
-					resolved = false;
-					it.remove();
-					break;
+			try {
+				if (reportedMarker == null) {
+					// The marker was not reported again, the old one can be deleted
+					marker.delete();
+					removed++;
+				} else if (!reportedMarker.getAttributes().equals(existingAttributes)) {
+					// Same problem with different details, e.g. quick fix data
+					marker.setAttributes(reportedMarker.getAttributes());
+					updated++;
 				}
+			} catch (CoreException e) {
+				PDECore.logException(e);
 			}
+		}
 
-			// The marker was not reported again, the old one can be deleted
-			if (resolved) {
+		// Create only new markers
+		int added = 0;
+		for (Deque<VirtualMarker> markers : reported.values()) {
+			for (VirtualMarker reportedMarker : markers) {
 				try {
-					marker.delete();
+					fResource.createMarker(PDEMarkerFactory.MARKER_ID, reportedMarker.getAttributes());
+					added++;
 				} catch (CoreException e) {
 					PDECore.logException(e);
 				}
 			}
 		}
 
-		// Create only new markers
-		for (VirtualMarker reportedMarker : fReportedMarkers) {
-			try {
-				fResource.createMarker(PDEMarkerFactory.MARKER_ID, reportedMarker.getAttributes());
-			} catch (CoreException e) {
-				PDECore.logException(e);
-			}
+		if (PDECore.DEBUG_VALIDATION) {
+			System.out.println("Markers of " + fResource.getFullPath() + ": " + added + " added, " + removed + " removed, " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+					+ updated + " updated, " + (existingMarkers.length - removed - updated) + " unchanged"); //$NON-NLS-1$ //$NON-NLS-2$
 		}
 	}
 
+	/**
+	 * Returns the attributes identifying the problem a marker reports.
+	 */
+	private static List<Object> getKey(Map<String, Object> attributes) {
+		return Arrays.asList(attributes.get(PDEMarkerFactory.PROBLEM_ID), attributes.get(IMarker.LINE_NUMBER),
+				attributes.get(IMarker.MESSAGE), attributes.get(PDEMarkerFactory.CAT_ID),
+				attributes.get(IMarker.SEVERITY));
+	}
+
 	public int getErrorCount() {
 		return fErrorCount;
 	}
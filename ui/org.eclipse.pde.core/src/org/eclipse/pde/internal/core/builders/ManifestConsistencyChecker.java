@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2019 IBM Corporation and others.
+ * Copyright (c) 2000, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -18,9 +18,24 @@ package org.eclipse.pde.internal.core.builders;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.core.resources.ICommand;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IMarker;
@@ -28,10 +43,13 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
@@ -41,6 +59,7 @@ import org.eclipse.pde.internal.core.ICoreConstants;
 import org.eclipse.pde.internal.core.PDECore;
 import org.eclipse.pde.internal.core.PDECoreMessages;
 import org.eclipse.pde.internal.core.WorkspaceModelManager;
+import org.eclipse.pde.internal.core.natures.PDE;
 import org.eclipse.pde.internal.core.project.PDEProject;
 import org.osgi.framework.Bundle;
 
@@ -65,6 +84,18 @@ public class ManifestConsistencyChecker extends IncrementalProjectBuilder {
 
 	private final ClassChangeVisitor fClassFileVisitor = new ClassChangeVisitor();
 
+	/**
+	 * Threads validating the projects touched because their dependencies
+	 * changed, shared by all builders
+	 */
+	private static ThreadPoolExecutor fgValidator;
+
+	/**
+	 * Whether the project being built has been touched because its
+	 * dependencies changed
+	 */
+	private boolean fDependenciesChanged;
+
 	class ClassChangeVisitor implements IResourceDeltaVisitor {
 		boolean hasChanged = false;
 		boolean veto = false;
@@ -188,14 +219,59 @@ public class ManifestConsistencyChecker extends IncrementalProjectBuilder {
 
 		IProject project = getProject();
 		if (!WorkspaceModelManager.isBinaryProject(project)) {
+			fDependenciesChanged = false;
 			int type = getDeltaType(project);
 			if (type != 0) {
-				validateProject(type, monitor);
+				Map<IProject, Integer> projects = new LinkedHashMap<>();
+				projects.put(project, type);
+				Set<IProject> touched = new HashSet<>();
+				if (fDependenciesChanged) {
+					touched.add(project);
+					addTouchedProjects(projects, touched);
+				}
+				validateProjects(projects, touched, monitor);
 			}
 		}
 		return EMPTY_LIST;
 	}
 
+	/**
+	 * Adds the other projects that have been touched by the
+	 * {@link PluginRebuilder} because their dependencies changed as well, so
+	 * that they are validated together with this project instead of one after
+	 * another. The scheduling rule of this builder covers all PDE projects.
+	 * Their touch flag is only cleared once their markers have been updated,
+	 * so that they are validated by their own build otherwise.
+	 */
+	private void addTouchedProjects(Map<IProject, Integer> projects, Set<IProject> touched) {
+		for (IProject project : getProject().getWorkspace().getRoot().getProjects()) {
+			if (projects.containsKey(project) || !project.isAccessible() || !hasManifestBuilder(project)
+					|| WorkspaceModelManager.isBinaryProject(project)) {
+				continue;
+			}
+			try {
+				if (Boolean.TRUE.equals(project.getSessionProperty(PDECore.TOUCH_PROJECT))) {
+					projects.put(project, MANIFEST | EXTENSIONS | BUILD);
+					touched.add(project);
+				}
+			} catch (CoreException e) {
+				PDECore.log(e);
+			}
+		}
+	}
+
+	private static boolean hasManifestBuilder(IProject project) {
+		try {
+			for (ICommand command : project.getDescription().getBuildSpec()) {
+				if (PDE.MANIFEST_BUILDER_ID.equals(command.getBuilderName())) {
+					return true;
+				}
+			}
+		} catch (CoreException e) {
+		}
+		return false;
+	}
+
 	private int getDeltaType(IProject project) throws CoreException {
 		IResourceDelta delta = getDelta(project);
 
@@ -209,9 +285,10 @@ public class ManifestConsistencyChecker extends IncrementalProjectBuilder {
 
 		// the project has been "touched" by PluginRebuilder to indicate
 		// that one of the dependencies (either in the target or workspace)
-		// has changed and a StateDelta was fired
+		// has changed and a StateDelta was fired. The flag is reset once the
+		// markers of the project have been updated.
 		if (Boolean.TRUE.equals(project.getSessionProperty(PDECore.TOUCH_PROJECT))) {
-			project.setSessionProperty(PDECore.TOUCH_PROJECT, null);
+			fDependenciesChanged = true;
 			if (PDECore.DEBUG_VALIDATION) {
 				System.out.println("Dependencies Changed: Project [" + getProject().getName() + "] - full build"); //$NON-NLS-1$ //$NON-NLS-2$
 			}
@@ -244,50 +321,217 @@ public class ManifestConsistencyChecker extends IncrementalProjectBuilder {
 		return type;
 	}
 
-	private void validateProject(int type, IProgressMonitor monitor) {
-		SubMonitor subMonitor = SubMonitor.convert(monitor, PDECoreMessages.ManifestConsistencyChecker_builderTaskName, getWorkAmount(type));
-		if ((type & STRUCTURE) != 0) {
-			validateProjectStructure(type, subMonitor.split(1));
+	/**
+	 * Validates the given projects and updates their markers. The files of the
+	 * projects are validated concurrently if there are several projects, then
+	 * the markers of each project are updated in a single workspace operation.
+	 * <p>
+	 * The reporters read the current models and PDE state. While the projects
+	 * are validated, the scheduling rule of this builder prevents changes of
+	 * the workspace models and the model manager prevents the target platform
+	 * from being swapped, so that all projects of the batch are validated
+	 * against the same state.
+	 * </p>
+	 *
+	 * @param projects the projects to validate and the kinds of files to
+	 *            validate in each of them
+	 * @param touched the projects touched because their dependencies changed,
+	 *            whose touch flag is reset once their markers are updated
+	 * @param monitor progress monitor
+	 */
+	private void validateProjects(Map<IProject, Integer> projects, Set<IProject> touched, IProgressMonitor monitor) {
+		SubMonitor subMonitor = SubMonitor.convert(monitor, PDECoreMessages.ManifestConsistencyChecker_builderTaskName, projects.size() * 4);
+		SubMonitor collectMonitor = subMonitor.split(projects.size() * 3);
+		Map<IProject, List<IncrementalErrorReporter>> problems = PDECore.getDefault().getModelManager()
+				.runWithCurrentTarget(() -> collectProblems(projects, collectMonitor));
+
+		for (Entry<IProject, Integer> entry : projects.entrySet()) {
+			IProject project = entry.getKey();
+			// no problems if the validation of the project failed
+			List<IncrementalErrorReporter> reporters = problems.get(project);
+			boolean structure = (entry.getValue() & STRUCTURE) != 0;
+			if (subMonitor.isCanceled() || (reporters == null && !structure)) {
+				continue;
+			}
+			IWorkspaceRunnable runnable = m -> {
+				if (structure) {
+					validateProjectStructure(project);
+				}
+				if (reporters != null) {
+					for (IncrementalErrorReporter reporter : reporters) {
+						reporter.applyMarkers();
+					}
+					if (touched.contains(project)) {
+						project.setSessionProperty(PDECore.TOUCH_PROJECT, null);
+					}
+				}
+			};
+			subMonitor.subTask(PDECoreMessages.Builders_updating);
+			try {
+				project.getWorkspace().run(runnable, project, IWorkspace.AVOID_UPDATE, subMonitor.split(1));
+			} catch (CoreException e) {
+				PDECore.log(e);
+			}
+		}
+	}
+
+	/**
+	 * Validates the files of the given projects, concurrently if there are
+	 * several projects.
+	 *
+	 * @return the problems found in each project, without the projects whose
+	 *         validation failed
+	 */
+	private Map<IProject, List<IncrementalErrorReporter>> collectProblems(Map<IProject, Integer> projects, SubMonitor monitor) {
+		Map<IProject, List<IncrementalErrorReporter>> problems = new HashMap<>();
+		int threads = Math.min(projects.size(), getValidationThreads());
+		if (threads <= 1) {
+			monitor.setWorkRemaining(projects.size());
+			for (Entry<IProject, Integer> entry : projects.entrySet()) {
+				problems.put(entry.getKey(), collectProblems(entry.getKey(), entry.getValue(), monitor.split(1)));
+			}
+		} else {
+			if (PDECore.DEBUG_VALIDATION) {
+				System.out.println("Validating " + projects.size() + " projects with changed dependencies using " + threads + " threads"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			collectProblems(projects, problems, threads, monitor);
 		}
+		return problems;
+	}
 
+	/**
+	 * Validates the files of the given projects in parallel. Returns once the
+	 * validation of all projects has completed, or has stopped if cancelled.
+	 */
+	private void collectProblems(Map<IProject, Integer> projects, Map<IProject, List<IncrementalErrorReporter>> problems, int threads, SubMonitor monitor) {
+		ExecutorService executor = getValidator(threads);
+		List<IProgressMonitor> monitors = new ArrayList<>(projects.size());
+		Map<IProject, Future<List<IncrementalErrorReporter>>> futures = new LinkedHashMap<>();
+		boolean completed = false;
+		try {
+			for (Entry<IProject, Integer> entry : projects.entrySet()) {
+				IProgressMonitor projectMonitor = new NullProgressMonitor();
+				monitors.add(projectMonitor);
+				futures.put(entry.getKey(), executor.submit(() -> collectProblems(entry.getKey(), entry.getValue(), projectMonitor)));
+			}
+			for (Entry<IProject, Future<List<IncrementalErrorReporter>>> entry : futures.entrySet()) {
+				if (monitor.isCanceled()) {
+					return;
+				}
+				monitor.subTask(NLS.bind(PDECoreMessages.Builders_verifying, entry.getKey().getName()));
+				try {
+					problems.put(entry.getKey(), entry.getValue().get());
+				} catch (ExecutionException e) {
+					PDECore.log(e.getCause());
+				}
+				monitor.worked(3);
+			}
+			completed = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (!completed) {
+				// do not return while projects are still being validated
+				monitors.forEach(m -> m.setCanceled(true));
+				awaitCompletion(futures.values());
+			}
+		}
+	}
+
+	/**
+	 * Waits until the given validations have completed, even if the calling
+	 * thread is interrupted.
+	 */
+	private static void awaitCompletion(Collection<Future<List<IncrementalErrorReporter>>> futures) {
+		boolean interrupted = false;
+		for (Future<List<IncrementalErrorReporter>> future : futures) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the pool of threads validating projects, sized to the given
+	 * number of threads. Idle threads are released after a while.
+	 */
+	private static synchronized ExecutorService getValidator(int threads) {
+		if (fgValidator == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			fgValidator = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+				Thread thread = new Thread(r, "Plug-in validation " + threadCount.incrementAndGet()); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			});
+			fgValidator.allowCoreThreadTimeOut(true);
+		} else if (threads > fgValidator.getMaximumPoolSize()) {
+			fgValidator.setMaximumPoolSize(threads);
+			fgValidator.setCorePoolSize(threads);
+		} else if (threads < fgValidator.getMaximumPoolSize()) {
+			fgValidator.setCorePoolSize(threads);
+			fgValidator.setMaximumPoolSize(threads);
+		}
+		return fgValidator;
+	}
+
+	/**
+	 * Number of threads validating projects concurrently, set with the
+	 * <code>pde.validation.threads</code> system property. Defaults to the
+	 * number of processors.
+	 */
+	private static int getValidationThreads() {
+		int defaultThreads = Runtime.getRuntime().availableProcessors();
+		try {
+			return Integer.parseInt(System.getProperty("pde.validation.threads", Integer.toString(defaultThreads))); //$NON-NLS-1$
+		} catch (NumberFormatException e) {
+			return defaultThreads;
+		}
+	}
+
+	/**
+	 * Validates the files of a project without changing any markers. Only
+	 * reads the project and the PDE models, so it may run concurrently for
+	 * several projects.
+	 *
+	 * @return the problems found, to be applied to the files of the project
+	 */
+	private List<IncrementalErrorReporter> collectProblems(IProject project, int type, IProgressMonitor monitor) {
+		SubMonitor subMonitor = SubMonitor.convert(monitor, 2);
+		List<IncrementalErrorReporter> problems = new ArrayList<>(3);
 		if ((type & (MANIFEST | EXTENSIONS)) != 0) {
-			IProject project = getProject();
 			IFile file = PDEProject.getPluginXml(project);
 			if (!file.exists()) {
 				file = PDEProject.getFragmentXml(project);
 			}
 
 			if (file.exists()) {
-				validateFiles(file, type, monitor);
+				validateFiles(project, file, type, problems, subMonitor.split(1));
 			} else if ((type & MANIFEST) != 0) {
 				IFile manifestFile = PDEProject.getManifest(project);
 				if (manifestFile.exists()) {
-					validateManifestFile(manifestFile, subMonitor.split(1));
+					validateManifestFile(manifestFile, problems, subMonitor.split(1));
 				}
 			}
 		}
+		subMonitor.setWorkRemaining(1);
 		if ((type & BUILD) != 0) {
-			validateBuildProperties(subMonitor.split(1));
+			validateBuildProperties(project, problems, subMonitor.split(1));
 		}
+		return problems;
 	}
 
-	private int getWorkAmount(int type) {
-		int work = 1;
-		if ((type & (MANIFEST | EXTENSIONS)) != 0) {
-			++work;
-		}
-		if ((type & BUILD) != 0) {
-			++work;
-		}
-		return work;
-	}
-
-	private void validateProjectStructure(int type, IProgressMonitor monitor) {
-		if (monitor.isCanceled()) {
-			return;
-		}
+	private void validateProjectStructure(IProject project) {
 		// clear markers from project
-		IProject project = getProject();
 		try {
 			project.deleteMarkers(PDEMarkerFactory.MARKER_ID, false, IResource.DEPTH_ZERO);
 		} catch (CoreException e) {
@@ -300,7 +544,7 @@ public class ManifestConsistencyChecker extends IncrementalProjectBuilder {
 		validateManifestCasing(project);
 	}
 
-	private void validateManifestFile(IFile file, IProgressMonitor monitor) {
+	private void validateManifestFile(IFile file, List<IncrementalErrorReporter> problems, IProgressMonitor monitor) {
 		if (monitor.isCanceled()) {
 			return;
 		}
@@ -308,19 +552,18 @@ public class ManifestConsistencyChecker extends IncrementalProjectBuilder {
 		monitor.subTask(message);
 
 		BundleErrorReporter reporter = new BundleErrorReporter(file);
-		reporter.validateContent(monitor);
-		monitor.subTask(PDECoreMessages.Builders_updating);
+		problems.add(reporter.collectProblems(monitor));
 		monitor.done();
 	}
 
-	private void validateFiles(IFile file, int type, IProgressMonitor monitor) {
+	private void validateFiles(IProject project, IFile file, int type, List<IncrementalErrorReporter> problems, IProgressMonitor monitor) {
 		if (monitor.isCanceled()) {
 			return;
 		}
 		String message = NLS.bind(PDECoreMessages.Builders_verifying, file.getFullPath().toString());
 		monitor.subTask(message);
 
-		IFile bundleManifest = PDEProject.getManifest(getProject());
+		IFile bundleManifest = PDEProject.getManifest(project);
 		XMLErrorReporter reporter = null;
 		BundleErrorReporter bundleReporter = null;
 		if (bundleManifest.exists()) {
@@ -331,34 +574,31 @@ public class ManifestConsistencyChecker extends IncrementalProjectBuilder {
 				bundleReporter = new BundleErrorReporter(bundleManifest);
 			}
 		} else if ((type & MANIFEST) != 0 || (type & EXTENSIONS) != 0) {
-			if (file.equals(PDEProject.getPluginXml(getProject()))) {
+			if (file.equals(PDEProject.getPluginXml(project))) {
 				reporter = new PluginErrorReporter(file);
-			} else if (file.equals(PDEProject.getFragmentXml(getProject()))) {
+			} else if (file.equals(PDEProject.getFragmentXml(project))) {
 				reporter = new FragmentErrorReporter(file);
 			}
 		}
 		if (reporter != null) {
 			DefaultSAXParser.parse(file, reporter);
-			reporter.validateContent(monitor);
-			monitor.subTask(PDECoreMessages.Builders_updating);
+			problems.add(reporter.collectProblems(monitor));
 		}
 		if (bundleReporter != null) {
-			bundleReporter.validateContent(monitor);
-			monitor.subTask(PDECoreMessages.Builders_updating);
+			problems.add(bundleReporter.collectProblems(monitor));
 		}
 		monitor.done();
 	}
 
-	private void validateBuildProperties(IProgressMonitor monitor) {
+	private void validateBuildProperties(IProject project, List<IncrementalErrorReporter> problems, IProgressMonitor monitor) {
 		if (monitor.isCanceled()) {
 			return;
 		}
-		IProject project = getProject();
 		IFile file = PDEProject.getBuildProperties(project);
 		if (file.exists()) {
 			monitor.subTask(PDECoreMessages.ManifestConsistencyChecker_buildPropertiesSubtask);
 			BuildErrorReporter ber = new BuildErrorReporter(file);
-			ber.validateContent(monitor);
+			problems.add(ber.collectProblems(monitor));
 		}
 	}
 
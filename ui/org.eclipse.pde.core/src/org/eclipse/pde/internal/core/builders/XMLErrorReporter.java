@@ -401,6 +401,18 @@ public abstract class XMLErrorReporter extends DefaultHandler {
 		fErrorReporter.applyMarkers();
 	}
 
+	/**
+	 * Validates the file without updating its markers. The problems found are
+	 * applied to the file later with {@link IncrementalErrorReporter#applyMarkers()}.
+	 *
+	 * @param monitor progress monitor
+	 * @return the problems found
+	 */
+	public final IncrementalErrorReporter collectProblems(IProgressMonitor monitor) {
+		validate(monitor);
+		return fErrorReporter;
+	}
+
 	protected abstract void validate(IProgressMonitor monitor);
 
 	public Element getDocumentRoot() {
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ *  Copyright (c) 2021 IBM Corporation and others.
+ *
+ *  This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License 2.0
+ *  which accompanies this distribution, and is available at
+ *  https://www.eclipse.org/legal/epl-2.0/
+ *
+ *  SPDX-License-Identifier: EPL-2.0
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core.exports;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.osgi.service.resolver.BaseDescription;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.ExportPackageDescription;
+import org.eclipse.osgi.service.resolver.HostSpecification;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.core.plugin.PluginRegistry;
+import org.eclipse.pde.internal.core.PDECore;
+
+/**
+ * Fingerprints of the plug-ins exported to a directory, used by the
+ * incremental export to skip the plug-ins that did not change since they were
+ * last exported to the same destination.
+ * <p>
+ * The fingerprint of a workspace plug-in covers the paths and time stamps of
+ * the files of its project, except derived resources and Java output folders,
+ * the compiler settings of the project, the export options, and the bundles it
+ * depends on. Workspace bundles depended on contribute their own fingerprint,
+ * so a plug-in is exported again when one of its workspace dependencies
+ * changed. The fingerprint and the artifacts created for each exported plug-in
+ * are stored in a properties file in the <code>.pde_export</code> folder of
+ * the destination.
+ * </p>
+ */
+public class ExportFingerprints {
+
+	private static final String FINGERPRINT_DIR = ".pde_export"; //$NON-NLS-1$
+	private static final String FINGERPRINT_KEY = "fingerprint"; //$NON-NLS-1$
+	private static final String ARTIFACTS_KEY = "artifacts"; //$NON-NLS-1$
+	private static final String PLUGINS_DIR = "plugins"; //$NON-NLS-1$
+
+	private static final String[] COMPILER_OPTIONS = {JavaCore.COMPILER_COMPLIANCE, JavaCore.COMPILER_SOURCE,
+			JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, JavaCore.COMPILER_PB_ENABLE_PREVIEW_FEATURES};
+
+	private final FeatureExportInfo fInfo;
+	private final File fDirectory;
+	private final Map<BundleDescription, String> fFingerprints = new HashMap<>();
+
+	/**
+	 * Start of the export, rounded down to seconds as some file systems do not
+	 * store more precise modification times
+	 */
+	private long fStart;
+
+	public ExportFingerprints(FeatureExportInfo info) {
+		fInfo = info;
+		fDirectory = new File(info.destinationDirectory, FINGERPRINT_DIR);
+	}
+
+	/**
+	 * Returns the items that must be exported: all given items except the
+	 * workspace plug-ins whose fingerprint is unchanged since their last
+	 * export and whose artifacts still exist in the destination. Must be
+	 * called before the export starts.
+	 *
+	 * @param items the items to export
+	 * @return the items to export again
+	 */
+	public Object[] getChangedItems(Object[] items) {
+		fStart = System.currentTimeMillis() / 1000 * 1000;
+		List<Object> changed = new ArrayList<>(items.length);
+		for (Object item : items) {
+			BundleDescription bundle = getWorkspaceBundle(item);
+			if (bundle == null || !isUpToDate(bundle)) {
+				changed.add(item);
+			}
+		}
+		return changed.toArray();
+	}
+
+	/**
+	 * Records the fingerprints and artifacts of the given exported items. Only
+	 * called if the export succeeded.
+	 *
+	 * @param items the items exported
+	 */
+	public void save(Object[] items) {
+		File plugins = new File(fInfo.destinationDirectory, PLUGINS_DIR);
+		for (Object item : items) {
+			BundleDescription bundle = getWorkspaceBundle(item);
+			if (bundle == null) {
+				continue;
+			}
+			File file = getFingerprintFile(bundle);
+			String fingerprint = getFingerprint(bundle, new HashSet<>());
+			List<String> artifacts = findArtifacts(plugins, bundle);
+			if (fingerprint == null || artifacts.isEmpty()) {
+				file.delete();
+				continue;
+			}
+			Properties properties = new Properties();
+			properties.setProperty(FINGERPRINT_KEY, fingerprint);
+			properties.setProperty(ARTIFACTS_KEY, String.join(",", artifacts)); //$NON-NLS-1$
+			fDirectory.mkdirs();
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+				properties.store(out, null);
+			} catch (IOException e) {
+				PDECore.log(e);
+			}
+		}
+	}
+
+	private boolean isUpToDate(BundleDescription bundle) {
+		File file = getFingerprintFile(bundle);
+		if (!file.isFile()) {
+			return false;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			properties.load(in);
+		} catch (IOException e) {
+			return false;
+		}
+		String fingerprint = getFingerprint(bundle, new HashSet<>());
+		String artifacts = properties.getProperty(ARTIFACTS_KEY);
+		if (fingerprint == null || !fingerprint.equals(properties.getProperty(FINGERPRINT_KEY)) || artifacts == null || artifacts.isEmpty()) {
+			return false;
+		}
+		for (String artifact : artifacts.split(",")) { //$NON-NLS-1$
+			if (!new File(fInfo.destinationDirectory, artifact).exists()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the jars and directories created in the plug-ins folder of the
+	 * destination for the given bundle and its source bundle since the export
+	 * started, relative to the destination.
+	 */
+	private List<String> findArtifacts(File plugins, BundleDescription bundle) {
+		List<String> artifacts = new ArrayList<>();
+		File[] files = plugins.listFiles();
+		if (files == null) {
+			return artifacts;
+		}
+		String prefix = bundle.getSymbolicName() + '_';
+		String sourcePrefix = bundle.getSymbolicName() + ".source_"; //$NON-NLS-1$
+		for (File file : files) {
+			String name = file.getName();
+			if ((name.startsWith(prefix) || name.startsWith(sourcePrefix)) && getLastModified(file) >= fStart) {
+				artifacts.add(PLUGINS_DIR + '/' + name);
+			}
+		}
+		return artifacts;
+	}
+
+	private static long getLastModified(File file) {
+		if (file.isDirectory()) {
+			// the manifest of an exported directory is always written again
+			return Math.max(file.lastModified(), new File(file, "META-INF/MANIFEST.MF").lastModified()); //$NON-NLS-1$
+		}
+		return file.lastModified();
+	}
+
+	private File getFingerprintFile(BundleDescription bundle) {
+		return new File(fDirectory, bundle.getSymbolicName() + ".properties"); //$NON-NLS-1$
+	}
+
+	private static BundleDescription getWorkspaceBundle(Object item) {
+		if (item instanceof IPluginModelBase) {
+			IPluginModelBase model = (IPluginModelBase) item;
+			if (model.getUnderlyingResource() != null) {
+				return model.getBundleDescription();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the fingerprint of a workspace bundle, computed once per export.
+	 *
+	 * @param visiting the bundles whose fingerprint is being computed, to
+	 *            break dependency cycles
+	 * @return the fingerprint or <code>null</code> if it cannot be computed
+	 */
+	private String getFingerprint(BundleDescription bundle, Set<BundleDescription> visiting) {
+		if (fFingerprints.containsKey(bundle)) {
+			return fFingerprints.get(bundle);
+		}
+		IPluginModelBase model = PluginRegistry.findModel(bundle);
+		if (model == null || model.getUnderlyingResource() == null) {
+			return null;
+		}
+		visiting.add(bundle);
+		String fingerprint = null;
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			update(digest, bundle.getSymbolicName() + '_' + bundle.getVersion());
+			update(digest, getExportOptions());
+			IProject project = model.getUnderlyingResource().getProject();
+			updateWithProject(digest, project);
+			for (BundleDescription dependency : getDependencies(bundle)) {
+				String dependencyFingerprint = null;
+				if (!visiting.contains(dependency)) {
+					dependencyFingerprint = getFingerprint(dependency, visiting);
+				}
+				update(digest, dependency.getSymbolicName() + '_' + dependency.getVersion());
+				if (dependencyFingerprint != null) {
+					update(digest, dependencyFingerprint);
+				}
+			}
+			StringBuilder buffer = new StringBuilder();
+			for (byte b : digest.digest()) {
+				buffer.append(String.format("%02x", b)); //$NON-NLS-1$
+			}
+			fingerprint = buffer.toString();
+		} catch (NoSuchAlgorithmException | CoreException e) {
+			PDECore.log(e);
+		} finally {
+			visiting.remove(bundle);
+		}
+		fFingerprints.put(bundle, fingerprint);
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the bundles the given bundle depends on, in a stable order.
+	 */
+	private static List<BundleDescription> getDependencies(BundleDescription bundle) {
+		Set<BundleDescription> dependencies = new HashSet<>(Arrays.asList(bundle.getResolvedRequires()));
+		for (ExportPackageDescription imported : bundle.getResolvedImports()) {
+			dependencies.add(imported.getExporter());
+		}
+		HostSpecification host = bundle.getHost();
+		if (host != null) {
+			BaseDescription supplier = host.getSupplier();
+			if (supplier instanceof BundleDescription) {
+				dependencies.add((BundleDescription) supplier);
+			}
+		}
+		dependencies.remove(bundle);
+		dependencies.remove(null);
+		List<BundleDescription> sorted = new ArrayList<>(dependencies);
+		sorted.sort(Comparator.comparing(BundleDescription::getSymbolicName, Comparator.nullsFirst(Comparator.naturalOrder()))
+				.thenComparing(BundleDescription::getVersion));
+		return sorted;
+	}
+
+	private String getExportOptions() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append(fInfo.useJarFormat).append(',');
+		buffer.append(fInfo.exportSource).append(',');
+		buffer.append(fInfo.exportSourceBundle).append(',');
+		buffer.append(fInfo.allowBinaryCycles).append(',');
+		buffer.append(fInfo.useWorkspaceCompiledClasses).append(',');
+		buffer.append(fInfo.qualifier).append(',');
+		buffer.append(fInfo.signingInfo != null ? fInfo.signingInfo[0] : null).append(',');
+		buffer.append(fInfo.jnlpInfo != null ? String.join(",", fInfo.jnlpInfo) : null); //$NON-NLS-1$
+		return buffer.toString();
+	}
+
+	private static void updateWithProject(MessageDigest digest, IProject project) throws CoreException {
+		Set<IPath> outputLocations = new HashSet<>();
+		if (project.hasNature(JavaCore.NATURE_ID)) {
+			IJavaProject javaProject = JavaCore.create(project);
+			outputLocations.add(javaProject.getOutputLocation());
+			for (IClasspathEntry entry : javaProject.getRawClasspath()) {
+				if (entry.getOutputLocation() != null) {
+					outputLocations.add(entry.getOutputLocation());
+				}
+			}
+			for (String option : COMPILER_OPTIONS) {
+				update(digest, option + '=' + javaProject.getOption(option, true));
+			}
+		}
+		project.accept(resource -> {
+			if (resource.isDerived() || resource.isTeamPrivateMember() || outputLocations.contains(resource.getFullPath())) {
+				return false;
+			}
+			if (resource.getType() == IResource.FILE) {
+				update(digest, resource.getProjectRelativePath().toString() + '@' + resource.getLocalTimeStamp());
+			}
+			return true;
+		});
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2016 IBM Corporation and others.
+ * Copyright (c) 2006, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -46,9 +46,19 @@ public abstract class FeatureBasedExportOperation extends FeatureExportOperation
 	@Override
 	protected IStatus run(IProgressMonitor monitor) {
 		SubMonitor subMonitor = SubMonitor.convert(monitor, "Exporting...", 33); //$NON-NLS-1$
+		Object[] items = fInfo.items;
 		try {
 			createDestination();
 
+			ExportFingerprints fingerprints = null;
+			if (isIncremental()) {
+				fingerprints = new ExportFingerprints(fInfo);
+				fInfo.items = fingerprints.getChangedItems(items);
+				if (fInfo.items.length == 0) {
+					return Status.OK_STATUS;
+				}
+			}
+
 			// create a feature to contain all plug-ins
 			String featureID = "org.eclipse.pde.container.feature"; //$NON-NLS-1$
 			fFeatureLocation = fBuildTempLocation + File.separator + featureID;
@@ -63,6 +73,9 @@ public abstract class FeatureBasedExportOperation extends FeatureExportOperation
 			if (subMonitor.isCanceled()) {
 				return Status.CANCEL_STATUS;
 			}
+			if (fingerprints != null && !hasAntErrors()) {
+				fingerprints.save(fInfo.items);
+			}
 			return status;
 		} catch (IOException e) {
 			return new Status(IStatus.ERROR, PDECore.PLUGIN_ID, PDECoreMessages.FeatureBasedExportOperation_ProblemDuringExport, e);
@@ -81,9 +94,19 @@ public abstract class FeatureBasedExportOperation extends FeatureExportOperation
 				}
 			}
 			cleanup(subMonitor.split(3));
+			fInfo.items = items;
 		}
 	}
 
+	/**
+	 * Whether the plug-ins unchanged since their last export are skipped. Only
+	 * supported when exporting to a directory without p2 metadata, as archives
+	 * and metadata repositories are created anew on every export.
+	 */
+	protected boolean isIncremental() {
+		return fInfo.incremental && fInfo.toDirectory && !publishingP2Metadata();
+	}
+
 	protected abstract void createPostProcessingFiles();
 
 	@Override
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2009 IBM Corporation and others.
+ * Copyright (c) 2005, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -30,5 +30,10 @@ public class FeatureExportInfo {
 	public String[] jnlpInfo;
 	public String[][] targets;
 	public String categoryDefinition;
+	/**
+	 * Whether plug-ins unchanged since their last export to the destination
+	 * directory are skipped, see {@link ExportFingerprints}
+	 */
+	public boolean incremental;
 
 }
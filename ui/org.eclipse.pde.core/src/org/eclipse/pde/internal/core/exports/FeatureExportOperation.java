@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2020 IBM Corporation and others.
+ * Copyright (c) 2006, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -26,17 +26,22 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.stream.Stream;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
@@ -323,17 +328,23 @@ public class FeatureExportOperation extends Job {
 
 		}
 
-		subMonitor.setTaskName(PDECoreMessages.FeatureExportOperation_runningAssemblyScript);
-		for (String[] config : configs) {
-			setArchiveLocation(properties, config[0], config[1], config[2]);
-			runScript(getAssemblyScriptName(featureID, config[0], config[1], config[2], featureLocation), new String[] {"main"}, //$NON-NLS-1$
-					properties, subMonitor.split(2));
-		}
+		int threads = Math.min(configs.length, getAssemblyThreads());
+		if (threads > 1) {
+			subMonitor.setTaskName(PDECoreMessages.FeatureExportOperation_runningAssemblyScript);
+			runConfigurationScripts(featureID, featureLocation, configs, properties, threads, subMonitor.split(configs.length * 4));
+		} else {
+			subMonitor.setTaskName(PDECoreMessages.FeatureExportOperation_runningAssemblyScript);
+			for (String[] config : configs) {
+				setArchiveLocation(properties, config[0], config[1], config[2]);
+				runScript(getAssemblyScriptName(featureID, config[0], config[1], config[2], featureLocation), new String[] {"main"}, //$NON-NLS-1$
+						properties, subMonitor.split(2));
+			}
 
-		subMonitor.setTaskName(PDECoreMessages.FeatureExportOperation_runningPackagerScript);
-		for (String[] config : configs) {
-			setArchiveLocation(properties, config[0], config[1], config[2]);
-			runScript(getPackagerScriptName(featureID, config[0], config[1], config[2], featureLocation), null, properties, subMonitor.split(2));
+			subMonitor.setTaskName(PDECoreMessages.FeatureExportOperation_runningPackagerScript);
+			for (String[] config : configs) {
+				setArchiveLocation(properties, config[0], config[1], config[2]);
+				runScript(getPackagerScriptName(featureID, config[0], config[1], config[2], featureLocation), null, properties, subMonitor.split(2));
+			}
 		}
 		properties.put("destination.temp.folder", fBuildTempLocation + "/pde.logs"); //$NON-NLS-1$ //$NON-NLS-2$
 		runScript(getBuildScriptName(featureLocation), new String[] {"gather.logs"}, properties, subMonitor.split(2)); //$NON-NLS-1$
@@ -344,6 +355,227 @@ public class FeatureExportOperation extends Job {
 		return publishingP2Metadata();
 	}
 
+	/**
+	 * Runs the assembly and packager scripts of the given configurations in
+	 * parallel. An Eclipse Ant runner only runs one build at a time, so the
+	 * scripts are run from a single generated script using the Ant
+	 * <code>parallel</code> task. Each configuration is assembled in its own
+	 * temporary folder and logs to its own file in the folder gathering the
+	 * export logs. Errors are reported to the {@link #errorFound()} flag as
+	 * for the other scripts.
+	 * <p>
+	 * When p2 metadata is published, each configuration publishes to its own
+	 * copy of the build repository and mirrors to its own repositories, which
+	 * are merged into the destination repositories once all configurations
+	 * are assembled.
+	 * </p>
+	 */
+	protected void runConfigurationScripts(String featureID, String featureLocation, String[][] configs, Map<String, String> properties, int threads, IProgressMonitor monitor) throws InvocationTargetException, CoreException {
+		SubMonitor subMonitor = SubMonitor.convert(monitor, 10);
+		boolean separateRepositories = properties.containsKey(IBuildPropertiesConstants.PROPERTY_P2_BUILD_REPO);
+		File repositoriesLocation = new File(fBuildTempLocation, "p2.configurations"); //$NON-NLS-1$
+		File scriptFile = null;
+		try {
+			scriptFile = createScriptFile("assemble.configurations.xml"); //$NON-NLS-1$
+			File logLocation = new File(fBuildTempLocation, "pde.logs"); //$NON-NLS-1$
+			logLocation.mkdirs();
+			if (separateRepositories) {
+				deleteDir(repositoriesLocation);
+			}
+
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			Document doc = factory.newDocumentBuilder().newDocument();
+
+			Element root = doc.createElement("project"); //$NON-NLS-1$
+			root.setAttribute("name", "temp"); //$NON-NLS-1$ //$NON-NLS-2$
+			root.setAttribute("default", "main"); //$NON-NLS-1$ //$NON-NLS-2$
+			root.setAttribute("basedir", "."); //$NON-NLS-1$ //$NON-NLS-2$
+			doc.appendChild(root);
+
+			Element target = doc.createElement("target"); //$NON-NLS-1$
+			target.setAttribute("name", "main"); //$NON-NLS-1$ //$NON-NLS-2$
+			Element parallel = doc.createElement("parallel"); //$NON-NLS-1$
+			parallel.setAttribute("threadCount", Integer.toString(threads)); //$NON-NLS-1$
+			parallel.setAttribute("failonany", "false"); //$NON-NLS-1$ //$NON-NLS-2$
+			for (String[] config : configs) {
+				String configName = config[0] + '.' + config[1] + '.' + config[2];
+				Map<String, String> configProperties = new HashMap<>();
+				setArchiveLocation(configProperties, config[0], config[1], config[2]);
+				if (!configProperties.containsKey(IXMLConstants.PROPERTY_ASSEMBLY_TMP)) {
+					configProperties.put(IXMLConstants.PROPERTY_ASSEMBLY_TMP, fBuildTempLocation + "/assemblyLocation/" + configName); //$NON-NLS-1$
+				}
+				if (separateRepositories) {
+					File configRepositories = new File(repositoriesLocation, configName);
+					File buildRepository = new File(configRepositories, "build"); //$NON-NLS-1$
+					copyBuildRepository(new File(fBuildTempMetadataLocation), buildRepository);
+					String repository = new File(configRepositories, "repository").toURI().toString(); //$NON-NLS-1$
+					configProperties.put(IBuildPropertiesConstants.PROPERTY_P2_BUILD_REPO, buildRepository.toURI().toString());
+					configProperties.put(IBuildPropertiesConstants.PROPERTY_P2_METADATA_REPO, repository);
+					configProperties.put(IBuildPropertiesConstants.PROPERTY_P2_ARTIFACT_REPO, repository);
+				}
+				String log = new File(logLocation, configName + ".log").getAbsolutePath(); //$NON-NLS-1$
+				Element sequential = doc.createElement("sequential"); //$NON-NLS-1$
+				sequential.appendChild(createAntCall(doc, getAssemblyScriptName(featureID, config[0], config[1], config[2], featureLocation), "main", configProperties, log, false)); //$NON-NLS-1$
+				sequential.appendChild(createAntCall(doc, getPackagerScriptName(featureID, config[0], config[1], config[2], featureLocation), null, configProperties, log, true));
+				parallel.appendChild(sequential);
+			}
+			target.appendChild(parallel);
+			root.appendChild(target);
+			XMLPrintHandler.writeFile(doc, scriptFile);
+
+			// user properties would override the properties of each configuration
+			Map<String, String> sharedProperties = new HashMap<>(properties);
+			sharedProperties.remove(IXMLConstants.PROPERTY_ARCHIVE_FULLPATH);
+			sharedProperties.remove(IXMLConstants.PROPERTY_ASSEMBLY_TMP);
+			sharedProperties.remove(IBuildPropertiesConstants.PROPERTY_P2_BUILD_REPO);
+			sharedProperties.remove(IBuildPropertiesConstants.PROPERTY_P2_METADATA_REPO);
+			sharedProperties.remove(IBuildPropertiesConstants.PROPERTY_P2_ARTIFACT_REPO);
+			runScript(scriptFile.getAbsolutePath(), new String[] {"main"}, sharedProperties, subMonitor.split(9)); //$NON-NLS-1$
+		} catch (FactoryConfigurationError | ParserConfigurationException | IOException e) {
+			throw new InvocationTargetException(e);
+		} finally {
+			if (scriptFile != null && scriptFile.exists()) {
+				scriptFile.delete();
+			}
+		}
+		if (separateRepositories) {
+			mergeConfigurationRepositories(repositoriesLocation, configs, properties, subMonitor.split(1));
+		}
+	}
+
+	/**
+	 * Copies the build repository a configuration publishes to. The
+	 * repository indexes are rewritten when publishing, so they are copied,
+	 * while the published artifacts are linked when the file system allows
+	 * it.
+	 */
+	private void copyBuildRepository(File source, File destination) throws IOException {
+		destination.mkdirs();
+		if (!source.isDirectory()) {
+			return;
+		}
+		java.nio.file.Path sourcePath = source.toPath();
+		java.nio.file.Path destinationPath = destination.toPath();
+		try (Stream<java.nio.file.Path> paths = Files.walk(sourcePath)) {
+			for (Iterator<java.nio.file.Path> iterator = paths.iterator(); iterator.hasNext();) {
+				java.nio.file.Path path = iterator.next();
+				java.nio.file.Path copy = destinationPath.resolve(sourcePath.relativize(path));
+				if (Files.isDirectory(path)) {
+					Files.createDirectories(copy);
+				} else if (path.getParent().equals(sourcePath)) {
+					Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+				} else {
+					try {
+						Files.createLink(copy, path);
+					} catch (IOException | UnsupportedOperationException e) {
+						Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mirrors the repositories of the assembled configurations into the
+	 * destination repositories, one after the other. Configurations that
+	 * failed before mirroring to their repositories are skipped, their errors
+	 * are already reported.
+	 */
+	private void mergeConfigurationRepositories(File repositoriesLocation, String[][] configs, Map<String, String> properties, IProgressMonitor monitor) throws InvocationTargetException, CoreException {
+		String metadataRepository = properties.get(IBuildPropertiesConstants.PROPERTY_P2_METADATA_REPO);
+		String artifactRepository = properties.get(IBuildPropertiesConstants.PROPERTY_P2_ARTIFACT_REPO);
+		if (metadataRepository == null && artifactRepository == null) {
+			return;
+		}
+		File scriptFile = null;
+		try {
+			scriptFile = createScriptFile("merge.configurations.xml"); //$NON-NLS-1$
+
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			Document doc = factory.newDocumentBuilder().newDocument();
+
+			Element root = doc.createElement("project"); //$NON-NLS-1$
+			root.setAttribute("name", "temp"); //$NON-NLS-1$ //$NON-NLS-2$
+			root.setAttribute("default", "main"); //$NON-NLS-1$ //$NON-NLS-2$
+			root.setAttribute("basedir", "."); //$NON-NLS-1$ //$NON-NLS-2$
+			doc.appendChild(root);
+
+			Element target = doc.createElement("target"); //$NON-NLS-1$
+			target.setAttribute("name", "main"); //$NON-NLS-1$ //$NON-NLS-2$
+			for (String[] config : configs) {
+				File repository = new File(repositoriesLocation, config[0] + '.' + config[1] + '.' + config[2] + "/repository"); //$NON-NLS-1$
+				if (!repository.isDirectory()) {
+					continue;
+				}
+				Element mirror = doc.createElement("p2.mirror"); //$NON-NLS-1$
+				mirror.setAttribute("source", repository.toURI().toString()); //$NON-NLS-1$
+				if (metadataRepository != null) {
+					mirror.appendChild(createMirrorDestination(doc, "metadata", metadataRepository, properties.get(IBuildPropertiesConstants.PROPERTY_P2_METADATA_REPO_NAME), properties)); //$NON-NLS-1$
+				}
+				if (artifactRepository != null) {
+					mirror.appendChild(createMirrorDestination(doc, "artifact", artifactRepository, properties.get(IBuildPropertiesConstants.PROPERTY_P2_ARTIFACT_REPO_NAME), properties)); //$NON-NLS-1$
+				}
+				target.appendChild(mirror);
+			}
+			root.appendChild(target);
+			XMLPrintHandler.writeFile(doc, scriptFile);
+
+			runScript(scriptFile.getAbsolutePath(), new String[] {"main"}, properties, monitor); //$NON-NLS-1$
+		} catch (FactoryConfigurationError | ParserConfigurationException | IOException e) {
+			throw new InvocationTargetException(e);
+		} finally {
+			if (scriptFile != null && scriptFile.exists()) {
+				scriptFile.delete();
+			}
+		}
+	}
+
+	private Element createMirrorDestination(Document doc, String kind, String location, String name, Map<String, String> properties) {
+		Element destination = doc.createElement("destination"); //$NON-NLS-1$
+		destination.setAttribute("kind", kind); //$NON-NLS-1$
+		destination.setAttribute("location", location); //$NON-NLS-1$
+		if (name != null) {
+			destination.setAttribute("name", name); //$NON-NLS-1$
+		}
+		destination.setAttribute("compressed", Boolean.toString(IBuildPropertiesConstants.TRUE.equals(properties.get(IBuildPropertiesConstants.PROPERTY_P2_COMPRESS)))); //$NON-NLS-1$
+		destination.setAttribute("append", IBuildPropertiesConstants.TRUE); //$NON-NLS-1$
+		return destination;
+	}
+
+	private Element createAntCall(Document doc, String script, String target, Map<String, String> properties, String log, boolean append) {
+		Element ant = doc.createElement("ant"); //$NON-NLS-1$
+		ant.setAttribute("antfile", script); //$NON-NLS-1$
+		if (target != null) {
+			ant.setAttribute("target", target); //$NON-NLS-1$
+		}
+		ant.setAttribute("inheritAll", "false"); //$NON-NLS-1$ //$NON-NLS-2$
+		ant.setAttribute("useNativeBasedir", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+		ant.setAttribute("output", log); //$NON-NLS-1$
+		if (append) {
+			ant.setAttribute("append", "true"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		for (Entry<String, String> entry : properties.entrySet()) {
+			Element property = doc.createElement("property"); //$NON-NLS-1$
+			property.setAttribute("name", entry.getKey()); //$NON-NLS-1$
+			property.setAttribute("value", entry.getValue()); //$NON-NLS-1$
+			ant.appendChild(property);
+		}
+		return ant;
+	}
+
+	/**
+	 * Maximum number of configurations assembled and packaged at the same
+	 * time, set with the <code>pde.export.threads</code> system property.
+	 */
+	private static int getAssemblyThreads() {
+		int defaultThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+		try {
+			return Integer.parseInt(System.getProperty("pde.export.threads", Integer.toString(defaultThreads))); //$NON-NLS-1$
+		} catch (NumberFormatException e) {
+			return defaultThreads;
+		}
+	}
+
 	private void setArchiveLocation(Map<String, String> antProperties, String os, String ws, String arch) {
 		if (!fInfo.toDirectory) {
 			String filename = fInfo.zipFileName;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2013 IBM Corporation and others.
+ * Copyright (c) 2005, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -14,53 +14,196 @@
 package org.eclipse.pde.internal.core.schema;
 
 import java.io.File;
+import java.lang.ref.SoftReference;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.pde.core.plugin.IFragment;
 import org.eclipse.pde.core.plugin.IFragmentModel;
 import org.eclipse.pde.core.plugin.IPluginBase;
+import org.eclipse.pde.core.plugin.IPluginExtension;
 import org.eclipse.pde.core.plugin.IPluginExtensionPoint;
 import org.eclipse.pde.core.plugin.IPluginModelBase;
 import org.eclipse.pde.core.plugin.ModelEntry;
 import org.eclipse.pde.core.plugin.PluginRegistry;
+import org.eclipse.pde.internal.core.IExtensionDeltaEvent;
+import org.eclipse.pde.internal.core.IExtensionDeltaListener;
+import org.eclipse.pde.internal.core.IPluginModelListener;
 import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.PDECoreMessages;
+import org.eclipse.pde.internal.core.PluginModelDelta;
+import org.eclipse.pde.internal.core.PluginModelManager;
 import org.eclipse.pde.internal.core.SourceLocationManager;
 import org.eclipse.pde.internal.core.ischema.ISchema;
 import org.eclipse.pde.internal.core.ischema.ISchemaDescriptor;
 import org.eclipse.pde.internal.core.text.plugin.PluginExtensionPointNode;
 import org.eclipse.pde.internal.core.util.CoreUtility;
 
-public class SchemaRegistry {
+public class SchemaRegistry implements IPluginModelListener, IExtensionDeltaListener {
 
-	private final HashMap<String, ISchemaDescriptor> fRegistry = new HashMap<>();
+	/**
+	 * Maximum number of schema descriptors kept, the least recently used
+	 * descriptors and their parsed schemas are released first
+	 */
+	private static final int MAX_DESCRIPTORS = 500;
+
+	/**
+	 * Schema descriptors keyed by extension point id or by URL for included
+	 * schemas, in access order. The descriptors are softly referenced, so
+	 * their parsed schemas are also released when memory runs low. Access must
+	 * be synchronized on the map.
+	 */
+	private final Map<String, SoftReference<ISchemaDescriptor>> fRegistry = new LinkedHashMap<String, SoftReference<ISchemaDescriptor>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SoftReference<ISchemaDescriptor>> eldest) {
+			return size() > MAX_DESCRIPTORS;
+		}
+	};
+
+	/**
+	 * Schema URLs keyed by extension point id, an empty value if the
+	 * extension point does not exist. Cleared whenever plug-in models or their
+	 * extensions change.
+	 */
+	private final Map<String, Optional<URL>> fSchemaURLs = new ConcurrentHashMap<>();
+
+	/**
+	 * Incremented whenever the schema URLs are cleared, so that a URL looked
+	 * up before is not remembered after the clear
+	 */
+	private final AtomicLong fGeneration = new AtomicLong();
+
+	private Job fWarmUpJob;
+
+	public SchemaRegistry() {
+		PluginModelManager manager = PDECore.getDefault().getModelManager();
+		manager.addPluginModelListener(this);
+		manager.addExtensionDeltaListener(this);
+	}
 
 	public ISchema getSchema(String extPointID) {
-		IPluginExtensionPoint point = PDECore.getDefault().getExtensionsRegistry().findExtensionPoint(extPointID);
-		if (point == null) {
+		return getSchema(extPointID, true);
+	}
+
+	private ISchema getSchema(String extPointID, boolean retry) {
+		long generation = fGeneration.get();
+		Optional<URL> url = fSchemaURLs.get(extPointID);
+		if (url == null) {
+			IPluginExtensionPoint point = PDECore.getDefault().getExtensionsRegistry().findExtensionPoint(extPointID);
+			if (point == null) {
+				url = Optional.empty();
+			} else {
+				URL schemaURL = getSchemaURL(point);
+				if (schemaURL == null) {
+					// not remembered, the schema file may still be created
+					return null;
+				}
+				url = Optional.of(schemaURL);
+			}
+			fSchemaURLs.put(extPointID, url);
+			if (fGeneration.get() != generation) {
+				// cleared while looking up the URL, which may be outdated
+				fSchemaURLs.remove(extPointID, url);
+			}
+		}
+		if (!url.isPresent()) {
 			// if there is an old schema associated with this extension point, release it.
-			if (fRegistry.containsKey(extPointID)) {
+			synchronized (fRegistry) {
 				fRegistry.remove(extPointID);
 			}
 			return null;
 		}
 
-		URL url = getSchemaURL(point);
-		if (url == null) {
-			return null;
+		ISchemaDescriptor desc;
+		synchronized (fRegistry) {
+			desc = getExistingDescriptor(extPointID, url.get());
+			if (desc == null && !isMissing(url.get())) {
+				desc = new SchemaDescriptor(extPointID, url.get());
+				fRegistry.put(extPointID, new SoftReference<>(desc));
+			}
 		}
-
-		ISchemaDescriptor desc = getExistingDescriptor(extPointID, url);
 		if (desc == null) {
-			desc = new SchemaDescriptor(extPointID, url);
-			fRegistry.put(extPointID, desc);
+			// the schema file was removed, look it up again
+			fSchemaURLs.remove(extPointID, url);
+			return retry ? getSchema(extPointID, false) : null;
 		}
-
+		// parse outside of the lock, descriptors synchronize their own loading
 		return desc.getSchema(true);
 	}
 
+	/**
+	 * Returns whether the given schema file does not exist. Only checked when
+	 * no valid descriptor is kept for the schema.
+	 */
+	private static boolean isMissing(URL url) {
+		return "file".equals(url.getProtocol()) && !new File(url.getFile()).exists(); //$NON-NLS-1$
+	}
+
+	/**
+	 * Parses the schemas of all extension points used by workspace plug-ins in
+	 * a background job, so that they are available when the extensions are
+	 * validated or edited.
+	 */
+	public synchronized void warmUp() {
+		if (fWarmUpJob == null) {
+			fWarmUpJob = Job.create(PDECoreMessages.SchemaRegistry_loadingSchemas, this::loadWorkspaceSchemas);
+			fWarmUpJob.setSystem(true);
+			fWarmUpJob.setPriority(Job.DECORATE);
+		}
+		fWarmUpJob.cancel();
+		fWarmUpJob.schedule();
+	}
+
+	private IStatus loadWorkspaceSchemas(IProgressMonitor monitor) {
+		Set<String> points = new LinkedHashSet<>();
+		for (IPluginModelBase model : PluginRegistry.getWorkspaceModels()) {
+			for (IPluginExtension extension : model.getPluginBase().getExtensions()) {
+				if (extension.getPoint() != null) {
+					points.add(extension.getPoint());
+				}
+			}
+		}
+		SubMonitor subMonitor = SubMonitor.convert(monitor, points.size());
+		for (String point : points) {
+			if (subMonitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+			getSchema(point);
+			subMonitor.split(1);
+		}
+		return Status.OK_STATUS;
+	}
+
+	@Override
+	public void modelsChanged(PluginModelDelta delta) {
+		clearSchemaURLs();
+	}
+
+	@Override
+	public void extensionsChanged(IExtensionDeltaEvent event) {
+		clearSchemaURLs();
+	}
+
+	private void clearSchemaURLs() {
+		fGeneration.incrementAndGet();
+		fSchemaURLs.clear();
+	}
+
 	public ISchema getIncludedSchema(ISchemaDescriptor parent, String schemaLocation) {
 		try {
 			URL url = IncludedSchemaDescriptor.computeURL(parent, schemaLocation, null);
@@ -68,10 +211,13 @@ public class SchemaRegistry {
 				return null;
 			}
 
-			ISchemaDescriptor desc = getExistingDescriptor(url.toString(), url);
-			if (desc == null) {
-				desc = new IncludedSchemaDescriptor(url);
-				fRegistry.put(url.toString(), desc);
+			ISchemaDescriptor desc;
+			synchronized (fRegistry) {
+				desc = getExistingDescriptor(url.toString(), url);
+				if (desc == null) {
+					desc = new IncludedSchemaDescriptor(url);
+					fRegistry.put(url.toString(), new SoftReference<>(desc));
+				}
 			}
 			return desc.getSchema(true);
 		} catch (MalformedURLException e) {
@@ -80,12 +226,10 @@ public class SchemaRegistry {
 	}
 
 	private ISchemaDescriptor getExistingDescriptor(String key, URL url) {
-		ISchemaDescriptor desc = null;
-		if (fRegistry.containsKey(key)) {
-			desc = fRegistry.get(key);
-			if (hasSchemaChanged(desc, url)) {
-				desc = null;
-			}
+		SoftReference<ISchemaDescriptor> reference = fRegistry.get(key);
+		ISchemaDescriptor desc = reference != null ? reference.get() : null;
+		if (desc != null && hasSchemaChanged(desc, url)) {
+			desc = null;
 		}
 		return desc;
 	}
@@ -183,7 +327,19 @@ public class SchemaRegistry {
 	}
 
 	public void shutdown() {
-		fRegistry.clear();
+		synchronized (this) {
+			if (fWarmUpJob != null) {
+				fWarmUpJob.cancel();
+				fWarmUpJob = null;
+			}
+		}
+		PluginModelManager manager = PDECore.getDefault().getModelManager();
+		manager.removePluginModelListener(this);
+		manager.removeExtensionDeltaListener(this);
+		synchronized (fRegistry) {
+			fRegistry.clear();
+		}
+		clearSchemaURLs();
 	}
 
 	private static String getId(IPluginExtensionPoint point, IPluginModelBase base) {
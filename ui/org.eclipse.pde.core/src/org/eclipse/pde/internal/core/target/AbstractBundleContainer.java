@@ -282,4 +282,18 @@ public abstract class AbstractBundleContainer extends PlatformObject implements
 		return null;
 	}
 
+	/**
+	 * Returns a string that is equal for two containers exactly when the
+	 * containers are equal, used to compute the content hash of a target
+	 * definition. Returns <code>null</code> by default, in which case the
+	 * content hash of the target cannot be used to compare its content.
+	 *
+	 * @return a string identifying the content of this container or
+	 *         <code>null</code>
+	 * @see TargetDefinition#getContentHash()
+	 */
+	String getContentKey() {
+		return null;
+	}
+
 }
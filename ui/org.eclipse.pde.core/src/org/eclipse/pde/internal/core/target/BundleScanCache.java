@@ -0,0 +1,296 @@
+/*******************************************************************************
+ *  Copyright (c) 2021 IBM Corporation and others.
+ *
+ *  This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License 2.0
+ *  which accompanies this distribution, and is available at
+ *  https://www.eclipse.org/legal/epl-2.0/
+ *
+ *  SPDX-License-Identifier: EPL-2.0
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core.target;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.internal.core.ICoreConstants;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.util.ManifestUtils;
+import org.osgi.framework.Constants;
+
+/**
+ * Persistent cache of the manifest headers of the bundles found in target
+ * locations, so that resolving a target only opens the bundles that changed
+ * since the last resolve.
+ * <p>
+ * The cache is kept per directory containing bundles, so it is shared by all
+ * targets and locations pointing to the same directory. An entry is valid as
+ * long as the size and modification time of the bundle jar, or of the manifest
+ * of a bundle directory, are unchanged. Only the headers needed to create a
+ * {@link org.eclipse.pde.core.target.TargetBundle} are recorded.
+ * </p>
+ * <p>
+ * Changed directories are written to the PDE state location by {@link #save()},
+ * which is called at the end of every target resolution. Only the most
+ * recently scanned directories are kept in memory, others are written when
+ * they are dropped and read again when scanned next. The cache files are named
+ * by a digest of the directory and record the directory they were written
+ * for.
+ * </p>
+ */
+public class BundleScanCache {
+
+	/**
+	 * Location inside the PDE metadata area where the scanned directories are
+	 * stored, one properties file per directory
+	 */
+	private static final String CACHE_DIR = ".bundle_scan"; //$NON-NLS-1$
+
+	private static final String LOCATION_KEY = "@location"; //$NON-NLS-1$
+	private static final String STAMP_SUFFIX = "@stamp"; //$NON-NLS-1$
+
+	/**
+	 * The manifest headers recorded for each bundle
+	 */
+	private static final String[] HEADERS = { Constants.BUNDLE_SYMBOLICNAME, Constants.BUNDLE_VERSION,
+			Constants.FRAGMENT_HOST, Constants.BUNDLE_CLASSPATH, ICoreConstants.ECLIPSE_SOURCE_BUNDLE };
+
+	/**
+	 * Maximum number of directories kept in memory, the least recently used
+	 * directory is written to the PDE state location and dropped beyond that
+	 */
+	private static final int MAX_DIRECTORIES = 32;
+
+	private static final Map<File, DirectoryScan> fgScans = new LinkedHashMap<File, DirectoryScan>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, DirectoryScan> eldest) {
+			if (size() <= MAX_DIRECTORIES) {
+				return false;
+			}
+			store(eldest.getValue());
+			return true;
+		}
+	};
+
+	/**
+	 * The recorded bundles of a single directory
+	 */
+	private static class DirectoryScan {
+		final File directory;
+		final Map<String, Entry> entries = new HashMap<>();
+		boolean dirty;
+
+		DirectoryScan(File directory) {
+			this.directory = directory;
+		}
+	}
+
+	private static class Entry {
+		final String stamp;
+		final Map<String, String> headers;
+
+		Entry(String stamp, Map<String, String> headers) {
+			this.stamp = stamp;
+			this.headers = headers;
+		}
+	}
+
+	private BundleScanCache() {
+	}
+
+	/**
+	 * Returns the manifest headers of the given bundle needed to describe it in
+	 * a target, reading the manifest only if the bundle changed since it was
+	 * last scanned.
+	 *
+	 * @param bundle the bundle jar or directory
+	 * @return the manifest headers of the bundle, only containing the headers
+	 *         relevant to targets
+	 * @throws CoreException if the manifest could not be read
+	 */
+	public static Map<String, String> getManifestHeaders(File bundle) throws CoreException {
+		String stamp = getStamp(bundle);
+		File directory = bundle.getAbsoluteFile().getParentFile();
+		if (stamp == null || directory == null) {
+			return ManifestUtils.loadManifest(bundle);
+		}
+		DirectoryScan scan = getScan(directory);
+		String name = bundle.getName();
+		synchronized (scan) {
+			Entry entry = scan.entries.get(name);
+			if (entry != null && entry.stamp.equals(stamp)) {
+				return entry.headers;
+			}
+		}
+		Map<String, String> manifest = ManifestUtils.loadManifest(bundle);
+		Map<String, String> headers = new HashMap<>();
+		for (String header : HEADERS) {
+			String value = manifest.get(header);
+			if (value != null) {
+				headers.put(header, value);
+			}
+		}
+		headers = Collections.unmodifiableMap(headers);
+		synchronized (scan) {
+			scan.entries.put(name, new Entry(stamp, headers));
+			scan.dirty = true;
+		}
+		return headers;
+	}
+
+	/**
+	 * Writes all directories scanned since the last save to the PDE state
+	 * location, dropping the entries of bundles that no longer exist.
+	 */
+	public static void save() {
+		List<DirectoryScan> scans;
+		synchronized (fgScans) {
+			scans = new ArrayList<>(fgScans.values());
+		}
+		for (DirectoryScan scan : scans) {
+			store(scan);
+		}
+	}
+
+	private static DirectoryScan getScan(File directory) {
+		synchronized (fgScans) {
+			DirectoryScan scan = fgScans.get(directory);
+			if (scan != null) {
+				return scan;
+			}
+		}
+		DirectoryScan loaded = load(directory);
+		synchronized (fgScans) {
+			DirectoryScan scan = fgScans.putIfAbsent(directory, loaded);
+			return scan != null ? scan : loaded;
+		}
+	}
+
+	/**
+	 * Writes the given directory to the PDE state location if it changed since
+	 * it was last written.
+	 */
+	private static void store(DirectoryScan scan) {
+		File cacheDir = getCacheDir();
+		if (cacheDir == null) {
+			return;
+		}
+		Properties properties = new Properties();
+		synchronized (scan) {
+			if (!scan.dirty) {
+				return;
+			}
+			scan.entries.keySet().removeIf(name -> !new File(scan.directory, name).exists());
+			properties.setProperty(LOCATION_KEY, scan.directory.getPath());
+			scan.entries.forEach((name, entry) -> {
+				properties.setProperty(name + STAMP_SUFFIX, entry.stamp);
+				entry.headers.forEach((header, value) -> properties.setProperty(name + '@' + header, value));
+			});
+			scan.dirty = false;
+		}
+		cacheDir.mkdirs();
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(getCacheFile(cacheDir, scan.directory)))) {
+			properties.store(out, null);
+		} catch (IOException e) {
+			PDECore.log(e);
+		}
+	}
+
+	private static DirectoryScan load(File directory) {
+		DirectoryScan scan = new DirectoryScan(directory);
+		File cacheDir = getCacheDir();
+		if (cacheDir == null) {
+			return scan;
+		}
+		File cacheFile = getCacheFile(cacheDir, directory);
+		if (!cacheFile.isFile()) {
+			return scan;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = new BufferedInputStream(new FileInputStream(cacheFile))) {
+			properties.load(in);
+		} catch (IOException e) {
+			// rescan the directory
+			return scan;
+		}
+		if (!directory.getPath().equals(properties.getProperty(LOCATION_KEY))) {
+			// written for another directory with the same digest
+			return scan;
+		}
+		for (String key : properties.stringPropertyNames()) {
+			if (!key.endsWith(STAMP_SUFFIX)) {
+				continue;
+			}
+			String name = key.substring(0, key.length() - STAMP_SUFFIX.length());
+			Map<String, String> headers = new HashMap<>();
+			for (String header : HEADERS) {
+				String value = properties.getProperty(name + '@' + header);
+				if (value != null) {
+					headers.put(header, value);
+				}
+			}
+			scan.entries.put(name, new Entry(properties.getProperty(key), Collections.unmodifiableMap(headers)));
+		}
+		return scan;
+	}
+
+	/**
+	 * Returns a stamp changing whenever the manifest of the given bundle may
+	 * have changed, or <code>null</code> if the bundle cannot be cached.
+	 */
+	static String getStamp(File bundle) {
+		File file = bundle;
+		if (bundle.isDirectory()) {
+			// bundles without manifest are converted from their plugin.xml, do not cache them
+			file = new File(bundle, ICoreConstants.BUNDLE_FILENAME_DESCRIPTOR);
+		}
+		long modified = file.lastModified();
+		if (modified == 0 || !file.isFile()) {
+			return null;
+		}
+		return file.length() + "-" + modified; //$NON-NLS-1$
+	}
+
+	private static File getCacheDir() {
+		PDECore core = PDECore.getDefault();
+		if (core == null) {
+			return null;
+		}
+		return new File(core.getStateLocation().toFile(), CACHE_DIR);
+	}
+
+	private static File getCacheFile(File cacheDir, File directory) {
+		StringBuilder name = new StringBuilder();
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+			for (byte b : digest.digest(directory.getPath().getBytes(StandardCharsets.UTF_8))) {
+				name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+		return new File(cacheDir, name.append(".properties").toString()); //$NON-NLS-1$
+	}
+}
@@ -81,7 +81,7 @@ public class DirectoryBundleContainer extends AbstractBundleContainer {
 					.map(file -> {
 						localMonitor.split(1);
 						try {
-							return new TargetBundle(file);
+							return TargetBundleRegistry.getBundle(file);
 						} catch (CoreException e) {
 							// Ignore non-bundle files
 							return null;
@@ -138,6 +138,11 @@ public class DirectoryBundleContainer extends AbstractBundleContainer {
 		return fPath.hashCode();
 	}
 
+	@Override
+	String getContentKey() {
+		return fPath;
+	}
+
 	@Override
 	public String toString() {
 		return new StringBuilder("Directory ").append(fPath).toString(); //$NON-NLS-1$
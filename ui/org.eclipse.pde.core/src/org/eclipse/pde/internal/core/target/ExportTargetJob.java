@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2010, 2015 EclipseSource Inc. and others.
+ * Copyright (c) 2010, 2021 EclipseSource Inc. and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -14,17 +14,38 @@
  *******************************************************************************/
 package org.eclipse.pde.internal.core.target;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.filesystem.IFileSystem;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
@@ -44,6 +65,14 @@ import org.eclipse.pde.internal.core.PDECoreMessages;
 
 /**
  * This job exports the bundles and features that make up your target.
+ * <p>
+ * Features and bundles are copied by a pool of workers and recorded in an
+ * <code>export.manifest</code> file in the destination. When exporting again
+ * without clearing the destination, files whose destination is unchanged are
+ * skipped, which also resumes an interrupted export. Destinations that are not
+ * on the local file system are copied to through their file store, without a
+ * manifest.
+ * </p>
  */
 public class ExportTargetJob extends Job {
 
@@ -55,6 +84,23 @@ public class ExportTargetJob extends Job {
 	private Map<String, NameVersionDescriptor[]> filter;
 	private final ITargetDefinition fTarget;
 
+	private static final String FEATURES_DIR = "features"; //$NON-NLS-1$
+	private static final String PLUGINS_DIR = "plugins"; //$NON-NLS-1$
+
+	/**
+	 * Name of the manifest of exported content written to the destination
+	 */
+	private static final String MANIFEST_FILE = "export.manifest"; //$NON-NLS-1$
+
+	private IFileStore fDestinationStore;
+	/**
+	 * The destination directory, or <code>null</code> if it is not on the
+	 * local file system
+	 */
+	private File fDestinationDir;
+	private final Map<String, String> fPreviousManifest = new HashMap<>();
+	private final Map<String, String> fManifest = new ConcurrentHashMap<>();
+
 	public ExportTargetJob(ITargetDefinition target, URI destination, boolean clearDestinationDirectory) {
 		super("Export Current Target Definition"); //$NON-NLS-1$
 		fTarget = target;
@@ -77,17 +123,22 @@ public class ExportTargetJob extends Job {
 			setupDestination(monitor);
 
 			monitor.subTask(PDECoreMessages.ExportTargetJob_ExportingTargetContents);
+			Map<String, File> toCopy = new TreeMap<>();
 			for (ITargetLocation targetLocation : containers) {
 				ITargetLocation container = targetLocation;
 				container.resolve(fTarget, monitor);
 				if (!(container instanceof IUBundleContainer)) {
-					exportContainer(container, fTarget, featureDir, pluginDir, fileSystem, monitor);
+					exportContainer(container, toCopy, monitor);
 				}
 			}
+			copyFiles(toCopy, monitor);
 			exportProfile(fTarget, fDestination, monitor);
 		} catch (CoreException e) {
 			return new Status(IStatus.ERROR, PDECore.PLUGIN_ID, "Failed to export the target", e); //$NON-NLS-1$
+		} catch (OperationCanceledException e) {
+			return Status.CANCEL_STATUS;
 		} finally {
+			writeManifest();
 			monitor.done();
 		}
 		return Status.OK_STATUS;
@@ -118,8 +169,8 @@ public class ExportTargetJob extends Job {
 			throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, "Destination directory not writable.")); //$NON-NLS-1$
 		}
 		IFileStore destination = fileSystem.getStore(fDestination);
-		featureDir = destination.getChild("features"); //$NON-NLS-1$ExportTargetJob
-		pluginDir = destination.getChild("plugins"); //$NON-NLS-1$
+		featureDir = destination.getChild(FEATURES_DIR);
+		pluginDir = destination.getChild(PLUGINS_DIR);
 		if (fclearDestinationDirectory) {
 			monitor.subTask(PDECoreMessages.ExportTargetDeleteOldData); //Deleting old data...
 			featureDir.delete(EFS.NONE, null);
@@ -127,6 +178,17 @@ public class ExportTargetJob extends Job {
 		}
 		featureDir.mkdir(EFS.NONE, null);
 		pluginDir.mkdir(EFS.NONE, null);
+		fDestinationStore = destination;
+		fDestinationDir = destination.toLocalFile(EFS.NONE, null);
+		if (fDestinationDir == null) {
+			return;
+		}
+		File manifest = new File(fDestinationDir, MANIFEST_FILE);
+		if (fclearDestinationDirectory) {
+			manifest.delete();
+		} else {
+			readManifest(manifest);
+		}
 	}
 
 	private boolean shouldExport(NameVersionDescriptor descriptor) {
@@ -193,13 +255,13 @@ public class ExportTargetJob extends Job {
 		return null;
 	}
 
-	private void exportContainer(ITargetLocation container, ITargetDefinition target, IFileStore featureDir, IFileStore pluginDir, IFileSystem fileSystem, IProgressMonitor monitor) throws CoreException {
+	private void exportContainer(ITargetLocation container, Map<String, File> toCopy, IProgressMonitor monitor) {
 		TargetFeature[] features = container.getFeatures();
 		if (features != null) {
 			monitor.subTask(PDECoreMessages.ExportTargetExportFeatures);
 			for (TargetFeature feature : features) {
 				if (shouldExport(feature)) {
-					copy(feature.getLocation(), featureDir, fileSystem, monitor);
+					collectFiles(new File(feature.getLocation()), FEATURES_DIR, toCopy);
 				}
 			}
 		}
@@ -209,29 +271,249 @@ public class ExportTargetJob extends Job {
 			monitor.subTask(PDECoreMessages.ExportTargetExportPlugins);
 			for (TargetBundle bundle : bundles) {
 				if (shouldExport(bundle)) {
-					copy(bundle.getBundleInfo().getLocation().getPath(), pluginDir, fileSystem, monitor);
+					collectFiles(new File(bundle.getBundleInfo().getLocation().getPath()), PLUGINS_DIR, toCopy);
 				}
 			}
 		}
 	}
 
-	private IStatus copy(String src, IFileStore destinationParent, IFileSystem fileSystem, IProgressMonitor monitor) throws CoreException {
-		Path srcPath = new Path(src);
+	/**
+	 * Adds the given feature or bundle, and all files inside it if it is a
+	 * directory, to the files to copy, keyed by their path relative to the
+	 * destination. Empty directories are added as well so that they are
+	 * created in the destination.
+	 */
+	private static void collectFiles(File source, String parentPath, Map<String, File> toCopy) {
+		String path = parentPath + '/' + source.getName();
+		if (source.isDirectory()) {
+			File[] children = source.listFiles();
+			if (children == null || children.length == 0) {
+				toCopy.putIfAbsent(path, source);
+				return;
+			}
+			for (File child : children) {
+				collectFiles(child, path, toCopy);
+			}
+		} else if (source.isFile()) {
+			toCopy.putIfAbsent(path, source);
+		}
+	}
 
-		IFileStore source = fileSystem.getStore(srcPath);
-		String elementName = srcPath.segment(srcPath.segmentCount() - 1);
-		IFileStore destination = destinationParent.getChild(elementName);
+	/**
+	 * Copies the given files to the destination on a bounded pool of workers.
+	 * Files already present in the destination with the same content are
+	 * skipped, so an interrupted export can be resumed by exporting again
+	 * without clearing the destination. Returns only once all workers have
+	 * stopped, so that the manifest can be written.
+	 *
+	 * @param toCopy the files to copy keyed by their path relative to the
+	 *            destination
+	 * @param monitor progress monitor, only used from the calling thread
+	 * @throws CoreException if a file could not be copied
+	 */
+	private void copyFiles(Map<String, File> toCopy, IProgressMonitor monitor) throws CoreException {
+		SubMonitor subMonitor = SubMonitor.convert(monitor, toCopy.size());
+		if (fDestinationDir == null) {
+			for (Entry<String, File> entry : toCopy.entrySet()) {
+				copyToStore(entry.getValue(), entry.getKey(), subMonitor.split(1));
+			}
+			return;
+		}
+		AtomicBoolean canceled = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(getCopyThreads());
+		try {
+			List<Future<?>> futures = new ArrayList<>(toCopy.size());
+			for (Entry<String, File> entry : toCopy.entrySet()) {
+				futures.add(executor.submit(() -> {
+					if (!canceled.get()) {
+						copyFile(entry.getValue(), entry.getKey());
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				if (subMonitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof CoreException) {
+						throw (CoreException) cause;
+					}
+					throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, "Failed to export the target", cause)); //$NON-NLS-1$
+				}
+				subMonitor.worked(1);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} finally {
+			// stop the workers still copying before the manifest is written
+			canceled.set(true);
+			executor.shutdownNow();
+			awaitTermination(executor);
+		}
+	}
 
-		SubMonitor subMonitor = SubMonitor.convert(monitor, 1);
+	private static void awaitTermination(ExecutorService executor) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
 
-		if (destination.fetchInfo().exists()) {
-			return Status.OK_STATUS;
+	/**
+	 * Copies a single file or empty directory to a destination that is not on
+	 * the local file system through its file store.
+	 */
+	private void copyToStore(File source, String path, IProgressMonitor monitor) throws CoreException {
+		IFileStore destination = fDestinationStore.getFileStore(new Path(path));
+		if (source.isDirectory()) {
+			destination.mkdir(EFS.NONE, monitor);
+			return;
 		}
-		if (source.fetchInfo().isDirectory()) {
-			destination.mkdir(EFS.NONE, new NullProgressMonitor());
+		destination.getParent().mkdir(EFS.NONE, null);
+		fileSystem.fromLocalFile(source).copy(destination, EFS.OVERWRITE, monitor);
+	}
+
+	/**
+	 * Copies a single file to the destination unless the destination already
+	 * contains it, and records it in the export manifest. The file is first
+	 * streamed to a temporary file next to its destination, so an interrupted
+	 * copy never leaves a truncated file behind. Empty directories are only
+	 * created.
+	 */
+	private void copyFile(File source, String path) throws CoreException {
+		File destination = new File(fDestinationDir, path);
+		if (source.isDirectory()) {
+			destination.mkdirs();
+			return;
+		}
+		File temp = new File(destination.getParentFile(), destination.getName() + ".part"); //$NON-NLS-1$
+		try {
+			long size = source.length();
+			long modified = source.lastModified();
+			String hash = fPreviousManifest.get(path);
+			if (hash == null || !isSame(destination, size, modified)) {
+				hash = computeHash(source);
+				if (destination.length() != size || !hash.equals(computeHash(destination))) {
+					destination.getParentFile().mkdirs();
+					long copied = 0;
+					try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+							FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+						while (copied < size) {
+							long transferred = in.transferTo(copied, size - copied, out);
+							if (transferred <= 0) {
+								break;
+							}
+							copied += transferred;
+						}
+					}
+					if (copied != size) {
+						throw new IOException("Copied " + copied + " of " + size + " bytes, the file has been truncated"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					}
+					// record the bytes actually written, the source may have changed since it was hashed
+					hash = computeHash(temp);
+					Files.move(temp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				Files.setLastModifiedTime(destination.toPath(), FileTime.fromMillis(modified));
+			}
+			fManifest.put(path, hash + ' ' + size);
+		} catch (IOException e) {
+			temp.delete();
+			throw new CoreException(new Status(IStatus.ERROR, PDECore.PLUGIN_ID, "Failed to export " + source, e)); //$NON-NLS-1$
+		}
+	}
+
+	private static boolean isSame(File destination, long size, long modified) {
+		return destination.isFile() && destination.length() == size && destination.lastModified() == modified;
+	}
+
+	private static String computeHash(File file) throws IOException {
+		if (!file.isFile()) {
+			return ""; //$NON-NLS-1$
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				while (in.read(buffer) != -1) {
+					buffer.flip();
+					digest.update(buffer);
+					buffer.clear();
+				}
+			}
+			StringBuilder hash = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hash.append(String.format("%02x", b)); //$NON-NLS-1$
+			}
+			return hash.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Returns the number of files copied concurrently, which can be set with
+	 * the <code>pde.target.exportThreads</code> system property.
+	 */
+	private static int getCopyThreads() {
+		int defaultThreads = 4;
+		try {
+			return Math.max(1, Integer.parseInt(System.getProperty("pde.target.exportThreads", Integer.toString(defaultThreads)))); //$NON-NLS-1$
+		} catch (NumberFormatException e) {
+			return defaultThreads;
+		}
+	}
+
+	/**
+	 * Reads the manifest of a previous export to the same destination, whose
+	 * hashes are trusted for files that did not change since.
+	 */
+	private void readManifest(File manifest) {
+		if (!manifest.isFile()) {
+			return;
+		}
+		try {
+			for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+				// <sha-256> <size> <path>
+				String[] fields = line.split(" ", 3); //$NON-NLS-1$
+				if (fields.length == 3) {
+					fPreviousManifest.put(fields[2], fields[0]);
+				}
+			}
+		} catch (IOException e) {
+			// hash all files again
+		}
+	}
+
+	/**
+	 * Writes the manifest of the exported features and bundles, listing the
+	 * SHA-256 hash, size and destination relative path of every file. Also
+	 * written for incomplete exports, so that they can be resumed quickly.
+	 */
+	private void writeManifest() {
+		if (fDestinationDir == null || fManifest.isEmpty()) {
+			return;
+		}
+		List<String> lines = new ArrayList<>(fManifest.size());
+		new TreeMap<>(fManifest).forEach((path, hashAndSize) -> lines.add(hashAndSize + ' ' + path));
+		try {
+			Files.write(new File(fDestinationDir, MANIFEST_FILE).toPath(), lines, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			PDECore.log(e);
 		}
-		source.copy(destination, EFS.OVERWRITE, subMonitor.split(1));
-		return Status.OK_STATUS;
 	}
 
 	private RepositoryDescriptor createRepoDescriptor(URI location, String name, String kind) {
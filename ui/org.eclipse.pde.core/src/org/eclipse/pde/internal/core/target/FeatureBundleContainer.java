@@ -223,7 +223,7 @@ public class FeatureBundleContainer extends AbstractBundleContainer {
 	public boolean equals(Object o) {
 		if (o instanceof FeatureBundleContainer) {
 			FeatureBundleContainer fbc = (FeatureBundleContainer) o;
-			return fHome.equals(fbc.fHome) && fId.equals(fbc.fId) && isNullOrEqual(fVersion, fVersion);
+			return fHome.equals(fbc.fHome) && fId.equals(fbc.fId) && isNullOrEqual(fVersion, fbc.fVersion);
 		}
 		return false;
 	}
@@ -237,6 +237,11 @@ public class FeatureBundleContainer extends AbstractBundleContainer {
 		return hash;
 	}
 
+	@Override
+	String getContentKey() {
+		return fHome + '|' + fId + '|' + fVersion;
+	}
+
 	private boolean isNullOrEqual(Object o1, Object o2) {
 		if (o1 == null) {
 			return o2 == null;
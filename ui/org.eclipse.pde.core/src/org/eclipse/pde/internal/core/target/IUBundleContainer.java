@@ -32,7 +32,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.IntStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -329,12 +328,7 @@ public class IUBundleContainer extends AbstractBundleContainer {
 		// query for bundles
 		IFileArtifactRepository artifacts = null;
 		try {
-			if (P2TargetUtils.fgTargetArtifactRepo.containsKey(target)) {
-				artifacts = P2TargetUtils.fgTargetArtifactRepo.get(target);
-			} else {
-				artifacts = P2TargetUtils.getBundlePool();
-				P2TargetUtils.fgTargetArtifactRepo.put(target, artifacts);
-			}
+			artifacts = P2TargetUtils.getTargetArtifactRepository(target);
 		} catch (CoreException e) {
 			if (PDECore.DEBUG_TARGET_PROFILE) {
 				System.out.println("Bundle pool repository could not be loaded"); //$NON-NLS-1$
@@ -462,23 +456,9 @@ public class IUBundleContainer extends AbstractBundleContainer {
 	private void generateBundle(IInstallableUnit unit, IFileArtifactRepository repo, Map<BundleInfo, TargetBundle> bundles) throws CoreException {
 		Collection<IArtifactKey> artifacts = unit.getArtifacts();
 		for (IArtifactKey artifactKey : artifacts) {
-			File file = null;
-
-			Map<IFileArtifactRepository, File> mapRepoFile = P2TargetUtils.fgArtifactKeyRepoFile.get(artifactKey);
-			if (mapRepoFile != null){
-				file = mapRepoFile.get(repo);
-			}
-
-			if( file == null){
-				file = repo.getArtifactFile(artifactKey);
-				if (file != null) {
-					Map<IFileArtifactRepository, File> repoFile = new ConcurrentHashMap<>();
-					repoFile.put(repo, file);
-					P2TargetUtils.fgArtifactKeyRepoFile.putIfAbsent(artifactKey, repoFile);
-				}
-			}
+			File file = P2TargetUtils.getArtifactFile(artifactKey, repo);
 			if (file != null) {
-				TargetBundle bundle = new TargetBundle(file);
+				TargetBundle bundle = TargetBundleRegistry.getBundle(file);
 				bundles.put(bundle.getBundleInfo(), bundle);
 			}
 		}
@@ -497,6 +477,12 @@ public class IUBundleContainer extends AbstractBundleContainer {
 		return hash;
 	}
 
+	@Override
+	String getContentKey() {
+		return getIncludeAllRequired() + "|" + getIncludeAllEnvironments() + '|' + getIncludeSource() + '|' //$NON-NLS-1$
+				+ getIncludeConfigurePhase() + '|' + Arrays.toString(fIds) + '|' + Arrays.toString(fVersions) + '|' + Arrays.toString(fRepos);
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj) {
@@ -0,0 +1,379 @@
+/*******************************************************************************
+ *  Copyright (c) 2021 IBM Corporation and others.
+ *
+ *  This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License 2.0
+ *  which accompanies this distribution, and is available at
+ *  https://www.eclipse.org/legal/epl-2.0/
+ *
+ *  SPDX-License-Identifier: EPL-2.0
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core.target;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.URIUtil;
+import org.eclipse.equinox.internal.p2.repository.Transport;
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.IRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.util.CoreUtility;
+
+/**
+ * Keeps a compressed local snapshot of the remote metadata repositories used
+ * by {@link IUBundleContainer}s, stored in the PDE state location.
+ * <p>
+ * Each snapshot records a change stamp of the repository it was taken from,
+ * made of the modification times of the repository index files as reported by
+ * the p2 transport, so that proxies and authentication apply. A repository
+ * whose stamp is unchanged is read from its snapshot without being loaded.
+ * Otherwise the repository is loaded through the repository manager and its
+ * snapshot is written again. If a repository cannot be reached, for example
+ * when working offline, its last snapshot is used instead and a warning is
+ * logged. Repositories that fail to load for other reasons, such as having
+ * been moved or being broken, are reported as failures.
+ * </p>
+ * <p>
+ * Repositories in the local file system are not snapshot, as loading them is
+ * not slower than loading their snapshot. Composite repositories only keep a
+ * snapshot for working offline, as the stamp of their index does not cover
+ * their children. Repositories without a change stamp or
+ * <code>p2.timestamp</code> property are not snapshot at all, as their
+ * snapshot could not be told apart from a stale one.
+ * </p>
+ */
+public class MetadataSnapshotCache {
+
+	/**
+	 * Location inside the PDE metadata area where snapshots are stored, one
+	 * directory per repository location
+	 */
+	private static final String SNAPSHOT_DIR = ".metadata_snapshots"; //$NON-NLS-1$
+
+	private static final String SNAPSHOT_INFO = "snapshot.properties"; //$NON-NLS-1$
+	private static final String PROP_LOCATION = "location"; //$NON-NLS-1$
+	private static final String PROP_STAMP = "stamp"; //$NON-NLS-1$
+	private static final String PROP_TIMESTAMP = "timestamp"; //$NON-NLS-1$
+
+	/**
+	 * Index files of simple repositories that make up the change stamp
+	 */
+	private static final String[] INDEX_FILES = { "p2.index", "content.jar", "content.xml", "content.xml.xz" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+	/**
+	 * Snapshots not used for this long are deleted
+	 */
+	private static final long MAX_SNAPSHOT_AGE = TimeUnit.DAYS.toMillis(30);
+
+	/**
+	 * Locks of the snapshot directories, so that different repositories can be
+	 * loaded concurrently
+	 */
+	private static final Map<File, Object> fLocks = new ConcurrentHashMap<>();
+
+	private MetadataSnapshotCache() {
+	}
+
+	/**
+	 * Loads the metadata repository at the given location, using its snapshot
+	 * if the repository is known to be unchanged or cannot be loaded.
+	 * Repositories in the local file system are loaded directly.
+	 *
+	 * @param manager the repository manager of the PDE provisioning agent
+	 * @param location the repository location
+	 * @param monitor progress monitor, may be <code>null</code>
+	 * @return the repository or its snapshot
+	 * @throws ProvisionException if the repository could not be loaded and
+	 *             there is no snapshot of it
+	 */
+	public static IMetadataRepository loadRepository(IMetadataRepositoryManager manager, URI location, IProgressMonitor monitor) throws ProvisionException {
+		return loadRepository(manager, location, !"file".equals(location.getScheme()), monitor); //$NON-NLS-1$
+	}
+
+	/**
+	 * Loads the metadata repository at the given location, using its snapshot
+	 * if the repository is known to be unchanged or cannot be loaded.
+	 *
+	 * @param manager the repository manager of the PDE provisioning agent
+	 * @param location the repository location
+	 * @param snapshot whether to keep a snapshot of the repository
+	 * @param monitor progress monitor, may be <code>null</code>
+	 * @return the repository or its snapshot
+	 * @throws ProvisionException if the repository could not be loaded and
+	 *             there is no snapshot of it
+	 */
+	public static IMetadataRepository loadRepository(IMetadataRepositoryManager manager, URI location, boolean snapshot, IProgressMonitor monitor) throws ProvisionException {
+		File snapshotDir = snapshot ? getSnapshotLocation(location) : null;
+		if (snapshotDir == null) {
+			return manager.loadRepository(location, monitor);
+		}
+		synchronized (fLocks.computeIfAbsent(snapshotDir, dir -> new Object())) {
+			return loadRepository(manager, location, snapshotDir, monitor);
+		}
+	}
+
+	private static IMetadataRepository loadRepository(IMetadataRepositoryManager manager, URI location, File snapshotDir, IProgressMonitor monitor) throws ProvisionException {
+		Properties info = readInfo(snapshotDir, location);
+		String stamp = computeStamp(location, monitor);
+		if (stamp != null && info != null && stamp.equals(info.getProperty(PROP_STAMP))) {
+			IMetadataRepository snapshot = loadSnapshot(manager, snapshotDir);
+			if (snapshot != null) {
+				if (PDECore.DEBUG_TARGET_PROFILE) {
+					System.out.println("Using metadata snapshot of unchanged repository " + location); //$NON-NLS-1$
+				}
+				return snapshot;
+			}
+		}
+
+		IMetadataRepository repository;
+		try {
+			repository = manager.loadRepository(location, monitor);
+		} catch (ProvisionException e) {
+			// a repository that can be reached but not loaded must not look healthy
+			IMetadataRepository snapshot = info != null && isConnectionFailure(e.getStatus()) ? loadSnapshot(manager, snapshotDir) : null;
+			if (snapshot == null) {
+				throw e;
+			}
+			PDECore.log(new Status(IStatus.WARNING, PDECore.PLUGIN_ID, NLS.bind(Messages.MetadataSnapshotCache_UsingSnapshot, location), e));
+			return snapshot;
+		}
+
+		String timestamp = repository.getProperty(IRepository.PROP_TIMESTAMP);
+		if (stamp == null && timestamp == null) {
+			// a snapshot could never be told to be stale
+			if (info != null) {
+				deleteSnapshot(manager, snapshotDir);
+			}
+		} else if (info == null || !Objects.equals(stamp, info.getProperty(PROP_STAMP)) || !Objects.equals(timestamp, info.getProperty(PROP_TIMESTAMP))) {
+			writeSnapshot(manager, repository, location, stamp, timestamp, snapshotDir);
+		}
+		return repository;
+	}
+
+	/**
+	 * Returns the directory the snapshot of the repository at the given
+	 * location is stored in, or <code>null</code> if snapshots cannot be
+	 * stored.
+	 *
+	 * @param location the repository location
+	 * @return the snapshot directory, which may not exist
+	 */
+	public static File getSnapshotLocation(URI location) {
+		PDECore core = PDECore.getDefault();
+		if (core == null) {
+			return null;
+		}
+		File snapshotsDir = new File(core.getStateLocation().toFile(), SNAPSHOT_DIR);
+		return new File(snapshotsDir, hash(location.toString()));
+	}
+
+	/**
+	 * Deletes the snapshot of the repository at the given location.
+	 *
+	 * @param manager the repository manager of the PDE provisioning agent
+	 * @param location the repository location
+	 */
+	public static void deleteSnapshot(IMetadataRepositoryManager manager, URI location) {
+		File snapshotDir = getSnapshotLocation(location);
+		if (snapshotDir != null) {
+			synchronized (fLocks.computeIfAbsent(snapshotDir, dir -> new Object())) {
+				deleteSnapshot(manager, snapshotDir);
+			}
+		}
+	}
+
+	private static void deleteSnapshot(IMetadataRepositoryManager manager, File snapshotDir) {
+		manager.removeRepository(snapshotDir.toURI());
+		CoreUtility.deleteContent(snapshotDir);
+	}
+
+	private static IMetadataRepository loadSnapshot(IMetadataRepositoryManager manager, File snapshotDir) {
+		try {
+			IMetadataRepository snapshot = manager.loadRepository(snapshotDir.toURI(), null);
+			// mark as recently used
+			snapshotDir.setLastModified(System.currentTimeMillis());
+			return snapshot;
+		} catch (ProvisionException e) {
+			// a broken snapshot is taken again from the repository
+			PDECore.log(e.getStatus());
+			return null;
+		}
+	}
+
+	/**
+	 * Returns whether the given status of a failed repository load reports
+	 * that the repository could not be reached, as opposed to a repository
+	 * that is missing or broken.
+	 */
+	private static boolean isConnectionFailure(IStatus status) {
+		for (Throwable exception = status.getException(); exception != null; exception = exception.getCause()) {
+			if (exception instanceof UnknownHostException || exception instanceof SocketException || exception instanceof SocketTimeoutException) {
+				return true;
+			}
+			if (exception instanceof CoreException && isConnectionFailure(((CoreException) exception).getStatus())) {
+				return true;
+			}
+		}
+		for (IStatus child : status.getChildren()) {
+			if (isConnectionFailure(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void writeSnapshot(IMetadataRepositoryManager manager, IMetadataRepository repository, URI location, String stamp, String timestamp, File snapshotDir) {
+		URI snapshotLocation = snapshotDir.toURI();
+		deleteSnapshot(manager, snapshotDir);
+		snapshotDir.mkdirs();
+		try {
+			Map<String, String> properties = new HashMap<>();
+			properties.put(IRepository.PROP_COMPRESSED, Boolean.toString(true));
+			properties.put(IRepository.PROP_SYSTEM, Boolean.toString(true));
+			IMetadataRepository snapshot = manager.createRepository(snapshotLocation, "Snapshot of " + location, //$NON-NLS-1$
+					IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, properties);
+			snapshot.addInstallableUnits(repository.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+
+			Properties info = new Properties();
+			info.setProperty(PROP_LOCATION, location.toString());
+			if (stamp != null) {
+				info.setProperty(PROP_STAMP, stamp);
+			}
+			if (timestamp != null) {
+				info.setProperty(PROP_TIMESTAMP, timestamp);
+			}
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(snapshotDir, SNAPSHOT_INFO)))) {
+				info.store(out, null);
+			}
+		} catch (ProvisionException | IOException e) {
+			// the snapshot is an optimization only, do not fail the resolution
+			PDECore.log(e);
+			deleteSnapshot(manager, snapshotDir);
+		}
+		pruneSnapshots(snapshotDir.getParentFile());
+	}
+
+	private static Properties readInfo(File snapshotDir, URI location) {
+		File infoFile = new File(snapshotDir, SNAPSHOT_INFO);
+		if (!infoFile.isFile()) {
+			return null;
+		}
+		Properties info = new Properties();
+		try (InputStream in = new BufferedInputStream(new FileInputStream(infoFile))) {
+			info.load(in);
+		} catch (IOException e) {
+			return null;
+		}
+		return location.toString().equals(info.getProperty(PROP_LOCATION)) ? info : null;
+	}
+
+	/**
+	 * Returns the change stamp of a simple repository, or <code>null</code>
+	 * if it cannot be determined or the repository has none of the index files
+	 * of a simple repository, like a composite repository.
+	 * Stops at the first file that cannot be checked, so that an unreachable
+	 * repository costs a single request.
+	 */
+	private static String computeStamp(URI location, IProgressMonitor monitor) {
+		Transport transport;
+		try {
+			transport = (Transport) P2TargetUtils.getAgent().getService(Transport.SERVICE_NAME);
+		} catch (CoreException e) {
+			return null;
+		}
+		if (transport == null) {
+			return null;
+		}
+		StringBuilder stamp = new StringBuilder();
+		for (String name : INDEX_FILES) {
+			String validator = getValidator(transport, location, name, monitor);
+			if (validator == null) {
+				return null;
+			}
+			if (!validator.isEmpty()) {
+				stamp.append(name).append('=').append(validator).append(';');
+			}
+		}
+		return stamp.length() == 0 ? null : stamp.toString();
+	}
+
+	/**
+	 * Returns the modification time of a file of the repository, an empty
+	 * string if the file does not exist, or <code>null</code> if the file
+	 * cannot be checked or has no modification time.
+	 */
+	private static String getValidator(Transport transport, URI location, String name, IProgressMonitor monitor) {
+		try {
+			long modified = transport.getLastModified(URIUtil.append(location, name), monitor);
+			return modified == 0 ? null : Long.toString(modified);
+		} catch (FileNotFoundException e) {
+			return ""; //$NON-NLS-1$
+		} catch (OperationCanceledException e) {
+			throw e;
+		} catch (Exception e) {
+			// unreachable, authentication failed or not supported by the transport
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes the snapshots not used for {@link #MAX_SNAPSHOT_AGE}.
+	 */
+	private static void pruneSnapshots(File snapshotsDir) {
+		File[] snapshots = snapshotsDir.listFiles(File::isDirectory);
+		if (snapshots == null) {
+			return;
+		}
+		long oldest = System.currentTimeMillis() - MAX_SNAPSHOT_AGE;
+		for (File snapshot : snapshots) {
+			if (snapshot.lastModified() < oldest) {
+				CoreUtility.deleteContent(snapshot);
+			}
+		}
+	}
+
+	private static String hash(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$
+			StringBuilder key = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				key.append(String.format("%02x", b)); //$NON-NLS-1$
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(value.hashCode());
+		}
+	}
+}
@@ -155,6 +155,12 @@ public class P2TargetUtils {
 	 */
 	static final String PROP_SEQUENCE_NUMBER = PDECore.PLUGIN_ID + ".sequence"; //$NON-NLS-1$
 
+	/**
+	 * Profile property that keeps track of the content hash of the target, see
+	 * {@link TargetDefinition#getContentHash()}
+	 */
+	static final String PROP_CONTENT_HASH = PDECore.PLUGIN_ID + ".contentHash"; //$NON-NLS-1$
+
 	/**
 	 * Profile property that tracks whether or not source to be auto-included
 	 */
@@ -171,14 +177,19 @@ public class P2TargetUtils {
 	private static Map<ITargetDefinition, P2TargetUtils> synchronizers = new WeakHashMap<>();
 
 	/**
-	 * Table mapping of  ITargetDefinition and IFileArtifactRepository
+	 * Table mapping of  ITargetDefinition and IFileArtifactRepository. Locations
+	 * of a target may be resolved concurrently, use
+	 * {@link #getTargetArtifactRepository(ITargetDefinition)} to access it.
 	 */
-	public static Map<ITargetDefinition, IFileArtifactRepository> fgTargetArtifactRepo = new ConcurrentHashMap<>();
+	public static final Map<ITargetDefinition, IFileArtifactRepository> fgTargetArtifactRepo = new ConcurrentHashMap<>();
 
 	/**
-	 * Table mapping IArtifactKey to table map of IFileArtifactRepository and IFileArtifactRepository
+	 * Table mapping IArtifactKey to table map of IFileArtifactRepository and
+	 * IFileArtifactRepository. Locations of a target may be resolved
+	 * concurrently, use {@link #getArtifactFile(IArtifactKey, IFileArtifactRepository)}
+	 * to access it.
 	 */
-	public static Map<IArtifactKey, Map<IFileArtifactRepository, File>> fgArtifactKeyRepoFile = new ConcurrentHashMap<>();
+	public static final Map<IArtifactKey, Map<IFileArtifactRepository, File>> fgArtifactKeyRepoFile = new ConcurrentHashMap<>();
 
 	/**
 	 * The profile to be synchronized
@@ -291,6 +302,7 @@ public class P2TargetUtils {
 		final P2TargetUtils result = getSynchronizer(target);
 		if (result != null && result.fProfile != null && result.fProfile instanceof Profile) {
 			((Profile) result.fProfile).setProperty(PROP_SEQUENCE_NUMBER, "-1"); //$NON-NLS-1$
+			((Profile) result.fProfile).setProperty(PROP_CONTENT_HASH, ""); //$NON-NLS-1$
 		}
 	}
 
@@ -437,13 +449,56 @@ public class P2TargetUtils {
 		return manager;
 	}
 
+	/**
+	 * Returns the artifact repository bundles of the given target are read
+	 * from, which is the bundle pool the first time it is requested for a
+	 * target. Safe to call from concurrently resolving locations.
+	 *
+	 * @param target the target being resolved
+	 * @return the artifact repository of the target
+	 * @throws CoreException if the bundle pool could not be loaded
+	 */
+	static IFileArtifactRepository getTargetArtifactRepository(ITargetDefinition target) throws CoreException {
+		IFileArtifactRepository repository = fgTargetArtifactRepo.get(target);
+		if (repository == null) {
+			repository = getBundlePool();
+			IFileArtifactRepository existing = fgTargetArtifactRepo.putIfAbsent(target, repository);
+			if (existing != null) {
+				repository = existing;
+			}
+		}
+		return repository;
+	}
+
+	/**
+	 * Returns the file of the given artifact in the given repository,
+	 * remembering it for the rest of the target resolution. Safe to call from
+	 * concurrently resolving locations.
+	 *
+	 * @param key the artifact key
+	 * @param repository the repository containing the artifact
+	 * @return the artifact file or <code>null</code> if the repository does not
+	 *         contain the artifact
+	 */
+	static File getArtifactFile(IArtifactKey key, IFileArtifactRepository repository) {
+		Map<IFileArtifactRepository, File> files = fgArtifactKeyRepoFile.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+		File file = files.get(repository);
+		if (file == null) {
+			file = repository.getArtifactFile(key);
+			if (file != null) {
+				files.putIfAbsent(repository, file);
+			}
+		}
+		return file;
+	}
+
 	/**
 	 * Returns the local bundle pool (repository) where bundles are stored
 	 *
 	 * @return local file artifact repository
 	 * @throws CoreException
 	 */
-	public static IFileArtifactRepository getBundlePool() throws CoreException {
+	public static synchronized IFileArtifactRepository getBundlePool() throws CoreException {
 		URI uri = BUNDLE_POOL.toFile().toURI();
 		IArtifactRepositoryManager manager = getArtifactRepositoryManager();
 		try {
@@ -528,6 +583,60 @@ public class P2TargetUtils {
 			return true;
 		}
 
+		if (!checkProfileSettings(target)) {
+			return false;
+		}
+
+		// a target with the same content, e.g. the same target loaded again, was provisioned into the profile
+		String contentHash = ((TargetDefinition) target).getContentHash();
+		if (!contentHash.startsWith(TargetDefinition.PARTIAL_HASH_PREFIX) && contentHash.equals(fProfile.getProperty(PROP_CONTENT_HASH))) {
+			return true;
+		}
+
+		// check top level IU's. If any have been removed from the containers that are
+		// still in the profile, we need to recreate (rather than uninstall), or update
+		// the profile in place if its settings still match, see synchronize
+		IUProfilePropertyQuery propertyQuery = new IUProfilePropertyQuery(PROP_INSTALLED_IU, Boolean.toString(true));
+		IQueryResult<?> queryResult = fProfile.query(propertyQuery, null);
+		Iterator<?> iterator = queryResult.iterator();
+		Set<NameVersionDescriptor> installedIUs = new HashSet<>();
+		while (iterator.hasNext()) {
+			IInstallableUnit unit = (IInstallableUnit) iterator.next();
+			installedIUs.add(new NameVersionDescriptor(unit.getId(), unit.getVersion().toString()));
+		}
+		ITargetLocation[] containers = target.getTargetLocations();
+		if (containers == null) {
+			return installedIUs.isEmpty();
+		}
+		for (ITargetLocation container : containers) {
+			if (container instanceof IUBundleContainer) {
+				IUBundleContainer bc = (IUBundleContainer) container;
+				String[] ids = bc.getIds();
+				Version[] versions = bc.getVersions();
+				for (int j = 0; j < versions.length; j++) {
+					// if there is something in a container but not in the profile, recreate
+					if (!installedIUs.remove(new NameVersionDescriptor(ids[j], versions[j].toString()))) {
+						return false;
+					}
+				}
+			}
+		}
+		if (!installedIUs.isEmpty()) {
+			return false;
+		}
+
+		// Phew! seems like the profile checks out.
+		return true;
+	}
+
+	/**
+	 * Returns whether the profile was provisioned with the same settings as the
+	 * target definition currently has. If so, the profile only differs from the
+	 * target in its root IUs and can be updated in place.
+	 *
+	 * @return whether the settings of the profile and target definition match
+	 */
+	private boolean checkProfileSettings(ITargetDefinition target) {
 		// check if all environments setting is the same
 		boolean all = false;
 		String value = fProfile.getProperty(PROP_ALL_ENVIRONMENTS);
@@ -566,39 +675,6 @@ public class P2TargetUtils {
 		if (getIncludeConfigurePhase() != Boolean.parseBoolean(fProfile.getProperty(PROP_INCLUDE_CONFIGURE_PHASE))) {
 			return false;
 		}
-
-		// check top level IU's. If any have been removed from the containers that are
-		// still in the profile, we need to recreate (rather than uninstall)
-		IUProfilePropertyQuery propertyQuery = new IUProfilePropertyQuery(PROP_INSTALLED_IU, Boolean.toString(true));
-		IQueryResult<?> queryResult = fProfile.query(propertyQuery, null);
-		Iterator<?> iterator = queryResult.iterator();
-		Set<NameVersionDescriptor> installedIUs = new HashSet<>();
-		while (iterator.hasNext()) {
-			IInstallableUnit unit = (IInstallableUnit) iterator.next();
-			installedIUs.add(new NameVersionDescriptor(unit.getId(), unit.getVersion().toString()));
-		}
-		ITargetLocation[] containers = target.getTargetLocations();
-		if (containers == null) {
-			return installedIUs.isEmpty();
-		}
-		for (ITargetLocation container : containers) {
-			if (container instanceof IUBundleContainer) {
-				IUBundleContainer bc = (IUBundleContainer) container;
-				String[] ids = bc.getIds();
-				Version[] versions = bc.getVersions();
-				for (int j = 0; j < versions.length; j++) {
-					// if there is something in a container but not in the profile, recreate
-					if (!installedIUs.remove(new NameVersionDescriptor(ids[j], versions[j].toString()))) {
-						return false;
-					}
-				}
-			}
-		}
-		if (!installedIUs.isEmpty()) {
-			return false;
-		}
-
-		// Phew! seems like the profile checks out.
 		return true;
 	}
 
@@ -811,10 +887,25 @@ public class P2TargetUtils {
 			return;
 		}
 
-		// Either no profile was found or it was stale.  Delete the current profile and recreate.
-		// This keeps the internal agent data clean and does not cost us much.
-		deleteProfile(target.getHandle());
-		createProfile(target);
+		// If only the root IUs changed, update the profile in place. The planner and slicer
+		// compute their plans against the current profile, so only the difference is
+		// installed and uninstalled, and everything else is reused from the bundle pool.
+		boolean incremental = false;
+		if (fProfile != null && isIncrementalProvisioning() && checkProfileSettings(target)) {
+			fProfile = getProfileRegistry().getProfile(fProfile.getProfileId());
+			incremental = fProfile != null;
+		}
+		if (incremental) {
+			if (PDECore.DEBUG_TARGET_PROFILE) {
+				System.out.println("Updating profile " + fProfile.getProfileId() + " incrementally"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		} else {
+			// Either no profile was found or it was provisioned with different settings.
+			// Delete the current profile and recreate. This keeps the internal agent data
+			// clean and does not cost us much.
+			deleteProfile(target.getHandle());
+			createProfile(target);
+		}
 
 		if (progress.isCanceled()) {
 			return;
@@ -839,6 +930,35 @@ public class P2TargetUtils {
 		}
 	}
 
+	/**
+	 * Returns whether profiles whose settings still match the target are
+	 * updated in place rather than recreated when the root IUs of the target
+	 * change. Can be disabled with the
+	 * <code>pde.target.incrementalProvisioning</code> system property.
+	 */
+	private static boolean isIncrementalProvisioning() {
+		return Boolean.parseBoolean(System.getProperty("pde.target.incrementalProvisioning", Boolean.TRUE.toString())); //$NON-NLS-1$
+	}
+
+	/**
+	 * Traces the units a provisioning plan adds to and removes from the
+	 * profile.
+	 */
+	private static void traceChanges(IProvisioningPlan plan) {
+		if (PDECore.DEBUG_TARGET_PROFILE) {
+			Set<IInstallableUnit> added = plan.getAdditions().query(QueryUtil.ALL_UNITS, null).toUnmodifiableSet();
+			Set<IInstallableUnit> removed = plan.getRemovals().query(QueryUtil.ALL_UNITS, null).toUnmodifiableSet();
+			System.out.println("Profile " + plan.getProfile().getProfileId() + ": " + added.size() + " units added, " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ removed.size() + " units removed"); //$NON-NLS-1$
+			for (IInstallableUnit unit : added) {
+				System.out.println("  + " + unit); //$NON-NLS-1$
+			}
+			for (IInstallableUnit unit : removed) {
+				System.out.println("  - " + unit); //$NON-NLS-1$
+			}
+		}
+	}
+
 	private void createProfile(ITargetDefinition target) throws CoreException, ProvisionException {
 		// create a new profile
 		IProfileRegistry registry = getProfileRegistry();
@@ -852,6 +972,7 @@ public class P2TargetUtils {
 		properties.put(IProfile.PROP_ENVIRONMENTS, generateEnvironmentProperties(target));
 		properties.put(IProfile.PROP_NL, generateNLProperty(target));
 		properties.put(PROP_SEQUENCE_NUMBER, Integer.toString(((TargetDefinition) target).getSequenceNumber()));
+		properties.put(PROP_CONTENT_HASH, ((TargetDefinition) target).getContentHash());
 		properties.put(PROP_PROVISION_MODE, getProvisionMode(target));
 		properties.put(PROP_ALL_ENVIRONMENTS, Boolean.toString(getIncludeAllEnvironments()));
 		properties.put(PROP_AUTO_INCLUDE_SOURCE, Boolean.toString(getIncludeSource()));
@@ -973,7 +1094,7 @@ public class P2TargetUtils {
 		MultiStatus repoStatus = new MultiStatus(PDECore.PLUGIN_ID, 0, Messages.IUBundleContainer_ProblemsLoadingRepositories, null);
 		for (int i = 0; i < repoCount; ++i) {
 			try {
-				result.add(manager.loadRepository(repos[i], subMonitor.split(1)));
+				result.add(MetadataSnapshotCache.loadRepository(manager, repos[i], subMonitor.split(1)));
 			} catch (ProvisionException e) {
 				repoStatus.add(e.getStatus());
 			}
@@ -1032,6 +1153,7 @@ public class P2TargetUtils {
 		subMonitor.split(10);
 
 		// execute the provisioning plan
+		traceChanges(plan);
 		IPhaseSet phases = createPhaseSet();
 		IEngine engine = getEngine();
 		IStatus result = engine.perform(plan, phases, subMonitor.split(100));
@@ -1057,6 +1179,7 @@ public class P2TargetUtils {
 		plan.setProfileProperty(PROP_AUTO_INCLUDE_SOURCE, Boolean.toString(getIncludeSource()));
 		plan.setProfileProperty(PROP_INCLUDE_CONFIGURE_PHASE, Boolean.toString(getIncludeConfigurePhase()));
 		plan.setProfileProperty(PROP_SEQUENCE_NUMBER, Integer.toString(((TargetDefinition) definition).getSequenceNumber()));
+		plan.setProfileProperty(PROP_CONTENT_HASH, ((TargetDefinition) definition).getContentHash());
 	}
 
 	/**
@@ -1242,6 +1365,15 @@ public class P2TargetUtils {
 		for (IInstallableUnit unit : units) {
 			plan.setInstallableUnitProfileProperty(unit, PROP_INSTALLED_IU, Boolean.toString(true));
 		}
+		// former roots that remain in the slice are no longer marked as installed, as
+		// the planner does by removing everything that was explicitly installed
+		Set<IInstallableUnit> roots = new HashSet<>(Arrays.asList(units));
+		IQuery<IInstallableUnit> installedQuery = new IUProfilePropertyQuery(PROP_INSTALLED_IU, Boolean.toString(true));
+		for (IInstallableUnit unit : fProfile.query(installedQuery, null)) {
+			if (!roots.contains(unit) && newSet.contains(unit)) {
+				plan.setInstallableUnitProfileProperty(unit, PROP_INSTALLED_IU, null);
+			}
+		}
 
 		// remove all units that are in the current profile but not in the new slice
 		Set<?> toRemove = fProfile.query(QueryUtil.ALL_UNITS, null).toSet();
@@ -1253,6 +1385,7 @@ public class P2TargetUtils {
 		subMonitor.split(5);
 
 		// execute the provisioning plan
+		traceChanges(plan);
 		IPhaseSet phases = createPhaseSet();
 		IStatus result = engine.perform(plan, phases, subMonitor.split(50));
 		if (result.getSeverity() == IStatus.ERROR || result.getSeverity() == IStatus.CANCEL) {
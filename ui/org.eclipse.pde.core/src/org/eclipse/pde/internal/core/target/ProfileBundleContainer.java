@@ -159,7 +159,7 @@ public class ProfileBundleContainer extends AbstractBundleContainer {
 				if (monitor.isCanceled()) {
 					return null;
 				}
-				return new TargetBundle(URIUtil.toFile(location));
+				return TargetBundleRegistry.getBundle(URIUtil.toFile(location));
 			} catch (CoreException e) {
 				return new InvalidTargetBundle(new BundleInfo(location), e.getStatus());
 			} finally {
@@ -189,7 +189,7 @@ public class ProfileBundleContainer extends AbstractBundleContainer {
 			}
 			TargetBundle bundle;
 			try {
-				bundle = new TargetBundle(file);
+				bundle = TargetBundleRegistry.getBundle(file);
 			} catch (CoreException e) {
 				bundle = new InvalidTargetBundle(new BundleInfo(file.toURI()), e.getStatus());
 			}
@@ -305,6 +305,11 @@ public class ProfileBundleContainer extends AbstractBundleContainer {
 		return hash;
 	}
 
+	@Override
+	String getContentKey() {
+		return fHome + '|' + fConfiguration;
+	}
+
 	/**
 	 * Returns the location of the profile file that describes the installation this container represents or <code>null</code>
 	 * if no profile file could be determined.  This method checks the configuration file for a p2 data area entry and profile name
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ *  Copyright (c) 2021 IBM Corporation and others.
+ *
+ *  This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License 2.0
+ *  which accompanies this distribution, and is available at
+ *  https://www.eclipse.org/legal/epl-2.0/
+ *
+ *  SPDX-License-Identifier: EPL-2.0
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core.target;
+
+import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.core.target.TargetBundle;
+
+/**
+ * Registry of the {@link TargetBundle}s created for bundles in the file
+ * system, so that a bundle found by several locations or targets, or by the
+ * same location resolved again, is only represented once in memory.
+ * <p>
+ * A registered bundle is shared as long as the size and modification time of
+ * its jar, or of the manifest of a bundle directory, are unchanged. The
+ * registry only holds weak references, so bundles no longer referenced by any
+ * resolved target are garbage collected. Bundles returned by the registry
+ * must not be modified.
+ * </p>
+ */
+public class TargetBundleRegistry {
+
+	private static final Map<File, BundleReference> fgBundles = new ConcurrentHashMap<>();
+
+	private static final ReferenceQueue<TargetBundle> fgCollected = new ReferenceQueue<>();
+
+	private static class BundleReference extends WeakReference<TargetBundle> {
+		final File file;
+		final String stamp;
+
+		BundleReference(File file, String stamp, TargetBundle bundle) {
+			super(bundle, fgCollected);
+			this.file = file;
+			this.stamp = stamp;
+		}
+	}
+
+	private TargetBundleRegistry() {
+	}
+
+	/**
+	 * Returns the target bundle for the given bundle jar or directory, creating
+	 * it only if the bundle is not registered yet or changed since it was
+	 * registered.
+	 *
+	 * @param file the bundle jar or directory
+	 * @return the shared target bundle
+	 * @throws CoreException if the file is not a valid bundle
+	 * @see TargetBundle#TargetBundle(File)
+	 */
+	public static TargetBundle getBundle(File file) throws CoreException {
+		expungeCollected();
+		File key = file.getAbsoluteFile();
+		String stamp = BundleScanCache.getStamp(key);
+		if (stamp == null) {
+			return new TargetBundle(file);
+		}
+		BundleReference reference = fgBundles.get(key);
+		if (reference != null && reference.stamp.equals(stamp)) {
+			TargetBundle bundle = reference.get();
+			if (bundle != null) {
+				return bundle;
+			}
+		}
+		TargetBundle bundle = new TargetBundle(file);
+		fgBundles.put(key, new BundleReference(key, stamp, bundle));
+		return bundle;
+	}
+
+	/**
+	 * Returns a canonical instance of the given symbolic name or version
+	 * string, so that the bundles of all targets share a single copy of it.
+	 *
+	 * @param value the string to intern, may be <code>null</code>
+	 * @return the canonical string or <code>null</code>
+	 */
+	public static String intern(String value) {
+		return value == null ? null : value.intern();
+	}
+
+	private static void expungeCollected() {
+		Reference<? extends TargetBundle> collected;
+		while ((collected = fgCollected.poll()) != null) {
+			BundleReference reference = (BundleReference) collected;
+			fgBundles.remove(reference.file, reference);
+		}
+	}
+}
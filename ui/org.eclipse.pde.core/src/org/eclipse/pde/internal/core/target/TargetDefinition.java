@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2018 IBM Corporation and others.
+ * Copyright (c) 2008, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,6 +33,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -40,6 +52,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
@@ -115,14 +128,37 @@ public class TargetDefinition implements ITargetDefinition {
 	public static final int MODE_FEATURE = 1;
 
 	// cache of features found for a given location, maps a string path location to a array of IFeatureModels (IFeatureModel[])
-	private static Map<String, TargetFeature[]> fFeaturesInLocation = new HashMap<>();
+	private static Map<String, TargetFeature[]> fFeaturesInLocation = new ConcurrentHashMap<>();
+
+	/**
+	 * Threads resolving target locations concurrently, shared by all target
+	 * definitions
+	 */
+	private static ThreadPoolExecutor fgResolver;
 
 	// internal cache for features.  A target managed by features will contain a set of features as well as a set of plug-ins that don't belong to a feature
 	private TargetFeature[] fFeatures;
 	private TargetBundle[] fOtherBundles;
 
+	// internal cache of all bundles and of the included bundles, valid as long as the locations return the same bundles
+	private TargetBundle[][] fLocationBundles;
+	private TargetBundle[] fAllBundles;
+	private TargetBundle[] fIncludedBundles;
+
 	private int fSequenceNumber = -1;
 
+	/**
+	 * Content hash of this target, <code>null</code> if not computed since the
+	 * content last changed
+	 */
+	private volatile String fContentHash;
+
+	/**
+	 * Prefix of content hashes that cannot be used to decide whether two
+	 * targets are equivalent, because a location does not provide a content key
+	 */
+	static final String PARTIAL_HASH_PREFIX = "partial:"; //$NON-NLS-1$
+
 	/**
 	 * Constructs a target definition based on the given handle.
 	 */
@@ -266,6 +302,7 @@ public class TargetDefinition implements ITargetDefinition {
 			args = null;
 		}
 		fProgramArgs = args;
+		fContentHash = null;
 		if (fRoot != null && args != null) {
 			Element programArgsNode = TargetDefinitionDocumentTools.getChildElement(fRoot,
 					TargetDefinitionPersistenceHelper.ARGUMENTS,
@@ -282,6 +319,7 @@ public class TargetDefinition implements ITargetDefinition {
 			args = null;
 		}
 		fVMArgs = args;
+		fContentHash = null;
 		if (fRoot != null && args != null) {
 			Element programArgsNode = TargetDefinitionDocumentTools.getChildElement(fRoot,
 					TargetDefinitionPersistenceHelper.ARGUMENTS,
@@ -312,6 +350,9 @@ public class TargetDefinition implements ITargetDefinition {
 		// Clear the feature model cache as it is based on the bundle container locations
 		fFeatures = null;
 		fOtherBundles = null;
+		fLocationBundles = null;
+		fAllBundles = null;
+		fIncludedBundles = null;
 
 		if (locations != null && locations.length == 0) {
 			locations = null;
@@ -350,6 +391,9 @@ public class TargetDefinition implements ITargetDefinition {
 		// Clear the feature model cache as it is based on the bundle container locations
 		fFeatures = null;
 		fOtherBundles = null;
+		fLocationBundles = null;
+		fAllBundles = null;
+		fIncludedBundles = null;
 		if (location == null) {
 			fFeaturesInLocation.clear();
 		} else {
@@ -412,15 +456,12 @@ public class TargetDefinition implements ITargetDefinition {
 					fResolutionStatus = status;
 					return fResolutionStatus;
 				}
-				for (ITargetLocation container : containers) {
-					subMonitor.checkCanceled();
-					subMonitor.subTask(Messages.TargetDefinition_4);
-					P2TargetUtils synchronizer = container.getAdapter(P2TargetUtils.class);
-					int totalWork = 5;
-					if (synchronizer == null) {
-						totalWork = 100;
-					}
-					IStatus s = container.resolve(this, subMonitor.split(totalWork));
+				int[] totalWork = new int[containers.length];
+				for (int i = 0; i < containers.length; i++) {
+					totalWork[i] = containers[i].getAdapter(P2TargetUtils.class) == null ? 100 : 5;
+				}
+				subMonitor.subTask(Messages.TargetDefinition_4);
+				for (IStatus s : resolveLocations(containers, totalWork, subMonitor)) {
 					if (!s.isOK()) {
 						status.add(s);
 					}
@@ -438,6 +479,7 @@ public class TargetDefinition implements ITargetDefinition {
 		} finally {
 			// keep a list of resolved targets with key as handle
 			TargetPlatformHelper.addTargetDefinitionMap(this);
+			BundleScanCache.save();
 
 			subMonitor.done();
 			if (monitor != null) {
@@ -446,6 +488,244 @@ public class TargetDefinition implements ITargetDefinition {
 		}
 	}
 
+	/**
+	 * Resolves the given locations concurrently on a bounded pool of threads
+	 * shared by all target definitions. Locations are independent of each
+	 * other once their synchronizers have been processed, so the only shared
+	 * state is the progress monitor. Each location reports to its own monitor,
+	 * which is polled from the calling thread and forwarded to the given
+	 * monitor. Cancelling the given monitor cancels all locations still
+	 * resolving, and returns once they have all stopped.
+	 *
+	 * @param containers the locations to resolve
+	 * @param totalWork the amount of work of the given monitor to consume for
+	 *            each location
+	 * @param monitor the progress monitor, only used from the calling thread
+	 * @return the resolution status of each location, in the order of the
+	 *         given locations
+	 * @throws OperationCanceledException if resolution was cancelled
+	 */
+	private IStatus[] resolveLocations(ITargetLocation[] containers, int[] totalWork, SubMonitor monitor) {
+		IStatus[] result = new IStatus[containers.length];
+		int threads = getResolveThreads();
+		if (threads <= 1 || containers.length <= 1) {
+			for (int i = 0; i < containers.length; i++) {
+				monitor.checkCanceled();
+				monitor.subTask(Messages.TargetDefinition_4);
+				result[i] = containers[i].resolve(this, monitor.split(totalWork[i]));
+			}
+			return result;
+		}
+
+		ExecutorService executor = getResolver(threads);
+		LocationProgressMonitor[] monitors = new LocationProgressMonitor[containers.length];
+		List<Future<IStatus>> futures = new ArrayList<>(containers.length);
+		boolean completed = false;
+		try {
+			for (int i = 0; i < containers.length; i++) {
+				ITargetLocation container = containers[i];
+				LocationProgressMonitor locationMonitor = new LocationProgressMonitor();
+				monitors[i] = locationMonitor;
+				futures.add(executor.submit(() -> {
+					if (locationMonitor.isCanceled()) {
+						return Status.CANCEL_STATUS;
+					}
+					return container.resolve(this, locationMonitor);
+				}));
+			}
+			int[] reported = new int[containers.length];
+			String subTask = null;
+			boolean done = false;
+			while (!done) {
+				done = true;
+				for (int i = 0; i < containers.length; i++) {
+					Future<IStatus> future = futures.get(i);
+					if (result[i] == null) {
+						try {
+							result[i] = future.get(done ? 100 : 0, TimeUnit.MILLISECONDS);
+						} catch (TimeoutException e) {
+							done = false;
+						} catch (ExecutionException e) {
+							result[i] = getStatus(e.getCause());
+						}
+					}
+					int worked = result[i] != null ? totalWork[i] : monitors[i].getWorked(totalWork[i]);
+					if (worked > reported[i]) {
+						monitor.worked(worked - reported[i]);
+						reported[i] = worked;
+					}
+					String locationTask = result[i] == null ? monitors[i].getSubTask() : null;
+					if (locationTask != null && !locationTask.equals(subTask)) {
+						subTask = locationTask;
+						monitor.subTask(subTask);
+					}
+				}
+				if (monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+			}
+			completed = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} finally {
+			if (!completed) {
+				// do not return while locations are still being resolved
+				for (LocationProgressMonitor locationMonitor : monitors) {
+					if (locationMonitor != null) {
+						locationMonitor.setCanceled(true);
+					}
+				}
+				awaitCompletion(futures);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the status of a location whose resolution failed with the given
+	 * exception.
+	 */
+	private static IStatus getStatus(Throwable exception) {
+		if (exception instanceof OperationCanceledException) {
+			return Status.CANCEL_STATUS;
+		}
+		if (exception instanceof CoreException) {
+			return ((CoreException) exception).getStatus();
+		}
+		String message = exception.getMessage() != null ? exception.getMessage() : exception.toString();
+		return new Status(IStatus.ERROR, PDECore.PLUGIN_ID, message, exception);
+	}
+
+	/**
+	 * Waits until the given resolutions have completed, even if the calling
+	 * thread is interrupted.
+	 */
+	private static void awaitCompletion(List<Future<IStatus>> futures) {
+		boolean interrupted = false;
+		for (Future<IStatus> future : futures) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the pool of threads resolving target locations, sized to the
+	 * given number of threads. Idle threads are released after a while.
+	 */
+	private static synchronized ExecutorService getResolver(int threads) {
+		if (fgResolver == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			fgResolver = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+				Thread thread = new Thread(r, "Target location resolver " + threadCount.incrementAndGet()); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			});
+			fgResolver.allowCoreThreadTimeOut(true);
+		} else if (threads > fgResolver.getMaximumPoolSize()) {
+			fgResolver.setMaximumPoolSize(threads);
+			fgResolver.setCorePoolSize(threads);
+		} else if (threads < fgResolver.getMaximumPoolSize()) {
+			fgResolver.setCorePoolSize(threads);
+			fgResolver.setMaximumPoolSize(threads);
+		}
+		return fgResolver;
+	}
+
+	/**
+	 * Returns the maximum number of locations resolved concurrently, which can
+	 * be set with the <code>pde.target.resolveThreads</code> system property.
+	 * A value of one resolves all locations sequentially on the calling thread.
+	 */
+	private static int getResolveThreads() {
+		int defaultThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+		try {
+			return Integer.parseInt(System.getProperty("pde.target.resolveThreads", Integer.toString(defaultThreads))); //$NON-NLS-1$
+		} catch (NumberFormatException e) {
+			return defaultThreads;
+		}
+	}
+
+	/**
+	 * Thread safe progress monitor of a single location resolved by
+	 * {@link TargetDefinition#resolveLocations(ITargetLocation[], int[], SubMonitor)}
+	 */
+	private static class LocationProgressMonitor extends NullProgressMonitor {
+
+		private volatile double fTotalWork;
+		private volatile boolean fCanceled;
+		private volatile String fSubTask;
+		private final DoubleAdder fWorked = new DoubleAdder();
+
+		@Override
+		public boolean isCanceled() {
+			return fCanceled;
+		}
+
+		@Override
+		public void setCanceled(boolean canceled) {
+			fCanceled = canceled;
+		}
+
+		@Override
+		public void beginTask(String name, int totalWork) {
+			fTotalWork = totalWork;
+			setTaskName(name);
+		}
+
+		@Override
+		public void setTaskName(String name) {
+			if (name != null && !name.isEmpty()) {
+				fSubTask = name;
+			}
+		}
+
+		@Override
+		public void subTask(String name) {
+			setTaskName(name);
+		}
+
+		/**
+		 * Returns the last task or subtask reported by the location, or
+		 * <code>null</code> if none.
+		 */
+		String getSubTask() {
+			return fSubTask;
+		}
+
+		@Override
+		public void worked(int work) {
+			internalWorked(work);
+		}
+
+		@Override
+		public void internalWorked(double work) {
+			fWorked.add(work);
+		}
+
+		/**
+		 * Returns the work done so far, scaled to the given amount of work.
+		 */
+		int getWorked(int scale) {
+			double total = fTotalWork;
+			if (total <= 0) {
+				return 0;
+			}
+			return (int) Math.min(scale, fWorked.sum() * scale / total);
+		}
+	}
+
 	@Override
 	public boolean isResolved() {
 		ITargetLocation[] containers = getTargetLocations();
@@ -499,6 +779,8 @@ public class TargetDefinition implements ITargetDefinition {
 	@Override
 	public void setIncluded(NameVersionDescriptor[] included) {
 		fIncluded = included;
+		fContentHash = null;
+		fIncludedBundles = null;
 		if (included != null && fRoot != null) {
 			Arrays.sort(included, (o1, o2) -> {
 				int compareType = o1.getType().compareTo(o2.getType());
@@ -522,44 +804,74 @@ public class TargetDefinition implements ITargetDefinition {
 
 	@Override
 	public TargetBundle[] getBundles() {
-		return getBundles(false);
+		TargetBundle[] bundles = getBundles(false);
+		// clients may modify the returned array
+		return bundles != null ? bundles.clone() : null;
 	}
 
 	@Override
 	public TargetBundle[] getAllBundles() {
-		return getBundles(true);
+		TargetBundle[] bundles = getBundles(true);
+		return bundles != null ? bundles.clone() : null;
 	}
 
 	/**
 	 * Gathers and returns all or included bundles in this target or <code>null</code> if
-	 * not resolved.
+	 * not resolved. The bundles are computed once and returned again as long as the
+	 * locations and the included bundles of this target do not change, so the returned
+	 * array must not be modified.
 	 *
 	 * @param allBundles whether to consider all bundles, or just those included/optional
 	 * @return bundles or <code>null</code>
 	 */
-	private TargetBundle[] getBundles(boolean allBundles) {
+	private synchronized TargetBundle[] getBundles(boolean allBundles) {
 		if (isResolved()) {
 			ITargetLocation[] containers = getTargetLocations();
 			if (containers != null) {
-				List<TargetBundle> all = new ArrayList<>();
-				for (ITargetLocation container : containers) {
-					TargetBundle[] bundles = container.getBundles();
-					if (bundles != null) {
-						Collections.addAll(all, bundles);
+				TargetBundle[][] locationBundles = new TargetBundle[containers.length][];
+				for (int i = 0; i < containers.length; i++) {
+					locationBundles[i] = containers[i].getBundles();
+				}
+				if (!isSameBundles(locationBundles, fLocationBundles)) {
+					List<TargetBundle> all = new ArrayList<>();
+					for (TargetBundle[] bundles : locationBundles) {
+						if (bundles != null) {
+							Collections.addAll(all, bundles);
+						}
 					}
+					fLocationBundles = locationBundles;
+					fAllBundles = all.toArray(new TargetBundle[all.size()]);
+					fIncludedBundles = null;
+					fOtherBundles = null;
 				}
-
-				TargetBundle[] allResolvedBundles = all.toArray(new TargetBundle[all.size()]);
 				if (allBundles) {
-					return allResolvedBundles;
+					return fAllBundles;
+				}
+				if (fIncludedBundles == null) {
+					fIncludedBundles = filterBundles(fAllBundles, getIncluded());
 				}
-				return filterBundles(allResolvedBundles, getIncluded());
+				return fIncludedBundles;
 			}
 			return new TargetBundle[0];
 		}
 		return null;
 	}
 
+	/**
+	 * Returns whether the locations returned the identical bundle arrays
+	 */
+	private static boolean isSameBundles(TargetBundle[][] bundles1, TargetBundle[][] bundles2) {
+		if (bundles2 == null || bundles1.length != bundles2.length) {
+			return false;
+		}
+		for (int i = 0; i < bundles1.length; i++) {
+			if (bundles1[i] != bundles2[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	private TargetBundle[] filterBundles(TargetBundle[] bundles, NameVersionDescriptor[] filter) {
 		if (filter == null) {
 			// No filtering to do
@@ -845,6 +1157,7 @@ public class TargetDefinition implements ITargetDefinition {
 			bundles = null;
 		}
 		fImplicit = bundles;
+		fContentHash = null;
 		if (fRoot != null && bundles != null && bundles.length > 0) {
 			Element implicitDependenciesElement = TargetDefinitionDocumentTools.getChildElement(fRoot,
 					TargetDefinitionPersistenceHelper.IMPLICIT);
@@ -874,6 +1187,7 @@ public class TargetDefinition implements ITargetDefinition {
 	@Override
 	public void setJREContainer(IPath containerPath) {
 		fJREContainer = containerPath;
+		fContentHash = null;
 		if (fRoot != null && containerPath != null) {
 			Element jreElement = TargetDefinitionDocumentTools.getChildElement(fRoot,
 					TargetDefinitionPersistenceHelper.TARGET_JRE);
@@ -915,6 +1229,13 @@ public class TargetDefinition implements ITargetDefinition {
 	 * specified definition
 	 */
 	public boolean isContentEquivalent(ITargetDefinition definition) {
+		if (definition instanceof TargetDefinition) {
+			String hash = getContentHash();
+			String otherHash = ((TargetDefinition) definition).getContentHash();
+			if (!hash.startsWith(PARTIAL_HASH_PREFIX) && !otherHash.startsWith(PARTIAL_HASH_PREFIX)) {
+				return hash.equals(otherHash);
+			}
+		}
 		if (isNullOrEqual(getArch(), definition.getArch()) && isNullOrEqual(getNL(), definition.getNL()) && isNullOrEqual(getOS(), definition.getOS()) && isNullOrEqual(getWS(), definition.getWS())) {
 			if (isArgsNullOrEqual(getProgramArguments(), definition.getProgramArguments()) && isArgsNullOrEqual(getVMArguments(), definition.getVMArguments()) && isNullOrEqual(getJREContainer(), definition.getJREContainer())) {
 				// Check includes/optional
@@ -932,6 +1253,85 @@ public class TargetDefinition implements ITargetDefinition {
 		return false;
 	}
 
+	/**
+	 * Returns a hash of the content of this target that determines the set of
+	 * bundles and features it resolves to: its environment settings, arguments,
+	 * JRE container, included bundles, locations and implicit dependencies, but
+	 * not its name. Two targets are equivalent as defined by
+	 * {@link #isContentEquivalent(ITargetDefinition)} exactly when their hashes
+	 * are equal, unless a location does not support content hashing, in which
+	 * case the hash starts with <code>partial:</code> and only differing hashes
+	 * are meaningful.
+	 * <p>
+	 * The hash is computed once and recomputed after the content of the target
+	 * changed, see {@link #incrementSequenceNumber()}.
+	 * </p>
+	 *
+	 * @return the content hash of this target
+	 */
+	public String getContentHash() {
+		String hash = fContentHash;
+		if (hash == null) {
+			hash = computeContentHash();
+			fContentHash = hash;
+		}
+		return hash;
+	}
+
+	private String computeContentHash() {
+		StringBuilder content = new StringBuilder();
+		appendContent(content, "arch", getArch()); //$NON-NLS-1$
+		appendContent(content, "nl", getNL()); //$NON-NLS-1$
+		appendContent(content, "os", getOS()); //$NON-NLS-1$
+		appendContent(content, "ws", getWS()); //$NON-NLS-1$
+		String programArgs = getProgramArguments();
+		appendContent(content, "programArgs", programArgs == null ? null : Arrays.asList(DebugPlugin.parseArguments(programArgs))); //$NON-NLS-1$
+		String vmArgs = getVMArguments();
+		appendContent(content, "vmArgs", vmArgs == null ? null : Arrays.asList(DebugPlugin.parseArguments(vmArgs))); //$NON-NLS-1$
+		appendContent(content, "jre", getJREContainer()); //$NON-NLS-1$
+		appendContent(content, "included", getIncluded() == null ? null : Arrays.asList(getIncluded())); //$NON-NLS-1$
+		boolean partial = false;
+		ITargetLocation[] locations = getTargetLocations();
+		if (locations != null) {
+			for (ITargetLocation location : locations) {
+				String key = location instanceof AbstractBundleContainer ? ((AbstractBundleContainer) location).getContentKey() : null;
+				if (key == null) {
+					// equal locations have equal hash codes, so the hash can still tell different targets apart
+					partial = true;
+					key = location.getClass().getName() + '@' + location.hashCode();
+				} else {
+					key = location.getType() + ':' + key;
+				}
+				appendContent(content, "location", key); //$NON-NLS-1$
+			}
+		}
+		appendContent(content, "implicit", getImplicitDependencies() == null ? null : Arrays.asList(getImplicitDependencies())); //$NON-NLS-1$
+
+		byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8)); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			return PARTIAL_HASH_PREFIX + Integer.toHexString(content.toString().hashCode());
+		}
+		StringBuilder hash = new StringBuilder(partial ? PARTIAL_HASH_PREFIX : ""); //$NON-NLS-1$
+		for (byte b : digest) {
+			hash.append(String.format("%02x", b)); //$NON-NLS-1$
+		}
+		return hash.toString();
+	}
+
+	private static void appendContent(StringBuilder content, String key, Object value) {
+		content.append(key);
+		if (value == null) {
+			content.append('-');
+		} else {
+			// the length prefix keeps values containing separators unambiguous
+			String string = value.toString();
+			content.append('=').append(string.length()).append(':').append(string);
+		}
+		content.append('\n');
+	}
+
 	private boolean isNullOrEqual(Object o1, Object o2) {
 		if (o1 == null) {
 			return o2 == null;
@@ -1105,11 +1505,12 @@ public class TargetDefinition implements ITargetDefinition {
 			return null;
 		}
 
+		// cleared if the bundles of the locations changed
+		TargetBundle[] allBundles = getAllBundles();
 		if (fOtherBundles != null) {
 			return fOtherBundles;
 		}
 
-		TargetBundle[] allBundles = getAllBundles();
 		Map<String, TargetBundle> remaining = new HashMap<>();
 		for (TargetBundle allBundle : allBundles) {
 			remaining.put(allBundle.getBundleInfo().getSymbolicName(), allBundle);
@@ -1210,6 +1611,7 @@ public class TargetDefinition implements ITargetDefinition {
 	 * @return the current sequence number after it has been increased
 	 */
 	public int incrementSequenceNumber() {
+		fContentHash = null;
 		return ++fSequenceNumber;
 	}
 
@@ -33,10 +33,6 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IResourceProxy;
-import org.eclipse.core.resources.IResourceProxyVisitor;
-import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IPath;
@@ -97,32 +93,6 @@ public class TargetPlatformService implements ITargetPlatformService {
 	 */
 	private StringBuilder fVMArguments = null;
 
-	/**
-	 * Collects target files in the workspace
-	 */
-	class ResourceProxyVisitor implements IResourceProxyVisitor {
-
-		private List<IResource> fList;
-
-		protected ResourceProxyVisitor(List<IResource> list) {
-			fList = list;
-		}
-
-		/**
-		 * @see org.eclipse.core.resources.IResourceProxyVisitor#visit(org.eclipse.core.resources.IResourceProxy)
-		 */
-		@Override
-		public boolean visit(IResourceProxy proxy) {
-			if (proxy.getType() == IResource.FILE) {
-				if (ICoreConstants.TARGET_FILE_EXTENSION.equalsIgnoreCase(new Path(proxy.getName()).getFileExtension())) {
-					fList.add(proxy.requestResource());
-				}
-				return false;
-			}
-			return true;
-		}
-	}
-
 	private TargetPlatformService() {
 	}
 
@@ -249,18 +219,15 @@ public class TargetPlatformService implements ITargetPlatformService {
 	 * @return all target definition handles in the workspace
 	 */
 	private List<WorkspaceFileTargetHandle> findWorkspaceTargetDefinitions() {
-		List<IResource> files = new ArrayList<>(10);
-		ResourceProxyVisitor visitor = new ResourceProxyVisitor(files);
+		List<IFile> files;
 		try {
-			ResourcesPlugin.getWorkspace().getRoot().accept(visitor, IResource.NONE);
+			files = WorkspaceTargetIndex.getDefault().getTargetFiles();
 		} catch (CoreException e) {
 			PDECore.log(e);
 			return new ArrayList<>(0);
 		}
-		Iterator<IResource> iter = files.iterator();
 		List<WorkspaceFileTargetHandle> handles = new ArrayList<>(files.size());
-		while (iter.hasNext()) {
-			IFile file = (IFile) iter.next();
+		for (IFile file : files) {
 			handles.add(new WorkspaceFileTargetHandle(file));
 		}
 		return handles;
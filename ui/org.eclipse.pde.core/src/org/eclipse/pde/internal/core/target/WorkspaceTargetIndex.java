@@ -0,0 +1,285 @@
+/*******************************************************************************
+ *  Copyright (c) 2021 IBM Corporation and others.
+ *
+ *  This program and the accompanying materials
+ *  are made available under the terms of the Eclipse Public License 2.0
+ *  which accompanies this distribution, and is available at
+ *  https://www.eclipse.org/legal/epl-2.0/
+ *
+ *  SPDX-License-Identifier: EPL-2.0
+ *
+ *  Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.core.target;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.ISaveContext;
+import org.eclipse.core.resources.ISavedState;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.pde.internal.core.ICoreConstants;
+import org.eclipse.pde.internal.core.PDECore;
+
+/**
+ * Index of the target definition files in the workspace, so that
+ * {@link TargetPlatformService#getTargets(org.eclipse.core.runtime.IProgressMonitor)}
+ * does not need to visit all workspace resources.
+ * <p>
+ * The index is kept up to date from resource deltas. It is written to the PDE
+ * state location whenever the workspace is saved and restored in the next
+ * session together with the resource deltas that occurred since that save. If
+ * no saved index matching the saved workspace state exists, the workspace is
+ * visited once when the targets are first requested.
+ * </p>
+ */
+public class WorkspaceTargetIndex implements IResourceChangeListener {
+
+	/**
+	 * File in the PDE metadata area storing the index, containing the save
+	 * number of the workspace save it was written for followed by the full
+	 * paths of the target files, one per line
+	 */
+	private static final String INDEX_FILE = ".workspace_targets"; //$NON-NLS-1$
+
+	private static WorkspaceTargetIndex fgDefault;
+
+	/**
+	 * Full paths of the target files in the workspace, <code>null</code> if
+	 * the index has not been built yet
+	 */
+	private Set<IPath> fTargets;
+
+	private WorkspaceTargetIndex() {
+	}
+
+	/**
+	 * @return the index of target files of the workspace
+	 */
+	public synchronized static WorkspaceTargetIndex getDefault() {
+		if (fgDefault == null) {
+			fgDefault = new WorkspaceTargetIndex();
+		}
+		return fgDefault;
+	}
+
+	/**
+	 * Starts tracking target files, restoring the index saved in the previous
+	 * session if it matches the saved workspace state.
+	 *
+	 * @param savedState the state saved for PDE in the previous session or
+	 *            <code>null</code>
+	 */
+	public void start(ISavedState savedState) {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		workspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+		if (savedState != null) {
+			Set<IPath> targets = load(savedState.getSaveNumber());
+			if (targets != null) {
+				synchronized (this) {
+					fTargets = targets;
+				}
+				try {
+					savedState.processResourceChangeEvents(this);
+				} catch (RuntimeException e) {
+					// rebuild the index when first used
+					PDECore.log(e);
+					synchronized (this) {
+						fTargets = null;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops tracking target files.
+	 */
+	public void stop() {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+	}
+
+	/**
+	 * Returns the target definition files in the workspace, building the index
+	 * first if needed.
+	 *
+	 * @return the target files in the workspace
+	 * @throws CoreException if the workspace could not be visited
+	 */
+	public synchronized List<IFile> getTargetFiles() throws CoreException {
+		if (fTargets == null) {
+			Set<IPath> targets = new LinkedHashSet<>();
+			ResourcesPlugin.getWorkspace().getRoot().accept(proxy -> collect(proxy, targets), IResource.NONE);
+			fTargets = targets;
+		}
+		IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+		List<IFile> files = new ArrayList<>(fTargets.size());
+		for (IPath path : fTargets) {
+			files.add(root.getFile(path));
+		}
+		return files;
+	}
+
+	/**
+	 * Writes the index for the given workspace save and requests the resource
+	 * deltas since this save for the next session.
+	 *
+	 * @param context the workspace save context
+	 */
+	public void save(ISaveContext context) {
+		if (context.getKind() == ISaveContext.PROJECT_SAVE) {
+			return;
+		}
+		File indexFile = getIndexFile();
+		if (indexFile == null) {
+			return;
+		}
+		List<IPath> targets;
+		synchronized (this) {
+			if (fTargets == null) {
+				indexFile.delete();
+				return;
+			}
+			targets = new ArrayList<>(fTargets);
+		}
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(indexFile), StandardCharsets.UTF_8))) {
+			writer.write(Integer.toString(context.getSaveNumber()));
+			writer.write('\n');
+			for (IPath target : targets) {
+				writer.write(target.toPortableString());
+				writer.write('\n');
+			}
+		} catch (IOException e) {
+			PDECore.log(e);
+			indexFile.delete();
+			return;
+		}
+		context.needSaveNumber();
+		context.needDelta();
+	}
+
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+		IResourceDelta delta = event.getDelta();
+		if (delta == null) {
+			return;
+		}
+		synchronized (this) {
+			if (fTargets == null) {
+				return;
+			}
+			try {
+				delta.accept(this::visit);
+			} catch (CoreException e) {
+				PDECore.log(e);
+				fTargets = null;
+			}
+		}
+	}
+
+	private boolean visit(IResourceDelta delta) throws CoreException {
+		IResource resource = delta.getResource();
+		switch (resource.getType()) {
+		case IResource.FILE:
+			if (isTargetFile(resource.getName())) {
+				if (delta.getKind() == IResourceDelta.REMOVED) {
+					fTargets.remove(resource.getFullPath());
+				} else if (delta.getKind() == IResourceDelta.ADDED) {
+					fTargets.add(resource.getFullPath());
+				}
+			}
+			return false;
+		case IResource.PROJECT:
+			IProject project = (IProject) resource;
+			if (delta.getKind() == IResourceDelta.REMOVED || !project.isOpen()) {
+				// closed projects report no member deltas
+				removeTargets(project.getFullPath());
+				return false;
+			}
+			if ((delta.getFlags() & IResourceDelta.OPEN) != 0 || delta.getKind() == IResourceDelta.ADDED) {
+				project.accept(proxy -> collect(proxy, fTargets), IResource.NONE);
+				return false;
+			}
+			return true;
+		default:
+			if (delta.getKind() == IResourceDelta.REMOVED) {
+				removeTargets(resource.getFullPath());
+				return false;
+			}
+			return true;
+		}
+	}
+
+	private static boolean collect(IResourceProxy proxy, Set<IPath> targets) {
+		if (proxy.getType() == IResource.FILE) {
+			if (isTargetFile(proxy.getName())) {
+				targets.add(proxy.requestFullPath());
+			}
+			return false;
+		}
+		return true;
+	}
+
+	private void removeTargets(IPath container) {
+		fTargets.removeIf(container::isPrefixOf);
+	}
+
+	private static boolean isTargetFile(String name) {
+		return ICoreConstants.TARGET_FILE_EXTENSION.equalsIgnoreCase(new Path(name).getFileExtension());
+	}
+
+	private static Set<IPath> load(int saveNumber) {
+		File indexFile = getIndexFile();
+		if (indexFile == null || !indexFile.isFile()) {
+			return null;
+		}
+		Set<IPath> targets = new LinkedHashSet<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+			if (!Integer.toString(saveNumber).equals(reader.readLine())) {
+				// written for another save, the deltas since the saved state do not apply to it
+				return null;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty()) {
+					targets.add(Path.fromPortableString(line));
+				}
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		return targets;
+	}
+
+	private static File getIndexFile() {
+		PDECore core = PDECore.getDefault();
+		if (core == null) {
+			return null;
+		}
+		return new File(core.getStateLocation().toFile(), INDEX_FILE);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2013 IBM Corporation and others.
+ * Copyright (c) 2003, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -24,6 +24,7 @@ import org.eclipse.pde.internal.core.exports.PluginExportOperation;
 
 public class PluginExportTask extends BaseExportTask {
 	protected IPluginModelBase[] fPlugins = new IPluginModelBase[0];
+	protected boolean fIncremental;
 
 	@Override
 	protected Job getExportJob(String jobName) {
@@ -37,6 +38,7 @@ public class PluginExportTask extends BaseExportTask {
 		info.qualifier = fQualifier;
 		info.allowBinaryCycles = fAllowBinaryCycles;
 		info.useWorkspaceCompiledClasses = fUseWorkspaceCompiledClasses;
+		info.incremental = fIncremental;
 		// if destination is relative, then make it absolute
 		if (!new File(fDestination).isAbsolute()) {
 			File home = new File(getLocation().getFileName()).getParentFile();
@@ -60,4 +62,14 @@ public class PluginExportTask extends BaseExportTask {
 		fPlugins = models.toArray(new IPluginModelBase[models.size()]);
 	}
 
+	/**
+	 * Whether plug-ins unchanged since their last export to the destination
+	 * directory are skipped. Only used when exporting to a directory.
+	 *
+	 * @param incremental whether to export incrementally
+	 */
+	public void setIncremental(String incremental) {
+		fIncremental = Boolean.parseBoolean(incremental);
+	}
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2015 EclipseSource Corporation and others.
+ * Copyright (c) 2009, 2021 EclipseSource Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -48,6 +48,8 @@ public class PDELaunchingPlugin extends Plugin implements IPDEConstants {
 
 	private PDEPreferencesManager fPreferenceManager;
 
+	private LaunchBundleSetCache fBundleSetCache;
+
 	public PDELaunchingPlugin() {
 		fInstance = this;
 	}
@@ -127,6 +129,12 @@ public class PDELaunchingPlugin extends Plugin implements IPDEConstants {
 		if (fDebugPluginUtil != null) {
 			fDebugPluginUtil.removeListener();
 		}
+		synchronized (this) {
+			if (fBundleSetCache != null) {
+				fBundleSetCache.shutdown();
+				fBundleSetCache = null;
+			}
+		}
 		LauncherUtils.shutdown();
 		super.stop(context);
 	}
@@ -137,6 +145,14 @@ public class PDELaunchingPlugin extends Plugin implements IPDEConstants {
 		return fLaunchListener;
 	}
 
+	public synchronized LaunchBundleSetCache getBundleSetCache() {
+		if (fBundleSetCache == null) {
+			fBundleSetCache = new LaunchBundleSetCache();
+			fBundleSetCache.start();
+		}
+		return fBundleSetCache;
+	}
+
 	public OSGiFrameworkManager getOSGiFrameworkManager() {
 		if (fOSGiFrameworkManager == null)
 			fOSGiFrameworkManager = new OSGiFrameworkManager();
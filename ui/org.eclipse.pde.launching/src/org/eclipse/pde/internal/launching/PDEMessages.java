@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009 EclipseSource Corporation and others.
+ * Copyright (c) 2009, 2021 EclipseSource Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -24,6 +24,7 @@ public class PDEMessages extends NLS {
 	}
 
 	public static String LauncherUtils_cannotLaunchApplication;
+	public static String LauncherUtils_deleteClearedWorkspace;
 
 	public static String Launcher_error_code13;
 	public static String Launcher_error_code15;
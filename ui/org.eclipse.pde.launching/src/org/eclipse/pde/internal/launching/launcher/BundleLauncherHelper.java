@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2017 IBM Corporation and others.
+ * Copyright (c) 2007, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -27,6 +27,7 @@ import org.eclipse.pde.internal.build.IPDEBuildConstants;
 import org.eclipse.pde.internal.core.*;
 import org.eclipse.pde.internal.core.ifeature.*;
 import org.eclipse.pde.internal.launching.IPDEConstants;
+import org.eclipse.pde.internal.launching.PDELaunchingPlugin;
 import org.eclipse.pde.launching.IPDELauncherConstants;
 import org.osgi.framework.Version;
 
@@ -52,7 +53,26 @@ public class BundleLauncherHelper {
 		return getTargetBundleMap(configuration, null);
 	}
 
+	/**
+	 * Returns the bundles launched by the given configuration mapped to their
+	 * start levels. The bundles of configurations that are not working copies
+	 * are cached until the configuration or the plug-in models change.
+	 *
+	 * @param configuration the launch configuration
+	 * @param osgi whether the configuration is an OSGi framework launch
+	 * @return a modifiable map of the bundles to their start levels
+	 * @throws CoreException if the configuration cannot be read
+	 * @see LaunchBundleSetCache
+	 */
 	public static Map<IPluginModelBase, String> getMergedBundleMap(ILaunchConfiguration configuration, boolean osgi) throws CoreException {
+		PDELaunchingPlugin plugin = PDELaunchingPlugin.getDefault();
+		if (plugin == null) {
+			return computeMergedBundleMap(configuration, osgi);
+		}
+		return plugin.getBundleSetCache().getMergedBundleMap(configuration, osgi);
+	}
+
+	static Map<IPluginModelBase, String> computeMergedBundleMap(ILaunchConfiguration configuration, boolean osgi) throws CoreException {
 
 		ILaunchConfigurationWorkingCopy wc = getWorkingCopy(configuration);
 		if (!osgi) {
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.internal.launching.launcher;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.debug.core.ILaunchConfiguration;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.State;
+import org.eclipse.osgi.service.resolver.StateDelta;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.internal.core.*;
+
+/**
+ * Caches the bundles launched by launch configurations, so that launching or
+ * validating the same configuration again does not resolve its selected
+ * plug-ins and features again.
+ * <p>
+ * The bundles are cached by the attributes of the configuration, so that any
+ * change of the configuration selects another entry. All entries are dropped
+ * when plug-in or feature models change or the target state is resolved again.
+ * Working copies are not cached as they are modified by the migration of the
+ * configuration.
+ * </p>
+ * <p>
+ * The validation of the launched bundles is cached as well, by the set of
+ * bundles and the platform properties they are resolved with, so that
+ * launching an unchanged set of bundles does not resolve them again.
+ * </p>
+ *
+ * @see BundleLauncherHelper#getMergedBundleMap(ILaunchConfiguration, boolean)
+ * @see LaunchValidationOperation
+ */
+public class LaunchBundleSetCache implements IPluginModelListener, IFeatureModelListener, IStateDeltaListener {
+
+	/**
+	 * Maximum number of configurations cached
+	 */
+	private static final int MAX_ENTRIES = 32;
+
+	private final Map<List<Object>, Map<IPluginModelBase, String>> fEntries = new LinkedHashMap<List<Object>, Map<IPluginModelBase, String>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Object>, Map<IPluginModelBase, String>> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * Maximum number of validations cached, each one holds a resolved state
+	 */
+	private static final int MAX_VALIDATIONS = 4;
+
+	private final Map<List<Object>, BundleValidationOperation> fValidations = new LinkedHashMap<List<Object>, BundleValidationOperation>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Object>, BundleValidationOperation> eldest) {
+			return size() > MAX_VALIDATIONS;
+		}
+	};
+
+	/**
+	 * Incremented whenever the cache is cleared, so that bundles computed
+	 * concurrently with a model change are not cached
+	 */
+	private final AtomicLong fGeneration = new AtomicLong();
+
+	public void start() {
+		PDECore.getDefault().getModelManager().addPluginModelListener(this);
+		PDECore.getDefault().getModelManager().addStateDeltaListener(this);
+		PDECore.getDefault().getFeatureModelManager().addFeatureModelListener(this);
+	}
+
+	public void shutdown() {
+		PDECore core = PDECore.getDefault();
+		if (core != null) {
+			core.getModelManager().removePluginModelListener(this);
+			core.getModelManager().removeStateDeltaListener(this);
+			core.getFeatureModelManager().removeFeatureModelListener(this);
+		}
+		clear();
+	}
+
+	/**
+	 * Returns the bundles to launch for the given configuration with their
+	 * start levels, computing them only if the configuration or the models
+	 * changed since they were last computed.
+	 *
+	 * @param configuration the launch configuration
+	 * @param osgi whether the configuration is an OSGi framework launch
+	 * @return a new map of the bundles to their start levels
+	 * @throws CoreException if the configuration cannot be read
+	 */
+	public Map<IPluginModelBase, String> getMergedBundleMap(ILaunchConfiguration configuration, boolean osgi) throws CoreException {
+		if (configuration.isWorkingCopy()) {
+			return computeMergedBundleMap(configuration, osgi);
+		}
+		List<Object> key = Arrays.asList(Boolean.valueOf(osgi), configuration.getAttributes());
+		Map<IPluginModelBase, String> bundles;
+		synchronized (fEntries) {
+			bundles = fEntries.get(key);
+		}
+		if (bundles == null) {
+			long generation = fGeneration.get();
+			bundles = Collections.unmodifiableMap(computeMergedBundleMap(configuration, osgi));
+			synchronized (fEntries) {
+				if (generation == fGeneration.get()) {
+					fEntries.put(key, bundles);
+				}
+			}
+		}
+		return new LinkedHashMap<>(bundles);
+	}
+
+	/**
+	 * Computes the bundles to launch for a configuration that is not cached.
+	 *
+	 * @param configuration the launch configuration
+	 * @param osgi whether the configuration is an OSGi framework launch
+	 * @return a new map of the bundles to their start levels
+	 * @throws CoreException if the configuration cannot be read
+	 */
+	protected Map<IPluginModelBase, String> computeMergedBundleMap(ILaunchConfiguration configuration, boolean osgi) throws CoreException {
+		return BundleLauncherHelper.computeMergedBundleMap(configuration, osgi);
+	}
+
+	/**
+	 * Returns a validation of the given bundles, running it only if the same
+	 * bundles have not been validated with the same platform properties since
+	 * the models last changed. The returned operation must not be modified.
+	 *
+	 * @param models the bundles to validate
+	 * @param properties the platform properties to resolve the bundles with
+	 * @param monitor the progress monitor
+	 * @return the validation, which has been run
+	 * @throws CoreException if the validation fails
+	 */
+	public BundleValidationOperation getValidation(IPluginModelBase[] models, Dictionary<?, ?>[] properties, IProgressMonitor monitor) throws CoreException {
+		Set<BundleDescription> bundles = new HashSet<>();
+		for (IPluginModelBase model : models) {
+			BundleDescription bundle = model.getBundleDescription();
+			if (bundle != null) {
+				bundles.add(bundle);
+			}
+		}
+		List<Object> key = Arrays.asList(bundles, BundleValidationOperation.getComparableProperties(properties));
+		BundleValidationOperation operation;
+		synchronized (fEntries) {
+			operation = fValidations.get(key);
+		}
+		if (operation == null) {
+			long generation = fGeneration.get();
+			operation = new BundleValidationOperation(models, properties);
+			operation.run(monitor);
+			synchronized (fEntries) {
+				if (generation == fGeneration.get()) {
+					fValidations.put(key, operation);
+				}
+			}
+		}
+		return operation;
+	}
+
+	private void clear() {
+		synchronized (fEntries) {
+			fGeneration.incrementAndGet();
+			fEntries.clear();
+			fValidations.clear();
+		}
+	}
+
+	@Override
+	public void modelsChanged(PluginModelDelta delta) {
+		clear();
+	}
+
+	@Override
+	public void modelsChanged(IFeatureModelDelta delta) {
+		clear();
+	}
+
+	@Override
+	public void stateResolved(StateDelta delta) {
+		clear();
+	}
+
+	@Override
+	public void stateChanged(State newState) {
+		clear();
+	}
+}
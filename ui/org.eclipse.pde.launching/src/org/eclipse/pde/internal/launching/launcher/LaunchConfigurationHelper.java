@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2017 IBM Corporation and others.
+ * Copyright (c) 2005, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -15,6 +15,8 @@ package org.eclipse.pde.internal.launching.launcher;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.Map.Entry;
 import org.eclipse.core.runtime.*;
@@ -460,15 +462,45 @@ public class LaunchConfigurationHelper {
 		return buffer.toString();
 	}
 
+	/**
+	 * Saves the given properties to the file unless it already contains the
+	 * same properties, so that the configuration files of a launch keep their
+	 * time stamps as long as the launched runtime does not change.
+	 *
+	 * @param file the file to write
+	 * @param properties the properties to store
+	 */
 	public static void save(File file, Properties properties) {
-		try (FileOutputStream stream = new FileOutputStream(file)) {
-			properties.store(stream, "Configuration File"); //$NON-NLS-1$
-			stream.flush();
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try {
+			properties.store(content, "Configuration File"); //$NON-NLS-1$
+			if (file.isFile() && getEntries(content.toByteArray()).equals(getEntries(Files.readAllBytes(file.toPath())))) {
+				return;
+			}
+			try (FileOutputStream stream = new FileOutputStream(file)) {
+				content.writeTo(stream);
+				stream.flush();
+			}
 		} catch (IOException e) {
 			PDECore.logException(e);
 		}
 	}
 
+	/**
+	 * Returns the sorted property lines of a stored properties file, ignoring
+	 * the comments as they contain the time the file was stored.
+	 */
+	private static List<String> getEntries(byte[] content) {
+		List<String> entries = new ArrayList<>();
+		for (String line : new String(content, StandardCharsets.ISO_8859_1).split("\\r?\\n")) { //$NON-NLS-1$
+			if (!line.startsWith("#")) { //$NON-NLS-1$
+				entries.add(line);
+			}
+		}
+		Collections.sort(entries);
+		return entries;
+	}
+
 	public static String getContributingPlugin(String productID) {
 		if (productID == null)
 			return null;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2018 IBM Corporation and others.
+ *  Copyright (c) 2007, 2021 IBM Corporation and others.
  *
  *  This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License 2.0
@@ -14,15 +14,12 @@
 package org.eclipse.pde.internal.launching.launcher;
 
 import java.io.*;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.runtime.*;
 import org.eclipse.debug.core.ILaunchConfiguration;
-import org.eclipse.jdt.internal.launching.environments.EnvironmentsManager;
 import org.eclipse.jdt.launching.IVMInstall;
 import org.eclipse.jdt.launching.JavaRuntime;
 import org.eclipse.jdt.launching.environments.IExecutionEnvironment;
@@ -31,9 +28,9 @@ import org.eclipse.osgi.service.resolver.State;
 import org.eclipse.pde.core.plugin.IPluginModelBase;
 import org.eclipse.pde.core.plugin.PluginRegistry;
 import org.eclipse.pde.internal.core.BundleValidationOperation;
+import org.eclipse.pde.internal.core.MinimalState;
 import org.eclipse.pde.internal.core.TargetPlatformHelper;
 import org.eclipse.pde.internal.launching.PDELaunchingPlugin;
-import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
 
 public abstract class LaunchValidationOperation implements IWorkspaceRunnable {
@@ -47,36 +44,44 @@ public abstract class LaunchValidationOperation implements IWorkspaceRunnable {
 
 	@Override
 	public void run(IProgressMonitor monitor) throws CoreException {
-		fOperation = new BundleValidationOperation(getModels(), getPlatformProperties());
-		fOperation.run(monitor);
+		fOperation = PDELaunchingPlugin.getDefault().getBundleSetCache().getValidation(getModels(), getPlatformProperties(), monitor);
 	}
 
 	protected abstract IPluginModelBase[] getModels() throws CoreException;
 
+	/**
+	 * Returns the platform properties to validate the launched bundles with,
+	 * one for each execution environment the launch VM is compatible with.
+	 * The profile of an environment is taken from the launched system bundle
+	 * if it contains one, and the system packages from the profile or else
+	 * from the launch VM. When they match the platform properties of the
+	 * target platform state, the validation can reuse the resolved target
+	 * platform state.
+	 *
+	 * @return the platform properties
+	 * @throws CoreException if the launch VM cannot be determined
+	 */
 	@SuppressWarnings("rawtypes")
 	protected Dictionary[] getPlatformProperties() throws CoreException {
 		IExecutionEnvironment[] envs = getMatchingEnvironments();
+		MinimalState state = TargetPlatformHelper.getPDEState();
 		if (envs.length == 0)
-			return new Dictionary[] {TargetPlatformHelper.getTargetEnvironment()};
+			return new Dictionary[] {TargetPlatformHelper.getTargetEnvironment(state)};
 
-		// add java profiles for those EE's that have a .profile file in the current system bundle
+		IVMInstall install = getVMInstall();
 		ArrayList<Dictionary<String, String>> result = new ArrayList<>(envs.length);
 		for (IExecutionEnvironment env : envs) {
+			// prefer the java profiles of the launched system bundle
 			Properties profileProps = getJavaProfileProperties(env.getId());
 			if (profileProps == null) {
-				// Java10 onwards, we take profile via this method
-				IExecutionEnvironment ev = EnvironmentsManager.getDefault().getEnvironment(env.getId());
-				profileProps = ev.getProfileProperties();
+				profileProps = env.getProfileProperties();
 			}
 			if (profileProps != null) {
-				Dictionary<String, String> props = TargetPlatformHelper.getTargetEnvironment();
+				Dictionary<String, String> props = TargetPlatformHelper.getTargetEnvironment(state);
 				String systemPackages = profileProps.getProperty(Constants.FRAMEWORK_SYSTEMPACKAGES);
 				if (systemPackages == null) {
-					// java 10 and beyond
-					Properties javaProfilePropertiesForVMPackage = getJavaProfilePropertiesForVMPackage(env.getId());
-					if (javaProfilePropertiesForVMPackage != null) {
-						systemPackages = javaProfilePropertiesForVMPackage.getProperty(Constants.FRAMEWORK_SYSTEMPACKAGES);
-					}
+					// java 10 and beyond, the packages are exported by the modules of the launch VM
+					systemPackages = TargetPlatformHelper.querySystemPackages(install, env);
 				}
 				if (systemPackages != null)
 					props.put(Constants.FRAMEWORK_SYSTEMPACKAGES, systemPackages);
@@ -88,41 +93,21 @@ public abstract class LaunchValidationOperation implements IWorkspaceRunnable {
 		}
 		if (!result.isEmpty())
 			return result.toArray(new Dictionary[result.size()]);
-		return new Dictionary[] {TargetPlatformHelper.getTargetEnvironment()};
-
+		return new Dictionary[] {TargetPlatformHelper.getTargetEnvironment(state)};
 	}
 
-	private static Properties getJavaProfilePropertiesForVMPackage(String ee) {
-		Bundle apitoolsBundle = Platform.getBundle("org.eclipse.pde.api.tools"); //$NON-NLS-1$
-		if (apitoolsBundle == null) {
-			return null;
-		}
-		URL systemPackageProfile = apitoolsBundle.getEntry("system_packages" + '/' + ee.replace('/', '_') + "-systempackages.profile"); //$NON-NLS-1$ //$NON-NLS-2$
-		if (systemPackageProfile != null) {
-			return getPropertiesFromURL(systemPackageProfile);
-
-		}
-		return null;
-	}
-
-	private static Properties getPropertiesFromURL(URL profileURL) {
-		try {
-			profileURL = FileLocator.resolve(profileURL);
-			URLConnection openConnection = profileURL.openConnection();
-			openConnection.setUseCaches(false);
-			try (InputStream is = openConnection.getInputStream()) {
-				Properties profile = new Properties();
-				profile.load(is);
-				return profile;
-			}
-		} catch (IOException e) {
-			PDELaunchingPlugin.log(e);
-		}
-		return null;
+	/**
+	 * Returns the VM the bundles are launched with.
+	 *
+	 * @return the launch VM or <code>null</code>
+	 * @throws CoreException if the launch VM cannot be determined
+	 */
+	protected IVMInstall getVMInstall() throws CoreException {
+		return VMHelper.getVMInstall(fLaunchConfiguration);
 	}
 
 	protected IExecutionEnvironment[] getMatchingEnvironments() throws CoreException {
-		IVMInstall install = VMHelper.getVMInstall(fLaunchConfiguration);
+		IVMInstall install = getVMInstall();
 		if (install == null)
 			return new IExecutionEnvironment[0];
 
@@ -148,48 +133,37 @@ public abstract class LaunchValidationOperation implements IWorkspaceRunnable {
 
 		File location = new File(model.getInstallLocation());
 		String filename = ee.replace('/', '_') + ".profile"; //$NON-NLS-1$
-		InputStream is = null;
-		ZipFile zipFile = null;
 		try {
 			// find the input stream to the profile properties file
 			if (location.isDirectory()) {
 				File file = new File(location, filename);
-				if (file.exists())
-					is = new FileInputStream(file);
+				if (file.exists()) {
+					try (InputStream is = new FileInputStream(file)) {
+						return loadProperties(is);
+					}
+				}
 			} else {
-				try {
-					zipFile = new ZipFile(location, ZipFile.OPEN_READ);
+				try (ZipFile zipFile = new ZipFile(location, ZipFile.OPEN_READ)) {
 					ZipEntry entry = zipFile.getEntry(filename);
-					if (entry != null)
-						is = zipFile.getInputStream(entry);
-				} catch (IOException e) {
-					// nothing to do
+					if (entry != null) {
+						try (InputStream is = zipFile.getInputStream(entry)) {
+							return loadProperties(is);
+						}
+					}
 				}
 			}
-			if (is != null) {
-				Properties profile = new Properties();
-				profile.load(is);
-				return profile;
-			}
 		} catch (IOException e) {
 			// nothing to do
-		} finally {
-			if (is != null)
-				try {
-					is.close();
-				} catch (IOException e) {
-					// nothing to do
-				}
-			if (zipFile != null)
-				try {
-					zipFile.close();
-				} catch (IOException e) {
-					// nothing to do
-				}
 		}
 		return null;
 	}
 
+	private static Properties loadProperties(InputStream is) throws IOException {
+		Properties profile = new Properties();
+		profile.load(is);
+		return profile;
+	}
+
 	public boolean hasErrors() {
 		return fOperation.hasErrors();
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2003, 2020 IBM Corporation and others.
+ * Copyright (c) 2003, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -16,9 +16,15 @@ package org.eclipse.pde.internal.launching.launcher;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.*;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.debug.core.*;
 import org.eclipse.jdt.core.*;
 import org.eclipse.jdt.launching.IJavaLaunchConfigurationConstants;
@@ -30,6 +36,7 @@ import org.eclipse.pde.internal.core.project.PDEProject;
 import org.eclipse.pde.internal.core.util.CoreUtility;
 import org.eclipse.pde.internal.launching.IPDEConstants;
 import org.eclipse.pde.internal.launching.PDELaunchingPlugin;
+import org.eclipse.pde.internal.launching.PDEMessages;
 import org.eclipse.pde.launching.IPDELauncherConstants;
 import org.osgi.framework.*;
 
@@ -43,6 +50,17 @@ public class LauncherUtils {
 
 	private static final String TIMESTAMP = "timestamp"; //$NON-NLS-1$
 	private static final String FILE_NAME = "dep-timestamp.properties"; //$NON-NLS-1$
+
+	/**
+	 * Prefix of the directories cleared workspaces are renamed to before they
+	 * are deleted in the background
+	 */
+	private static final String CLEARED_WORKSPACE_PREFIX = ".pde_cleared_"; //$NON-NLS-1$
+
+	/**
+	 * The renamed workspaces currently deleted by a background job
+	 */
+	private static final Set<File> fDeleting = new HashSet<>();
 	private static Properties fLastRun;
 	/**
 	 * Stores the last known launch mode so status handlers can open the correct launch configuration dialog
@@ -126,19 +144,120 @@ public class LauncherUtils {
 					if (configuration.getAttribute(IPDEConstants.DOCLEARLOG, false)) {
 						LauncherUtils.clearWorkspaceLog(workspace);
 					} else {
-						CoreUtility.deleteContent(workspaceFile, subMon.split(90));
+						deleteWorkspace(workspaceFile, subMon.split(90));
 					}
 				}
 			} else if (configuration.getAttribute(IPDEConstants.DOCLEARLOG, false)) {
 				LauncherUtils.clearWorkspaceLog(workspace);
 			} else {
-				CoreUtility.deleteContent(workspaceFile, subMon.split(90));
+				deleteWorkspace(workspaceFile, subMon.split(90));
 			}
 		}
 
 		subMon.split(90);
 	}
 
+	/**
+	 * Deletes the given workspace directory. Unless disabled with the
+	 * <code>pde.launching.asyncClear</code> system property, the workspace is
+	 * only renamed aside so that the launch can go on immediately, and a
+	 * background job deletes the renamed directory together with the ones
+	 * left over by previous clears of the same workspace. A workspace that
+	 * cannot be renamed, for example because files in it are still open, is
+	 * deleted right away, and so is a workspace that is a symbolic link, as
+	 * renaming it would only move the link aside.
+	 *
+	 * @param workspace the workspace directory
+	 * @param monitor progress monitor for deleting the workspace in place
+	 */
+	static void deleteWorkspace(File workspace, IProgressMonitor monitor) {
+		File parent = workspace.getParentFile();
+		if (parent == null || !Boolean.parseBoolean(System.getProperty("pde.launching.asyncClear", "true")) //$NON-NLS-1$ //$NON-NLS-2$
+				|| Files.isSymbolicLink(workspace.toPath())) {
+			CoreUtility.deleteContent(workspace, monitor);
+			return;
+		}
+		String prefix = CLEARED_WORKSPACE_PREFIX + workspace.getName() + '_';
+		List<File> cleared = new ArrayList<>();
+		File[] leftovers = parent.listFiles((dir, name) -> name.startsWith(prefix));
+		if (leftovers != null) {
+			cleared.addAll(Arrays.asList(leftovers));
+		}
+		File target = new File(parent, prefix + System.currentTimeMillis());
+		try {
+			Files.move(workspace.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			cleared.add(target);
+		} catch (IOException e) {
+			CoreUtility.deleteContent(workspace, monitor);
+		}
+		synchronized (fDeleting) {
+			// directories already being deleted by the job of an earlier launch
+			cleared.removeAll(fDeleting);
+			fDeleting.addAll(cleared);
+		}
+		if (cleared.isEmpty()) {
+			return;
+		}
+		Job job = new Job(PDEMessages.LauncherUtils_deleteClearedWorkspace) {
+			@Override
+			protected IStatus run(IProgressMonitor jobMonitor) {
+				try {
+					for (File directory : cleared) {
+						if (jobMonitor.isCanceled()) {
+							return Status.CANCEL_STATUS;
+						}
+						deleteTree(directory.toPath(), jobMonitor);
+					}
+				} finally {
+					synchronized (fDeleting) {
+						fDeleting.removeAll(cleared);
+					}
+				}
+				return jobMonitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	/**
+	 * Deletes a directory tree without following symbolic links. Files that
+	 * cannot be deleted are skipped, their directories are deleted with the
+	 * next workspace clear.
+	 */
+	private static void deleteTree(java.nio.file.Path root, IProgressMonitor monitor) {
+		try {
+			Files.walkFileTree(root, new SimpleFileVisitor<java.nio.file.Path>() {
+				@Override
+				public FileVisitResult visitFile(java.nio.file.Path file, BasicFileAttributes attrs) {
+					delete(file);
+					return monitor.isCanceled() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(java.nio.file.Path file, IOException exc) {
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(java.nio.file.Path dir, IOException exc) {
+					delete(dir);
+					return monitor.isCanceled() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+				}
+
+				private void delete(java.nio.file.Path path) {
+					try {
+						Files.deleteIfExists(path);
+					} catch (IOException e) {
+						// left for the next clear
+					}
+				}
+			});
+		} catch (IOException e) {
+			PDECore.logException(e);
+		}
+	}
+
 	public static boolean generateConfigIni() throws CoreException {
 		Status status = new Status(IStatus.ERROR, IPDEConstants.PLUGIN_ID, GENERATE_CONFIG_INI, null, null);
 		IStatusHandler statusHandler = DebugPlugin.getDefault().getStatusHandler(status);
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.builders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.util.*;
+import org.eclipse.core.resources.*;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.internal.core.builders.IncrementalErrorReporter;
+import org.eclipse.pde.internal.core.builders.PDEMarkerFactory;
+import org.junit.*;
+
+public class IncrementalErrorReporterTest {
+
+	private IProject project;
+	private IFile file;
+	private final List<IMarkerDelta> markerDeltas = Collections.synchronizedList(new ArrayList<>());
+	private final IResourceChangeListener listener = event -> markerDeltas
+			.addAll(Arrays.asList(event.findMarkerDeltas(PDEMarkerFactory.MARKER_ID, false)));
+
+	@Before
+	public void setUp() throws CoreException {
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(getClass().getSimpleName());
+		project.create(null);
+		project.open(null);
+		file = project.getFile("file.txt");
+		file.create(new ByteArrayInputStream(new byte[0]), true, null);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(listener, IResourceChangeEvent.POST_CHANGE);
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(listener);
+		project.delete(true, true, null);
+	}
+
+	@Test
+	public void testSameMarkersCauseNoDelta() throws CoreException {
+		apply(1, "first", 1, "second");
+		IMarker[] markers = findMarkers();
+		assertThat(markers).hasSize(2);
+		markerDeltas.clear();
+
+		apply(1, "first", 1, "second");
+
+		assertThat(markerDeltas).isEmpty();
+		assertThat(findMarkers()).containsExactlyInAnyOrder(markers);
+	}
+
+	@Test
+	public void testUpdateQuickFixAttributes() throws CoreException {
+		IncrementalErrorReporter reporter = new IncrementalErrorReporter(file);
+		reporter.addMarker("problem", 1, IMarker.SEVERITY_ERROR, 0, PDEMarkerFactory.CAT_OTHER)
+				.setAttribute(PDEMarkerFactory.BK_BUILD_ENTRY, "before");
+		reporter.applyMarkers();
+		IMarker marker = findMarkers()[0];
+		markerDeltas.clear();
+
+		reporter = new IncrementalErrorReporter(file);
+		reporter.addMarker("problem", 1, IMarker.SEVERITY_ERROR, 0, PDEMarkerFactory.CAT_OTHER)
+				.setAttribute(PDEMarkerFactory.BK_BUILD_ENTRY, "after");
+		reporter.applyMarkers();
+
+		assertThat(findMarkers()).containsExactly(marker);
+		assertThat(marker.getAttribute(PDEMarkerFactory.BK_BUILD_ENTRY)).isEqualTo("after");
+		assertThat(markerDeltas).hasSize(1);
+		assertThat(markerDeltas.get(0).getKind()).isEqualTo(IResourceDelta.CHANGED);
+	}
+
+	@Test
+	public void testReplaceMarkerOnOtherLine() throws CoreException {
+		apply(1, "problem");
+		IMarker marker = findMarkers()[0];
+		markerDeltas.clear();
+
+		apply(2, "problem");
+
+		assertThat(marker.exists()).isFalse();
+		IMarker[] markers = findMarkers();
+		assertThat(markers).hasSize(1);
+		assertThat(markers[0].getAttribute(IMarker.LINE_NUMBER, -1)).isEqualTo(2);
+		assertThat(markerDeltas).extracting(IMarkerDelta::getKind)
+				.containsExactlyInAnyOrder(IResourceDelta.ADDED, IResourceDelta.REMOVED);
+	}
+
+	/**
+	 * Applies error markers given as pairs of line and message.
+	 */
+	private void apply(Object... markers) {
+		IncrementalErrorReporter reporter = new IncrementalErrorReporter(file);
+		for (int i = 0; i < markers.length; i += 2) {
+			reporter.addMarker((String) markers[i + 1], (Integer) markers[i], IMarker.SEVERITY_ERROR, 0,
+					PDEMarkerFactory.CAT_OTHER);
+		}
+		reporter.applyMarkers();
+	}
+
+	private IMarker[] findMarkers() throws CoreException {
+		return file.findMarkers(PDEMarkerFactory.MARKER_ID, false, IResource.DEPTH_ZERO);
+	}
+}
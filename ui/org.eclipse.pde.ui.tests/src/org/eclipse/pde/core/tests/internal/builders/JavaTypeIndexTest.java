@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.builders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.eclipse.core.resources.*;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.*;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.pde.core.plugin.PluginRegistry;
+import org.eclipse.pde.internal.core.JavaTypeIndex;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.ui.tests.runtime.TestUtils;
+import org.eclipse.pde.ui.tests.util.ProjectUtils;
+import org.junit.*;
+
+/**
+ * Tests that the answers cached by the {@link JavaTypeIndex} are invalidated
+ * by changes of the Java model and of the PDE state.
+ */
+public class JavaTypeIndexTest {
+
+	private final List<IProject> projects = new ArrayList<>();
+	private JavaTypeIndex index;
+
+	@Before
+	public void setUp() {
+		index = PDECore.getDefault().getJavaTypeIndex();
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		for (IProject project : projects) {
+			project.delete(true, true, null);
+		}
+	}
+
+	@Test
+	public void testTypeAddedAfterNegativeLookup() throws Exception {
+		IJavaProject project = JavaCore.create(createProject("index.types", null));
+		createType(project.getProject(), "index.types", "Existing");
+		assertThat(index.isOnClasspath("index.types.Existing", project)).isTrue();
+		assertThat(index.isOnClasspath("index.types.Added", project)).isFalse();
+
+		createType(project.getProject(), "index.types", "Added");
+
+		assertThat(index.isOnClasspath("index.types.Added", project)).isTrue();
+		assertThat(index.getProjectPackages(project.getProject())).contains("index.types");
+	}
+
+	@Test
+	public void testClasspathChange() throws Exception {
+		IJavaProject project = JavaCore.create(createProject("index.client", null));
+		IProject library = createProject("index.library", null);
+		createType(library, "index.library", "Library");
+		assertThat(index.isOnClasspath("index.library.Library", project)).isFalse();
+
+		List<IClasspathEntry> classpath = new ArrayList<>(Arrays.asList(project.getRawClasspath()));
+		classpath.add(JavaCore.newProjectEntry(library.getFullPath()));
+		project.setRawClasspath(classpath.toArray(new IClasspathEntry[classpath.size()]), null);
+		TestUtils.waitForJobs("JavaTypeIndexTest.testClasspathChange", 100, 10000);
+
+		assertThat(index.isOnClasspath("index.library.Library", project)).isTrue();
+	}
+
+	@Test
+	public void testDiscouragedPackageChange() throws Exception {
+		IProject library = createProject("index.api", null);
+		setManifest(library, "index.api", "index.api.internal");
+		IProject client = createProject("index.consumer", "index.api");
+		IJavaProject javaClient = JavaCore.create(client);
+		TestUtils.waitForJobs("JavaTypeIndexTest.testDiscouragedPackageChange", 100, 10000);
+		assertThat(index.isDiscouraged("index.api.internal.Type", javaClient, getBundle(client))).isFalse();
+
+		// the state delta of the library must drop the discouraged packages of the client
+		setManifest(library, "index.api", "index.api.internal;x-internal:=true");
+		TestUtils.waitForJobs("JavaTypeIndexTest.testDiscouragedPackageChange", 100, 10000);
+
+		assertThat(index.isDiscouraged("index.api.internal.Type", javaClient, getBundle(client))).isTrue();
+	}
+
+	private IProject createProject(String name, String requireBundle) throws Exception {
+		IProject project = ProjectUtils.createBundleProject(name, requireBundle);
+		projects.add(project);
+		return project;
+	}
+
+	private static BundleDescription getBundle(IProject project) {
+		return PluginRegistry.findModel(project).getBundleDescription();
+	}
+
+	private static void createType(IProject project, String packageName, String typeName) throws CoreException {
+		IFolder folder = project.getFolder(ProjectUtils.SRC_FOLDER);
+		for (String segment : packageName.split("\\.")) {
+			folder = folder.getFolder(segment);
+			if (!folder.exists()) {
+				folder.create(true, true, null);
+			}
+		}
+		String source = "package " + packageName + ";\npublic class " + typeName + " {}\n";
+		folder.getFile(typeName + ".java").create(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)),
+				true, null);
+	}
+
+	private static void setManifest(IProject project, String symbolicName, String exportPackage) throws CoreException {
+		String manifest = "Manifest-Version: 1.0\n" //
+				+ "Bundle-ManifestVersion: 2\n" //
+				+ "Bundle-SymbolicName: " + symbolicName + "\n" //
+				+ "Bundle-Version: 1.0.0\n" //
+				+ "Export-Package: " + exportPackage + "\n";
+		project.getFile("META-INF/MANIFEST.MF")
+				.setContents(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)), true, false, null);
+	}
+}
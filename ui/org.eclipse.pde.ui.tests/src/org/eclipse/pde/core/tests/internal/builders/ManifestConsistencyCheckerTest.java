@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.builders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import org.eclipse.core.resources.*;
+import org.eclipse.core.runtime.*;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.PDECoreMessages;
+import org.eclipse.pde.internal.core.builders.PDEMarkerFactory;
+import org.eclipse.pde.internal.core.project.PDEProject;
+import org.eclipse.pde.ui.tests.runtime.TestUtils;
+import org.eclipse.pde.ui.tests.util.ProjectUtils;
+import org.junit.*;
+
+/**
+ * Tests the validation of the projects touched because their dependencies
+ * changed, which are validated together and concurrently.
+ */
+public class ManifestConsistencyCheckerTest {
+
+	private static final String THREADS = "pde.validation.threads";
+
+	private final List<IProject> projects = new ArrayList<>();
+	private IProject library;
+	private boolean autoBuilding;
+
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty(THREADS, "4");
+		// only validate in the builds of the tests
+		IWorkspaceDescription description = ResourcesPlugin.getWorkspace().getDescription();
+		autoBuilding = description.isAutoBuilding();
+		description.setAutoBuilding(false);
+		ResourcesPlugin.getWorkspace().setDescription(description);
+		library = createProject("batch.lib", null);
+		for (int i = 1; i <= 4; i++) {
+			createProject("batch.user" + i, "batch.lib");
+		}
+		build();
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		System.clearProperty(THREADS);
+		IWorkspaceDescription description = ResourcesPlugin.getWorkspace().getDescription();
+		description.setAutoBuilding(autoBuilding);
+		ResourcesPlugin.getWorkspace().setDescription(description);
+		for (IProject project : projects) {
+			project.delete(true, true, null);
+		}
+	}
+
+	@Test
+	public void testValidateTouchedProjects() throws Exception {
+		for (IProject project : getUsers()) {
+			assertThat(getUnresolvedBundleErrors(project)).isEmpty();
+		}
+
+		// the users can no longer resolve the library and are touched
+		ProjectUtils.setManifest(library, "batch.renamed", null);
+		build();
+
+		for (IProject project : getUsers()) {
+			assertThat(getUnresolvedBundleErrors(project)).as(project.getName()).hasSize(1);
+			assertThat(project.getSessionProperty(PDECore.TOUCH_PROJECT)).as(project.getName()).isNull();
+		}
+		// the idle threads of the pool remain for a while after validating
+		assertThat(Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().startsWith("Plug-in validation"))).hasSizeGreaterThan(1);
+
+		ProjectUtils.setManifest(library, "batch.lib", null);
+		build();
+
+		for (IProject project : getUsers()) {
+			assertThat(getUnresolvedBundleErrors(project)).as(project.getName()).isEmpty();
+		}
+	}
+
+	@Test
+	public void testCancelledValidationKeepsProjectsTouched() throws Exception {
+		ProjectUtils.setManifest(library, "batch.renamed", null);
+		TestUtils.waitForJobs("ManifestConsistencyCheckerTest", 100, 10000);
+		// cancel while the touched projects are validated together
+		Set<String> verifying = getUsers().stream()
+				.map(project -> NLS.bind(PDECoreMessages.Builders_verifying, project.getName()))
+				.collect(Collectors.toSet());
+		IProgressMonitor monitor = new NullProgressMonitor() {
+			@Override
+			public void subTask(String name) {
+				if (verifying.contains(name)) {
+					setCanceled(true);
+				}
+			}
+		};
+		try {
+			ResourcesPlugin.getWorkspace().build(IncrementalProjectBuilder.INCREMENTAL_BUILD, monitor);
+		} catch (OperationCanceledException e) {
+			// expected
+		}
+		assertThat(monitor.isCanceled()).isTrue();
+
+		// projects not validated because of the cancellation are still touched
+		for (IProject project : getUsers()) {
+			if (getUnresolvedBundleErrors(project).isEmpty()) {
+				assertThat(project.getSessionProperty(PDECore.TOUCH_PROJECT)).as(project.getName()).isEqualTo(Boolean.TRUE);
+			}
+		}
+
+		// and validated by the next build
+		build();
+		for (IProject project : getUsers()) {
+			assertThat(getUnresolvedBundleErrors(project)).as(project.getName()).hasSize(1);
+		}
+	}
+
+	private List<IProject> getUsers() {
+		return projects.subList(1, projects.size());
+	}
+
+	private IProject createProject(String name, String requireBundle) throws Exception {
+		IProject project = ProjectUtils.createBundleProject(name, requireBundle);
+		projects.add(project);
+		return project;
+	}
+
+	private static void build() throws CoreException {
+		TestUtils.waitForJobs("ManifestConsistencyCheckerTest", 100, 10000);
+		ResourcesPlugin.getWorkspace().build(IncrementalProjectBuilder.INCREMENTAL_BUILD, new NullProgressMonitor());
+		TestUtils.waitForJobs("ManifestConsistencyCheckerTest", 100, 10000);
+	}
+
+	private static List<IMarker> getUnresolvedBundleErrors(IProject project) throws CoreException {
+		List<IMarker> errors = new ArrayList<>();
+		IFile manifest = PDEProject.getManifest(project);
+		for (IMarker marker : manifest.findMarkers(PDEMarkerFactory.MARKER_ID, true, IResource.DEPTH_ZERO)) {
+			if (marker.getAttribute(IMarker.SEVERITY, -1) == IMarker.SEVERITY_ERROR
+					&& marker.getAttribute(IMarker.MESSAGE, "").contains("'batch.lib'")) {
+				errors.add(marker);
+			}
+		}
+		return errors;
+	}
+}
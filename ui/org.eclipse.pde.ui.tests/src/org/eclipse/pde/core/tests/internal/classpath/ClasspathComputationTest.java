@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.classpath;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.*;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.core.plugin.PluginRegistry;
+import org.eclipse.pde.internal.core.*;
+import org.eclipse.pde.ui.tests.runtime.TestUtils;
+import org.eclipse.pde.ui.tests.util.ProjectUtils;
+import org.junit.*;
+
+/**
+ * Tests computing the required plug-ins classpath containers of several
+ * workspace plug-ins in parallel.
+ */
+public class ClasspathComputationTest {
+
+	private static final String COMPUTE_THREADS = "pde.classpath.computeThreads";
+
+	private final List<IProject> projects = new ArrayList<>();
+
+	@After
+	public void tearDown() throws CoreException {
+		System.clearProperty(COMPUTE_THREADS);
+		for (IProject project : projects) {
+			project.delete(true, null);
+		}
+	}
+
+	@Test
+	public void testContainersComputedOnDedicatedThreads() {
+		System.setProperty(COMPUTE_THREADS, "3");
+		// each container waits until all of them are computed
+		CyclicBarrier barrier = new CyclicBarrier(3);
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		IClasspathContainer[] containers = new IClasspathContainer[3];
+		for (int i = 0; i < containers.length; i++) {
+			containers[i] = new TestContainer(() -> {
+				threads.add(Thread.currentThread().getName());
+				barrier.await(10, TimeUnit.SECONDS);
+				return null;
+			});
+		}
+
+		PluginModelManager.computeClasspathEntries(containers);
+
+		assertThat(barrier.isBroken()).isFalse();
+		assertThat(threads).hasSize(3).allMatch(name -> name.startsWith("Plug-in classpath computation"));
+	}
+
+	@Test
+	public void testSharedEntriesMatchSeparateComputation() throws Exception {
+		IProject base = createProject("computation.base", null);
+		for (String name : new String[] { "computation.a", "computation.b", "computation.c" }) {
+			createProject(name, "computation.base,org.eclipse.core.runtime");
+		}
+		TestUtils.waitForJobs("ClasspathComputationTest", 100, 10000);
+
+		// changing the base plug-in updates the containers of its dependents
+		// in one batch
+		ProjectUtils.setManifest(base, "computation.base", "org.eclipse.osgi");
+		TestUtils.waitForJobs("ClasspathComputationTest", 100, 10000);
+
+		for (IProject project : projects.subList(1, projects.size())) {
+			IJavaProject javaProject = JavaCore.create(project);
+			IClasspathContainer container = JavaCore.getClasspathContainer(PDECore.REQUIRED_PLUGINS_CONTAINER_PATH,
+					javaProject);
+			IPluginModelBase model = PluginRegistry.findModel(project);
+			List<IPath> expected = getPaths(new RequiredPluginsClasspathContainer(model).getClasspathEntries());
+			assertThat(getPaths(container.getClasspathEntries())).isEqualTo(expected)
+					.anyMatch(path -> path.lastSegment().startsWith("org.eclipse.core.runtime"));
+		}
+	}
+
+	private IProject createProject(String name, String requireBundle) throws Exception {
+		IProject project = ProjectUtils.createBundleProject(name, requireBundle);
+		projects.add(project);
+		return project;
+	}
+
+	private static List<IPath> getPaths(IClasspathEntry[] entries) {
+		return Arrays.stream(entries).map(IClasspathEntry::getPath).collect(Collectors.toList());
+	}
+
+	/**
+	 * A container computing its entries with the given callable.
+	 */
+	private static class TestContainer implements IClasspathContainer {
+
+		private final Callable<IClasspathEntry[]> fComputation;
+
+		TestContainer(Callable<IClasspathEntry[]> computation) {
+			fComputation = computation;
+		}
+
+		@Override
+		public IClasspathEntry[] getClasspathEntries() {
+			try {
+				fComputation.call();
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return new IClasspathEntry[0];
+		}
+
+		@Override
+		public String getDescription() {
+			return "Test";
+		}
+
+		@Override
+		public int getKind() {
+			return K_APPLICATION;
+		}
+
+		@Override
+		public IPath getPath() {
+			return PDECore.REQUIRED_PLUGINS_CONTAINER_PATH;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.classpath;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.osgi.service.resolver.StateObjectFactory;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.internal.core.ExternalModelManager;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.plugin.ExternalPluginModel;
+import org.eclipse.pde.internal.core.util.CoreUtility;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Constants;
+
+/**
+ * Tests sharing the nested libraries of external jarred plug-ins between
+ * workspaces through the per-user library store.
+ */
+public class SharedLibraryStoreTest {
+
+	private static final String STORE_PROPERTY = "pde.sharedLibraryStore";
+	private static final String MAX_SIZE_PROPERTY = "pde.sharedLibraryStore.maxSize";
+	private static final String LIBRARY = "lib/nested.jar";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File storeDir;
+	private final List<File> extracted = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		storeDir = folder.newFolder("store");
+		System.setProperty(STORE_PROPERTY, storeDir.getAbsolutePath());
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty(STORE_PROPERTY);
+		System.clearProperty(MAX_SIZE_PROPERTY);
+		for (File library : extracted) {
+			CoreUtility.deleteContent(library.getParentFile().getParentFile());
+		}
+	}
+
+	@Test
+	public void testIdenticalLibrariesAreStoredOnce() throws Exception {
+		ExternalModelManager manager = new ExternalModelManager();
+
+		File first = getNestedLibrary(manager, createModel("store.identical.a", "content"));
+		File second = getNestedLibrary(manager, createModel("store.identical.b", "content"));
+
+		assertThat(first).hasContent("content");
+		assertThat(second).hasContent("content");
+		assertThat(getStoredLibraries()).hasSize(1);
+		assumeTrue(isLinkCountSupported(first));
+		assertThat(getLinkCount(first)).isEqualTo(3);
+	}
+
+	@Test
+	public void testLibrariesWithSameChecksumAreNotShared() throws Exception {
+		// a stored library with the same checksum and size but other content
+		byte[] content = "content1".getBytes(StandardCharsets.UTF_8);
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		File collision = new File(storeDir, Long.toHexString(crc.getValue()) + '-' + content.length + "/0000/nested.jar");
+		collision.getParentFile().mkdirs();
+		Files.write(collision.toPath(), "content2".getBytes(StandardCharsets.UTF_8));
+
+		File library = getNestedLibrary(new ExternalModelManager(), createModel("store.collision", "content1"));
+
+		assertThat(library).hasContent("content1");
+		assertThat(collision).hasContent("content2");
+		assertThat(getStoredLibraries()).hasSize(2);
+	}
+
+	@Test
+	public void testReusedLibraryIsNotModified() throws Exception {
+		ExternalModelManager manager = new ExternalModelManager();
+		getNestedLibrary(manager, createModel("store.reused.a", "content"));
+		File stored = findStored("content");
+		long modified = System.currentTimeMillis() - 60000;
+		stored.setLastModified(modified);
+		File stamp = new File(stored.getPath() + ".used");
+		stamp.setLastModified(modified);
+
+		getNestedLibrary(manager, createModel("store.reused.b", "content"));
+
+		// all links of the library share its modification time
+		assertThat(stored.lastModified()).isEqualTo(modified);
+		assertThat(stamp.lastModified()).isGreaterThan(modified);
+	}
+
+	@Test
+	public void testEvictUnreferencedLibrariesFirst() throws Exception {
+		ExternalModelManager manager = new ExternalModelManager();
+		IPluginModelBase usedModel = createModel("store.evict.used", "used");
+		getNestedLibrary(manager, usedModel);
+		File unused = getNestedLibrary(manager, createModel("store.evict.unused", "unused"));
+		assumeTrue(isLinkCountSupported(unused));
+		File usedStored = findStored("used");
+		File unusedStored = findStored("unused");
+		// the unused library is the most recently used one
+		new File(usedStored.getPath() + ".used").setLastModified(System.currentTimeMillis() - 60000);
+
+		// dropping the unused plug-in from the target deletes its workspace copy
+		setMaxSize(usedStored.length());
+		new ExternalModelManager().setModels(getModels(usedModel));
+
+		assertThat(unused).doesNotExist();
+		assertThat(usedStored).exists();
+		assertThat(unusedStored).doesNotExist();
+		assertThat(unusedStored.getParentFile()).doesNotExist();
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsedLibrariesFirst() throws Exception {
+		ExternalModelManager manager = new ExternalModelManager();
+		IPluginModelBase olderModel = createModel("store.lru.older", "older");
+		IPluginModelBase newerModel = createModel("store.lru.newer", "newer");
+		File older = getNestedLibrary(manager, olderModel);
+		getNestedLibrary(manager, newerModel);
+		File olderStored = findStored("older");
+		File newerStored = findStored("newer");
+		new File(olderStored.getPath() + ".used").setLastModified(System.currentTimeMillis() - 60000);
+
+		setMaxSize(newerStored.length());
+		new ExternalModelManager().setModels(getModels(olderModel, newerModel));
+
+		assertThat(olderStored).doesNotExist();
+		assertThat(newerStored).exists();
+		// evicting never breaks the workspace copies
+		assertThat(older).hasContent("older");
+	}
+
+	@Test
+	public void testNoEvictionWithinBound() throws Exception {
+		IPluginModelBase model = createModel("store.bound", "content");
+		getNestedLibrary(new ExternalModelManager(), model);
+
+		new ExternalModelManager().setModels(getModels(model));
+
+		assertThat(findStored("content")).exists();
+	}
+
+	private File getNestedLibrary(ExternalModelManager manager, IPluginModelBase model) {
+		File library = manager.getNestedLibrary(model, LIBRARY).toFile();
+		extracted.add(library);
+		return library;
+	}
+
+	/**
+	 * Returns the models of the current target, which keep their extracted
+	 * libraries when the target changes, and the given models.
+	 */
+	private static IPluginModelBase[] getModels(IPluginModelBase... models) {
+		List<IPluginModelBase> all = new ArrayList<>(
+				Arrays.asList(PDECore.getDefault().getModelManager().getExternalModelManager().getAllModels()));
+		all.addAll(Arrays.asList(models));
+		return all.toArray(new IPluginModelBase[0]);
+	}
+
+	private static void setMaxSize(long bytes) {
+		System.setProperty(MAX_SIZE_PROPERTY, Double.toString(bytes / (1024 * 1024.0)));
+	}
+
+	private IPluginModelBase createModel(String symbolicName, String libraryContent) throws Exception {
+		File bundle = new File(folder.getRoot(), symbolicName + "_1.0.0.jar");
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(bundle))) {
+			out.putNextEntry(new ZipEntry(LIBRARY));
+			out.write(libraryContent.getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		Hashtable<String, String> manifest = new Hashtable<>();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+		manifest.put(Constants.BUNDLE_VERSION, "1.0.0");
+		StateObjectFactory factory = Platform.getPlatformAdmin().getFactory();
+		ExternalPluginModel model = new ExternalPluginModel();
+		model.setInstallLocation(bundle.getAbsolutePath());
+		model.setBundleDescription(factory.createBundleDescription(factory.createState(true), manifest,
+				bundle.getAbsolutePath(), 1));
+		model.setEnabled(true);
+		return model;
+	}
+
+	private List<File> getStoredLibraries() {
+		List<File> libraries = new ArrayList<>();
+		for (File keyDir : storeDir.listFiles(File::isDirectory)) {
+			for (File entryDir : keyDir.listFiles(File::isDirectory)) {
+				libraries.addAll(Arrays.asList(entryDir.listFiles((dir, name) -> !name.endsWith(".used"))));
+			}
+		}
+		return libraries;
+	}
+
+	private File findStored(String content) throws IOException {
+		for (File stored : getStoredLibraries()) {
+			if (content.equals(new String(Files.readAllBytes(stored.toPath()), StandardCharsets.UTF_8))) {
+				return stored;
+			}
+		}
+		throw new AssertionError("no stored library with content " + content);
+	}
+
+	private static boolean isLinkCountSupported(File file) {
+		try {
+			return Files.getAttribute(file.toPath(), "unix:nlink") instanceof Integer;
+		} catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static int getLinkCount(File file) throws IOException {
+		return (Integer) Files.getAttribute(file.toPath(), "unix:nlink");
+	}
+}
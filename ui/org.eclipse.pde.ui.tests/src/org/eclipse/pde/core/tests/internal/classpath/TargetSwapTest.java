@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.classpath;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.*;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.*;
+import org.eclipse.pde.core.IModel;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.core.plugin.ModelEntry;
+import org.eclipse.pde.core.target.*;
+import org.eclipse.pde.internal.core.*;
+import org.eclipse.pde.internal.core.target.TargetPlatformService;
+import org.eclipse.pde.ui.tests.runtime.TestUtils;
+import org.eclipse.pde.ui.tests.util.ProjectUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that switching the target platform updates the plug-in models, sends
+ * a single delta for the changed plug-ins and updates the classpath of the
+ * workspace plug-ins depending on them, with and without swapping in the new
+ * target while the current one remains available.
+ */
+public class TargetSwapTest {
+
+	private static final String HOT_SWAP = "pde.target.hotSwap";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ITargetPlatformService tpService;
+	private ITargetDefinition initialTarget;
+	private final List<IProject> projects = new ArrayList<>();
+	private final List<PluginModelDelta> deltas = Collections.synchronizedList(new ArrayList<>());
+	private final IPluginModelListener listener = deltas::add;
+	private File sharedDir;
+	private File firstDir;
+	private File secondDir;
+
+	@Before
+	public void setUp() throws Exception {
+		tpService = PDECore.getDefault().acquireService(ITargetPlatformService.class);
+		initialTarget = tpService.getWorkspaceTargetDefinition();
+
+		// swap.c is in both targets, swap.a changes its version, swap.b is
+		// removed and swap.d is added
+		sharedDir = folder.newFolder("shared");
+		createBundle(sharedDir, "swap.c", "1.0.0");
+		firstDir = folder.newFolder("first");
+		createBundle(firstDir, "swap.a", "1.0.0");
+		createBundle(firstDir, "swap.b", "1.0.0");
+		secondDir = folder.newFolder("second");
+		createBundle(secondDir, "swap.a", "2.0.0");
+		createBundle(secondDir, "swap.d", "1.0.0");
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		System.clearProperty(HOT_SWAP);
+		getModelManager().removePluginModelListener(listener);
+		for (IProject project : projects) {
+			project.delete(true, true, null);
+		}
+		new LoadTargetDefinitionJob(initialTarget).runInWorkspace(new NullProgressMonitor());
+	}
+
+	@Test
+	public void testSwapTarget() throws Exception {
+		loadTarget(firstDir);
+		IJavaProject client = createClientProject("swap.client", "swap.a");
+		IJavaProject unaffected = createClientProject("swap.unaffected", "swap.c");
+		assertThat(getRequiredLibraries(client)).contains("swap.a_1.0.0.jar");
+		IClasspathContainer unaffectedContainer = getContainer(unaffected);
+
+		getModelManager().addPluginModelListener(listener);
+		loadTarget(secondDir);
+
+		assertTargetSwitched();
+		List<PluginModelDelta> targetDeltas = getTargetDeltas();
+		assertThat(targetDeltas).hasSize(1);
+		PluginModelDelta delta = targetDeltas.get(0);
+		assertThat(delta.getAddedEntries()).extracting(ModelEntry::getId).containsExactly("swap.d");
+		assertThat(delta.getRemovedEntries()).extracting(ModelEntry::getId).containsExactly("swap.b");
+		assertThat(delta.getChangedEntries()).extracting(ModelEntry::getId).containsExactly("swap.a");
+		// the plug-ins depending only on unchanged plug-ins keep their classpath
+		assertThat(getContainer(unaffected)).isSameAs(unaffectedContainer);
+		assertThat(getRequiredLibraries(client)).contains("swap.a_2.0.0.jar").doesNotContain("swap.a_1.0.0.jar");
+	}
+
+	@Test
+	public void testSwapTargetWithBundleRebuiltInPlace() throws Exception {
+		loadTarget(firstDir);
+		File bundle = new File(firstDir, "swap.a_1.0.0.jar");
+		long modified = bundle.lastModified();
+		// the same version built again with other content
+		createBundle(firstDir, "swap.a", "1.0.0", "rebuilt.txt");
+		bundle.setLastModified(modified + 10000);
+
+		getModelManager().addPluginModelListener(listener);
+		loadTarget(firstDir);
+
+		List<PluginModelDelta> targetDeltas = getTargetDeltas();
+		assertThat(targetDeltas).hasSize(1);
+		assertThat(targetDeltas.get(0).getChangedEntries()).extracting(ModelEntry::getId).containsExactly("swap.a");
+	}
+
+	@Test
+	public void testCancelledSwapEmptiesTarget() throws Exception {
+		loadTarget(firstDir);
+		assertThat(getModelManager().findEntry("swap.b")).isNotNull();
+
+		// the workspace target is set before the models are reloaded, as when
+		// loading it
+		ITargetDefinition target = newTarget(secondDir);
+		((TargetPlatformService) tpService).setWorkspaceTargetDefinition(target);
+		PDECore.getDefault().getPreferencesManager().setValue(ICoreConstants.WORKSPACE_TARGET_HANDLE,
+				target.getHandle().getMemento());
+		IProgressMonitor monitor = new NullProgressMonitor() {
+			@Override
+			public void subTask(String name) {
+				// cancel while the new target is resolved
+				setCanceled(true);
+			}
+		};
+		getModelManager().targetReloaded(monitor);
+
+		// the models do not stay those of the previous target
+		assertThat(getModelManager().isCancelled()).isTrue();
+		assertThat(getModelManager().findEntry("swap.b")).isNull();
+		assertThat(getModelManager().getExternalModelManager().getAllModels()).extracting(IModel::getInstallLocation)
+				.noneMatch(location -> location.startsWith(firstDir.getAbsolutePath()));
+	}
+
+	@Test
+	public void testRecreateModelsWithoutHotSwap() throws Exception {
+		System.setProperty(HOT_SWAP, Boolean.FALSE.toString());
+		loadTarget(firstDir);
+		IJavaProject client = createClientProject("swap.client", "swap.a");
+		assertThat(getRequiredLibraries(client)).contains("swap.a_1.0.0.jar");
+
+		loadTarget(secondDir);
+
+		assertTargetSwitched();
+		assertThat(getRequiredLibraries(client)).contains("swap.a_2.0.0.jar").doesNotContain("swap.a_1.0.0.jar");
+	}
+
+	private void assertTargetSwitched() {
+		assertThat(getModelManager().findEntry("swap.b")).isNull();
+		assertThat(getModelManager().findEntry("swap.d")).isNotNull();
+		assertThat(getModelManager().findEntry("swap.a").getExternalModels())
+				.extracting(model -> model.getPluginBase().getVersion()).containsExactly("2.0.0");
+		assertThat(getModelManager().getExternalModelManager().getAllModels()).extracting(IModel::getInstallLocation)
+				.noneMatch(location -> location.startsWith(firstDir.getAbsolutePath()));
+	}
+
+	private List<PluginModelDelta> getTargetDeltas() {
+		List<PluginModelDelta> targetDeltas = new ArrayList<>();
+		synchronized (deltas) {
+			for (PluginModelDelta delta : deltas) {
+				List<ModelEntry> entries = new ArrayList<>();
+				entries.addAll(Arrays.asList(delta.getAddedEntries()));
+				entries.addAll(Arrays.asList(delta.getRemovedEntries()));
+				entries.addAll(Arrays.asList(delta.getChangedEntries()));
+				if (entries.stream().anyMatch(entry -> entry.getId().startsWith("swap."))) {
+					targetDeltas.add(delta);
+				}
+			}
+		}
+		return targetDeltas;
+	}
+
+	private void loadTarget(File bundleDir) throws CoreException {
+		new LoadTargetDefinitionJob(newTarget(bundleDir)).runInWorkspace(new NullProgressMonitor());
+		TestUtils.waitForJobs("TargetSwapTest.loadTarget " + bundleDir.getName(), 100, 10000);
+	}
+
+	private ITargetDefinition newTarget(File bundleDir) {
+		ITargetDefinition target = tpService.newTarget();
+		target.setName("Target of " + bundleDir.getName());
+		target.setTargetLocations(new ITargetLocation[] { tpService.newDirectoryLocation(sharedDir.getAbsolutePath()),
+				tpService.newDirectoryLocation(bundleDir.getAbsolutePath()) });
+		return target;
+	}
+
+	private IJavaProject createClientProject(String name, String requiredBundle) throws Exception {
+		IJavaProject javaProject = ProjectUtils.createPluginProject(name, null);
+		IProject project = javaProject.getProject();
+		projects.add(project);
+		String manifest = "Manifest-Version: 1.0\n" //
+				+ "Bundle-ManifestVersion: 2\n" //
+				+ "Bundle-SymbolicName: " + name + "\n" //
+				+ "Bundle-Version: 1.0.0\n" //
+				+ "Require-Bundle: " + requiredBundle + "\n";
+		IFile file = project.getFile("META-INF/MANIFEST.MF");
+		file.setContents(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)), true, false, null);
+		TestUtils.waitForJobs("TargetSwapTest.createClientProject " + name, 100, 10000);
+		IPluginModelBase model = getModelManager().findModel(project);
+		assertThat(model.getPluginBase().getImports()).hasSize(1);
+		return javaProject;
+	}
+
+	private static IClasspathContainer getContainer(IJavaProject project) throws JavaModelException {
+		return JavaCore.getClasspathContainer(PDECore.REQUIRED_PLUGINS_CONTAINER_PATH, project);
+	}
+
+	private static List<String> getRequiredLibraries(IJavaProject project) throws JavaModelException {
+		List<String> libraries = new ArrayList<>();
+		for (IClasspathEntry entry : getContainer(project).getClasspathEntries()) {
+			libraries.add(entry.getPath().lastSegment());
+		}
+		return libraries;
+	}
+
+	private static PluginModelManager getModelManager() {
+		return PDECore.getDefault().getModelManager();
+	}
+
+	private static void createBundle(File dir, String symbolicName, String version) throws IOException {
+		createBundle(dir, symbolicName, version, null);
+	}
+
+	private static void createBundle(File dir, String symbolicName, String version, String entry) throws IOException {
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.putValue("Bundle-ManifestVersion", "2");
+		attributes.putValue("Bundle-SymbolicName", symbolicName);
+		attributes.putValue("Bundle-Version", version);
+		File bundle = new File(dir, symbolicName + '_' + version + ".jar");
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(bundle), manifest)) {
+			// the manifest is all the content needed, other entries only change the jar
+			if (entry != null) {
+				out.putNextEntry(new JarEntry(entry));
+				out.write(entry.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+	}
+}
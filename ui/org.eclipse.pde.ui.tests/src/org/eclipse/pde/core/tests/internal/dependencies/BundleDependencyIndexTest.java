@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.dependencies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.pde.core.tests.internal.dependencies.StateFixture.names;
+
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.pde.internal.core.BundleDependencyIndex;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleException;
+
+public class BundleDependencyIndexTest {
+
+	private StateFixture fixture;
+	private BundleDependencyIndex index;
+
+	@Before
+	public void setUp() throws BundleException {
+		fixture = new StateFixture();
+		fixture.addBundle("a", "a.api", null, null, null);
+		fixture.addBundle("b", null, "a", null, null);
+		fixture.addBundle("c", null, null, "a.api", null);
+		fixture.addBundle("a.fragment", null, null, null, "a");
+		fixture.getState().resolve(false);
+		index = new BundleDependencyIndex(fixture::getState);
+	}
+
+	@Test
+	public void testRequiringBundles() {
+		assertThat(names(index.getRequiringBundles("a"))).containsExactlyInAnyOrder("b", "a.fragment");
+		assertThat(index.getRequiringBundles("b")).isEmpty();
+	}
+
+	@Test
+	public void testPackageProvidersAndRequirers() {
+		assertThat(names(index.getExportingBundles("a.api"))).containsExactly("a");
+		assertThat(names(index.getImportingBundles("a.api"))).containsExactly("c");
+		assertThat(index.getImportingBundles("unknown")).isEmpty();
+	}
+
+	@Test
+	public void testDependents() {
+		assertThat(names(index.getDependents("a"))).containsExactlyInAnyOrder("b", "c", "a.fragment");
+	}
+
+	@Test
+	public void testDependentsOfBundle() throws BundleException {
+		fixture.addBundle("u", null, "a,missing", null, null);
+		fixture.addBundle("v", null, "a;bundle-version=\"[2.0.0,3.0.0)\"", null, null);
+		index.stateResolved(fixture.getState().resolve(true));
+
+		assertThat(bundle("u").isResolved()).isFalse();
+		assertThat(names(index.getDependents(bundle("a")))).containsExactlyInAnyOrder("b", "c", "a.fragment", "u");
+		assertThat(names(index.getDependents(bundle("a"), false))).containsExactlyInAnyOrder("b", "c", "a.fragment");
+		assertThat(index.getDependents(bundle("c"))).isEmpty();
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws BundleException {
+		// build the index before changing the state
+		assertThat(names(index.getDependents("a"))).containsExactlyInAnyOrder("b", "c", "a.fragment");
+
+		fixture.getState().removeBundle(bundle("b"));
+		BundleDescription d = fixture.addBundle("d", null, null, "a.api", null);
+		index.stateResolved(fixture.getState().resolve(true));
+
+		assertThat(names(index.getDependents("a"))).containsExactlyInAnyOrder("c", "d", "a.fragment");
+		assertThat(names(index.getImportingBundles("a.api"))).containsExactlyInAnyOrder("c", "d");
+
+		fixture.getState().removeBundle(d);
+		index.stateResolved(fixture.getState().resolve(true));
+		assertThat(names(index.getImportingBundles("a.api"))).containsExactly("c");
+	}
+
+	@Test
+	public void testRebuildOnStateChange() throws BundleException {
+		assertThat(index.getRequiringBundles("a")).hasSize(2);
+		fixture.reset();
+		fixture.addBundle("a", null, null, null, null);
+		fixture.addBundle("e", null, "a", null, null);
+		fixture.getState().resolve(false);
+
+		assertThat(names(index.getRequiringBundles("a"))).containsExactly("e");
+	}
+
+	private BundleDescription bundle(String name) {
+		return fixture.bundle(name);
+	}
+}
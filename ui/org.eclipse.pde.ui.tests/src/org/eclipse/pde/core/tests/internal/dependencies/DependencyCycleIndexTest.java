@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.dependencies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.pde.core.tests.internal.dependencies.StateFixture.names;
+
+import java.util.List;
+import java.util.concurrent.*;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.pde.internal.core.DependencyCycleIndex;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleException;
+
+public class DependencyCycleIndexTest {
+
+	private StateFixture fixture;
+	private DependencyCycleIndex index;
+
+	@Before
+	public void setUp() throws BundleException {
+		fixture = new StateFixture();
+		fixture.addBundle("a", "a.api", "b", null, null);
+		fixture.addBundle("b", null, "c", null, null);
+		fixture.addBundle("c", null, "a", null, null);
+		fixture.addBundle("d", null, "a", null, null);
+		fixture.addBundle("e", "e.api", null, "f.api", null);
+		fixture.addBundle("f", "f.api", "e", null, null);
+		fixture.getState().resolve(false);
+		index = new DependencyCycleIndex(fixture::getState);
+	}
+
+	@Test
+	public void testRequireBundleCycle() {
+		assertThat(index.isInCycle(bundle("a"))).isTrue();
+		assertThat(names(index.getCycleMembers(bundle("b")))).containsExactlyInAnyOrder("a", "b", "c");
+		List<BundleDescription[]> cycles = index.getCycles(bundle("a"));
+		assertThat(cycles).hasSize(1);
+		assertThat(names(cycles.get(0))).containsExactly("a", "b", "c");
+	}
+
+	@Test
+	public void testImportPackageCycle() {
+		assertThat(names(index.getCycleMembers(bundle("e")))).containsExactlyInAnyOrder("e", "f");
+		assertThat(names(index.getCycles(bundle("f")).get(0))).containsExactly("f", "e");
+	}
+
+	@Test
+	public void testNoCycle() {
+		assertThat(index.isInCycle(bundle("d"))).isFalse();
+		assertThat(index.getCycleMembers(bundle("d"))).isEmpty();
+		assertThat(index.getCycles(bundle("d"))).isEmpty();
+		assertThat(names(index.getDependencyPath(bundle("d"), bundle("c")))).containsExactly("d", "a", "b", "c");
+		assertThat(index.getDependencyPath(bundle("a"), bundle("d"))).isNull();
+	}
+
+	@Test
+	public void testRecomputeOnStateChange() throws BundleException {
+		assertThat(index.isInCycle(bundle("a"))).isTrue();
+
+		BundleDescription c = bundle("c");
+		fixture.getState().removeBundle(c);
+		fixture.addBundle("c", null, null, null, null);
+		index.stateResolved(fixture.getState().resolve(true));
+
+		assertThat(index.isInCycle(bundle("a"))).isFalse();
+		assertThat(index.isInCycle(bundle("e"))).isTrue();
+	}
+
+	@Test
+	public void testStateProvidedOutsideOfLock() throws Exception {
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			// the state provider may notify the index from another thread, as
+			// the model manager does when it creates the state
+			DependencyCycleIndex[] notified = new DependencyCycleIndex[1];
+			notified[0] = new DependencyCycleIndex(() -> {
+				try {
+					executor.submit(() -> notified[0].stateChanged(fixture.getState())).get();
+				} catch (InterruptedException | ExecutionException e) {
+					throw new AssertionError(e);
+				}
+				return fixture.getState();
+			});
+
+			Future<Boolean> inCycle = executor.submit(() -> notified[0].isInCycle(bundle("a")));
+
+			assertThat(inCycle.get(30, TimeUnit.SECONDS)).isTrue();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private BundleDescription bundle(String name) {
+		return fixture.bundle(name);
+	}
+}
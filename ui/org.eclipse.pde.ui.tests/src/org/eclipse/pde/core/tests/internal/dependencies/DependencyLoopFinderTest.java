@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.dependencies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.core.plugin.*;
+import org.eclipse.pde.internal.core.builders.DependencyLoop;
+import org.eclipse.pde.internal.core.builders.DependencyLoopFinder;
+import org.eclipse.pde.ui.tests.runtime.TestUtils;
+import org.eclipse.pde.ui.tests.util.ProjectUtils;
+import org.junit.*;
+
+public class DependencyLoopFinderTest {
+
+	private static final List<IProject> projects = new ArrayList<>();
+
+	@BeforeClass
+	public static void setUpProjects() throws Exception {
+		// loop.c and loop.d form a loop, loop.a depends on loop.c through
+		// loop.b and loop.e has no dependencies
+		createProject("loop.a", "loop.b");
+		createProject("loop.b", "loop.c");
+		createProject("loop.c", "loop.d");
+		createProject("loop.d", "loop.c");
+		createProject("loop.e", null);
+		TestUtils.waitForJobs("DependencyLoopFinderTest", 100, 10000);
+	}
+
+	@AfterClass
+	public static void tearDownProjects() throws CoreException {
+		for (IProject project : projects) {
+			project.delete(true, true, null);
+		}
+		projects.clear();
+	}
+
+	@Test
+	public void testLoopsOfPlugin() {
+		DependencyLoop[] loops = DependencyLoopFinder.findLoops(plugin("loop.d"));
+
+		assertThat(loops).hasSize(1);
+		assertThat(ids(loops[0])).containsExactly("loop.d", "loop.c");
+		assertThat(DependencyLoopFinder.findLoops(plugin("loop.a"))).isEmpty();
+	}
+
+	@Test
+	public void testLoopsClosedByCandidates() {
+		IPlugin[] candidates = { plugin("loop.a"), plugin("loop.e") };
+
+		DependencyLoop[] loops = DependencyLoopFinder.findLoops(plugin("loop.c"), candidates, true);
+
+		// adding loop.a as a dependency of loop.c closes a loop through loop.b
+		assertThat(loops).hasSize(1);
+		assertThat(ids(loops[0])).containsExactly("loop.c", "loop.a", "loop.b");
+	}
+
+	@Test
+	public void testLoopsClosedByCandidatesAndExistingLoops() {
+		DependencyLoop[] loops = DependencyLoopFinder.findLoops(plugin("loop.c"), new IPlugin[] { plugin("loop.a") },
+				false);
+
+		assertThat(loops).hasSize(2);
+		assertThat(ids(loops[0])).containsExactly("loop.c", "loop.d");
+		assertThat(ids(loops[1])).containsExactly("loop.c", "loop.a", "loop.b");
+	}
+
+	@Test
+	public void testNoLoopClosedByIndependentCandidate() {
+		assertThat(DependencyLoopFinder.findLoops(plugin("loop.c"), new IPlugin[] { plugin("loop.e") }, true)).isEmpty();
+	}
+
+	private static IPlugin plugin(String id) {
+		return (IPlugin) PluginRegistry.findModel(id).getPluginBase();
+	}
+
+	private static String[] ids(DependencyLoop loop) {
+		return Arrays.stream(loop.getMembers()).map(IPluginBase::getId).toArray(String[]::new);
+	}
+
+	private static void createProject(String name, String requireBundle) throws Exception {
+		IProject project = ProjectUtils.createPluginProject(name, null).getProject();
+		projects.add(project);
+		StringBuilder manifest = new StringBuilder();
+		manifest.append("Manifest-Version: 1.0\n");
+		manifest.append("Bundle-ManifestVersion: 2\n");
+		manifest.append("Bundle-SymbolicName: ").append(name).append("\n");
+		manifest.append("Bundle-Version: 1.0.0\n");
+		if (requireBundle != null) {
+			manifest.append("Require-Bundle: ").append(requireBundle).append("\n");
+		}
+		project.getFile("META-INF/MANIFEST.MF").setContents(
+				new ByteArrayInputStream(manifest.toString().getBytes(StandardCharsets.UTF_8)), true, false, null);
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.dependencies;
+
+import java.util.Arrays;
+import java.util.Hashtable;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.osgi.service.resolver.*;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+
+/**
+ * A resolver state built from bundles declared by their dependency headers,
+ * for testing the indexes of the PDE state.
+ */
+class StateFixture {
+
+	private final StateObjectFactory factory = Platform.getPlatformAdmin().getFactory();
+	private State state = factory.createState(true);
+	private long nextId = 1;
+
+	State getState() {
+		return state;
+	}
+
+	/**
+	 * Replaces the state by a new, empty one.
+	 */
+	void reset() {
+		state = factory.createState(true);
+	}
+
+	BundleDescription bundle(String name) {
+		return state.getBundle(name, null);
+	}
+
+	BundleDescription addBundle(String name, String exportPackage, String requireBundle, String importPackage,
+			String fragmentHost) throws BundleException {
+		Hashtable<String, String> manifest = new Hashtable<>();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, name);
+		manifest.put(Constants.BUNDLE_VERSION, "1.0.0");
+		if (exportPackage != null) {
+			manifest.put(Constants.EXPORT_PACKAGE, exportPackage);
+		}
+		if (requireBundle != null) {
+			manifest.put(Constants.REQUIRE_BUNDLE, requireBundle);
+		}
+		if (importPackage != null) {
+			manifest.put(Constants.IMPORT_PACKAGE, importPackage);
+		}
+		if (fragmentHost != null) {
+			manifest.put(Constants.FRAGMENT_HOST, fragmentHost);
+		}
+		BundleDescription bundle = factory.createBundleDescription(state, manifest, name, nextId++);
+		state.addBundle(bundle);
+		return bundle;
+	}
+
+	static String[] names(BundleDescription[] bundles) {
+		return Arrays.stream(bundles).map(BundleDescription::getSymbolicName).toArray(String[]::new);
+	}
+}
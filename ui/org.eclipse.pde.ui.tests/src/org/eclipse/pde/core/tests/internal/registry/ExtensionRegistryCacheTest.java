@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.core.tests.internal.registry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import org.eclipse.core.runtime.IExtension;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.spi.RegistryContributor;
+import org.eclipse.osgi.service.resolver.StateObjectFactory;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.PDEExtensionRegistry;
+import org.eclipse.pde.internal.core.plugin.ExternalPluginModel;
+import org.eclipse.pde.internal.core.util.CoreUtility;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Constants;
+
+/**
+ * Tests the registry caches of the extensions of the target plug-ins, which
+ * are shared by sessions and kept per target content.
+ */
+public class ExtensionRegistryCacheTest {
+
+	private static final String PROVIDER = "registry.cache.provider";
+	private static final String CONSUMER = "registry.cache.consumer";
+	private static final String POINT_ID = PROVIDER + ".point";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File extensionsDir;
+	private Set<String> existingCaches;
+	private File provider;
+	private File consumer;
+
+	@Before
+	public void setUp() throws IOException {
+		extensionsDir = new File(PDECore.getDefault().getStateLocation().toFile(), ".extensions");
+		existingCaches = getCaches();
+		provider = createBundle(PROVIDER, "<extension-point id=\"point\" name=\"Point\"/>");
+		consumer = createBundle(CONSUMER, "<extension point=\"" + POINT_ID + "\"/>");
+	}
+
+	@After
+	public void tearDown() {
+		for (String cache : getCaches()) {
+			if (!existingCaches.contains(cache)) {
+				CoreUtility.deleteContent(new File(extensionsDir, cache));
+			}
+		}
+	}
+
+	@Test
+	public void testTargetRegistryDoesNotModifyWorkspaceCaches() {
+		Map<String, Long> before = getCacheTimestamps();
+		PDEExtensionRegistry registry = new PDEExtensionRegistry(createModels(1001));
+
+		assertThat(registry.hasExtensionPoint(POINT_ID)).isTrue();
+		registry.stop();
+
+		assertThat(getCacheTimestamps()).isEqualTo(before);
+	}
+
+	@Test
+	public void testCacheIsSharedBySessionsWithOtherBundleIds() {
+		TestRegistry first = new TestRegistry(createModels(1001));
+		assertThat(first.hasExtensionPoint(POINT_ID)).isTrue();
+		first.stop();
+		Set<String> caches = getCaches();
+
+		// a later session assigns other ids to the same bundles
+		IPluginModelBase[] models = createModels(2001);
+		TestRegistry second = new TestRegistry(models);
+
+		assertThat(second.findExtensionPointsForPlugin(models[0])).hasSize(1);
+		IExtension[] extensions = second.findExtensions(POINT_ID, false);
+		assertThat(extensions).hasSize(1);
+		assertThat(((RegistryContributor) extensions[0].getContributor()).getActualId()).isEqualTo("2002");
+		second.stop();
+		assertThat(getCaches()).isEqualTo(caches);
+	}
+
+	@Test
+	public void testChangedBundleUsesOtherCache() {
+		TestRegistry first = new TestRegistry(createModels(1001));
+		assertThat(first.hasExtensionPoint(POINT_ID)).isTrue();
+		first.stop();
+		Set<String> caches = getCaches();
+
+		consumer.setLastModified(consumer.lastModified() - 60000);
+		TestRegistry second = new TestRegistry(createModels(1001));
+		assertThat(second.hasExtensionPoint(POINT_ID)).isTrue();
+		second.stop();
+
+		Set<String> created = getCaches();
+		created.removeAll(caches);
+		assertThat(created).hasSize(1);
+	}
+
+	private IPluginModelBase[] createModels(long firstId) {
+		StateObjectFactory factory = Platform.getPlatformAdmin().getFactory();
+		return new IPluginModelBase[] { createModel(factory, provider, PROVIDER, firstId),
+				createModel(factory, consumer, CONSUMER, firstId + 1) };
+	}
+
+	private static IPluginModelBase createModel(StateObjectFactory factory, File bundle, String symbolicName,
+			long id) {
+		Hashtable<String, String> manifest = new Hashtable<>();
+		manifest.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+		manifest.put(Constants.BUNDLE_SYMBOLICNAME, symbolicName + ";singleton:=true");
+		manifest.put(Constants.BUNDLE_VERSION, "1.0.0");
+		ExternalPluginModel model = new ExternalPluginModel();
+		model.setInstallLocation(bundle.getAbsolutePath());
+		try {
+			model.setBundleDescription(
+					factory.createBundleDescription(factory.createState(true), manifest, bundle.getAbsolutePath(), id));
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		model.setEnabled(true);
+		return model;
+	}
+
+	private File createBundle(String symbolicName, String content) throws IOException {
+		File bundle = new File(folder.getRoot(), symbolicName + "_1.0.0.jar");
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(bundle))) {
+			out.putNextEntry(new ZipEntry("plugin.xml"));
+			out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<plugin>" + content + "</plugin>\n")
+					.getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		return bundle;
+	}
+
+	private Set<String> getCaches() {
+		String[] names = extensionsDir.list();
+		return names == null ? new HashSet<>() : new HashSet<>(Arrays.asList(names));
+	}
+
+	private Map<String, Long> getCacheTimestamps() {
+		Map<String, Long> timestamps = new HashMap<>();
+		for (String cache : getCaches()) {
+			timestamps.put(cache, new File(extensionsDir, cache).lastModified());
+		}
+		return timestamps;
+	}
+
+	/**
+	 * A workspace registry of the given models, which writes its cache to the
+	 * extensions directory of the workspace.
+	 */
+	private static class TestRegistry extends PDEExtensionRegistry {
+
+		private final IPluginModelBase[] fTestModels;
+
+		TestRegistry(IPluginModelBase[] models) {
+			fTestModels = models;
+		}
+
+		@Override
+		protected IPluginModelBase[] getModels() {
+			return fTestModels;
+		}
+	}
+}
@@ -13,12 +13,24 @@
  *******************************************************************************/
 package org.eclipse.pde.ui.tests;
 
+import org.eclipse.pde.core.tests.internal.builders.IncrementalErrorReporterTest;
+import org.eclipse.pde.core.tests.internal.builders.JavaTypeIndexTest;
+import org.eclipse.pde.core.tests.internal.builders.ManifestConsistencyCheckerTest;
+import org.eclipse.pde.core.tests.internal.classpath.ClasspathComputationTest;
 import org.eclipse.pde.core.tests.internal.classpath.ClasspathResolutionTest;
+import org.eclipse.pde.core.tests.internal.classpath.SharedLibraryStoreTest;
+import org.eclipse.pde.core.tests.internal.classpath.TargetSwapTest;
+import org.eclipse.pde.core.tests.internal.dependencies.BundleDependencyIndexTest;
+import org.eclipse.pde.core.tests.internal.dependencies.DependencyCycleIndexTest;
+import org.eclipse.pde.core.tests.internal.dependencies.DependencyLoopFinderTest;
+import org.eclipse.pde.core.tests.internal.registry.ExtensionRegistryCacheTest;
 import org.eclipse.pde.core.tests.internal.util.PDESchemaHelperTest;
 import org.eclipse.pde.ui.tests.build.properties.AllValidatorTests;
 import org.eclipse.pde.ui.tests.classpathresolver.ClasspathResolverTest;
+import org.eclipse.pde.ui.tests.ee.FeatureExportOperationTest;
 import org.eclipse.pde.ui.tests.launcher.AllLauncherTests;
 import org.eclipse.pde.ui.tests.model.bundle.AllBundleModelTests;
+import org.eclipse.pde.ui.tests.model.schema.SchemaRegistryTest;
 import org.eclipse.pde.ui.tests.model.xml.AllXMLModelTests;
 import org.eclipse.pde.ui.tests.nls.AllNLSTests;
 import org.eclipse.pde.ui.tests.preferences.AllPreferenceTests;
@@ -47,7 +59,19 @@ import org.junit.runners.Suite.SuiteClasses;
 	PluginRegistryTestsMinimal.class, ClasspathResolverTest.class, PDESchemaHelperTest.class,
 		DynamicPluginProjectReferencesTest.class,
 	// ClasspathContributorTest.class
-		ClasspathResolutionTest.class
+		ClasspathResolutionTest.class,
+		BundleDependencyIndexTest.class,
+		DependencyCycleIndexTest.class,
+		SharedLibraryStoreTest.class,
+		TargetSwapTest.class,
+		DependencyLoopFinderTest.class,
+		ManifestConsistencyCheckerTest.class,
+		IncrementalErrorReporterTest.class,
+		JavaTypeIndexTest.class,
+		FeatureExportOperationTest.class,
+		ClasspathComputationTest.class,
+		SchemaRegistryTest.class,
+		ExtensionRegistryCacheTest.class
 })
 public class AllPDEMinimalTests {
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2017 IBM Corporation and others.
+ * Copyright (c) 2008, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -15,13 +15,19 @@ package org.eclipse.pde.ui.tests.ee;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.*;
@@ -265,6 +271,83 @@ public class ExportBundleTests extends PDETestCase {
 		}
 	}
 
+	/**
+	 * Exports plug-ins incrementally twice to the same directory and checks
+	 * that only the plug-ins that changed or whose dependencies changed are
+	 * exported again.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testIncrementalExport() throws Exception {
+		String[] names = { "incremental.lib", "incremental.user", "incremental.other" };
+		try {
+			IProject library = ProjectUtils.createBundleProject(names[0], "org.eclipse.core.runtime");
+			ProjectUtils.createBundleProject(names[1], "org.eclipse.core.runtime," + names[0]);
+			ProjectUtils.createBundleProject(names[2], "org.eclipse.core.runtime");
+			TestUtils.waitForJobs(name.getMethodName(), 100, 10000);
+
+			exportIncrementally(names);
+			Map<String, Long> exported = getExportTimes(names);
+
+			// exported artifacts have a time stamp at least one second later
+			Thread.sleep(1100);
+			exportIncrementally(names);
+			assertEquals("Unchanged plug-ins were exported again", exported, getExportTimes(names));
+
+			library.getFile("build.properties").appendContents(
+					new ByteArrayInputStream("# changed\n".getBytes(StandardCharsets.ISO_8859_1)), true, false, null);
+			Thread.sleep(1100);
+			exportIncrementally(names);
+			Map<String, Long> reexported = getExportTimes(names);
+
+			assertNotEquals("Changed plug-in was not exported again", exported.get(names[0]), reexported.get(names[0]));
+			assertNotEquals("Dependent plug-in was not exported again", exported.get(names[1]), reexported.get(names[1]));
+			assertEquals("Independent plug-in was exported again", exported.get(names[2]), reexported.get(names[2]));
+		} finally {
+			TestUtils.waitForJobs(name.getMethodName(), 10, 5000);
+			for (String projectName : names) {
+				deleteProject(projectName);
+			}
+			deleteFolder(EXPORT_PATH.toFile());
+		}
+	}
+
+	private void exportIncrementally(String[] projectNames) throws Exception {
+		FeatureExportInfo info = new FeatureExportInfo();
+		info.toDirectory = true;
+		info.useJarFormat = true;
+		info.exportSource = false;
+		info.allowBinaryCycles = false;
+		info.useWorkspaceCompiledClasses = false;
+		info.destinationDirectory = EXPORT_PATH.toOSString();
+		info.zipFileName = null;
+		info.items = Arrays.stream(projectNames)
+				.map(projectName -> PluginRegistry.findModel(ResourcesPlugin.getWorkspace().getRoot().getProject(projectName)))
+				.toArray();
+		info.signingInfo = null;
+		info.incremental = true;
+
+		PluginExportOperation job = new PluginExportOperation(info, "Test-Export");
+		job.schedule();
+		job.join();
+		if (job.hasAntErrors()) {
+			fail("Export job had ant errors");
+		}
+		assertTrue("Export job had errors", job.getResult().isOK());
+		TestUtils.waitForJobs(name.getMethodName(), 100, 10000);
+	}
+
+	private static Map<String, Long> getExportTimes(String[] projectNames) {
+		Map<String, Long> times = new HashMap<>();
+		for (String projectName : projectNames) {
+			File jar = EXPORT_PATH.append("plugins/" + projectName + "_1.0.0.jar").toFile();
+			assertTrue("Missing exported bundle " + jar, jar.exists());
+			times.put(projectName, jar.lastModified());
+		}
+		return times;
+	}
+
 	private void printContents(File dir) {
 		System.out.println("First 2 levels of: " + dir);
 		File[] children = dir.listFiles();
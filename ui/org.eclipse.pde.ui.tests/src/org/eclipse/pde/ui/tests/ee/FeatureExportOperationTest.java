@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.ee;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import org.eclipse.core.runtime.*;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.equinox.p2.repository.artifact.IArtifactRepositoryManager;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.pde.internal.core.exports.FeatureExportInfo;
+import org.eclipse.pde.internal.core.exports.FeatureExportOperation;
+import org.eclipse.pde.internal.core.target.P2TargetUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests assembling and packaging the configurations of an export in parallel.
+ */
+public class FeatureExportOperationTest {
+
+	private static final String FEATURE_ID = "test.feature";
+	private static final String[][] CONFIGS = { { "linux", "gtk", "x86_64" }, { "win32", "win32", "x86_64" } };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File output;
+	private TestExportOperation operation;
+	private final List<URI> repositories = new ArrayList<>();
+
+	@Before
+	public void setUp() throws IOException {
+		File featureLocation = folder.newFolder("feature");
+		output = folder.newFolder("output");
+		FeatureExportInfo info = new FeatureExportInfo();
+		info.toDirectory = true;
+		info.destinationDirectory = folder.newFolder("destination").getAbsolutePath();
+		info.targets = CONFIGS;
+		info.items = new Object[0];
+		operation = new TestExportOperation(info, featureLocation, folder.newFolder("temp"), folder.newFolder("tempp2metadata"));
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		for (URI repository : repositories) {
+			P2TargetUtils.getRepoManager().removeRepository(repository);
+			P2TargetUtils.getArtifactRepositoryManager().removeRepository(repository);
+		}
+	}
+
+	@Test
+	public void testConfigurationsRunInParallel() throws Exception {
+		for (String[] config : CONFIGS) {
+			// each configuration waits until the other one is assembled too
+			String other = getName(config == CONFIGS[0] ? CONFIGS[1] : CONFIGS[0]);
+			writeAssemblyScript(config, "<touch file='" + new File(output, getName(config) + ".started") + "'/>" //
+					+ "<waitfor maxwait='10' maxwaitunit='second' timeoutproperty='timeout'>" //
+					+ "<available file='" + new File(output, other + ".started") + "'/></waitfor>" //
+					+ "<fail if='timeout' message='Not concurrent'/>");
+			writePackagerScript(config);
+		}
+
+		operation.runConfigurationScripts(new HashMap<>());
+
+		for (String[] config : CONFIGS) {
+			assertThat(new File(output, getName(config) + ".packaged")).exists();
+		}
+	}
+
+	@Test
+	public void testConfigurationsPublishToOwnRepositories() throws Exception {
+		File published = new File(operation.getBuildRepository(), "plugins/published_1.0.0.jar");
+		published.getParentFile().mkdirs();
+		Files.write(published.toPath(), "published".getBytes(StandardCharsets.UTF_8));
+		URI destination = folder.newFolder("repository").toURI();
+		repositories.add(destination);
+		for (String[] config : CONFIGS) {
+			// each configuration mirrors its own unit to its repositories
+			URI source = createRepository(getName(config));
+			writeAssemblyScript(config, "<echo file='" + new File(output, getName(config) + ".repositories") + "'>" //
+					+ "${p2.build.repo} ${p2.metadata.repo}</echo>" //
+					+ "<p2.mirror source='" + source + "' destination='${p2.metadata.repo}'/>");
+			writePackagerScript(config);
+		}
+		Map<String, String> properties = new HashMap<>();
+		properties.put("p2.build.repo", operation.getBuildRepository().toURI().toString());
+		properties.put("p2.metadata.repo", destination.toString());
+		properties.put("p2.artifact.repo", destination.toString());
+
+		operation.runConfigurationScripts(properties);
+
+		Set<String> buildRepositories = new HashSet<>();
+		for (String[] config : CONFIGS) {
+			String[] used = Files.readAllLines(new File(output, getName(config) + ".repositories").toPath()).get(0).split(" ");
+			assertThat(used[1]).isNotEqualTo(destination.toString());
+			File buildRepository = new File(URI.create(used[0]));
+			assertThat(buildRepository).isNotEqualTo(operation.getBuildRepository());
+			assertThat(new File(buildRepository, "plugins/published_1.0.0.jar")).hasContent("published");
+			buildRepositories.add(used[0]);
+		}
+		assertThat(buildRepositories).hasSize(CONFIGS.length);
+		// the repositories of the configurations are merged into the destination
+		IMetadataRepository merged = P2TargetUtils.getRepoManager().loadRepository(destination, null);
+		for (String[] config : CONFIGS) {
+			assertThat(merged.query(QueryUtil.createIUQuery(getName(config)), null).isEmpty()).isFalse();
+		}
+	}
+
+	private URI createRepository(String unitId) throws IOException, CoreException {
+		URI location = folder.newFolder("source." + unitId).toURI();
+		repositories.add(location);
+		IMetadataRepository repository = P2TargetUtils.getRepoManager().createRepository(location, unitId,
+				IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, null);
+		InstallableUnitDescription description = new InstallableUnitDescription();
+		description.setId(unitId);
+		description.setVersion(Version.createOSGi(1, 0, 0));
+		description.addProvidedCapabilities(Collections.singleton(MetadataFactory
+				.createProvidedCapability(IInstallableUnit.NAMESPACE_IU_ID, unitId, Version.createOSGi(1, 0, 0))));
+		repository.addInstallableUnits(Collections.singleton(MetadataFactory.createInstallableUnit(description)));
+		P2TargetUtils.getArtifactRepositoryManager().createRepository(location, unitId,
+				IArtifactRepositoryManager.TYPE_SIMPLE_REPOSITORY, null);
+		return location;
+	}
+
+	private void writeAssemblyScript(String[] config, String tasks) throws IOException {
+		writeScript(operation.getAssemblyScript(config), "<target name='main'>" + tasks + "</target>");
+	}
+
+	private void writePackagerScript(String[] config) throws IOException {
+		writeScript(operation.getPackagerScript(config), "<target name='main'><touch file='"
+				+ new File(output, getName(config) + ".packaged") + "'/></target>");
+	}
+
+	private static void writeScript(String location, String targets) throws IOException {
+		Files.write(new File(location).toPath(), ("<project name='test' default='main'>" + targets + "</project>")
+				.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String getName(String[] config) {
+		return config[0] + '.' + config[1] + '.' + config[2];
+	}
+
+	/**
+	 * Runs the configuration scripts of the test feature in the given feature
+	 * location with two threads, building in the given temporary folders.
+	 */
+	private static class TestExportOperation extends FeatureExportOperation {
+
+		private final File fFeatureLocation;
+
+		TestExportOperation(FeatureExportInfo info, File featureLocation, File buildTemp, File buildTempMetadata) {
+			super(info, "FeatureExportOperationTest");
+			fFeatureLocation = featureLocation;
+			fBuildTempLocation = buildTemp.getAbsolutePath();
+			fBuildTempMetadataLocation = buildTempMetadata.getAbsolutePath();
+		}
+
+		File getBuildRepository() {
+			return new File(fBuildTempMetadataLocation);
+		}
+
+		String getAssemblyScript(String[] config) {
+			return getAssemblyScriptName(FEATURE_ID, config[0], config[1], config[2], fFeatureLocation.getAbsolutePath());
+		}
+
+		String getPackagerScript(String[] config) {
+			return getPackagerScriptName(FEATURE_ID, config[0], config[1], config[2], fFeatureLocation.getAbsolutePath());
+		}
+
+		void runConfigurationScripts(Map<String, String> properties) throws Exception {
+			runConfigurationScripts(FEATURE_ID, fFeatureLocation.getAbsolutePath(), CONFIGS, properties, 2,
+					new NullProgressMonitor());
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2017 EclipseSource Corporation and others.
+ * Copyright (c) 2009, 2021 EclipseSource Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -22,7 +22,7 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({ FeatureBasedLaunchTest.class, LaunchConfigurationHelperTestCase.class,
-		LaunchConfigurationMigrationTest.class })
+		LaunchConfigurationMigrationTest.class, LauncherUtilsTest.class, LaunchValidationOperationTest.class })
 public class AllLauncherTests {
 
 }
@@ -17,12 +17,24 @@ package org.eclipse.pde.ui.tests.launcher;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
 
+import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.internal.core.BundleValidationOperation;
+import org.eclipse.pde.internal.core.TargetPlatformHelper;
+import org.eclipse.pde.internal.launching.PDELaunchingPlugin;
 import org.eclipse.pde.internal.launching.launcher.BundleLauncherHelper;
+import org.eclipse.pde.internal.launching.launcher.LaunchBundleSetCache;
+import org.eclipse.pde.ui.tests.runtime.TestUtils;
+import org.eclipse.pde.ui.tests.util.ProjectUtils;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -50,6 +62,68 @@ public class FeatureBasedLaunchTest extends AbstractLaunchTest {
 		checkStartLevels("org.eclipse.ui", "default:default");
 	}
 
+	@Test
+	public void testMergedBundleMapIsCached() throws Exception {
+		CountingBundleSetCache cache = new CountingBundleSetCache();
+		Map<IPluginModelBase, String> first = cache.getMergedBundleMap(fFeatureBasedWithStartLevels, false);
+		Map<IPluginModelBase, String> expected = new HashMap<>(first);
+		first.clear();
+		Map<IPluginModelBase, String> second = cache.getMergedBundleMap(fFeatureBasedWithStartLevels, false);
+
+		assertThat(second.isEmpty(), is(false));
+		assertThat(second, is(equalTo(expected)));
+		assertThat(cache.computations.get(), is(1));
+	}
+
+	@Test
+	public void testMergedBundleMapIsClearedByModelChange() throws Exception {
+		CountingBundleSetCache cache = new CountingBundleSetCache();
+		cache.start();
+		IProject project = null;
+		try {
+			cache.getMergedBundleMap(fFeatureBasedWithStartLevels, false);
+			assertThat(cache.computations.get(), is(1));
+
+			project = ProjectUtils.createBundleProject("launch.cache.plugin", null);
+			TestUtils.waitForJobs("FeatureBasedLaunchTest.testMergedBundleMapIsClearedByModelChange", 100, 10000);
+			cache.getMergedBundleMap(fFeatureBasedWithStartLevels, false);
+
+			assertThat(cache.computations.get(), is(2));
+		} finally {
+			cache.shutdown();
+			if (project != null) {
+				project.delete(true, true, null);
+			}
+		}
+	}
+
+	@Test
+	public void testValidationIsCached() throws Exception {
+		IPluginModelBase[] models = BundleLauncherHelper.getMergedBundleMap(fFeatureBasedWithStartLevels, false).keySet()
+				.toArray(new IPluginModelBase[0]);
+		LaunchBundleSetCache cache = PDELaunchingPlugin.getDefault().getBundleSetCache();
+		BundleValidationOperation first = cache.getValidation(models,
+				new Dictionary[] { TargetPlatformHelper.getTargetEnvironment() }, new NullProgressMonitor());
+		BundleValidationOperation second = cache.getValidation(models,
+				new Dictionary[] { TargetPlatformHelper.getTargetEnvironment() }, new NullProgressMonitor());
+
+		assertThat(second, is(sameInstance(first)));
+	}
+
+	/**
+	 * Counts the bundle maps computed because they were not cached.
+	 */
+	private static class CountingBundleSetCache extends LaunchBundleSetCache {
+
+		final AtomicInteger computations = new AtomicInteger();
+
+		@Override
+		protected Map<IPluginModelBase, String> computeMergedBundleMap(ILaunchConfiguration configuration, boolean osgi) throws CoreException {
+			computations.incrementAndGet();
+			return super.computeMergedBundleMap(configuration, osgi);
+		}
+	}
+
 	private void checkStartLevels(String pluginId, String expectedStartLevels) throws CoreException {
 		Map<IPluginModelBase, String> bundleMap = BundleLauncherHelper.getMergedBundleMap(fFeatureBasedWithStartLevels,
 				false);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2017 EclipseSource Corporation and others.
+ * Copyright (c) 2009, 2021 EclipseSource Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -15,14 +15,21 @@ package org.eclipse.pde.ui.tests.launcher;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.*;
+import java.util.Properties;
 import org.eclipse.pde.internal.launching.launcher.LaunchConfigurationHelper;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Tests LaunchConfigurationHelper convenience methods
  * @since 3.5
  */
 public class LaunchConfigurationHelperTestCase {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void testgetStartData() {
 		assertEquals(LaunchConfigurationHelper.getStartData("", false), "");
@@ -41,4 +48,28 @@ public class LaunchConfigurationHelperTestCase {
 		assertEquals(LaunchConfigurationHelper.getStartData("default", true), "@start");
 	}
 
+	@Test
+	public void testSaveKeepsUnchangedFile() throws IOException {
+		File file = new File(folder.getRoot(), "config.ini");
+		Properties properties = new Properties();
+		properties.setProperty("osgi.bundles", "org.eclipse.equinox.simpleconfigurator@1:start");
+		properties.setProperty("osgi.bundles.defaultStartLevel", "4");
+		LaunchConfigurationHelper.save(file, properties);
+		file.setLastModified(1000);
+
+		Properties same = new Properties();
+		same.setProperty("osgi.bundles.defaultStartLevel", "4");
+		same.setProperty("osgi.bundles", "org.eclipse.equinox.simpleconfigurator@1:start");
+		LaunchConfigurationHelper.save(file, same);
+		assertEquals(1000, file.lastModified());
+
+		same.setProperty("osgi.bundles.defaultStartLevel", "5");
+		LaunchConfigurationHelper.save(file, same);
+		Properties saved = new Properties();
+		try (InputStream stream = new FileInputStream(file)) {
+			saved.load(stream);
+		}
+		assertEquals("5", saved.getProperty("osgi.bundles.defaultStartLevel"));
+	}
+
 }
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.launcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Dictionary;
+import java.util.Map;
+import java.util.zip.ZipFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.debug.core.*;
+import org.eclipse.jdt.launching.IVMInstall;
+import org.eclipse.jdt.launching.JavaRuntime;
+import org.eclipse.jdt.launching.environments.IExecutionEnvironment;
+import org.eclipse.osgi.service.resolver.State;
+import org.eclipse.pde.core.plugin.IPluginModelBase;
+import org.eclipse.pde.core.plugin.PluginRegistry;
+import org.eclipse.pde.internal.core.TargetPlatformHelper;
+import org.eclipse.pde.internal.launching.launcher.BundleLauncherHelper;
+import org.eclipse.pde.internal.launching.launcher.LaunchValidationOperation;
+import org.eclipse.pde.launching.IPDELauncherConstants;
+import org.eclipse.pde.ui.tests.runtime.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Constants;
+
+/**
+ * Tests the platform properties launches are validated with, and that
+ * validating a launch of all bundles of the target platform and the workspace
+ * reuses the resolved target platform state when the properties match.
+ */
+public class LaunchValidationOperationTest {
+
+	private ILaunchConfigurationWorkingCopy fConfiguration;
+
+	@Before
+	public void setUp() throws CoreException {
+		TestUtils.waitForJobs("LaunchValidationOperationTest", 100, 10000);
+		ILaunchConfigurationType type = DebugPlugin.getDefault().getLaunchManager()
+				.getLaunchConfigurationType(IPDELauncherConstants.ECLIPSE_APPLICATION_LAUNCH_CONFIGURATION_TYPE);
+		fConfiguration = type.newInstance(null, "LaunchValidationOperationTest");
+		fConfiguration.setAttribute(IPDELauncherConstants.USE_DEFAULT, true);
+	}
+
+	@Test
+	public void testLaunchInTargetEnvironmentReusesTargetState() throws Exception {
+		ValidationOperation operation = newTargetEnvironmentOperation();
+		operation.run(new NullProgressMonitor());
+
+		assertThat(operation.getState()).isSameAs(TargetPlatformHelper.getState());
+	}
+
+	@Test
+	public void testLaunchWithOtherEnvironmentsResolvesCopy() throws Exception {
+		ValidationOperation operation = new ValidationOperation(fConfiguration, new IExecutionEnvironment[0]);
+		operation.run(new NullProgressMonitor());
+
+		assertThat(operation.getState()).isNotSameAs(TargetPlatformHelper.getState());
+	}
+
+	@Test
+	public void testErrorsOfReusedStateAreSnapshot() throws Exception {
+		ValidationOperation operation = newTargetEnvironmentOperation();
+		operation.run(new NullProgressMonitor());
+		Map<Object, Object[]> errors = operation.getInput();
+
+		operation.getInput().put("added", new Object[0]);
+
+		assertThat(operation.getInput()).isEqualTo(errors);
+	}
+
+	@Test
+	public void testSystemPackagesOfLaunchVM() throws Exception {
+		IVMInstall vm = JavaRuntime.getDefaultVMInstall();
+		assumeTrue(vm != null && JavaRuntime.isModularJava(vm));
+		IExecutionEnvironment environment = getModularEnvironment();
+
+		ValidationOperation launched = new ValidationOperation(fConfiguration, new IExecutionEnvironment[] { environment }, vm);
+		ValidationOperation withoutVM = new ValidationOperation(fConfiguration, new IExecutionEnvironment[] { environment }, null);
+
+		assertThat(launched.getPlatformProperties()[0].get(Constants.FRAMEWORK_SYSTEMPACKAGES))
+				.isEqualTo(TargetPlatformHelper.querySystemPackages(vm, environment));
+		// the default VM of the environment is not used for the launch
+		assertThat(withoutVM.getPlatformProperties()[0].get(Constants.FRAMEWORK_SYSTEMPACKAGES)).isNull();
+	}
+
+	/**
+	 * Returns a validation with the platform properties of the target platform
+	 * state.
+	 */
+	private ValidationOperation newTargetEnvironmentOperation() {
+		State targetState = TargetPlatformHelper.getState();
+		return new ValidationOperation(fConfiguration, new IExecutionEnvironment[0]) {
+			@Override
+			@SuppressWarnings("rawtypes")
+			protected Dictionary[] getPlatformProperties() {
+				return targetState.getPlatformProperties();
+			}
+		};
+	}
+
+	/**
+	 * Returns an execution environment whose profile does not list the system
+	 * packages, so that they are taken from the launch VM.
+	 */
+	private static IExecutionEnvironment getModularEnvironment() {
+		IExecutionEnvironment environment = JavaRuntime.getExecutionEnvironmentsManager().getEnvironment("JavaSE-11");
+		assumeTrue(environment != null && environment.getProfileProperties() != null
+				&& environment.getProfileProperties().getProperty(Constants.FRAMEWORK_SYSTEMPACKAGES) == null);
+		IPluginModelBase systemBundle = PluginRegistry.findModel("system.bundle");
+		assumeTrue(systemBundle == null || !hasProfile(systemBundle, "JavaSE-11.profile"));
+		return environment;
+	}
+
+	private static boolean hasProfile(IPluginModelBase model, String name) {
+		File location = new File(model.getInstallLocation());
+		if (location.isDirectory()) {
+			return new File(location, name).exists();
+		}
+		try (ZipFile zipFile = new ZipFile(location)) {
+			return zipFile.getEntry(name) != null;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Validates the bundles of a configuration as if launched with a VM
+	 * compatible with the given execution environments.
+	 */
+	private static class ValidationOperation extends LaunchValidationOperation {
+
+		private final IExecutionEnvironment[] fEnvironments;
+		private final IVMInstall fVM;
+
+		ValidationOperation(ILaunchConfiguration configuration, IExecutionEnvironment[] environments) {
+			this(configuration, environments, JavaRuntime.getDefaultVMInstall());
+		}
+
+		ValidationOperation(ILaunchConfiguration configuration, IExecutionEnvironment[] environments, IVMInstall vm) {
+			super(configuration);
+			fEnvironments = environments;
+			fVM = vm;
+		}
+
+		@Override
+		protected IPluginModelBase[] getModels() throws CoreException {
+			return BundleLauncherHelper.getMergedBundles(fLaunchConfiguration, false);
+		}
+
+		@Override
+		protected IExecutionEnvironment[] getMatchingEnvironments() {
+			return fEnvironments;
+		}
+
+		@Override
+		protected IVMInstall getVMInstall() {
+			return fVM;
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		protected Dictionary[] getPlatformProperties() throws CoreException {
+			return super.getPlatformProperties();
+		}
+
+		@Override
+		public State getState() {
+			return super.getState();
+		}
+	}
+}
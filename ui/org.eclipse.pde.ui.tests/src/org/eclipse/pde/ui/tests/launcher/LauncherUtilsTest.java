@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.launcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.debug.core.*;
+import org.eclipse.pde.internal.launching.launcher.LauncherUtils;
+import org.eclipse.pde.launching.IPDELauncherConstants;
+import org.eclipse.pde.ui.tests.runtime.TestUtils;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that clearing the workspace of a launch renames it aside and deletes
+ * it in the background, unless disabled.
+ */
+public class LauncherUtilsTest {
+
+	private static final String ASYNC_CLEAR = "pde.launching.asyncClear";
+	private static final String CLEARED_PREFIX = ".pde_cleared_";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File parent;
+	private File workspace;
+
+	@Before
+	public void setUp() throws IOException {
+		parent = folder.newFolder("launches");
+		workspace = createWorkspace("runtime-workspace");
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty(ASYNC_CLEAR);
+	}
+
+	@Test
+	public void testClearRenamesWorkspace() throws Exception {
+		clearWorkspace();
+
+		// the workspace is renamed aside before the clear returns
+		assertThat(workspace).doesNotExist();
+		TestUtils.waitForJobs("LauncherUtilsTest.testClearRenamesWorkspace", 100, 10000);
+		assertThat(getClearedWorkspaces()).isEmpty();
+	}
+
+	@Test
+	public void testClearDeletesLeftovers() throws Exception {
+		File leftover = createWorkspace(CLEARED_PREFIX + workspace.getName() + "_1");
+		File otherLeftover = createWorkspace(CLEARED_PREFIX + "other-workspace_1");
+
+		clearWorkspace();
+		TestUtils.waitForJobs("LauncherUtilsTest.testClearDeletesLeftovers", 100, 10000);
+
+		assertThat(workspace).doesNotExist();
+		assertThat(leftover).doesNotExist();
+		// only the leftovers of the cleared workspace are deleted
+		assertThat(getClearedWorkspaces()).containsExactly(otherLeftover);
+	}
+
+	@Test
+	public void testClearInPlace() throws Exception {
+		System.setProperty(ASYNC_CLEAR, Boolean.FALSE.toString());
+		File leftover = createWorkspace(CLEARED_PREFIX + workspace.getName() + "_1");
+
+		clearWorkspace();
+
+		// the workspace is deleted before the clear returns and leftovers are kept
+		assertThat(workspace).doesNotExist();
+		assertThat(getClearedWorkspaces()).containsExactly(leftover);
+	}
+
+	@Test
+	public void testClearSymbolicLinkDeletesLinkedWorkspace() throws Exception {
+		File linked = createWorkspace("linked-workspace");
+		workspace = new File(parent, "link-workspace");
+		try {
+			Files.createSymbolicLink(workspace.toPath(), linked.toPath());
+		} catch (UnsupportedOperationException | IOException e) {
+			Assume.assumeNoException(e);
+		}
+
+		clearWorkspace();
+		TestUtils.waitForJobs("LauncherUtilsTest.testClearSymbolicLinkDeletesLinkedWorkspace", 100, 10000);
+
+		// the content of the linked directory is deleted, not only the link
+		assertThat(new File(linked, ".metadata")).doesNotExist();
+		assertThat(getClearedWorkspaces()).isEmpty();
+	}
+
+	private void clearWorkspace() throws CoreException {
+		ILaunchConfigurationType type = DebugPlugin.getDefault().getLaunchManager()
+				.getLaunchConfigurationType(IPDELauncherConstants.ECLIPSE_APPLICATION_LAUNCH_CONFIGURATION_TYPE);
+		ILaunchConfigurationWorkingCopy configuration = type.newInstance(null, "LauncherUtilsTest");
+		configuration.setAttribute(IPDELauncherConstants.DOCLEAR, true);
+		configuration.setAttribute(IPDELauncherConstants.ASKCLEAR, false);
+		LauncherUtils.clearWorkspace(configuration, workspace.getAbsolutePath(), new NullProgressMonitor());
+	}
+
+	private File[] getClearedWorkspaces() {
+		return parent.listFiles((dir, name) -> name.startsWith(CLEARED_PREFIX));
+	}
+
+	private File createWorkspace(String name) throws IOException {
+		File directory = new File(parent, name);
+		File metadata = new File(directory, ".metadata");
+		Files.createDirectories(metadata.toPath());
+		Files.write(new File(metadata, ".log").toPath(), "log".getBytes());
+		return directory;
+	}
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.model.schema;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.ischema.ISchema;
+import org.eclipse.pde.internal.core.schema.SchemaRegistry;
+import org.eclipse.pde.ui.tests.runtime.TestUtils;
+import org.eclipse.pde.ui.tests.util.ProjectUtils;
+import org.junit.*;
+
+/**
+ * Tests that the schema registry finds the schemas of extension points again
+ * when their plug-ins or schema files change.
+ */
+public class SchemaRegistryTest {
+
+	private static final String PLUGIN_ID = "schema.provider";
+	private static final String POINT_ID = PLUGIN_ID + ".point";
+
+	private IProject project;
+	private SchemaRegistry registry;
+
+	@Before
+	public void setUp() throws Exception {
+		project = ProjectUtils.createBundleProject(PLUGIN_ID, null);
+		ProjectUtils.setManifest(project, PLUGIN_ID + ";singleton:=true", null);
+		writeSchema("schema/point.exsd", "First");
+		writePluginXml("schema/point.exsd");
+		TestUtils.waitForJobs("SchemaRegistryTest", 100, 10000);
+		registry = PDECore.getDefault().getSchemaRegistry();
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		project.delete(true, null);
+	}
+
+	@Test
+	public void testGetSchema() {
+		ISchema schema = registry.getSchema(POINT_ID);
+
+		assertThat(schema).isNotNull();
+		assertThat(schema.getName()).isEqualTo("First");
+		assertThat(registry.getSchema(POINT_ID)).isSameAs(schema);
+	}
+
+	@Test
+	public void testRemovedSchemaIsLookedUpAgain() throws Exception {
+		assertThat(registry.getSchema(POINT_ID)).isNotNull();
+		// removed behind the workspace, so no model changes
+		File file = project.getFile("schema/point.exsd").getLocation().toFile();
+		byte[] content = Files.readAllBytes(file.toPath());
+		Files.delete(file.toPath());
+
+		assertThat(registry.getSchema(POINT_ID)).isNull();
+
+		Files.write(file.toPath(), content);
+		assertThat(registry.getSchema(POINT_ID)).isNotNull();
+	}
+
+	@Test
+	public void testChangedPluginUsesNewSchema() throws Exception {
+		assertThat(registry.getSchema(POINT_ID).getName()).isEqualTo("First");
+
+		writeSchema("schema/other.exsd", "Second");
+		writePluginXml("schema/other.exsd");
+		TestUtils.waitForJobs("SchemaRegistryTest", 100, 10000);
+
+		assertThat(registry.getSchema(POINT_ID).getName()).isEqualTo("Second");
+	}
+
+	private void writePluginXml(String schema) throws CoreException {
+		write(project.getFile("plugin.xml"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" //
+				+ "<?eclipse version=\"3.4\"?>\n" //
+				+ "<plugin>\n" //
+				+ "   <extension-point id=\"point\" name=\"Point\" schema=\"" + schema + "\"/>\n" //
+				+ "</plugin>\n");
+	}
+
+	private void writeSchema(String path, String name) throws CoreException {
+		IFolder folder = project.getFolder("schema");
+		if (!folder.exists()) {
+			folder.create(true, true, null);
+		}
+		write(project.getFile(path), "<?xml version='1.0' encoding='UTF-8'?>\n" //
+				+ "<schema targetNamespace=\"" + PLUGIN_ID + "\">\n" //
+				+ "<annotation><appInfo><meta.schema plugin=\"" + PLUGIN_ID + "\" id=\"point\" name=\"" + name
+				+ "\"/></appInfo></annotation>\n" //
+				+ "<element name=\"extension\"><complexType>\n" //
+				+ "<attribute name=\"point\" type=\"string\" use=\"required\"/>\n" //
+				+ "</complexType></element>\n" //
+				+ "</schema>\n");
+	}
+
+	private static void write(IFile file, String content) throws CoreException {
+		ByteArrayInputStream stream = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+		if (file.exists()) {
+			file.setContents(stream, true, false, null);
+		} else {
+			file.create(stream, true, null);
+		}
+	}
+}
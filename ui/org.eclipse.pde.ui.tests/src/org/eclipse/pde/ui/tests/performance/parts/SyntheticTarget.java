@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.performance.parts;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.*;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.equinox.p2.metadata.*;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepository;
+import org.eclipse.equinox.p2.repository.metadata.IMetadataRepositoryManager;
+import org.eclipse.pde.core.target.*;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.target.P2TargetUtils;
+import org.eclipse.pde.internal.core.util.CoreUtility;
+import org.eclipse.pde.ui.tests.PDETestsPlugin;
+
+/**
+ * Generates synthetic target content in the test plug-in's state location for
+ * the target resolution benchmarks:
+ * <ul>
+ * <li>a directory of manifest-only jar bundles, each requiring a few of the
+ * bundles before it</li>
+ * <li>an installation with features, each including its own bundles</li>
+ * <li>a local p2 metadata repository of IUs forming a dependency chain, which
+ * has no artifacts so that only the p2 resolution is measured</li>
+ * </ul>
+ * The sizes can be set with the <code>pde.perf.bundles</code>,
+ * <code>pde.perf.features</code>, <code>pde.perf.featureBundles</code> and
+ * <code>pde.perf.ius</code> system properties. Content is only generated again
+ * if the sizes change.
+ */
+public class SyntheticTarget {
+
+	private static final String VERSION = "1.0.0";
+	private static final int REQUIRED_PER_BUNDLE = 3;
+
+	final int bundleCount = Integer.getInteger("pde.perf.bundles", 1000);
+	final int featureCount = Integer.getInteger("pde.perf.features", 20);
+	final int bundlesPerFeature = Integer.getInteger("pde.perf.featureBundles", 10);
+	final int iuCount = Integer.getInteger("pde.perf.ius", 500);
+
+	private final File fRoot;
+
+	public SyntheticTarget() {
+		IPath stateLocation = PDETestsPlugin.getDefault().getStateLocation();
+		fRoot = stateLocation.append("syntheticTarget").append(bundleCount + "_" + featureCount + "_" + bundlesPerFeature + "_" + iuCount).toFile();
+	}
+
+	/**
+	 * Generates the content unless it already exists and returns the target
+	 * locations pointing to it.
+	 */
+	public ITargetLocation[] createLocations() throws Exception {
+		File bundles = new File(fRoot, "bundles");
+		File install = new File(fRoot, "install");
+		File repository = new File(fRoot, "repository");
+		File done = new File(fRoot, "done");
+		if (!done.exists()) {
+			CoreUtility.deleteContent(fRoot);
+			createBundles(bundles);
+			createFeatures(install);
+			createRepository(repository);
+			done.createNewFile();
+		}
+
+		ITargetPlatformService service = PDECore.getDefault().acquireService(ITargetPlatformService.class);
+		List<ITargetLocation> locations = new ArrayList<>();
+		locations.add(service.newDirectoryLocation(bundles.getAbsolutePath()));
+		for (int i = 0; i < featureCount; i++) {
+			locations.add(service.newFeatureLocation(install.getAbsolutePath(), "synthetic.feature." + i, VERSION));
+		}
+		if (iuCount > 0) {
+			locations.add(service.newIULocation(new String[] { "synthetic.iu." + (iuCount - 1) }, new String[] { VERSION },
+					new URI[] { repository.toURI() }, 0));
+		}
+		return locations.toArray(new ITargetLocation[locations.size()]);
+	}
+
+	private void createBundles(File dir) throws IOException {
+		dir.mkdirs();
+		for (int i = 0; i < bundleCount; i++) {
+			List<String> required = new ArrayList<>();
+			for (int j = Math.max(0, i - REQUIRED_PER_BUNDLE); j < i; j++) {
+				required.add("synthetic.bundle." + j);
+			}
+			createBundle(new File(dir, "synthetic.bundle." + i + "_" + VERSION + ".jar"), "synthetic.bundle." + i, required);
+		}
+	}
+
+	private void createFeatures(File install) throws IOException {
+		File features = new File(install, "features");
+		File plugins = new File(install, "plugins");
+		plugins.mkdirs();
+		for (int i = 0; i < featureCount; i++) {
+			String featureId = "synthetic.feature." + i;
+			StringBuilder xml = new StringBuilder();
+			xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			xml.append("<feature id=\"").append(featureId).append("\" version=\"").append(VERSION).append("\">\n");
+			for (int j = 0; j < bundlesPerFeature; j++) {
+				String bundleId = featureId + ".bundle." + j;
+				createBundle(new File(plugins, bundleId + "_" + VERSION + ".jar"), bundleId, Collections.emptyList());
+				xml.append("   <plugin id=\"").append(bundleId).append("\" version=\"").append(VERSION).append("\" unpack=\"false\"/>\n");
+			}
+			xml.append("</feature>\n");
+			File featureDir = new File(features, featureId + "_" + VERSION);
+			featureDir.mkdirs();
+			try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(featureDir, "feature.xml")), StandardCharsets.UTF_8)) {
+				writer.write(xml.toString());
+			}
+		}
+	}
+
+	private static void createBundle(File file, String symbolicName, List<String> required) throws IOException {
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.putValue("Bundle-ManifestVersion", "2");
+		attributes.putValue("Bundle-SymbolicName", symbolicName);
+		attributes.putValue("Bundle-Version", VERSION);
+		attributes.putValue("Export-Package", symbolicName);
+		if (!required.isEmpty()) {
+			attributes.putValue("Require-Bundle", String.join(",", required));
+		}
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file), manifest)) {
+			// manifest only
+		}
+	}
+
+	private void createRepository(File dir) throws Exception {
+		IMetadataRepositoryManager manager = P2TargetUtils.getRepoManager();
+		URI location = dir.toURI();
+		IMetadataRepository repository = manager.createRepository(location, "Synthetic repository",
+				IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, Collections.emptyMap());
+		List<IInstallableUnit> units = new ArrayList<>(iuCount);
+		Version version = Version.create(VERSION);
+		for (int i = 0; i < iuCount; i++) {
+			InstallableUnitDescription description = new InstallableUnitDescription();
+			String id = "synthetic.iu." + i;
+			description.setId(id);
+			description.setVersion(version);
+			description.setCapabilities(new IProvidedCapability[] {
+					MetadataFactory.createProvidedCapability(IInstallableUnit.NAMESPACE_IU_ID, id, version) });
+			if (i > 0) {
+				description.setRequirements(new IRequirement[] { MetadataFactory.createRequirement(
+						IInstallableUnit.NAMESPACE_IU_ID, "synthetic.iu." + (i - 1), new VersionRange(version, true, version, true), null, false, false) });
+			}
+			units.add(MetadataFactory.createInstallableUnit(description));
+		}
+		repository.addInstallableUnits(units);
+		manager.removeRepository(location);
+	}
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.performance.parts;
+
+import java.lang.management.*;
+import java.util.List;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.pde.core.target.*;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Headless benchmarks of the stages of loading a target platform, measured
+ * separately on a {@link SyntheticTarget}:
+ * <ul>
+ * <li>resolving the target definition</li>
+ * <li>loading the resolved target with {@link LoadTargetDefinitionJob}</li>
+ * <li>re-initializing the plug-in model manager for the loaded target</li>
+ * </ul>
+ * Besides the measurements of the performance framework, each iteration prints
+ * its wall time, the bytes allocated by all live threads and the peak heap
+ * usage, prefixed with <code>[target perf]</code>.
+ */
+public class TargetResolutionPerfTest extends PerformanceTestCase {
+
+	private static final int WARM_UP_ITERATIONS = 2;
+	private static final int ITERATIONS = 10;
+
+	private ITargetPlatformService fService;
+	private ITargetLocation[] fLocations;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fService = PDECore.getDefault().acquireService(ITargetPlatformService.class);
+		fLocations = new SyntheticTarget().createLocations();
+	}
+
+	/**
+	 * Resolves the synthetic target definition
+	 */
+	public void testResolveTargetDefinition() throws Exception {
+		tagAsSummary("Resolve synthetic target definition", Dimension.ELAPSED_PROCESS); //$NON-NLS-1$
+		ITargetDefinition definition = fService.newTarget();
+		definition.setTargetLocations(fLocations);
+		fService.saveTargetDefinition(definition);
+		ITargetHandle handle = definition.getHandle();
+		try {
+			for (int i = 0; i < WARM_UP_ITERATIONS + ITERATIONS; i++) {
+				// get the target definition inside the loop so that it is not resolved
+				ITargetDefinition target = handle.getTargetDefinition();
+				Sample sample = start(i);
+				IStatus status = target.resolve(new NullProgressMonitor());
+				stop(sample, "resolve", i);
+				assertTrue(status.toString(), status.isOK());
+			}
+			commitMeasurements();
+			assertPerformance();
+		} finally {
+			fService.deleteTarget(handle);
+		}
+	}
+
+	/**
+	 * Loads the resolved synthetic target as the target platform
+	 */
+	public void testLoadTargetDefinition() throws Exception {
+		tagAsSummary("Load synthetic target definition", Dimension.ELAPSED_PROCESS); //$NON-NLS-1$
+		ITargetDefinition target = fService.newTarget();
+		target.setTargetLocations(fLocations);
+		target.resolve(new NullProgressMonitor());
+		try {
+			for (int i = 0; i < WARM_UP_ITERATIONS + ITERATIONS; i++) {
+				Sample sample = start(i);
+				new LoadTargetDefinitionJob(target).runInWorkspace(new NullProgressMonitor());
+				stop(sample, "load", i);
+			}
+			commitMeasurements();
+			assertPerformance();
+		} finally {
+			restoreDefaultTarget();
+		}
+	}
+
+	/**
+	 * Re-initializes the plug-in models of the loaded synthetic target
+	 */
+	public void testReinitializeModelManager() throws Exception {
+		tagAsSummary("Re-initialize plug-in models of synthetic target", Dimension.ELAPSED_PROCESS); //$NON-NLS-1$
+		ITargetDefinition target = fService.newTarget();
+		target.setTargetLocations(fLocations);
+		target.resolve(new NullProgressMonitor());
+		new LoadTargetDefinitionJob(target).runInWorkspace(new NullProgressMonitor());
+		try {
+			for (int i = 0; i < WARM_UP_ITERATIONS + ITERATIONS; i++) {
+				Sample sample = start(i);
+				PDECore.getDefault().getModelManager().targetReloaded(new NullProgressMonitor());
+				stop(sample, "models", i);
+			}
+			commitMeasurements();
+			assertPerformance();
+		} finally {
+			restoreDefaultTarget();
+		}
+	}
+
+	private void restoreDefaultTarget() throws Exception {
+		ITargetDefinition defaultTarget = fService.newDefaultTarget();
+		new LoadTargetDefinitionJob(defaultTarget).runInWorkspace(null);
+	}
+
+	/**
+	 * Resource usage at the start of a measured iteration
+	 */
+	private static class Sample {
+		long startNanos;
+		long allocatedBytes;
+	}
+
+	private Sample start(int iteration) {
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+		Sample sample = new Sample();
+		sample.allocatedBytes = getAllocatedBytes();
+		if (iteration >= WARM_UP_ITERATIONS) {
+			startMeasuring();
+		}
+		sample.startNanos = System.nanoTime();
+		return sample;
+	}
+
+	private void stop(Sample sample, String stage, int iteration) {
+		long wallMillis = (System.nanoTime() - sample.startNanos) / 1_000_000;
+		if (iteration >= WARM_UP_ITERATIONS) {
+			stopMeasuring();
+		}
+		long allocated = getAllocatedBytes() - sample.allocatedBytes;
+		long peakHeap = 0;
+		List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		System.out.println("[target perf] " + stage + (iteration < WARM_UP_ITERATIONS ? " (warm-up)" : "") + ": wall="
+				+ wallMillis + " ms, allocated=" + (allocated >> 20) + " MB, peak heap=" + (peakHeap >> 20) + " MB");
+	}
+
+	/**
+	 * Returns the bytes allocated so far by all live threads, or 0 if the VM
+	 * does not support measuring allocations. Allocations of threads that
+	 * terminate during a measurement are not included.
+	 * <p>
+	 * The allocations are read through reflection, as the
+	 * <code>com.sun.management</code> extension of the thread bean is not
+	 * available on every VM and may not be referenced by bundles.
+	 * </p>
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		try {
+			Class<?> extension = Class.forName("com.sun.management.ThreadMXBean");
+			if (!extension.isInstance(threads)) {
+				return 0;
+			}
+			if (!((Boolean) extension.getMethod("isThreadAllocatedMemorySupported").invoke(threads))
+					|| !((Boolean) extension.getMethod("isThreadAllocatedMemoryEnabled").invoke(threads))) {
+				return 0;
+			}
+			long[] allocations = (long[]) extension.getMethod("getThreadAllocatedBytes", long[].class).invoke(threads,
+					threads.getAllThreadIds());
+			long total = 0;
+			for (long allocated : allocations) {
+				if (allocated > 0) {
+					total += allocated;
+				}
+			}
+			return total;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.target;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.*;
+import org.eclipse.pde.internal.core.PDECore;
+import org.eclipse.pde.internal.core.target.BundleScanCache;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Constants;
+
+/**
+ * Tests persisting the manifest headers of the bundles of target directories.
+ */
+public class BundleScanCacheTest {
+
+	/**
+	 * Number of directories kept in memory by the cache
+	 */
+	private static final int MAX_DIRECTORIES = 32;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDirectoriesWithSameHashCodeAreStoredSeparately() throws Exception {
+		// both names have the same String hash code
+		File first = folder.newFolder("Aa");
+		File second = folder.newFolder("BB");
+		assertThat(first.getPath().hashCode()).isEqualTo(second.getPath().hashCode());
+		File firstBundle = createBundle(first, "scan.first");
+		File secondBundle = createBundle(second, "scan.second");
+
+		assertThat(BundleScanCache.getManifestHeaders(firstBundle)).containsEntry(Constants.BUNDLE_SYMBOLICNAME,
+				"scan.first");
+		assertThat(BundleScanCache.getManifestHeaders(secondBundle)).containsEntry(Constants.BUNDLE_SYMBOLICNAME,
+				"scan.second");
+		BundleScanCache.save();
+
+		assertThat(getCacheFile(first)).isNotNull().isNotEqualTo(getCacheFile(second));
+		assertThat(getCacheFile(second)).isNotNull();
+	}
+
+	@Test
+	public void testLeastRecentlyScannedDirectoryIsStored() throws Exception {
+		File first = folder.newFolder("directory0");
+		BundleScanCache.getManifestHeaders(createBundle(first, "scan.bundle0"));
+		assertThat(getCacheFile(first)).isNull();
+
+		// scanning more directories drops the first one from memory
+		for (int i = 1; i <= MAX_DIRECTORIES; i++) {
+			File directory = folder.newFolder("directory" + i);
+			BundleScanCache.getManifestHeaders(createBundle(directory, "scan.bundle" + i));
+		}
+
+		assertThat(getCacheFile(first)).isNotNull();
+		assertThat(BundleScanCache.getManifestHeaders(new File(first, "scan.bundle0_1.0.0.jar")))
+				.containsEntry(Constants.BUNDLE_SYMBOLICNAME, "scan.bundle0");
+		BundleScanCache.save();
+	}
+
+	/**
+	 * Returns the cache file recording the given directory, or
+	 * <code>null</code> if it is not recorded.
+	 */
+	private static File getCacheFile(File directory) throws IOException {
+		File cacheDir = new File(PDECore.getDefault().getStateLocation().toFile(), ".bundle_scan");
+		File[] files = cacheDir.listFiles();
+		if (files == null) {
+			return null;
+		}
+		for (File file : files) {
+			Properties properties = new Properties();
+			try (InputStream in = new FileInputStream(file)) {
+				properties.load(in);
+			}
+			if (directory.getPath().equals(properties.getProperty("@location"))) {
+				return file;
+			}
+		}
+		return null;
+	}
+
+	private static File createBundle(File directory, String symbolicName) throws IOException {
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.putValue(Constants.BUNDLE_MANIFESTVERSION, "2");
+		attributes.putValue(Constants.BUNDLE_SYMBOLICNAME, symbolicName);
+		attributes.putValue(Constants.BUNDLE_VERSION, "1.0.0");
+		File jar = new File(directory, symbolicName + "_1.0.0.jar");
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+			out.putNextEntry(new JarEntry("readme.txt"));
+			out.write("bundle".getBytes(StandardCharsets.UTF_8));
+		}
+		return jar;
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.target;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.eclipse.core.runtime.*;
+import org.eclipse.pde.core.target.ITargetDefinition;
+import org.eclipse.pde.core.target.ITargetLocation;
+import org.eclipse.pde.internal.core.target.ExportTargetJob;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests copying the content of a target to an export destination.
+ */
+public class ExportTargetJobTest extends AbstractTargetTest {
+
+	private static final int FILE_COUNT = 200;
+	private static final String EXPORT_THREADS = "pde.target.exportThreads";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File destination;
+	private ITargetDefinition target;
+
+	@Before
+	public void setUp() throws Exception {
+		// a directory bundle with many files and an empty directory
+		File plugins = folder.newFolder("plugins");
+		File bundle = new File(plugins, "export.bundle_1.0.0");
+		File manifest = new File(bundle, "META-INF/MANIFEST.MF");
+		manifest.getParentFile().mkdirs();
+		Files.write(manifest.toPath(), ("Manifest-Version: 1.0\n" //
+				+ "Bundle-ManifestVersion: 2\n" //
+				+ "Bundle-SymbolicName: export.bundle\n" //
+				+ "Bundle-Version: 1.0.0\n").getBytes(StandardCharsets.UTF_8));
+		new File(bundle, "empty").mkdirs();
+		File files = new File(bundle, "files");
+		files.mkdirs();
+		for (int i = 0; i < FILE_COUNT; i++) {
+			Files.write(new File(files, "file" + i + ".txt").toPath(), ("content " + i).getBytes(StandardCharsets.UTF_8));
+		}
+		destination = folder.newFolder("destination");
+		target = getTargetService().newTarget();
+		target.setTargetLocations(
+				new ITargetLocation[] { getTargetService().newDirectoryLocation(plugins.getAbsolutePath()) });
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty(EXPORT_THREADS);
+	}
+
+	@Test
+	public void testExport() throws Exception {
+		IStatus status = new TestExportJob(target, destination, true).run(new NullProgressMonitor());
+
+		assertThat(status.isOK()).isTrue();
+		File bundle = new File(destination, "plugins/export.bundle_1.0.0");
+		assertThat(new File(bundle, "empty")).isDirectory();
+		assertThat(new File(bundle, "files/file0.txt")).hasContent("content 0");
+		assertThat(getManifestPaths()).hasSize(FILE_COUNT + 1)
+				.contains("plugins/export.bundle_1.0.0/files/file0.txt");
+		assertThat(getPartFiles()).isEmpty();
+	}
+
+	@Test
+	public void testExportAgainRestoresChangedFile() throws Exception {
+		new TestExportJob(target, destination, true).run(new NullProgressMonitor());
+		File file = new File(destination, "plugins/export.bundle_1.0.0/files/file1.txt");
+		Files.write(file.toPath(), "changed content".getBytes(StandardCharsets.UTF_8));
+
+		IStatus status = new TestExportJob(target, destination, false).run(new NullProgressMonitor());
+
+		assertThat(status.isOK()).isTrue();
+		assertThat(file).hasContent("content 1");
+	}
+
+	@Test
+	public void testCancelStopsCopying() throws Exception {
+		// few enough workers to cancel before all files are copied
+		System.setProperty(EXPORT_THREADS, "2");
+		File files = new File(destination, "plugins/export.bundle_1.0.0/files");
+		// cancel as soon as the first files have been copied
+		IProgressMonitor monitor = new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				String[] copied = files.list();
+				return copied != null && copied.length > 0;
+			}
+		};
+
+		IStatus status = new TestExportJob(target, destination, true).run(monitor);
+
+		assertThat(status.getSeverity()).isEqualTo(IStatus.CANCEL);
+		Set<String> exported = getExportedPaths();
+		assertThat(exported).hasSizeLessThan(FILE_COUNT + 1);
+		// the manifest lists only complete files and no worker is still copying
+		assertThat(exported).containsAll(getManifestPaths());
+		assertThat(getPartFiles()).isEmpty();
+		Thread.sleep(200);
+		assertThat(getExportedPaths()).isEqualTo(exported);
+	}
+
+	private List<String> getManifestPaths() throws IOException {
+		File manifest = new File(destination, "export.manifest");
+		if (!manifest.isFile()) {
+			return Collections.emptyList();
+		}
+		return Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8).stream()
+				.map(line -> line.split(" ", 3)[2]).collect(Collectors.toList());
+	}
+
+	private Set<String> getExportedPaths() throws IOException {
+		try (Stream<java.nio.file.Path> paths = Files.walk(destination.toPath())) {
+			return paths.filter(Files::isRegularFile).map(path -> destination.toPath().relativize(path))
+					.map(path -> path.toString().replace(File.separatorChar, '/'))
+					.filter(path -> !path.equals("export.manifest")).collect(Collectors.toSet());
+		}
+	}
+
+	private List<String> getPartFiles() throws IOException {
+		return getExportedPaths().stream().filter(path -> path.endsWith(".part")).collect(Collectors.toList());
+	}
+
+	/**
+	 * Runs the export in the calling thread.
+	 */
+	private static class TestExportJob extends ExportTargetJob {
+
+		TestExportJob(ITargetDefinition target, File destination, boolean clear) {
+			super(target, destination.toURI(), clear);
+		}
+
+		@Override
+		public IStatus run(IProgressMonitor monitor) {
+			return super.run(monitor);
+		}
+	}
+}
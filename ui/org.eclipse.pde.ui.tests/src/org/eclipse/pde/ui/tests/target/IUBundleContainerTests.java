@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2018 IBM Corporation and others.
+ * Copyright (c) 2009, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -17,17 +17,21 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.*;
 import java.net.URI;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import org.eclipse.core.filesystem.URIUtil;
 import org.eclipse.core.runtime.*;
 import org.eclipse.equinox.frameworkadmin.BundleInfo;
+import org.eclipse.equinox.p2.core.ProvisionException;
+import org.eclipse.equinox.p2.engine.IProfile;
 import org.eclipse.equinox.p2.metadata.IInstallableUnit;
 import org.eclipse.equinox.p2.query.IQueryResult;
 import org.eclipse.equinox.p2.query.QueryUtil;
@@ -37,6 +41,7 @@ import org.eclipse.pde.core.plugin.IPluginModelBase;
 import org.eclipse.pde.core.target.*;
 import org.eclipse.pde.internal.core.PDECore;
 import org.eclipse.pde.internal.core.target.*;
+import org.eclipse.pde.internal.core.util.CoreUtility;
 import org.eclipse.pde.ui.tests.PDETestsPlugin;
 import org.junit.Test;
 import org.w3c.dom.Document;
@@ -462,6 +467,207 @@ public class IUBundleContainerTests extends AbstractTargetTest {
 		assertEquals(0, profiles.size());
 	}
 
+	/**
+	 * Changing the root IUs of a target updates its existing profile in place
+	 * instead of recreating it.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testIncrementalProvisioning() throws Exception {
+		IUBundleContainer c1 = createContainer(new String[]{"feature.a.feature.group"});
+		ITargetDefinition target = getTargetService().newTarget();
+		target.setTargetLocations(new IUBundleContainer[]{c1});
+		IStatus resolve = target.resolve(null);
+		assertTrue(resolve.isOK());
+		String installFolder = getInstallFolder(target);
+		assertNotNull(installFolder);
+
+		IUBundleContainer c2 = createContainer(new String[]{"feature.b.feature.group"});
+		target.setTargetLocations(new IUBundleContainer[]{c2});
+		List<BundleInfo> infos = getAllBundleInfos(target);
+		Set<String> names = collectAllSymbolicNames(infos);
+		String[] bundleIds = new String[]{"bundle.a1", "bundle.a2", "bundle.a3", "bundle.b1", "bundle.b2", "bundle.b3"};
+		assertEquals(bundleIds.length, infos.size());
+		for (String bundleId : bundleIds) {
+			assertTrue("Missing: " + bundleId, names.contains(bundleId));
+		}
+		assertEquals("Profile should have been updated in place", installFolder, getInstallFolder(target));
+
+		c1 = createContainer(new String[]{"feature.a.feature.group"});
+		target.setTargetLocations(new IUBundleContainer[]{c1});
+		infos = getAllBundleInfos(target);
+		assertEquals(3, infos.size());
+		assertEquals("Profile should have been updated in place", installFolder, getInstallFolder(target));
+
+		P2TargetUtils.deleteProfile(target.getHandle());
+	}
+
+	/**
+	 * Updating the profile of a target whose IUs are sliced in place marks
+	 * only the current root IUs as installed, also when a former root remains
+	 * required by the current ones.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testIncrementalProvisioningWithSlicer() throws Exception {
+		URI uri = getURI("/tests/sites/site.a.b");
+		IUBundleContainer c1 = createContainer(getUnits(new String[]{"feature.a.feature.group", "feature.b.feature.group"}, uri), new URI[]{uri}, 0);
+		ITargetDefinition target = getTargetService().newTarget();
+		target.setTargetLocations(new IUBundleContainer[]{c1});
+		IStatus resolve = target.resolve(null);
+		assertTrue(resolve.isOK());
+		String installFolder = getInstallFolder(target);
+		assertEquals(new HashSet<>(Arrays.asList("feature.a.feature.group", "feature.b.feature.group")), getInstalledRoots(target));
+
+		// feature a remains in the slice as a requirement of feature b
+		IUBundleContainer c2 = createContainer(getUnits(new String[]{"feature.b.feature.group"}, uri), new URI[]{uri}, 0);
+		target.setTargetLocations(new IUBundleContainer[]{c2});
+		List<BundleInfo> infos = getAllBundleInfos(target);
+		assertEquals(6, infos.size());
+		assertEquals("Profile should have been updated in place", installFolder, getInstallFolder(target));
+		assertEquals(Collections.singleton("feature.b.feature.group"), getInstalledRoots(target));
+
+		P2TargetUtils.deleteProfile(target.getHandle());
+	}
+
+	/**
+	 * Returns the IDs of the units marked as installed as roots in the profile
+	 * of the given target.
+	 */
+	private Set<String> getInstalledRoots(ITargetDefinition target) throws CoreException {
+		IProfile profile = P2TargetUtils.getProfileRegistry().getProfile(P2TargetUtils.getProfileId(target));
+		Set<String> roots = new HashSet<>();
+		for (IInstallableUnit unit : profile.query(QueryUtil.createIUAnyQuery(), null)) {
+			if (Boolean.toString(true).equals(profile.getInstallableUnitProperty(unit, PDECore.PLUGIN_ID + ".installed_iu"))) {
+				roots.add(unit.getId());
+			}
+		}
+		return roots;
+	}
+
+	private String getInstallFolder(ITargetDefinition target) throws CoreException {
+		IProfile profile = P2TargetUtils.getProfileRegistry().getProfile(P2TargetUtils.getProfileId(target));
+		return profile == null ? null : profile.getProperty(IProfile.PROP_INSTALL_FOLDER);
+	}
+
+	/**
+	 * Repositories in the local file system are loaded without a snapshot.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoMetadataSnapshotOfLocalRepository() throws Exception {
+		URI location = getURI("/tests/sites/site.a.b");
+		IMetadataRepositoryManager manager = P2TargetUtils.getRepoManager();
+		try {
+			MetadataSnapshotCache.loadRepository(manager, location, null);
+			assertFalse(MetadataSnapshotCache.getSnapshotLocation(location).exists());
+		} finally {
+			MetadataSnapshotCache.deleteSnapshot(manager, location);
+		}
+	}
+
+	/**
+	 * An unchanged repository is read from its metadata snapshot, a changed
+	 * one is loaded again, and one that has been removed is reported as
+	 * missing rather than read from its snapshot.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMetadataSnapshot() throws Exception {
+		File site = new File(getURI("/tests/sites/site.a.b"));
+		File copy = Files.createTempDirectory("snapshot").toFile();
+		File content = new File(copy, "content.jar");
+		URI location = copy.toURI();
+		IMetadataRepositoryManager manager = P2TargetUtils.getRepoManager();
+		File snapshotDir = MetadataSnapshotCache.getSnapshotLocation(location);
+		try {
+			Files.copy(new File(site, "content.jar").toPath(), content.toPath());
+			IMetadataRepository repository = MetadataSnapshotCache.loadRepository(manager, location, true, null);
+			assertEquals(copy, new File(repository.getLocation()));
+			assertTrue(snapshotDir.isDirectory());
+			Set<String> expected = getUnitIds(repository);
+			assertFalse(expected.isEmpty());
+
+			// unchanged
+			IMetadataRepository snapshot = MetadataSnapshotCache.loadRepository(manager, location, true, null);
+			assertEquals(snapshotDir, new File(snapshot.getLocation()));
+			assertEquals(expected, getUnitIds(snapshot));
+
+			// changed
+			content.setLastModified(content.lastModified() + 60000);
+			repository = MetadataSnapshotCache.loadRepository(manager, location, true, null);
+			assertEquals(copy, new File(repository.getLocation()));
+
+			// removed
+			manager.removeRepository(location);
+			content.delete();
+			try {
+				MetadataSnapshotCache.loadRepository(manager, location, true, null);
+				fail("A removed repository must not be read from its snapshot");
+			} catch (ProvisionException e) {
+				// expected
+			}
+		} finally {
+			manager.removeRepository(location);
+			MetadataSnapshotCache.deleteSnapshot(manager, location);
+			CoreUtility.deleteContent(copy);
+		}
+		assertFalse(snapshotDir.exists());
+	}
+
+	/**
+	 * A repository that cannot be reached is read from its metadata snapshot
+	 * and a warning is logged.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMetadataSnapshotOfUnreachableRepository() throws Exception {
+		// nothing listens on port 1
+		URI location = new URI("http://localhost:1/unreachable/");
+		IMetadataRepositoryManager manager = P2TargetUtils.getRepoManager();
+		File snapshotDir = MetadataSnapshotCache.getSnapshotLocation(location);
+		List<IStatus> logged = Collections.synchronizedList(new ArrayList<>());
+		ILogListener listener = (status, plugin) -> logged.add(status);
+		Platform.addLogListener(listener);
+		try {
+			// a snapshot taken while the repository could be reached
+			IMetadataRepository source = manager.loadRepository(getURI("/tests/sites/site.a.b"), null);
+			IMetadataRepository snapshot = manager.createRepository(snapshotDir.toURI(), "Snapshot of " + location,
+					IMetadataRepositoryManager.TYPE_SIMPLE_REPOSITORY, new HashMap<>());
+			snapshot.addInstallableUnits(source.query(QueryUtil.createIUAnyQuery(), null).toUnmodifiableSet());
+			Properties info = new Properties();
+			info.setProperty("location", location.toString());
+			try (OutputStream out = new FileOutputStream(new File(snapshotDir, "snapshot.properties"))) {
+				info.store(out, null);
+			}
+			manager.removeRepository(snapshotDir.toURI());
+
+			IMetadataRepository repository = MetadataSnapshotCache.loadRepository(manager, location, true, null);
+
+			assertEquals(snapshotDir, new File(repository.getLocation()));
+			assertEquals(getUnitIds(source), getUnitIds(repository));
+			assertTrue(logged.stream().anyMatch(status -> status.getSeverity() == IStatus.WARNING
+					&& status.getMessage().contains(location.toString())));
+		} finally {
+			Platform.removeLogListener(listener);
+			manager.removeRepository(location);
+			MetadataSnapshotCache.deleteSnapshot(manager, location);
+		}
+	}
+
+	private static Set<String> getUnitIds(IMetadataRepository repository) {
+		Set<String> ids = new HashSet<>();
+		for (IInstallableUnit unit : repository.query(QueryUtil.createIUAnyQuery(), null)) {
+			ids.add(unit.getId());
+		}
+		return ids;
+	}
+
 	/**
 	 * Tests overlapping IU containers.
 	 *
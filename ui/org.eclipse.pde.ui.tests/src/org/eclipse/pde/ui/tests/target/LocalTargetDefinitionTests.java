@@ -305,6 +305,41 @@ public class LocalTargetDefinitionTests extends AbstractTargetTest {
 		assertEquals(getAllBundleURIs(TargetPlatformService.getDefault().newDefaultTarget()), uris);
 	}
 
+	/**
+	 * Tests that targets resolving the same bundles share the bundle instances
+	 * and that the bundles of a resolved target are only computed once.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSharedTargetBundles() throws Exception {
+		ITargetDefinition definitionA = getNewTarget();
+		definitionA.setTargetLocations(new ITargetLocation[] {
+				getTargetService().newDirectoryLocation(TargetPlatform.getDefaultLocation() + "/plugins") });
+		ITargetDefinition definitionB = getNewTarget();
+		definitionB.setTargetLocations(new ITargetLocation[] {
+				getTargetService().newDirectoryLocation("${eclipse_home}/plugins") });
+		definitionA.resolve(null);
+		definitionB.resolve(null);
+
+		TargetBundle[] bundles = definitionA.getAllBundles();
+		assertTrue("Target should contain bundles", bundles.length > 0);
+		TargetBundle[] again = definitionA.getAllBundles();
+		assertTrue("Clients should get their own array", bundles != again);
+		assertTrue("Bundles should be the same instances", bundles[0] == again[0]);
+		Arrays.fill(bundles, null);
+		assertTrue("Clients should not modify the target", definitionA.getAllBundles()[0] == again[0]);
+		bundles = again;
+		Set<TargetBundle> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+		shared.addAll(Arrays.asList(definitionB.getAllBundles()));
+		for (TargetBundle bundle : bundles) {
+			// bundles without manifest are converted and not shared
+			if (bundle.getStatus().isOK() && new File(bundle.getBundleInfo().getLocation()).isFile()) {
+				assertTrue("Bundle should be shared: " + bundle, shared.contains(bundle));
+			}
+		}
+	}
+
 	/**
 	 * Tests that a bundle directory container is equivalent to scanning
 	 * locations when it uses a variable to specify its location.
@@ -636,6 +671,41 @@ public class LocalTargetDefinitionTests extends AbstractTargetTest {
 		}
 	}
 
+	/**
+	 * Tests that the content hash of a target is independent of its name and
+	 * of the formatting of its arguments, and changes with its content.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testContentHash() throws Exception {
+		ITargetDefinition targetA = getNewTarget();
+		ITargetDefinition targetB = getNewTarget();
+		for (ITargetDefinition target : new ITargetDefinition[] { targetA, targetB }) {
+			target.setTargetLocations(new ITargetLocation[] {
+					getTargetService().newDirectoryLocation(TargetPlatform.getDefaultLocation() + "/plugins"),
+					getTargetService().newFeatureLocation(TargetPlatform.getDefaultLocation(), "org.eclipse.jdt", "1.0.0") });
+			target.setOS(Platform.OS_LINUX);
+		}
+		targetA.setName("A");
+		targetB.setName("B");
+		targetA.setVMArguments("-Xmx512m  -Dfoo=bar");
+		targetB.setVMArguments("-Xmx512m -Dfoo=bar");
+
+		String hash = ((TargetDefinition) targetA).getContentHash();
+		assertEquals("Equivalent targets should have the same hash", hash, ((TargetDefinition) targetB).getContentHash());
+		assertTrue("Targets should be equivalent", ((TargetDefinition) targetA).isContentEquivalent(targetB));
+
+		targetB.setTargetLocations(new ITargetLocation[] {
+				getTargetService().newDirectoryLocation(TargetPlatform.getDefaultLocation() + "/plugins"),
+				getTargetService().newFeatureLocation(TargetPlatform.getDefaultLocation(), "org.eclipse.jdt", "2.0.0") });
+		assertFalse("Feature versions should be part of the hash", hash.equals(((TargetDefinition) targetB).getContentHash()));
+		assertFalse("Targets should not be equivalent", ((TargetDefinition) targetA).isContentEquivalent(targetB));
+
+		targetA.setImplicitDependencies(new NameVersionDescriptor[] { new NameVersionDescriptor("org.junit", null) });
+		assertFalse("Hash should change with the content", hash.equals(((TargetDefinition) targetA).getContentHash()));
+	}
+
 	protected void assertTargetDefinitionsEqual(ITargetDefinition targetA, ITargetDefinition targetB) {
 		assertTrue("Target content not equal", ((TargetDefinition) targetA).isContentEqual(targetB));
 	}
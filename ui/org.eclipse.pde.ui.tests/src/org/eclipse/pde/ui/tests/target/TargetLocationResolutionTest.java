@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2021 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.pde.ui.tests.target;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.core.runtime.*;
+import org.eclipse.pde.core.target.*;
+import org.eclipse.pde.internal.core.target.AbstractBundleContainer;
+import org.junit.*;
+
+/**
+ * Tests resolving the locations of a target concurrently.
+ */
+public class TargetLocationResolutionTest extends AbstractTargetTest {
+
+	private static final String RESOLVE_THREADS = "pde.target.resolveThreads";
+
+	@Before
+	public void setUp() {
+		System.setProperty(RESOLVE_THREADS, "3");
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty(RESOLVE_THREADS);
+	}
+
+	@Test
+	public void testLocationsResolveConcurrently() {
+		// each location waits until all of them are resolving
+		CyclicBarrier barrier = new CyclicBarrier(3);
+		ITargetDefinition target = newTarget(monitor -> {
+			try {
+				barrier.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+				throw new CoreException(new Status(IStatus.ERROR, "org.eclipse.pde.ui.tests", "Not concurrent", e));
+			}
+		}, 3);
+
+		IStatus status = target.resolve(new NullProgressMonitor());
+
+		assertThat(status.isOK()).as(status.toString()).isTrue();
+		assertThat(target.isResolved()).isTrue();
+	}
+
+	@Test
+	public void testCancelWaitsForLocations() {
+		AtomicInteger started = new AtomicInteger();
+		AtomicInteger finished = new AtomicInteger();
+		// each location keeps resolving a while after being cancelled
+		ITargetDefinition target = newTarget(monitor -> {
+			started.incrementAndGet();
+			try {
+				while (!monitor.isCanceled()) {
+					Thread.sleep(10);
+				}
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finished.incrementAndGet();
+		}, 3);
+		IProgressMonitor monitor = new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				return started.get() > 0;
+			}
+		};
+
+		IStatus status = target.resolve(monitor);
+
+		assertThat(status.getSeverity()).isEqualTo(IStatus.CANCEL);
+		// no location is still resolving once the resolution returns
+		assertThat(finished.get()).isEqualTo(started.get());
+	}
+
+	@Test
+	public void testCanceledLocationReportsCancel() {
+		ITargetDefinition target = newTarget(monitor -> {
+			throw new OperationCanceledException();
+		}, 2);
+
+		IStatus status = target.resolve(new NullProgressMonitor());
+
+		assertThat(status.getSeverity()).isEqualTo(IStatus.CANCEL);
+		for (IStatus child : status.getChildren()) {
+			assertThat(child.getSeverity()).isEqualTo(IStatus.CANCEL);
+			assertThat(child.getMessage()).isNotNull();
+		}
+	}
+
+	private ITargetDefinition newTarget(Resolver resolver, int count) {
+		ITargetLocation[] locations = new ITargetLocation[count];
+		for (int i = 0; i < count; i++) {
+			locations[i] = new TestLocation(resolver);
+		}
+		ITargetDefinition target = getTargetService().newTarget();
+		target.setTargetLocations(locations);
+		return target;
+	}
+
+	private interface Resolver {
+		void resolve(IProgressMonitor monitor) throws CoreException;
+	}
+
+	/**
+	 * A location without content, resolved by the given resolver.
+	 */
+	private static class TestLocation extends AbstractBundleContainer {
+
+		private final Resolver fResolver;
+
+		TestLocation(Resolver resolver) {
+			fResolver = resolver;
+		}
+
+		@Override
+		protected TargetBundle[] resolveBundles(ITargetDefinition definition, IProgressMonitor monitor)
+				throws CoreException {
+			fResolver.resolve(monitor);
+			return new TargetBundle[0];
+		}
+
+		@Override
+		protected TargetFeature[] resolveFeatures(ITargetDefinition definition, IProgressMonitor monitor) {
+			return new TargetFeature[0];
+		}
+
+		@Override
+		public String getType() {
+			return "Test";
+		}
+
+		@Override
+		public String getLocation(boolean resolve) {
+			return "test";
+		}
+	}
+}
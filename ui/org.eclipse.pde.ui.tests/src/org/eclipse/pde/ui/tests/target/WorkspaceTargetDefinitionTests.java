@@ -17,11 +17,16 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.pde.core.target.ITargetDefinition;
+import org.eclipse.pde.core.target.ITargetHandle;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Test;
 
 /**
  * Tests for target definitions.  The tested targets will be backed by a workspace file.
@@ -53,6 +58,37 @@ public class WorkspaceTargetDefinitionTests extends LocalTargetDefinitionTests {
 		assertFalse("Could not delete test project",project.exists());
 	}
 
+	/**
+	 * Tests that the target files returned by the target platform service
+	 * follow the creation and removal of files and the closing of projects.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testWorkspaceTargetIndex() throws Exception {
+		IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME);
+		IFolder folder = project.getFolder("targets");
+		folder.create(true, true, null);
+		IFile file = folder.getFile("indexed.target");
+		ITargetHandle handle = getTargetService().getTarget(file);
+		assertFalse("Target should not be found before it exists", getWorkspaceTargets().contains(handle));
+
+		file.create(new ByteArrayInputStream("<?xml version=\"1.0\"?><target/>".getBytes()), true, null);
+		assertTrue("Created target should be found", getWorkspaceTargets().contains(handle));
+
+		project.close(null);
+		assertFalse("Target of closed project should not be found", getWorkspaceTargets().contains(handle));
+		project.open(null);
+		assertTrue("Target of reopened project should be found", getWorkspaceTargets().contains(handle));
+
+		folder.delete(true, null);
+		assertFalse("Deleted target should not be found", getWorkspaceTargets().contains(handle));
+	}
+
+	private List<ITargetHandle> getWorkspaceTargets() {
+		return Arrays.asList(getTargetService().getTargets(null));
+	}
+
 	@Override
 	protected ITargetDefinition getNewTarget() {
 		IFile target = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME)
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2008, 2015 IBM Corporation and others.
+ * Copyright (c) 2008, 2021 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -13,8 +13,10 @@
  *******************************************************************************/
 package org.eclipse.pde.ui.tests.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.jdt.core.IJavaProject;
@@ -130,6 +132,50 @@ public class ProjectUtils {
 		return javaProject;
 	}
 
+	/**
+	 * Create a plug-in project whose manifest only declares the given symbolic
+	 * name and required bundles.
+	 *
+	 * @param symbolicName
+	 *            name of the project and symbolic name of the bundle
+	 * @param requireBundle
+	 *            value of the <code>Require-Bundle</code> header or
+	 *            <code>null</code> if the bundle requires no bundles
+	 * @return a new plugin project
+	 * @throws Exception
+	 */
+	public static IProject createBundleProject(String symbolicName, String requireBundle) throws Exception {
+		IProject project = createPluginProject(symbolicName, null).getProject();
+		setManifest(project, symbolicName, requireBundle);
+		return project;
+	}
+
+	/**
+	 * Replaces the manifest of a plug-in project by one only declaring the
+	 * given symbolic name and required bundles.
+	 *
+	 * @param project
+	 *            the plug-in project
+	 * @param symbolicName
+	 *            symbolic name of the bundle
+	 * @param requireBundle
+	 *            value of the <code>Require-Bundle</code> header or
+	 *            <code>null</code> if the bundle requires no bundles
+	 * @throws CoreException
+	 */
+	public static void setManifest(IProject project, String symbolicName, String requireBundle) throws CoreException {
+		StringBuilder manifest = new StringBuilder();
+		manifest.append("Manifest-Version: 1.0\n");
+		manifest.append("Bundle-ManifestVersion: 2\n");
+		manifest.append("Bundle-SymbolicName: ").append(symbolicName).append("\n");
+		manifest.append("Bundle-Version: 1.0.0\n");
+		if (requireBundle != null) {
+			manifest.append("Require-Bundle: ").append(requireBundle).append("\n");
+		}
+		byte[] content = manifest.toString().getBytes(StandardCharsets.UTF_8);
+		project.getFile("META-INF/MANIFEST.MF").setContents(new ByteArrayInputStream(content), true, false, null);
+	}
+
 	public static IProject importTestProject(String path) throws IOException, CoreException {
 		URL entry = FileLocator.toFileURL(FrameworkUtil.getBundle(ProjectUtils.class).getEntry(path));
 		if (entry == null) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2007, 2015 IBM Corporation and others.
+ *  Copyright (c) 2007, 2021 IBM Corporation and others.
  *
  *  This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License 2.0
@@ -22,6 +22,7 @@ import org.eclipse.ltk.core.refactoring.TextFileChange;
 import org.eclipse.osgi.service.resolver.*;
 import org.eclipse.pde.core.plugin.*;
 import org.eclipse.pde.internal.core.ICoreConstants;
+import org.eclipse.pde.internal.core.PDECore;
 import org.osgi.framework.Constants;
 
 public class FindReferenceOperation implements IWorkspaceRunnable {
@@ -40,8 +41,9 @@ public class FindReferenceOperation implements IWorkspaceRunnable {
 		ArrayList<TextFileChange> list = new ArrayList<>();
 		if (fDesc != null) {
 			SubMonitor subMonitor = SubMonitor.convert(monitor, 3);
-			findRequireBundleReferences(list, subMonitor.split(1));
-			findFragmentReferences(list, subMonitor.split(1));
+			BundleDescription[] dependents = PDECore.getDefault().getModelManager().getDependencyIndex().getDependents(fDesc, false);
+			findRequireBundleReferences(list, dependents, subMonitor.split(1));
+			findFragmentReferences(list, dependents, subMonitor.split(1));
 			findXFriendReferences(list, subMonitor.split(1));
 		}
 		fChanges = list.toArray(new Change[list.size()]);
@@ -51,9 +53,8 @@ public class FindReferenceOperation implements IWorkspaceRunnable {
 		return fChanges;
 	}
 
-	private void findRequireBundleReferences(ArrayList<TextFileChange> changes, IProgressMonitor monitor) throws CoreException {
+	private void findRequireBundleReferences(ArrayList<TextFileChange> changes, BundleDescription[] dependents, IProgressMonitor monitor) throws CoreException {
 		String oldId = fDesc.getSymbolicName();
-		BundleDescription[] dependents = fDesc.getDependents();
 		SubMonitor subMonitor = SubMonitor.convert(monitor, dependents.length);
 		for (BundleDescription dependent : dependents) {
 			BundleSpecification[] requires = dependent.getRequiredBundles();
@@ -72,11 +73,14 @@ public class FindReferenceOperation implements IWorkspaceRunnable {
 		}
 	}
 
-	private void findFragmentReferences(ArrayList<TextFileChange> changes, IProgressMonitor monitor) throws CoreException {
-		BundleDescription[] fragments = fDesc.getFragments();
-		SubMonitor subMonitor = SubMonitor.convert(monitor, fragments.length);
+	private void findFragmentReferences(ArrayList<TextFileChange> changes, BundleDescription[] dependents, IProgressMonitor monitor) throws CoreException {
+		SubMonitor subMonitor = SubMonitor.convert(monitor, dependents.length);
 		String id = fDesc.getSymbolicName();
-		for (BundleDescription fragment : fragments) {
+		for (BundleDescription fragment : dependents) {
+			if (fragment.getHost() == null) {
+				subMonitor.split(1);
+				continue;
+			}
 			IPluginModelBase base = PluginRegistry.findModel(fragment);
 			SubMonitor iterationMonitor = subMonitor.split(1);
 			if (base instanceof IFragmentModel && id.equals(((IFragmentModel) (base)).getFragment().getPluginId())) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- *  Copyright (c) 2000, 2017 IBM Corporation and others.
+ *  Copyright (c) 2000, 2021 IBM Corporation and others.
  *
  *  This program and the accompanying materials
  *  are made available under the terms of the Eclipse Public License 2.0
@@ -15,6 +15,7 @@ package org.eclipse.pde.internal.ui.views.dependencies;
 
 import java.util.*;
 import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.pde.internal.core.PDECore;
 
 public class CallersContentProvider extends DependenciesViewPageContentProvider {
 	public CallersContentProvider(DependenciesView view) {
@@ -25,7 +26,7 @@ public class CallersContentProvider extends DependenciesViewPageContentProvider
 		if (desc != null) {
 			// don't return any callers for fragments (since no one can depend on a fragment
 			if (desc.getHost() == null) {
-				BundleDescription[] dependents = desc.getDependents();
+				BundleDescription[] dependents = PDECore.getDefault().getModelManager().getDependencyIndex().getDependents(desc, false);
 				return Arrays.asList(dependents);
 			}
 			// for fragment, need to get the host bundle